@@ -0,0 +1,123 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.catalina.connector;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServlet;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.startup.ExpandWar;
+import org.apache.catalina.startup.Tomcat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link CoyoteAdapter#postParseRequest(org.apache.coyote.Request, Request, org.apache.coyote.Response,
+ * Response)} which performs URI decoding, normalisation, mapping and session ID extraction before a request is passed
+ * to the container.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoyoteAdapterBenchmark {
+
+    @Param({ "/app/servlet/path/info", "/app/a/./b/../servlet/%70ath;jsessionid=1234/info" })
+    public String requestUri;
+
+    private File baseDir;
+    private Tomcat tomcat;
+    private CoyoteAdapter adapter;
+
+    private byte[] uriBytes;
+    private byte[] cookieBytes;
+
+    private org.apache.coyote.Request coyoteRequest;
+    private org.apache.coyote.Response coyoteResponse;
+    private Request request;
+    private Response response;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        baseDir = Files.createTempDirectory("benchmark").toFile();
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.getAbsolutePath());
+        tomcat.setPort(0);
+        Context ctx = tomcat.addContext("/app", null);
+        Tomcat.addServlet(ctx, "servlet", new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+        });
+        ctx.addServletMapping("/servlet/*", "servlet");
+        tomcat.start();
+
+        Connector connector = tomcat.getConnector();
+        adapter = new CoyoteAdapter(connector);
+
+        uriBytes = requestUri.getBytes(StandardCharsets.ISO_8859_1);
+        cookieBytes = "JSESSIONID=0123456789ABCDEF0123456789ABCDEF; theme=dark".getBytes(StandardCharsets.ISO_8859_1);
+
+        coyoteRequest = new org.apache.coyote.Request();
+        coyoteResponse = new org.apache.coyote.Response();
+        coyoteRequest.setResponse(coyoteResponse);
+        request = connector.createRequest(coyoteRequest);
+        response = connector.createResponse(coyoteResponse);
+        request.setResponse(response);
+        response.setRequest(request);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (tomcat.getServer() != null && tomcat.getServer().getState() != LifecycleState.DESTROYED) {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+        ExpandWar.delete(baseDir);
+    }
+
+
+    @Benchmark
+    public Object postParseRequest() throws Exception {
+        request.recycle();
+        response.recycle();
+        coyoteRequest.recycle();
+        coyoteResponse.recycle();
+
+        coyoteRequest.setMethod("GET");
+        coyoteRequest.requestURI().setBytes(uriBytes, 0, uriBytes.length);
+        coyoteRequest.serverName().setString("localhost");
+        coyoteRequest.getMimeHeaders().addValue("Cookie").setBytes(cookieBytes, 0, cookieBytes.length);
+
+        if (!adapter.postParseRequest(coyoteRequest, request, coyoteResponse, response)) {
+            throw new IllegalStateException();
+        }
+        return request.getWrapper();
+    }
+}
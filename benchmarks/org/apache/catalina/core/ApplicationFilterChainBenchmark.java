@@ -0,0 +1,113 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServlet;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Engine;
+import org.apache.catalina.Host;
+import org.apache.tomcat.SimpleInstanceManager;
+import org.apache.tomcat.unittest.TesterRequest;
+import org.apache.tomcat.unittest.TesterResponse;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the overhead {@link ApplicationFilterChain#doFilter(ServletRequest, ServletResponse)} adds when passing a
+ * request through a chain of pass-through filters to a servlet that does nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApplicationFilterChainBenchmark {
+
+    @Param({ "0", "5", "20" })
+    public int filterCount;
+
+    private final ApplicationFilterChain filterChain = new ApplicationFilterChain();
+    private final TesterRequest request = new TesterRequest();
+    private final TesterResponse response = new TesterResponse();
+
+
+    @Setup
+    public void setup() throws Exception {
+        Engine engine = new StandardEngine();
+        engine.setName("Benchmark");
+        Host host = new StandardHost();
+        host.setName("localhost");
+        engine.addChild(host);
+        Context context = new StandardContext();
+        context.setName("/app");
+        context.setPath("/app");
+        context.setInstanceManager(new SimpleInstanceManager());
+        host.addChild(context);
+
+        for (int i = 0; i < filterCount; i++) {
+            FilterDef filterDef = new FilterDef();
+            filterDef.setFilterName("filter" + i);
+            filterDef.setFilter(new PassThroughFilter());
+            filterDef.setAsyncSupported("true");
+            filterChain.addFilter(new ApplicationFilterConfig(context, filterDef));
+        }
+        filterChain.setServlet(new NoOpServlet());
+        filterChain.setServletSupportsAsync(true);
+    }
+
+
+    @Benchmark
+    public void doFilter() throws IOException, ServletException {
+        filterChain.reuse();
+        filterChain.doFilter(request, response);
+    }
+
+
+    private static class PassThroughFilter implements Filter {
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            chain.doFilter(request, response);
+        }
+    }
+
+
+    private static class NoOpServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void service(ServletRequest req, ServletResponse res) throws ServletException, IOException {
+            // NO-OP
+        }
+    }
+}
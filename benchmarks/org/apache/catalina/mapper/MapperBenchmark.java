@@ -0,0 +1,159 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.catalina.mapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.core.StandardWrapper;
+import org.apache.tomcat.util.buf.MessageBytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link Mapper#map(MessageBytes, MessageBytes, String, MappingData)} for a host with a configurable number of
+ * contexts, each with a configurable number of servlet mappings. The URI selects which of the mapping rules of the
+ * Servlet specification is expected to match. Both binary search and compiled mapping are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapperBenchmark {
+
+    private static final String HOST_NAME = "www.example.com";
+
+    @Param({ "10", "500" })
+    public int contextCount;
+
+    @Param({ "20", "1000" })
+    public int mappingsPerContext;
+
+    @Param({ "exact", "prefix", "extension", "default" })
+    public String match;
+
+    @Param({ "false", "true" })
+    public boolean compiledMapping;
+
+    protected Mapper mapper;
+
+    private final MappingData mappingData = new MappingData();
+    private final MessageBytes host = MessageBytes.newInstance();
+    private final MessageBytes uri = MessageBytes.newInstance();
+
+
+    @Setup
+    public void setup() {
+        mapper = createMapper(contextCount, mappingsPerContext);
+        mapper.setCompiledMapping(compiledMapping);
+
+        host.setString(HOST_NAME);
+        // Map into a context from the middle of the sorted context list
+        String contextPath = "/app" + (contextCount / 2);
+        int mapping = mappingsPerContext / 2;
+        switch (match) {
+            case "exact":
+                uri.setString(contextPath + "/exact" + mapping);
+                break;
+            case "prefix":
+                uri.setString(contextPath + "/prefix" + mapping + "/some/path/info");
+                break;
+            case "extension":
+                uri.setString(contextPath + "/some/resource/page" + mapping + ".ext" + mapping);
+                break;
+            default:
+                uri.setString(contextPath + "/unmapped/resource.css");
+        }
+        uri.toChars();
+        uri.getCharChunk().setLimit(-1);
+    }
+
+
+    @Benchmark
+    public Object map() throws IOException {
+        mappingData.recycle();
+        mapper.map(host, uri, null, mappingData);
+        return mappingData.wrapper;
+    }
+
+
+    /**
+     * Create a Mapper for a single host with the given number of contexts. Each context is given an equal number of
+     * exact, prefix and extension mappings plus a default servlet.
+     *
+     * @param contextCount       The number of contexts to create
+     * @param mappingsPerContext The number of servlet mappings to create per context
+     *
+     * @return The configured Mapper
+     */
+    protected static Mapper createMapper(int contextCount, int mappingsPerContext) {
+        Mapper mapper = new Mapper();
+
+        Host host = new StandardHost();
+        host.setName(HOST_NAME);
+        mapper.addHost(HOST_NAME, new String[0], host);
+        mapper.setDefaultHostName(HOST_NAME);
+
+        for (int i = 0; i < contextCount; i++) {
+            String path = "/app" + i;
+            Context context = new StandardContext();
+            context.setName(path);
+            List<WrapperMappingInfo> wrappers = new ArrayList<>();
+            wrappers.add(new WrapperMappingInfo("/", createWrapper("default"), false, false));
+            for (int j = 0; j < mappingsPerContext; j++) {
+                switch (j % 3) {
+                    case 0:
+                        wrappers.add(new WrapperMappingInfo("/exact" + j, createWrapper("exact" + j), false, false));
+                        break;
+                    case 1:
+                        wrappers.add(new WrapperMappingInfo("/prefix" + j + "/*", createWrapper("prefix" + j), false,
+                                false));
+                        break;
+                    default:
+                        wrappers.add(new WrapperMappingInfo("*.ext" + j, createWrapper("ext" + j), false, false));
+                }
+            }
+            // Make sure the mappings used by the benchmark exist whatever the modulus
+            int mapping = mappingsPerContext / 2;
+            wrappers.add(new WrapperMappingInfo("/exact" + mapping, createWrapper("exact" + mapping), false, false));
+            wrappers.add(new WrapperMappingInfo("/prefix" + mapping + "/*", createWrapper("prefix" + mapping), false,
+                    false));
+            wrappers.add(new WrapperMappingInfo("*.ext" + mapping, createWrapper("ext" + mapping), false, false));
+            mapper.addContextVersion(HOST_NAME, host, path, "0", context, new String[0], null, wrappers);
+        }
+        return mapper;
+    }
+
+
+    private static Wrapper createWrapper(String name) {
+        Wrapper wrapper = new StandardWrapper();
+        wrapper.setName(name);
+        return wrapper;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.core.StandardContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the time the background processor spends in {@link ManagerBase#processExpires()} for a manager holding a
+ * large number of sessions, none of which are due to expire, with and without the session expiration index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManagerBaseProcessExpiresBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int sessionCount;
+
+    @Param({ "true", "false" })
+    public boolean indexed;
+
+    private StandardManager manager;
+
+
+    @Setup
+    public void setup() {
+        final boolean sessionExpirationIndexed = indexed;
+        manager = new StandardManager() {
+            @Override
+            protected boolean isSessionExpirationIndexed() {
+                return sessionExpirationIndexed;
+            }
+        };
+        manager.setContext(new StandardContext());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < sessionCount; i++) {
+            StandardSession session = new StandardSession(manager);
+            session.setValid(true);
+            // Spread the last access times over the previous 30 minutes
+            session.setCreationTime(now - (i % 1800) * 1000L);
+            session.setMaxInactiveInterval(3600);
+            session.setId(Integer.toString(i), false);
+        }
+    }
+
+
+    @Benchmark
+    public void processExpires() {
+        manager.processExpires();
+    }
+}
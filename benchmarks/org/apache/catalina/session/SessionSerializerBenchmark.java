@@ -0,0 +1,140 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.core.StandardContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the throughput and size of the {@link SessionSerializer} implementations when writing and reading a batch
+ * of sessions, as {@link StandardManager} does on shutdown and start. The number of bytes per session is printed
+ * during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SessionSerializerBenchmark {
+
+    private static final int SESSION_COUNT = 100;
+
+    @Param({ "java", "compact" })
+    public String serializer;
+
+    private StandardManager manager;
+    private StandardSession[] sessions;
+    private byte[] serialized;
+    private ClassLoader classLoader;
+
+
+    @Setup
+    public void setup() throws Exception {
+        manager = new StandardManager();
+        manager.setContext(new StandardContext());
+        if ("compact".equals(serializer)) {
+            manager.setSessionSerializer(new CompactSessionSerializer());
+        }
+        classLoader = SessionSerializerBenchmark.class.getClassLoader();
+
+        sessions = new StandardSession[SESSION_COUNT];
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            StandardSession session = new StandardSession(manager);
+            session.setValid(true);
+            session.setId(String.format("%032X", Integer.valueOf(i)), false);
+            session.setAttribute("userName", "user" + i);
+            session.setAttribute("locale", "en_GB");
+            session.setAttribute("loginTime", new Date());
+            session.setAttribute("visits", Integer.valueOf(i));
+            session.setAttribute("roles", new ArrayList<>(Arrays.asList("user", "editor")));
+            Map<String,Object> preferences = new HashMap<>();
+            preferences.put("theme", "dark");
+            preferences.put("pageSize", Integer.valueOf(25));
+            preferences.put("notifications", Boolean.TRUE);
+            session.setAttribute("preferences", preferences);
+            session.setAttribute("cart", new Cart(i));
+            sessions[i] = session;
+        }
+
+        serialized = write();
+        System.out.println("Serializer [" + serializer + "] bytes per session [" + serialized.length / SESSION_COUNT +
+                "]");
+    }
+
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(64 * 1024);
+        try (ObjectOutputStream oos = manager.getSessionObjectOutputStream(baos)) {
+            oos.writeObject(Integer.valueOf(sessions.length));
+            for (StandardSession session : sessions) {
+                session.writeObjectData(oos);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+
+    @Benchmark
+    public StandardSession read() throws IOException, ClassNotFoundException {
+        StandardSession session = null;
+        try (ObjectInputStream ois = manager.getSessionObjectInputStream(new ByteArrayInputStream(serialized),
+                classLoader)) {
+            int count = ((Integer) ois.readObject()).intValue();
+            for (int i = 0; i < count; i++) {
+                session = new StandardSession(manager);
+                session.readObjectData(ois);
+            }
+        }
+        return session;
+    }
+
+
+    private static class Cart implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> items = new ArrayList<>();
+        private final long total;
+
+        Cart(int seed) {
+            for (int i = 0; i < 3; i++) {
+                items.add("item-" + (seed + i));
+            }
+            total = seed * 100L;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.ExpandWar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the throughput of {@link FileStore} and {@link MappedFileStore} when saving, loading and listing sessions
+ * in a Store that already holds a large number of sessions, as it would for a {@link PersistentManager} that has
+ * swapped out most of its sessions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SessionStoreBenchmark {
+
+    @Param({ "file", "mapped" })
+    public String store;
+
+    @Param({ "100000" })
+    public int sessionCount;
+
+    private File directory;
+    private StandardManager manager;
+    private StoreBase sessionStore;
+    private StandardSession[] sessions;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("session-store").toFile();
+        manager = new StandardManager();
+        manager.setContext(new StandardContext());
+
+        if ("mapped".equals(store)) {
+            MappedFileStore mappedFileStore = new MappedFileStore();
+            mappedFileStore.setDirectory(directory.getAbsolutePath());
+            sessionStore = mappedFileStore;
+        } else {
+            FileStore fileStore = new FileStore();
+            fileStore.setDirectory(directory.getAbsolutePath());
+            sessionStore = fileStore;
+        }
+        sessionStore.setManager(manager);
+        sessionStore.start();
+
+        sessions = new StandardSession[sessionCount];
+        for (int i = 0; i < sessionCount; i++) {
+            StandardSession session = new StandardSession(manager);
+            session.setValid(true);
+            session.setCreationTime(System.currentTimeMillis());
+            session.setMaxInactiveInterval(1800);
+            session.setId(String.format("%032X", Integer.valueOf(i)), false);
+            session.setAttribute("userName", "user" + i, false);
+            session.setAttribute("visits", Integer.valueOf(i), false);
+            sessions[i] = session;
+            sessionStore.save(session);
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        sessionStore.stop();
+        ExpandWar.delete(directory);
+    }
+
+
+    @Benchmark
+    public void save() throws IOException {
+        sessionStore.save(sessions[ThreadLocalRandom.current().nextInt(sessionCount)]);
+    }
+
+
+    @Benchmark
+    public Session load() throws IOException, ClassNotFoundException {
+        return sessionStore.load(sessions[ThreadLocalRandom.current().nextInt(sessionCount)].getIdInternal());
+    }
+
+
+    @Benchmark
+    public String[] keys() throws IOException {
+        return sessionStore.keys();
+    }
+}
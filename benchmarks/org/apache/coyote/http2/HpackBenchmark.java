@@ -0,0 +1,133 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures HPACK encoding of a typical API response header block, both for the first response on a connection (empty
+ * dynamic table) and for subsequent identical responses (all fields in the dynamic table), and HPACK decoding of a
+ * typical request header block. Huffman encoding of a single header value is measured separately.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HpackBenchmark {
+
+    private final MimeHeaders responseHeaders = new MimeHeaders();
+    private final ByteBuffer target = ByteBuffer.allocate(16 * 1024);
+    private final HpackEncoder repeatEncoder = new HpackEncoder();
+
+    private ByteBuffer encodedRequest;
+    private final NoOpHeaderEmitter headerEmitter = new NoOpHeaderEmitter();
+
+
+    @Setup
+    public void setup() throws Exception {
+        responseHeaders.addValue(":status").setString("200");
+        responseHeaders.addValue("content-type").setString("application/json;charset=UTF-8");
+        responseHeaders.addValue("content-length").setString("1234");
+        responseHeaders.addValue("date").setString("Thu, 01 Jan 2026 00:00:00 GMT");
+        responseHeaders.addValue("cache-control").setString("no-cache, no-store, max-age=0, must-revalidate");
+        responseHeaders.addValue("x-content-type-options").setString("nosniff");
+        responseHeaders.addValue("x-frame-options").setString("DENY");
+        responseHeaders.addValue("strict-transport-security").setString("max-age=31536000; includeSubDomains");
+        responseHeaders.addValue("content-security-policy").setString("default-src 'self'");
+
+        MimeHeaders requestHeaders = new MimeHeaders();
+        requestHeaders.addValue(":method").setString("GET");
+        requestHeaders.addValue(":scheme").setString("https");
+        requestHeaders.addValue(":authority").setString("api.example.com");
+        requestHeaders.addValue(":path").setString("/api/v1/orders/12345/items?expand=true");
+        requestHeaders.addValue("accept").setString("application/json");
+        requestHeaders.addValue("accept-encoding").setString("gzip, deflate, br, zstd");
+        requestHeaders.addValue("user-agent").setString("benchmark-client/1.0");
+        requestHeaders.addValue("authorization").setString("Bearer eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.e30.sig");
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        new HpackEncoder().encode(requestHeaders, buffer);
+        buffer.flip();
+        encodedRequest = buffer.asReadOnlyBuffer();
+
+        // Populate the dynamic table of the encoder used for repeated responses
+        repeatEncoder.encode(responseHeaders, target);
+    }
+
+
+    @Benchmark
+    public int encodeFirstResponse() {
+        target.clear();
+        new HpackEncoder().encode(responseHeaders, target);
+        return target.position();
+    }
+
+
+    @Benchmark
+    public int encodeRepeatedResponse() {
+        target.clear();
+        repeatEncoder.encode(responseHeaders, target);
+        return target.position();
+    }
+
+
+    @Benchmark
+    public int huffmanEncodeValue() {
+        target.clear();
+        HPackHuffman.encode(target, "no-cache, no-store, max-age=0, must-revalidate");
+        return target.position();
+    }
+
+
+    @Benchmark
+    public int decodeRequest() throws HpackException {
+        HpackDecoder decoder = new HpackDecoder();
+        decoder.setHeaderEmitter(headerEmitter);
+        ByteBuffer input = encodedRequest.duplicate();
+        decoder.decode(input);
+        return headerEmitter.count;
+    }
+
+
+    private static class NoOpHeaderEmitter implements HpackDecoder.HeaderEmitter {
+
+        private int count;
+
+        @Override
+        public void emitHeader(String name, String value) {
+            count++;
+        }
+
+        @Override
+        public void setHeaderException(StreamException streamException) {
+            // NO-OP
+        }
+
+        @Override
+        public void validateHeaders() throws StreamException {
+            // NO-OP
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tomcat.util.json.JSONParser;
+import org.apache.tomcat.util.json.ParseException;
+
+/**
+ * Compares two sets of JMH results in JSON format (typically the results for the current code and the results for a
+ * previous release) and reports the relative change for each benchmark. Benchmarks are matched using the benchmark
+ * name and the parameter values.
+ * <p>
+ * Usage: {@code BenchmarkCompare <baseline.json> <current.json> [threshold percent]}
+ * <p>
+ * Exits with a non-zero status if any benchmark has regressed by more than the threshold.
+ */
+public class BenchmarkCompare {
+
+    public static void main(String[] args) throws IOException, ParseException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkCompare <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        double threshold = 10;
+        if (args.length > 2) {
+            threshold = Double.parseDouble(args[2]);
+        }
+
+        Map<String,Result> baseline = load(Path.of(args[0]));
+        Map<String,Result> current = load(Path.of(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String,Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result then = baseline.get(entry.getKey());
+            if (then == null) {
+                System.out.printf("%-100s %12.3f %-10s (new)%n", entry.getKey(), Double.valueOf(now.score),
+                        now.unit);
+                continue;
+            }
+            // Positive change means faster for both throughput and time based modes
+            double change;
+            if (now.higherIsBetter) {
+                change = (now.score - then.score) / then.score * 100;
+            } else {
+                change = (then.score - now.score) / then.score * 100;
+            }
+            String flag = "";
+            if (change < -threshold) {
+                flag = " REGRESSION";
+                regressions++;
+            }
+            System.out.printf("%-100s %12.3f %-10s %+7.1f%%%s%n", entry.getKey(), Double.valueOf(now.score), now.unit,
+                    Double.valueOf(change), flag);
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+
+    private static Map<String,Result> load(Path path) throws IOException, ParseException {
+        String json = Files.readString(path, StandardCharsets.UTF_8);
+        List<Object> runs = new JSONParser(json).parseArray();
+        Map<String,Result> results = new LinkedHashMap<>();
+        for (Object run : runs) {
+            @SuppressWarnings("unchecked")
+            Map<String,Object> map = (Map<String,Object>) run;
+            StringBuilder key = new StringBuilder((String) map.get("benchmark"));
+            Object params = map.get("params");
+            if (params instanceof Map<?,?> paramMap) {
+                key.append(paramMap.toString());
+            }
+            @SuppressWarnings("unchecked")
+            Map<String,Object> primary = (Map<String,Object>) map.get("primaryMetric");
+            double score = ((Number) primary.get("score")).doubleValue();
+            String unit = (String) primary.get("scoreUnit");
+            boolean higherIsBetter = "thrpt".equals(map.get("mode"));
+            results.put(key.toString(), new Result(score, unit, higherIsBetter));
+        }
+        return results;
+    }
+
+
+    private record Result(double score, String unit, boolean higherIsBetter) {
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.Cookie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures parsing of request Cookie headers and generation of Set-Cookie response headers by
+ * {@link Rfc6265CookieProcessor}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Rfc6265CookieProcessorBenchmark {
+
+    @Param({ "2", "20" })
+    public int cookieCount;
+
+    private final Rfc6265CookieProcessor cookieProcessor = new Rfc6265CookieProcessor();
+    private final MimeHeaders mimeHeaders = new MimeHeaders();
+    private ServerCookies serverCookies;
+    private Cookie cookie;
+
+
+    @Setup
+    public void setup() {
+        StringBuilder cookieHeader = new StringBuilder();
+        for (int i = 0; i < cookieCount; i++) {
+            if (i > 0) {
+                cookieHeader.append("; ");
+            }
+            cookieHeader.append("name");
+            cookieHeader.append(i);
+            cookieHeader.append('=');
+            cookieHeader.append("value");
+            cookieHeader.append(i);
+        }
+        byte[] cookieHeaderBytes = cookieHeader.toString().getBytes(StandardCharsets.ISO_8859_1);
+        mimeHeaders.addValue("Cookie").setBytes(cookieHeaderBytes, 0, cookieHeaderBytes.length);
+        serverCookies = new ServerCookies(cookieCount);
+
+        cookie = new Cookie("JSESSIONID", "0123456789ABCDEF0123456789ABCDEF");
+        cookie.setPath("/app");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(true);
+        cookie.setMaxAge(3600);
+    }
+
+
+    @Benchmark
+    public int parseCookieHeader() {
+        serverCookies.recycle();
+        cookieProcessor.parseCookieHeader(mimeHeaders, serverCookies);
+        return serverCookies.getCookieCount();
+    }
+
+
+    @Benchmark
+    public String generateHeader() {
+        return cookieProcessor.generateHeader(cookie, null);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory socket wrapper that replays a fixed input and discards all output. This allows the HTTP processing code to
+ * be benchmarked without the noise introduced by the network stack.
+ */
+public class TesterByteArraySocketWrapper extends SocketWrapperBase<NioChannel> {
+
+    private byte[] input = new byte[0];
+    private int inputPos = 0;
+    private long bytesWritten = 0;
+
+
+    public TesterByteArraySocketWrapper(int readBufferSize, int writeBufferSize) {
+        super(null, new NioEndpoint());
+        socketBufferHandler = new SocketBufferHandler(readBufferSize, writeBufferSize, false);
+    }
+
+
+    /**
+     * Configure the bytes that will be returned by subsequent reads and rewind to the start of them.
+     *
+     * @param input The bytes to return
+     */
+    public void setInput(byte[] input) {
+        this.input = input;
+        this.inputPos = 0;
+    }
+
+
+    /**
+     * Rewind so that the next read starts at the beginning of the current input.
+     */
+    public void rewind() {
+        inputPos = 0;
+        bytesWritten = 0;
+        socketBufferHandler.reset();
+    }
+
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+
+    @Override
+    protected void populateRemoteHost() {
+        remoteHost = "localhost";
+    }
+
+
+    @Override
+    protected void populateRemoteAddr() {
+        remoteAddr = "127.0.0.1";
+    }
+
+
+    @Override
+    protected void populateRemotePort() {
+        remotePort = 1024;
+    }
+
+
+    @Override
+    protected void populateLocalName() {
+        localName = "localhost";
+    }
+
+
+    @Override
+    protected void populateLocalAddr() {
+        localAddr = "127.0.0.1";
+    }
+
+
+    @Override
+    protected void populateLocalPort() {
+        localPort = 8080;
+    }
+
+
+    @Override
+    public int read(boolean block, byte[] b, int off, int len) throws IOException {
+        int available = input.length - inputPos;
+        if (available == 0) {
+            return block ? -1 : 0;
+        }
+        int n = Math.min(available, len);
+        System.arraycopy(input, inputPos, b, off, n);
+        inputPos += n;
+        return n;
+    }
+
+
+    @Override
+    public int read(boolean block, ByteBuffer to) throws IOException {
+        int available = input.length - inputPos;
+        if (available == 0) {
+            return block ? -1 : 0;
+        }
+        int n = Math.min(available, to.remaining());
+        to.put(input, inputPos, n);
+        inputPos += n;
+        return n;
+    }
+
+
+    @Override
+    public boolean isReadyForRead() throws IOException {
+        return inputPos < input.length;
+    }
+
+
+    @Override
+    public void setAppReadBufHandler(ApplicationBufferHandler handler) {
+        // NO-OP
+    }
+
+
+    @Override
+    protected void doClose() {
+        // NO-OP
+    }
+
+
+    @Override
+    protected boolean flushNonBlocking() throws IOException {
+        socketBufferHandler.getWriteBuffer().clear();
+        return false;
+    }
+
+
+    @Override
+    protected void doWrite(boolean block, ByteBuffer from) throws IOException {
+        bytesWritten += from.remaining();
+        from.position(from.limit());
+    }
+
+
+    @Override
+    public void registerReadInterest() {
+        // NO-OP
+    }
+
+
+    @Override
+    public void registerWriteInterest() {
+        // NO-OP
+    }
+
+
+    @Override
+    public SendfileDataBase createSendfileData(String filename, long pos, long length) {
+        return null;
+    }
+
+
+    @Override
+    public SendfileState processSendfile(SendfileDataBase sendfileData) {
+        return SendfileState.ERROR;
+    }
+
+
+    @Override
+    public void doClientAuth(SSLSupport sslSupport) throws IOException {
+        // NO-OP
+    }
+
+
+    @Override
+    public SSLSupport getSslSupport() {
+        return null;
+    }
+
+
+    @Override
+    protected <A> OperationState<A> newOperationState(boolean read, ByteBuffer[] buffers, int offset, int length,
+            BlockingMode block, long timeout, TimeUnit unit, A attachment, CompletionCheck check,
+            CompletionHandler<Long,? super A> handler, Semaphore semaphore, VectoredIOCompletionHandler<A> completion) {
+        throw new UnsupportedOperationException();
+    }
+}
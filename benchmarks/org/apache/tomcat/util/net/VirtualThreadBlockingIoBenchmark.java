@@ -0,0 +1,220 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.ExpandWar;
+import org.apache.catalina.startup.Tomcat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the time taken by the NIO connector, using virtual threads, to complete a large number of concurrent
+ * requests where every servlet is blocked reading the request body at the same time. The request bodies are only sent
+ * once every servlet has started to read.
+ * <p>
+ * Virtual threads that are pinned to their carrier thread while blocked are reported at the end of each trial using the
+ * JFR <code>jdk.VirtualThreadPinned</code> event. No pinned threads are expected.
+ * <p>
+ * Both ends of every connection are in the benchmark JVM so the open file limit must be more than twice the
+ * concurrency. The clients use several loopback addresses so that the ephemeral port range is not exhausted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadBlockingIoBenchmark {
+
+    private static final int CLIENT_ADDRESSES = 8;
+
+    private static final byte[] RESPONSE_BODY = "OK".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Param({ "50000" })
+    public int concurrency;
+
+    private File baseDir;
+    private Tomcat tomcat;
+    private int port;
+
+    private volatile CountDownLatch reading;
+
+    private RecordingStream pinnedEvents;
+    private final LongAdder pinnedCount = new LongAdder();
+    private final Map<String,LongAdder> pinnedFrames = new ConcurrentHashMap<>();
+
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        pinnedEvents = new RecordingStream();
+        pinnedEvents.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+        pinnedEvents.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        pinnedEvents.startAsync();
+
+        baseDir = Files.createTempDirectory("benchmark").toFile();
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.getAbsolutePath());
+        Connector connector = new Connector("org.apache.coyote.http11.Http11NioProtocol");
+        connector.setPort(0);
+        connector.setProperty("address", "127.0.0.1");
+        connector.setProperty("useVirtualThreads", "true");
+        connector.setProperty("maxConnections", "-1");
+        connector.setProperty("acceptCount", Integer.toString(concurrency));
+        tomcat.getService().addConnector(connector);
+        tomcat.setConnector(connector);
+
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "blocking", new BlockingReadServlet());
+        ctx.addServletMapping("/", "blocking");
+        tomcat.start();
+        port = connector.getLocalPort();
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (tomcat.getServer() != null && tomcat.getServer().getState() != LifecycleState.DESTROYED) {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+        ExpandWar.delete(baseDir);
+
+        pinnedEvents.close();
+        System.out.println();
+        System.out.println("Pinned virtual threads: " + pinnedCount.sum());
+        for (Map.Entry<String,LongAdder> entry : pinnedFrames.entrySet()) {
+            System.out.println("  " + entry.getValue().sum() + " at " + entry.getKey());
+        }
+    }
+
+
+    @Benchmark
+    public int blockingRead() throws Exception {
+        reading = new CountDownLatch(concurrency);
+        CountDownLatch send = new CountDownLatch(1);
+        AtomicInteger ok = new AtomicInteger();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                String clientAddress = "127.0.0." + (1 + i % CLIENT_ADDRESSES);
+                clients.execute(() -> {
+                    if (request(clientAddress, send)) {
+                        ok.incrementAndGet();
+                    }
+                });
+            }
+            if (!reading.await(5, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Only [" + (concurrency - reading.getCount()) + "] of [" +
+                        concurrency + "] servlets started to read the request body");
+            }
+            send.countDown();
+        }
+
+        if (ok.get() != concurrency) {
+            throw new IllegalStateException("Only [" + ok.get() + "] of [" + concurrency + "] requests succeeded");
+        }
+        return ok.get();
+    }
+
+
+    private boolean request(String clientAddress, CountDownLatch send) {
+        try (Socket socket = new Socket()) {
+            socket.bind(new InetSocketAddress(clientAddress, 0));
+            socket.connect(new InetSocketAddress("127.0.0.1", port));
+            OutputStream os = socket.getOutputStream();
+            os.write(("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            os.flush();
+            send.await();
+            os.write('x');
+            os.flush();
+            byte[] response = socket.getInputStream().readAllBytes();
+            return new String(response, StandardCharsets.ISO_8859_1).startsWith("HTTP/1.1 200");
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCount.increment();
+        String location = "unknown";
+        if (event.getStackTrace() != null) {
+            // Report the first Tomcat frame as that is where a change would be required
+            for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                String type = frame.getMethod().getType().getName();
+                if (type.startsWith("org.apache.")) {
+                    location = type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+                    break;
+                }
+            }
+        }
+        pinnedFrames.computeIfAbsent(location, k -> new LongAdder()).increment();
+    }
+
+
+    private class BlockingReadServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            reading.countDown();
+            try (InputStream is = req.getInputStream()) {
+                // Blocks until the client is allowed to send the body
+                is.readAllBytes();
+            }
+            resp.setContentType("text/plain");
+            resp.setContentLength(RESPONSE_BODY.length);
+            resp.getOutputStream().write(RESPONSE_BODY);
+        }
+    }
+}
@@ -134,4 +134,22 @@ public interface Store {
      * @exception IOException if an input/output error occurs
      */
     void save(Session session) throws IOException;
+
+
+    /**
+     * Save the specified Sessions into this Store. Any previously saved information for the associated session
+     * identifiers is replaced.
+     * <p>
+     * The default implementation calls {@link #save(Session)} for each session. Implementations that can save several
+     * sessions more efficiently than one at a time should override this method.
+     *
+     * @param sessions Sessions to be saved
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    default void save(Session[] sessions) throws IOException {
+        for (Session session : sessions) {
+            save(session);
+        }
+    }
 }
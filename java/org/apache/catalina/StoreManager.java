@@ -16,6 +16,8 @@
  */
 package org.apache.catalina;
 
+import java.io.IOException;
+
 /**
  * PersistentManager would have been a better name but that would have clashed with the implementation name.
  */
@@ -35,4 +37,31 @@ public interface StoreManager extends DistributedManager {
      * @param session Session to be removed
      */
     void removeSuper(Session session);
+
+    /**
+     * Load the Session with the given identifier from the Store, taking account of any writes to the Store that this
+     * Manager has started but not yet completed. (Used by the PersistentValve)
+     *
+     * @param id Session identifier of the session to load
+     *
+     * @return the loaded Session instance or {@code null} if it is not present
+     *
+     * @exception ClassNotFoundException if a deserialization error occurs
+     * @exception IOException            if an input/output error occurs
+     */
+    default Session loadFromStore(String id) throws ClassNotFoundException, IOException {
+        return getStore().load(id);
+    }
+
+    /**
+     * Save the given Session to the Store immediately, replacing any write of the session to the Store that this
+     * Manager has started but not yet completed. (Used by the PersistentValve)
+     *
+     * @param session Session to be saved
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    default void saveToStore(Session session) throws IOException {
+        getStore().save(session);
+    }
 }
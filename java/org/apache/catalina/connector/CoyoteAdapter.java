@@ -41,6 +41,7 @@ import org.apache.catalina.util.SessionConfig;
 import org.apache.catalina.util.URLEncoder;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.RequestPhase;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
@@ -238,7 +239,9 @@ public class CoyoteAdapter implements Adapter {
             }
 
             if (request.isAsyncDispatching()) {
+                long start = System.nanoTime();
                 connector.getService().getContainer().getPipeline().getFirst().invoke(request, response);
+                req.getRequestProcessor().recordPhase(RequestPhase.PIPELINE, System.nanoTime() - start);
                 if (response.isError()) {
                     Throwable t = (Throwable) request.getAttribute(RequestDispatcher.ERROR_EXCEPTION);
                     asyncConImpl.setErrorState(t, true);
@@ -246,8 +249,7 @@ public class CoyoteAdapter implements Adapter {
             }
 
             if (!request.isAsync()) {
-                request.finishRequest();
-                response.finishResponse();
+                finishResponse(req, request, response);
             }
 
             // Check to see if the processor is in an error state. If it is,
@@ -339,12 +341,17 @@ public class CoyoteAdapter implements Adapter {
         try {
             // Parse and set Catalina and configuration specific
             // request parameters
+            long start = System.nanoTime();
             postParseSuccess = postParseRequest(req, request, res, response);
+            long end = System.nanoTime();
+            req.getRequestProcessor().recordPhase(RequestPhase.MAPPING, end - start);
             if (postParseSuccess) {
                 // check valves if we support async
                 request.setAsyncSupported(connector.getService().getContainer().getPipeline().isAsyncSupported());
                 // Calling the container
+                start = end;
                 connector.getService().getContainer().getPipeline().getFirst().invoke(request, response);
+                req.getRequestProcessor().recordPhase(RequestPhase.PIPELINE, System.nanoTime() - start);
             }
             if (request.isAsync()) {
                 async = true;
@@ -372,8 +379,7 @@ public class CoyoteAdapter implements Adapter {
                     request.getAsyncContextInternal().setErrorState(throwable, true);
                 }
             } else {
-                request.finishRequest();
-                response.finishResponse();
+                finishResponse(req, request, response);
             }
 
         } catch (IOException ignore) {
@@ -439,6 +445,15 @@ public class CoyoteAdapter implements Adapter {
     }
 
 
+    private void finishResponse(org.apache.coyote.Request req, Request request, Response response)
+            throws IOException {
+        long start = System.nanoTime();
+        request.finishRequest();
+        response.finishResponse();
+        req.getRequestProcessor().recordPhase(RequestPhase.COMMIT, System.nanoTime() - start);
+    }
+
+
     @Override
     public boolean prepare(org.apache.coyote.Request req, org.apache.coyote.Response res)
             throws IOException, ServletException {
@@ -134,6 +134,30 @@ public class StandardService extends LifecycleMBeanBase implements Service {
     }
 
 
+    /**
+     * Are context and wrapper mappings resolved with tries compiled from the registered mappings?
+     *
+     * @return <code>true</code> if the {@link Mapper} uses compiled tries
+     *
+     * @see Mapper#getCompiledMapping()
+     */
+    public boolean getMapperCompiledMapping() {
+        return mapper.getCompiledMapping();
+    }
+
+
+    /**
+     * Configure whether context and wrapper mappings are resolved with tries compiled from the registered mappings.
+     *
+     * @param mapperCompiledMapping <code>true</code> if the {@link Mapper} should use compiled tries
+     *
+     * @see Mapper#setCompiledMapping(boolean)
+     */
+    public void setMapperCompiledMapping(boolean mapperCompiledMapping) {
+        mapper.setCompiledMapping(mapperCompiledMapping);
+    }
+
+
     @Override
     public Mapper getMapper() {
         return mapper;
@@ -1050,6 +1050,33 @@ public class StandardWrapper extends ContainerBase implements ServletConfig, Wra
         return swValve.getMinTime();
     }
 
+    /**
+     * Returns the median time spent in the filter chain and servlet.
+     *
+     * @return the median service time in microseconds
+     */
+    public long getServiceTimeP50() {
+        return swValve.getServiceTime(50);
+    }
+
+    /**
+     * Returns the 99th percentile time spent in the filter chain and servlet.
+     *
+     * @return the 99th percentile service time in microseconds
+     */
+    public long getServiceTimeP99() {
+        return swValve.getServiceTime(99);
+    }
+
+    /**
+     * Returns the 99.9th percentile time spent in the filter chain and servlet.
+     *
+     * @return the 99.9th percentile service time in microseconds
+     */
+    public long getServiceTimeP999() {
+        return swValve.getServiceTime(99.9);
+    }
+
     /**
      * Returns the number of requests processed by the wrapper.
      *
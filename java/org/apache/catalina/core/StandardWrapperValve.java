@@ -36,6 +36,8 @@ import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
 import org.apache.coyote.BadRequestException;
 import org.apache.coyote.CloseNowException;
+import org.apache.coyote.LatencyHistogram;
+import org.apache.coyote.RequestPhase;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.http.InvalidParameterException;
@@ -67,6 +69,7 @@ final class StandardWrapperValve extends ValveBase {
     private volatile long minTime = Long.MAX_VALUE;
     private final LongAdder requestCount = new LongAdder();
     private final LongAdder errorCount = new LongAdder();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
 
 
     // --------------------------------------------------------- Public Methods
@@ -141,6 +144,7 @@ final class StandardWrapperValve extends ValveBase {
         // Call the filter chain for this request
         // NOTE: This also calls the servlet's service() method
         Container container = this.container;
+        long serviceStart = System.nanoTime();
         try {
             if ((servlet != null) && (filterChain != null)) {
                 // Swallow output if needed
@@ -215,6 +219,12 @@ final class StandardWrapperValve extends ValveBase {
             throwable = t;
             exception(request, response, t);
         } finally {
+            if ((servlet != null) && (filterChain != null)) {
+                long serviceNanos = System.nanoTime() - serviceStart;
+                serviceTime.recordNanos(serviceNanos);
+                request.getCoyoteRequest().getRequestProcessor().recordPhase(RequestPhase.SERVICE, serviceNanos);
+            }
+
             // Release the filter chain (if any) for this request
             if (filterChain != null) {
                 filterChain.release();
@@ -309,6 +319,18 @@ final class StandardWrapperValve extends ValveBase {
         return minTime;
     }
 
+    /**
+     * Returns the time spent in the filter chain and servlet by the given percentage of requests processed by the
+     * associated wrapper.
+     *
+     * @param percentile The percentile in the range 0 to 100
+     *
+     * @return the time in microseconds
+     */
+    public long getServiceTime(double percentile) {
+        return serviceTime.getValueAtPercentile(percentile);
+    }
+
     /**
      * Returns the number of requests processed by the associated wrapper.
      *
@@ -70,6 +70,11 @@ public class ClusterRuleSet implements RuleSet {
         digester.addSetProperties(prefix + "Manager/SessionIdGenerator");
         digester.addSetNext(prefix + "Manager/SessionIdGenerator", "setSessionIdGenerator",
                 "org.apache.catalina.SessionIdGenerator");
+        digester.addObjectCreate(prefix + "Manager/SessionSerializer",
+                "org.apache.catalina.session.JavaSessionSerializer", "className");
+        digester.addSetProperties(prefix + "Manager/SessionSerializer");
+        digester.addSetNext(prefix + "Manager/SessionSerializer", "setSessionSerializer",
+                "org.apache.catalina.session.SessionSerializer");
 
         digester.addObjectCreate(prefix + "Channel", null, // MUST be specified in the element
                 "className");
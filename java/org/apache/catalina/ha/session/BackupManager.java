@@ -304,6 +304,16 @@ public class BackupManager extends ClusterManagerBase implements MapOwner, Distr
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Sessions may be added to the replicated map by other nodes so every session is checked.
+     */
+    @Override
+    protected boolean isSessionExpirationIndexed() {
+        return false;
+    }
+
     @Override
     public int getActiveSessionsFull() {
         LazyReplicatedMap<String,Session> map = (LazyReplicatedMap<String,Session>) sessions;
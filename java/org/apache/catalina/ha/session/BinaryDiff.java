@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.session;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Creates and applies patches that transform one byte array into another. Designed for successive serialized forms of
+ * the same object where a small part of the object has changed. The bytes the two arrays have in common at the start
+ * and end are not included in the patch. If what remains is the same length in both arrays only the runs of bytes that
+ * differ are included, otherwise all of the remaining bytes of the target are included.
+ * <p>
+ * Patches include checksums of the base and target so a patch is never applied to a different base.
+ */
+final class BinaryDiff {
+
+    // base length, base CRC, target length, target CRC, prefix, suffix, run count
+    private static final int HEADER_LENGTH = 28;
+
+    // Offset and length
+    private static final int RUN_OVERHEAD = 8;
+
+
+    private BinaryDiff() {
+        // Utility class
+    }
+
+
+    /**
+     * Create a patch that transforms the base into the target.
+     *
+     * @param base   The bytes known to the receiver of the patch
+     * @param target The new bytes
+     *
+     * @return The patch
+     */
+    static byte[] diff(byte[] base, byte[] target) {
+        int max = Math.min(base.length, target.length);
+        int prefix = 0;
+        while (prefix < max && base[prefix] == target[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix && base[base.length - 1 - suffix] == target[target.length - 1 - suffix]) {
+            suffix++;
+        }
+        int baseMiddle = base.length - prefix - suffix;
+        int targetMiddle = target.length - prefix - suffix;
+
+        // Runs as pairs of offset (relative to the end of the prefix) and length
+        List<int[]> runs = new ArrayList<>();
+        int patchLength = HEADER_LENGTH;
+        if (baseMiddle == targetMiddle) {
+            int i = 0;
+            while (i < targetMiddle) {
+                if (base[prefix + i] == target[prefix + i]) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                int end = i + 1;
+                // Extend the run across any gap that is cheaper to include than to start a new run
+                int j = end;
+                while (j < targetMiddle) {
+                    if (base[prefix + j] != target[prefix + j]) {
+                        end = j + 1;
+                    } else if (j - end >= RUN_OVERHEAD) {
+                        break;
+                    }
+                    j++;
+                }
+                runs.add(new int[] { start, end - start });
+                patchLength += RUN_OVERHEAD + end - start;
+                i = end;
+            }
+        } else if (targetMiddle > 0) {
+            runs.add(new int[] { 0, targetMiddle });
+            patchLength += RUN_OVERHEAD + targetMiddle;
+        }
+
+        ByteBuffer patch = ByteBuffer.allocate(patchLength);
+        patch.putInt(base.length);
+        patch.putInt(crc(base));
+        patch.putInt(target.length);
+        patch.putInt(crc(target));
+        patch.putInt(prefix);
+        patch.putInt(suffix);
+        patch.putInt(runs.size());
+        for (int[] run : runs) {
+            patch.putInt(run[0]);
+            patch.putInt(run[1]);
+            patch.put(target, prefix + run[0], run[1]);
+        }
+        return patch.array();
+    }
+
+
+    /**
+     * Apply a patch created by {@link #diff(byte[], byte[])}.
+     *
+     * @param base  The bytes the patch is to be applied to
+     * @param patch The patch
+     *
+     * @return The target bytes or {@code null} if the patch was not created for the given base or is invalid
+     */
+    static byte[] apply(byte[] base, byte[] patch) {
+        if (patch.length < HEADER_LENGTH) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(patch);
+        int baseLength = buffer.getInt();
+        int baseCrc = buffer.getInt();
+        if (baseLength != base.length || baseCrc != crc(base)) {
+            return null;
+        }
+        int targetLength = buffer.getInt();
+        int targetCrc = buffer.getInt();
+        int prefix = buffer.getInt();
+        int suffix = buffer.getInt();
+        int runCount = buffer.getInt();
+        if (targetLength < 0 || prefix < 0 || suffix < 0 || prefix + suffix > Math.min(baseLength, targetLength)) {
+            return null;
+        }
+
+        byte[] target = new byte[targetLength];
+        int middle = targetLength - prefix - suffix;
+        System.arraycopy(base, 0, target, 0, prefix);
+        System.arraycopy(base, prefix, target, prefix, Math.min(middle, baseLength - prefix - suffix));
+        System.arraycopy(base, baseLength - suffix, target, targetLength - suffix, suffix);
+        try {
+            for (int i = 0; i < runCount; i++) {
+                int offset = buffer.getInt();
+                int length = buffer.getInt();
+                if (offset < 0 || length < 0 || offset + length > middle) {
+                    return null;
+                }
+                buffer.get(target, prefix + offset, length);
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        if (crc(target) != targetCrc) {
+            return null;
+        }
+        return target;
+    }
+
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
@@ -18,6 +18,9 @@ package org.apache.catalina.ha.session;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.catalina.Cluster;
 import org.apache.catalina.Context;
@@ -28,7 +31,12 @@ import org.apache.catalina.Valve;
 import org.apache.catalina.ha.CatalinaCluster;
 import org.apache.catalina.ha.ClusterManager;
 import org.apache.catalina.ha.tcp.ReplicationValve;
+import org.apache.catalina.ha.tcp.SimpleTcpCluster;
 import org.apache.catalina.session.ManagerBase;
+import org.apache.catalina.tribes.Channel;
+import org.apache.catalina.tribes.ChannelInterceptor;
+import org.apache.catalina.tribes.ManagedChannel;
+import org.apache.catalina.tribes.group.interceptors.OrderInterceptor;
 import org.apache.catalina.tribes.io.ReplicationStream;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -75,6 +83,23 @@ public abstract class ClusterManagerBase extends ManagerBase implements ClusterM
 
     private final SynchronizedStack<DeltaRequest> deltaRequestPool = new SynchronizedStack<>();
 
+    /**
+     * The minimum serialized size of a session attribute for changes to it to be replicated as a binary diff against
+     * the previously replicated value. A negative value disables binary diffs.
+     */
+    private int attributeDiffMinSize = -1;
+
+    /**
+     * The maximum number of consecutive changes to a session attribute that are replicated as changes before the
+     * complete attribute is replicated again. Zero or a negative value means there is no maximum.
+     */
+    private int attributeFullReplicationInterval = 10;
+
+    private final AtomicLong replicationBytesSent = new AtomicLong();
+    private final AtomicLong replicationBytesReceived = new AtomicLong();
+    private final AtomicLong attributeDiffBytesSaved = new AtomicLong();
+    private final AtomicLong attributeDiffFailures = new AtomicLong();
+
 
     /**
      * Returns the pool of DeltaRequest objects.
@@ -130,6 +155,132 @@ public abstract class ClusterManagerBase extends ManagerBase implements ClusterM
     }
 
 
+    /**
+     * Returns the minimum serialized size of a session attribute for changes to it to be replicated as a binary diff
+     * against the previously replicated value.
+     *
+     * @return the minimum size in bytes or a negative value if binary diffs are disabled
+     */
+    public int getAttributeDiffMinSize() {
+        return attributeDiffMinSize;
+    }
+
+    /**
+     * Sets the minimum serialized size of a session attribute for changes to it to be replicated as a binary diff
+     * against the previously replicated value. The previously replicated form of each such attribute is retained by
+     * every node so this trades memory for network bandwidth.
+     *
+     * @param attributeDiffMinSize the minimum size in bytes or a negative value to disable binary diffs
+     */
+    public void setAttributeDiffMinSize(int attributeDiffMinSize) {
+        this.attributeDiffMinSize = attributeDiffMinSize;
+    }
+
+
+    /**
+     * Returns the maximum number of consecutive changes to a session attribute that are replicated as changes, rather
+     * than by replicating the complete attribute.
+     *
+     * @return the maximum number of changes or zero or a negative value if there is no maximum
+     */
+    public int getAttributeFullReplicationInterval() {
+        return attributeFullReplicationInterval;
+    }
+
+    /**
+     * Sets the maximum number of consecutive changes to a session attribute that are replicated as changes before the
+     * complete attribute is replicated again. A node that was unable to apply a change removes its copy of the
+     * attribute so this limits how long that node is without the attribute.
+     *
+     * @param attributeFullReplicationInterval the maximum number of changes or zero or a negative value for no maximum
+     */
+    public void setAttributeFullReplicationInterval(int attributeFullReplicationInterval) {
+        this.attributeFullReplicationInterval = attributeFullReplicationInterval;
+    }
+
+
+    /**
+     * Are the session changes sent by this manager received by the other nodes in the order they were sent? Session
+     * attributes are only replicated as changes, rather than in full, if they are. This requires the cluster channel
+     * to include an {@link OrderInterceptor} that applies to the messages sent by the cluster.
+     *
+     * @return {@code true} if the cluster channel guarantees ordered delivery
+     */
+    public boolean isOrderedDelivery() {
+        CatalinaCluster cluster = getCluster();
+        if (cluster == null || !(cluster.getChannel() instanceof ManagedChannel channel)) {
+            return false;
+        }
+        int sendOptions = cluster instanceof SimpleTcpCluster simpleTcpCluster ?
+                simpleTcpCluster.getChannelSendOptions() : Channel.SEND_OPTIONS_DEFAULT;
+        Iterator<ChannelInterceptor> interceptors = channel.getInterceptors();
+        while (interceptors.hasNext()) {
+            ChannelInterceptor interceptor = interceptors.next();
+            if (interceptor instanceof OrderInterceptor &&
+                    (interceptor.getOptionFlag() & sendOptions) == interceptor.getOptionFlag()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @return the number of bytes of session changes sent to other nodes
+     */
+    public long getReplicationBytesSent() {
+        return replicationBytesSent.get();
+    }
+
+    /**
+     * @return the number of bytes of session changes received from other nodes
+     */
+    public long getReplicationBytesReceived() {
+        return replicationBytesReceived.get();
+    }
+
+    /**
+     * @return the number of bytes not sent to other nodes because session attributes were replicated as binary diffs
+     */
+    public long getAttributeDiffBytesSaved() {
+        return attributeDiffBytesSaved.get();
+    }
+
+    /**
+     * @return the number of received attribute changes that could not be applied because this node did not hold the
+     *             value the changes were based on
+     */
+    public long getAttributeDiffFailures() {
+        return attributeDiffFailures.get();
+    }
+
+    /**
+     * Reset the replication byte counters.
+     */
+    public void resetReplicationStatistics() {
+        replicationBytesSent.set(0);
+        replicationBytesReceived.set(0);
+        attributeDiffBytesSaved.set(0);
+        attributeDiffFailures.set(0);
+    }
+
+    void addReplicationBytesSent(int bytes) {
+        replicationBytesSent.addAndGet(bytes);
+    }
+
+    void addReplicationBytesReceived(int bytes) {
+        replicationBytesReceived.addAndGet(bytes);
+    }
+
+    void addAttributeDiffBytesSaved(int bytes) {
+        attributeDiffBytesSaved.addAndGet(bytes);
+    }
+
+    void incrementAttributeDiffFailures() {
+        attributeDiffFailures.incrementAndGet();
+    }
+
+
     /**
      * Returns the class loaders for the specified context.
      *
@@ -176,6 +327,25 @@ public abstract class ClusterManagerBase extends ManagerBase implements ClusterM
     }
 
 
+    /**
+     * Open a stream, using the configured {@link org.apache.catalina.session.SessionSerializer}, to read sessions or
+     * session deltas received from another node. Any objects written using Java serialization are read using a
+     * {@link ReplicationStream}.
+     *
+     * @param data   The data received from the other node
+     * @param offset The offset of the serialized data in the array
+     * @param length The length of the serialized data
+     *
+     * @return The stream from which the sessions or session deltas can be read
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    public ObjectInputStream getSessionObjectInputStream(byte[] data, int offset, int length) throws IOException {
+        return getSessionSerializer().createObjectInputStream(new ByteArrayInputStream(data, offset, length),
+                is -> new ReplicationStream(is, getClassLoaders()));
+    }
+
+
     // ---------------------------------------------------- persistence handler
 
     /**
@@ -205,6 +375,7 @@ public abstract class ClusterManagerBase extends ManagerBase implements ClusterM
         copy.setName("Clone-from-" + getName());
         copy.setMaxActiveSessions(getMaxActiveSessions());
         copy.setProcessExpiresFrequency(getProcessExpiresFrequency());
+        copy.setProcessExpiresMaxTime(getProcessExpiresMaxTime());
         copy.setNotifyListenersOnReplication(isNotifyListenersOnReplication());
         copy.setSessionAttributeNameFilter(getSessionAttributeNameFilter());
         copy.setSessionAttributeValueClassNameFilter(getSessionAttributeValueClassNameFilter());
@@ -223,6 +394,9 @@ public abstract class ClusterManagerBase extends ManagerBase implements ClusterM
             }
         }
         copy.setRecordAllActions(isRecordAllActions());
+        copy.setAttributeDiffMinSize(getAttributeDiffMinSize());
+        copy.setAttributeFullReplicationInterval(getAttributeFullReplicationInterval());
+        copy.setSessionSerializer(getSessionSerializer());
     }
 
     /**
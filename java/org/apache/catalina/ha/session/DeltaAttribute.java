@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.session;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * A session attribute that tracks its own changes so that, once it has been replicated, only the changes need to be
+ * sent to the other nodes rather than the complete serialized value.
+ * <p>
+ * An attribute is replicated in full when it is first added to a {@link DeltaSession} or replaced with a different
+ * object. After that, {@link #getDiff()} is called each time the session is replicated and the attribute is either
+ * dirty or has been set again on the session. The diff is passed to {@link #applyDiff(byte[], int, int)} on the copy
+ * of the attribute held by each other node.
+ * <p>
+ * Any state used to track changes should be transient so that a copy of the attribute that has just been deserialized
+ * is not dirty.
+ * <p>
+ * Changes are only replicated if the cluster channel guarantees that messages are received in the order they were
+ * sent. Otherwise the attribute is replicated in full each time it changes. The attribute is also replicated in full
+ * after {@link ClusterManagerBase#getAttributeFullReplicationInterval()} consecutive changes so that a node that was
+ * unable to apply a change, and removed its copy of the attribute as a result, receives the attribute again.
+ */
+public interface DeltaAttribute extends Serializable {
+
+    /**
+     * Has the attribute changed since the changes were last retrieved with {@link #getDiff()} or discarded with
+     * {@link #resetDiff()}?
+     *
+     * @return {@code true} if the attribute has changed
+     */
+    boolean isDirty();
+
+    /**
+     * Returns the changes made to this attribute since the changes were last retrieved or discarded and then discards
+     * them.
+     *
+     * @return The serialized changes or {@code null} if the complete attribute should be replicated instead
+     *
+     * @throws IOException IO error serializing the changes
+     */
+    byte[] getDiff() throws IOException;
+
+    /**
+     * Applies changes obtained from {@link #getDiff()} on another node to this attribute. Applying the changes must
+     * not make this attribute dirty.
+     *
+     * @param diff   Serialized changes
+     * @param offset Array offset
+     * @param length Array length
+     *
+     * @throws IOException            IO error deserializing the changes
+     * @throws ClassNotFoundException Serialization error
+     */
+    void applyDiff(byte[] diff, int offset, int length) throws IOException, ClassNotFoundException;
+
+    /**
+     * Discards any changes. Called when the complete attribute is about to be replicated.
+     */
+    void resetDiff();
+}
@@ -702,7 +702,7 @@ public class DeltaManager extends ClusterManagerBase {
 
         // Open an input stream to the specified pathname, if any
         // Load the previously unloaded active sessions
-        try (ObjectInputStream ois = getReplicationStream(data)) {
+        try (ObjectInputStream ois = getSessionObjectInputStream(data, 0, data.length)) {
             Integer count = (Integer) ois.readObject();
             int n = count.intValue();
             for (int i = 0; i < n; i++) {
@@ -759,7 +759,7 @@ public class DeltaManager extends ClusterManagerBase {
 
         // Open an output stream to the specified pathname, if any
         ByteArrayOutputStream fos = new ByteArrayOutputStream();
-        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(fos))) {
+        try (ObjectOutputStream oos = getSessionObjectOutputStream(new BufferedOutputStream(fos))) {
             oos.writeObject(Integer.valueOf(currentSessions.length));
             for (Session currentSession : currentSessions) {
                 ((DeltaSession) currentSession).writeObjectData(oos);
@@ -1134,7 +1134,7 @@ public class DeltaManager extends ClusterManagerBase {
         counterSend_EVT_SESSION_EXPIRED.set(0);
         counterSend_EVT_ALL_SESSION_TRANSFERCOMPLETE.set(0);
         counterSend_EVT_CHANGE_SESSION_ID.set(0);
-
+        resetReplicationStatistics();
     }
 
     // -------------------------------------------------------- expire
@@ -26,6 +26,8 @@ import java.util.Deque;
 
 import org.apache.catalina.SessionListener;
 import org.apache.catalina.realm.GenericPrincipal;
+import org.apache.catalina.session.JavaSessionSerializer;
+import org.apache.catalina.session.SessionSerializer;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.res.StringManager;
@@ -93,6 +95,16 @@ public class DeltaRequest implements Externalizable {
      */
     public static final int ACTION_REMOVE = 1;
 
+    /**
+     * Action to apply the changes obtained from {@link DeltaAttribute#getDiff()} to the current value of an attribute.
+     */
+    public static final int ACTION_DELTA = 2;
+
+    /**
+     * Action to patch the previously replicated serialized form of an attribute with a binary diff.
+     */
+    public static final int ACTION_DIFF = 3;
+
     /**
      * Name used for principal actions.
      */
@@ -307,6 +319,17 @@ public class DeltaRequest implements Externalizable {
                             log.trace("Session.setAttribute('" + info.getName() + "', '" + info.getValue() + "')");
                         }
                         session.setAttribute(info.getName(), info.getValue(), notifyListeners, false);
+                        session.attributeReplicated(info.getName(), info.getValue());
+                    } else if (info.getAction() == ACTION_DELTA) {
+                        if (log.isTraceEnabled()) {
+                            log.trace("Session.applyAttributeDelta('" + info.getName() + "')");
+                        }
+                        session.applyAttributeDelta(info.getName(), (byte[]) info.getValue(), notifyListeners);
+                    } else if (info.getAction() == ACTION_DIFF) {
+                        if (log.isTraceEnabled()) {
+                            log.trace("Session.applyAttributeDiff('" + info.getName() + "')");
+                        }
+                        session.applyAttributeDiff(info.getName(), (byte[]) info.getValue(), notifyListeners);
                     } else {
                         if (log.isTraceEnabled()) {
                             log.trace("Session.removeAttribute('" + info.getName() + "')");
@@ -371,6 +394,31 @@ public class DeltaRequest implements Externalizable {
         reset();
     }
 
+    /**
+     * Replace the values of the recorded set attribute actions with just the changes to those values, where the
+     * session is able to provide them.
+     *
+     * @param session The session the actions were recorded for
+     *
+     * @throws IOException IO error obtaining the changes
+     */
+    void encodeAttributes(DeltaSession session) throws IOException {
+        for (AttributeInfo info : actions) {
+            if (info.getType() != TYPE_ATTRIBUTE || info.getAction() != ACTION_SET) {
+                continue;
+            }
+            byte[] delta = session.getAttributeDelta(info.getName(), info.getValue());
+            if (delta != null) {
+                info.init(TYPE_ATTRIBUTE, ACTION_DELTA, info.getName(), delta);
+                continue;
+            }
+            byte[] diff = session.getAttributeDiff(info.getName(), info.getValue());
+            if (diff != null) {
+                info.init(TYPE_ATTRIBUTE, ACTION_DIFF, info.getName(), diff);
+            }
+        }
+    }
+
     /**
      * Reset this request, returning all action objects to the pool.
      */
@@ -477,8 +525,23 @@ public class DeltaRequest implements Externalizable {
      * @throws IOException IO error serializing
      */
     protected byte[] serialize() throws IOException {
+        return serialize(new JavaSessionSerializer());
+    }
+
+    /**
+     * serialize DeltaRequest using the given serializer
+     *
+     * @see DeltaRequest#writeExternal(java.io.ObjectOutput)
+     *
+     * @param serializer The serializer to use
+     *
+     * @return serialized delta request
+     *
+     * @throws IOException IO error serializing
+     */
+    protected byte[] serialize(SessionSerializer serializer) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        ObjectOutputStream oos = serializer.createObjectOutputStream(bos);
         writeExternal(oos);
         oos.flush();
         oos.close();
@@ -16,6 +16,7 @@
  */
 package org.apache.catalina.ha.session;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.NotSerializableException;
@@ -28,6 +29,8 @@ import java.io.WriteAbortedException;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -41,7 +44,6 @@ import org.apache.catalina.ha.ClusterMessage;
 import org.apache.catalina.ha.ClusterSession;
 import org.apache.catalina.session.ManagerBase;
 import org.apache.catalina.session.StandardSession;
-import org.apache.catalina.tribes.io.ReplicationStream;
 import org.apache.catalina.tribes.tipis.ReplicatedMapEntry;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -63,6 +65,8 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
      */
     protected static final StringManager sm = StringManager.getManager(DeltaSession.class);
 
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
     // ----------------------------------------------------- Instance Variables
 
     /**
@@ -90,6 +94,24 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
 
     private long version;
 
+    /**
+     * The last replicated form of attributes that are replicated as changes rather than in full. This is either the
+     * {@link DeltaAttribute} instance that was last replicated in full or the last replicated serialized form of the
+     * attribute.
+     */
+    private final transient Map<String,Object> replicationBases = new ConcurrentHashMap<>();
+
+    /**
+     * The number of consecutive changes replicated for each attribute since the attribute was last replicated in full.
+     */
+    private final transient Map<String,Integer> replicationCounts = new ConcurrentHashMap<>();
+
+    /**
+     * The names of the attributes that are {@link DeltaAttribute} instances so that changes made to them without
+     * setting them again on the session are replicated.
+     */
+    private final transient Set<String> deltaAttributeNames = ConcurrentHashMap.newKeySet();
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -132,7 +154,15 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
 
     @Override
     public boolean isDirty() {
-        return deltaRequest.getSize() > 0;
+        if (deltaRequest.getSize() > 0) {
+            return true;
+        }
+        for (String name : deltaAttributeNames) {
+            if (attributes.get(name) instanceof DeltaAttribute deltaAttribute && deltaAttribute.isDirty()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -155,9 +185,33 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
             newDeltaRequest = createRequest();
         }
 
-        DeltaRequest oldDeltaRequest = replaceDeltaRequest(newDeltaRequest);
+        DeltaRequest oldDeltaRequest;
+        lockInternal();
+        try {
+            for (String name : deltaAttributeNames) {
+                Object value = attributes.get(name);
+                if (value instanceof DeltaAttribute deltaAttribute && deltaAttribute.isDirty()) {
+                    deltaRequest.setAttribute(name, value);
+                }
+            }
+            oldDeltaRequest = replaceDeltaRequest(newDeltaRequest);
+        } finally {
+            unlockInternal();
+        }
 
-        byte[] result = oldDeltaRequest.serialize();
+        byte[] result;
+        // Changes must be encoded in the order they will be received
+        synchronized (replicationBases) {
+            oldDeltaRequest.encodeAttributes(this);
+            if (manager instanceof ManagerBase managerBase) {
+                result = oldDeltaRequest.serialize(managerBase.getSessionSerializer());
+            } else {
+                result = oldDeltaRequest.serialize();
+            }
+        }
+        if (manager instanceof ClusterManagerBase clusterManagerBase) {
+            clusterManagerBase.addReplicationBytesSent(result.length);
+        }
 
         if (deltaRequestPool != null) {
             // Only need to reset the old request if it is going to be pooled.
@@ -187,8 +241,11 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
     public void applyDiff(byte[] diff, int offset, int length) throws IOException, ClassNotFoundException {
         Thread currentThread = Thread.currentThread();
         ClassLoader contextLoader = currentThread.getContextClassLoader();
+        if (manager instanceof ClusterManagerBase clusterManagerBase) {
+            clusterManagerBase.addReplicationBytesReceived(length);
+        }
         lockInternal();
-        try (ObjectInputStream stream = ((ClusterManager) getManager()).getReplicationStream(diff, offset, length)) {
+        try (ObjectInputStream stream = getReplicationStream(diff, offset, length)) {
             ClassLoader[] loaders = getClassLoaders();
             if (loaders != null && loaders.length > 0) {
                 currentThread.setContextClassLoader(loaders[0]);
@@ -201,6 +258,13 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
         }
     }
 
+    private ObjectInputStream getReplicationStream(byte[] data, int offset, int length) throws IOException {
+        if (manager instanceof ClusterManagerBase clusterManagerBase) {
+            return clusterManagerBase.getSessionObjectInputStream(data, offset, length);
+        }
+        return ((ClusterManager) getManager()).getReplicationStream(data, offset, length);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -315,7 +379,7 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
      * @param addDeltaRequest Whether to add a delta request entry
      */
     public void setMaxInactiveInterval(int interval, boolean addDeltaRequest) {
-        super.maxInactiveInterval = interval;
+        super.setMaxInactiveInterval(interval);
         if (addDeltaRequest) {
             lockInternal();
             try {
@@ -497,6 +561,9 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
         try {
             super.recycle();
             deltaRequest.clear();
+            replicationBases.clear();
+            replicationCounts.clear();
+            deltaAttributeNames.clear();
         } finally {
             unlockInternal();
         }
@@ -652,7 +719,8 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
                 newDeltaRequest = createRequest(null, ((ClusterManagerBase) manager).isRecordAllActions());
             }
 
-            ReplicationStream ois = ((ClusterManagerBase) manager).getReplicationStream(delta);
+            ((ClusterManagerBase) manager).addReplicationBytesReceived(delta.length);
+            ObjectInputStream ois = ((ClusterManagerBase) manager).getSessionObjectInputStream(delta, 0, delta.length);
             newDeltaRequest.readExternal(ois);
             ois.close();
 
@@ -671,6 +739,175 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
             }
         }
     }
+    // ------------------------------------------------- Attribute replication
+
+    /**
+     * Obtain the changes to an attribute that tracks its own changes.
+     *
+     * @param name  Attribute name
+     * @param value Attribute value
+     *
+     * @return the changes or {@code null} if the attribute must be replicated in full
+     *
+     * @throws IOException IO error obtaining the changes
+     */
+    byte[] getAttributeDelta(String name, Object value) throws IOException {
+        if (!(value instanceof DeltaAttribute deltaAttribute)) {
+            return null;
+        }
+        if (replicationBases.get(name) == value && replicateAsChange(name)) {
+            byte[] delta = deltaAttribute.getDiff();
+            if (delta != null) {
+                return delta;
+            }
+        }
+        deltaAttribute.resetDiff();
+        replicationBases.put(name, value);
+        replicationCounts.remove(name);
+        return null;
+    }
+
+    /**
+     * Obtain a binary diff between the last replicated serialized form of an attribute and its current serialized
+     * form.
+     *
+     * @param name  Attribute name
+     * @param value Attribute value
+     *
+     * @return the diff or {@code null} if the attribute must be replicated in full
+     *
+     * @throws IOException IO error serializing the attribute
+     */
+    byte[] getAttributeDiff(String name, Object value) throws IOException {
+        if (!(manager instanceof ClusterManagerBase clusterManagerBase) || value instanceof DeltaAttribute) {
+            return null;
+        }
+        int minSize = clusterManagerBase.getAttributeDiffMinSize();
+        if (minSize < 0 || !clusterManagerBase.isOrderedDelivery()) {
+            replicationBases.remove(name);
+            replicationCounts.remove(name);
+            return null;
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = clusterManagerBase.getSessionSerializer().createObjectOutputStream(bos)) {
+            oos.writeObject(value);
+        }
+        byte[] bytes = bos.toByteArray();
+        if (bytes.length < minSize) {
+            replicationBases.remove(name);
+            replicationCounts.remove(name);
+            return null;
+        }
+
+        Object base = replicationBases.put(name, bytes);
+        if (!(base instanceof byte[]) || !replicateAsChange(name)) {
+            // A diff against an empty base carries the complete attribute
+            base = null;
+            replicationCounts.remove(name);
+        }
+        byte[] diff = BinaryDiff.diff(base instanceof byte[] baseBytes ? baseBytes : EMPTY_BYTES, bytes);
+        if (diff.length < bytes.length) {
+            clusterManagerBase.addAttributeDiffBytesSaved(bytes.length - diff.length);
+        }
+        return diff;
+    }
+
+    /*
+     * Should the next change to the given attribute be replicated as a change? Changes are only replicated if the
+     * other nodes receive them in the order they were sent. The attribute is periodically replicated in full so that a
+     * node that was unable to apply a change does not remain without the attribute for long.
+     */
+    private boolean replicateAsChange(String name) {
+        if (!(manager instanceof ClusterManagerBase clusterManagerBase) || !clusterManagerBase.isOrderedDelivery()) {
+            return false;
+        }
+        int interval = clusterManagerBase.getAttributeFullReplicationInterval();
+        return interval <= 0 || replicationCounts.merge(name, Integer.valueOf(1), Integer::sum).intValue() <= interval;
+    }
+
+    /**
+     * Record that an attribute has been received in full.
+     *
+     * @param name  Attribute name
+     * @param value Attribute value
+     */
+    void attributeReplicated(String name, Object value) {
+        if (value instanceof DeltaAttribute) {
+            replicationBases.put(name, value);
+        } else {
+            replicationBases.remove(name);
+        }
+    }
+
+    /**
+     * Apply changes obtained from {@link DeltaAttribute#getDiff()} on another node to the current value of an
+     * attribute.
+     *
+     * @param name   Attribute name
+     * @param delta  The changes
+     * @param notify Whether to notify listeners
+     */
+    void applyAttributeDelta(String name, byte[] delta, boolean notify) {
+        Object value = attributes.get(name);
+        if (value instanceof DeltaAttribute deltaAttribute) {
+            try {
+                deltaAttribute.applyDiff(delta, 0, delta.length);
+                setAttribute(name, value, notify, false);
+                return;
+            } catch (IOException | ClassNotFoundException e) {
+                log.warn(sm.getString("deltaSession.attributeReplicationFail", name, getIdInternal()), e);
+            }
+        } else {
+            log.warn(sm.getString("deltaSession.attributeReplicationFail", name, getIdInternal()));
+        }
+        attributeReplicationFailed(name, notify);
+    }
+
+    /**
+     * Apply a binary diff to the last replicated serialized form of an attribute and set the resulting value.
+     *
+     * @param name   Attribute name
+     * @param patch  The binary diff
+     * @param notify Whether to notify listeners
+     */
+    void applyAttributeDiff(String name, byte[] patch, boolean notify) {
+        byte[] bytes = null;
+        if (replicationBases.get(name) instanceof byte[] base) {
+            bytes = BinaryDiff.apply(base, patch);
+        }
+        if (bytes == null) {
+            // The sender may no longer hold a base for this attribute
+            bytes = BinaryDiff.apply(EMPTY_BYTES, patch);
+        }
+        if (bytes != null) {
+            try (ObjectInputStream ois = getReplicationStream(bytes, 0, bytes.length)) {
+                Object value = ois.readObject();
+                replicationBases.put(name, bytes);
+                setAttribute(name, value, notify, false);
+                return;
+            } catch (IOException | ClassNotFoundException e) {
+                log.warn(sm.getString("deltaSession.attributeReplicationFail", name, getIdInternal()), e);
+            }
+        } else {
+            log.warn(sm.getString("deltaSession.attributeReplicationFail", name, getIdInternal()));
+        }
+        attributeReplicationFailed(name, notify);
+    }
+
+    /*
+     * The local copy of the attribute no longer matches the copy held by the sender. Remove it, without replicating
+     * the removal, rather than keep a stale value. The sender periodically replicates the attribute in full which
+     * restores it.
+     */
+    private void attributeReplicationFailed(String name, boolean notify) {
+        replicationBases.remove(name);
+        removeAttributeInternal(name, notify, false);
+        if (manager instanceof ClusterManagerBase clusterManagerBase) {
+            clusterManagerBase.incrementAttributeDiffFailures();
+        }
+    }
+
     // ------------------------------------------------- HttpSession Properties
 
     // ----------------------------------------------HttpSession Public Methods
@@ -728,6 +965,11 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
         lockInternal();
         try {
             super.setAttribute(name, value, notify);
+            if (value instanceof DeltaAttribute && attributes.get(name) == value && !exclude(name, value)) {
+                deltaAttributeNames.add(name);
+            } else {
+                deltaAttributeNames.remove(name);
+            }
             /*
              * It is possible that the session expires concurrently with the attribute being added. Depending on the
              * exact timing, one of two things will happen. Either an IllegalStateException will be thrown or the
@@ -877,6 +1119,17 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
         }
         isValid = isValidSave;
 
+        // The other nodes may hold different copies of the attributes so the next change to each one is replicated
+        // in full
+        replicationBases.clear();
+        replicationCounts.clear();
+        deltaAttributeNames.clear();
+        for (Map.Entry<String,Object> entry : attributes.entrySet()) {
+            if (entry.getValue() instanceof DeltaAttribute) {
+                deltaAttributeNames.add(entry.getKey());
+            }
+        }
+
         // Session listeners
         n = ((Integer) stream.readObject()).intValue();
         if (listeners == null || n > 0) {
@@ -946,6 +1199,13 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
             }
         }
 
+        // The receiver of the complete session will not hold the last replicated form of the attributes so the next
+        // change to each one is replicated in full
+        synchronized (replicationBases) {
+            replicationBases.clear();
+            replicationCounts.clear();
+        }
+
         // Serialize the attribute count and the Serializable attributes
         int n = saveNames.size();
         stream.writeObject(Integer.valueOf(n));
@@ -991,6 +1251,9 @@ public class DeltaSession extends StandardSession implements Externalizable, Clu
             }
 
             super.removeAttributeInternal(name, notify);
+            replicationBases.remove(name);
+            replicationCounts.remove(name);
+            deltaAttributeNames.remove(name);
             if (addDeltaRequest && !exclude(name, null)) {
                 deltaRequest.removeAttribute(name);
             }
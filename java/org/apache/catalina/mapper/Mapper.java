@@ -90,8 +90,38 @@ public final class Mapper {
     private final Map<Context,ContextVersion> contextObjectToContextVersionMap = new ConcurrentHashMap<>();
 
 
+    /**
+     * Use tries compiled from the context and wrapper mappings rather than binary searches over the sorted mappings.
+     */
+    private volatile boolean compiledMapping = false;
+
+
     // --------------------------------------------------------- Public Methods
 
+    /**
+     * Are context and wrapper mappings resolved with tries compiled from the registered mappings?
+     *
+     * @return <code>true</code> if compiled tries are used, <code>false</code> if binary searches over the sorted
+     *             mappings are used
+     */
+    public boolean getCompiledMapping() {
+        return compiledMapping;
+    }
+
+
+    /**
+     * Configure whether context and wrapper mappings are resolved with tries compiled from the registered mappings.
+     * A trie is compiled the first time it is needed and compiled again the first time it is needed after the mappings
+     * it was compiled from have changed.
+     *
+     * @param compiledMapping <code>true</code> to use compiled tries, <code>false</code> to use binary searches over
+     *                            the sorted mappings
+     */
+    public void setCompiledMapping(boolean compiledMapping) {
+        this.compiledMapping = compiledMapping;
+    }
+
+
     /**
      * Set default host.
      *
@@ -519,6 +549,7 @@ public final class Mapper {
                     context.exactWrappers = newWrappers;
                 }
             }
+            context.dispatchTable = null;
         }
     }
 
@@ -599,6 +630,7 @@ public final class Mapper {
                     context.exactWrappers = newWrappers;
                 }
             }
+            context.dispatchTable = null;
         }
     }
 
@@ -774,47 +806,55 @@ public final class Mapper {
         // Context mapping
         ContextList contextList = mappedHost.contextList;
         MappedContext[] contexts = contextList.contexts;
-        int pos = find(contexts, uri);
-        if (pos == -1) {
-            return;
-        }
-
-        int lastSlash = -1;
-        int uriEnd = uri.getEnd();
-        boolean found = false;
         MappedContext context = null;
-        while (pos >= 0) {
-            context = contexts[pos];
-            if (uri.startsWith(context.name)) {
-                int length = context.name.length();
-                if (uri.getLength() == length) {
-                    found = true;
-                    break;
-                } else if (uri.startsWithIgnoreCase("/", length)) {
-                    found = true;
-                    break;
+        if (compiledMapping) {
+            if (contexts.length == 0) {
+                return;
+            }
+            context = contextList.getTrie().findLongestPrefix(uri);
+        } else {
+            int pos = find(contexts, uri);
+            if (pos == -1) {
+                return;
+            }
+
+            int lastSlash = -1;
+            int uriEnd = uri.getEnd();
+            boolean found = false;
+            while (pos >= 0) {
+                context = contexts[pos];
+                if (uri.startsWith(context.name)) {
+                    int length = context.name.length();
+                    if (uri.getLength() == length) {
+                        found = true;
+                        break;
+                    } else if (uri.startsWithIgnoreCase("/", length)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (lastSlash == -1) {
+                    lastSlash = nthSlash(uri, contextList.nesting + 1);
+                } else {
+                    lastSlash = lastSlash(uri);
                 }
+                uri.setEnd(lastSlash);
+                pos = find(contexts, uri);
             }
-            if (lastSlash == -1) {
-                lastSlash = nthSlash(uri, contextList.nesting + 1);
-            } else {
-                lastSlash = lastSlash(uri);
+            uri.setEnd(uriEnd);
+
+            if (!found) {
+                context = null;
             }
-            uri.setEnd(lastSlash);
-            pos = find(contexts, uri);
         }
-        uri.setEnd(uriEnd);
 
-        if (!found) {
+        if (context == null) {
             if (contexts[0].name.isEmpty()) {
                 context = contexts[0];
             } else {
-                context = null;
+                return;
             }
         }
-        if (context == null) {
-            return;
-        }
 
         ContextVersion contextVersion = null;
         ContextVersion[] contextVersions = context.versions;
@@ -864,15 +904,25 @@ public final class Mapper {
         int servletPath = pathStart + length;
         path.setStart(servletPath);
 
+        MappingTrie<MappedWrapper> exactTrie = null;
+        MappingTrie<MappedWrapper> wildcardTrie = null;
+        MappingTrie<MappedWrapper> extensionTrie = null;
+        if (compiledMapping) {
+            DispatchTable dispatchTable = contextVersion.getDispatchTable();
+            exactTrie = dispatchTable.exactWrappers;
+            wildcardTrie = dispatchTable.wildcardWrappers;
+            extensionTrie = dispatchTable.extensionWrappers;
+        }
+
         // Rule 1 -- Exact Match
         MappedWrapper[] exactWrappers = contextVersion.exactWrappers;
-        internalMapExactWrapper(exactWrappers, path, mappingData);
+        internalMapExactWrapper(exactWrappers, exactTrie, path, mappingData);
 
         // Rule 2 -- Prefix Match
         boolean checkJspWelcomeFiles = false;
         MappedWrapper[] wildcardWrappers = contextVersion.wildcardWrappers;
         if (mappingData.wrapper == null) {
-            internalMapWildcardWrapper(wildcardWrappers, contextVersion.nesting, path, mappingData);
+            internalMapWildcardWrapper(wildcardWrappers, wildcardTrie, contextVersion.nesting, path, mappingData);
             if (mappingData.wrapper != null && mappingData.jspWildCard) {
                 char[] buf = path.getBuffer();
                 if (buf[pathEnd - 1] == '/') {
@@ -904,7 +954,7 @@ public final class Mapper {
         // Rule 3 -- Extension Match
         MappedWrapper[] extensionWrappers = contextVersion.extensionWrappers;
         if (mappingData.wrapper == null && !checkJspWelcomeFiles) {
-            internalMapExtensionWrapper(extensionWrappers, path, mappingData, true);
+            internalMapExtensionWrapper(extensionWrappers, extensionTrie, path, mappingData, true);
         }
 
         // Rule 4 -- Welcome resources processing for servlets
@@ -922,11 +972,12 @@ public final class Mapper {
                     path.setStart(servletPath);
 
                     // Rule 4a -- Welcome resources processing for exact macth
-                    internalMapExactWrapper(exactWrappers, path, mappingData);
+                    internalMapExactWrapper(exactWrappers, exactTrie, path, mappingData);
 
                     // Rule 4b -- Welcome resources processing for prefix match
                     if (mappingData.wrapper == null) {
-                        internalMapWildcardWrapper(wildcardWrappers, contextVersion.nesting, path, mappingData);
+                        internalMapWildcardWrapper(wildcardWrappers, wildcardTrie, contextVersion.nesting, path,
+                                mappingData);
                     }
 
                     // Rule 4c -- Welcome resources processing
@@ -935,7 +986,7 @@ public final class Mapper {
                         String pathStr = path.toString();
                         WebResource file = contextVersion.resources.getResource(pathStr);
                         if (file != null && file.isFile()) {
-                            internalMapExtensionWrapper(extensionWrappers, path, mappingData, true);
+                            internalMapExtensionWrapper(extensionWrappers, extensionTrie, path, mappingData, true);
                             if (mappingData.wrapper == null && contextVersion.defaultWrapper != null) {
                                 mappingData.wrapper = contextVersion.defaultWrapper.object;
                                 mappingData.requestPath.setChars(path.getBuffer(), path.getStart(), path.getLength());
@@ -970,7 +1021,7 @@ public final class Mapper {
                     path.setEnd(pathEnd);
                     path.append(contextVersion.welcomeResources[i], 0, contextVersion.welcomeResources[i].length());
                     path.setStart(servletPath);
-                    internalMapExtensionWrapper(extensionWrappers, path, mappingData, false);
+                    internalMapExtensionWrapper(extensionWrappers, extensionTrie, path, mappingData, false);
                 }
 
                 path.setStart(servletPath);
@@ -1026,15 +1077,26 @@ public final class Mapper {
 
     /**
      * Exact mapping.
+     *
+     * @param wrappers    Set of wrappers to check for matches
+     * @param trie        Trie compiled from the wrappers or <code>null</code> to search the wrappers directly
+     * @param path        Path to map
+     * @param mappingData Mapping data for result
      */
-    private void internalMapExactWrapper(MappedWrapper[] wrappers, CharChunk path, MappingData mappingData) {
+    private void internalMapExactWrapper(MappedWrapper[] wrappers, MappingTrie<MappedWrapper> trie, CharChunk path,
+            MappingData mappingData) {
         if (path.isEmpty()) {
             /*
              * Looking for a context root mapped servlet but that will be stored under the name "/"
              */
             path = CONTEXT_ROOT_MAPPED_PATH_CHAR_CHUNK;
         }
-        MappedWrapper wrapper = exactFind(wrappers, path);
+        MappedWrapper wrapper;
+        if (trie == null) {
+            wrapper = exactFind(wrappers, path);
+        } else {
+            wrapper = trie.find(path);
+        }
         if (wrapper != null) {
             mappingData.requestPath.setString(wrapper.name);
             mappingData.wrapper = wrapper.object;
@@ -1053,48 +1115,58 @@ public final class Mapper {
 
     /**
      * Wildcard mapping.
+     *
+     * @param wrappers    Set of wrappers to check for matches
+     * @param trie        Trie compiled from the wrappers or <code>null</code> to search the wrappers directly
+     * @param nesting     The maximum number of slashes in the names of the wrappers
+     * @param path        Path to map
+     * @param mappingData Mapping data for result
      */
-    private void internalMapWildcardWrapper(MappedWrapper[] wrappers, int nesting, CharChunk path,
-            MappingData mappingData) {
-
-        int pathEnd = path.getEnd();
-
-        int lastSlash = -1;
-        int length = -1;
-        int pos = find(wrappers, path);
-        if (pos != -1) {
-            boolean found = false;
-            while (pos >= 0) {
-                if (path.startsWith(wrappers[pos].name)) {
-                    length = wrappers[pos].name.length();
-                    if (path.getLength() == length) {
-                        found = true;
-                        break;
-                    } else if (path.startsWithIgnoreCase("/", length)) {
-                        found = true;
-                        break;
+    private void internalMapWildcardWrapper(MappedWrapper[] wrappers, MappingTrie<MappedWrapper> trie, int nesting,
+            CharChunk path, MappingData mappingData) {
+
+        MappedWrapper wrapper = null;
+        if (trie == null) {
+            int pathEnd = path.getEnd();
+
+            int lastSlash = -1;
+            int pos = find(wrappers, path);
+            if (pos != -1) {
+                while (pos >= 0) {
+                    if (path.startsWith(wrappers[pos].name)) {
+                        int length = wrappers[pos].name.length();
+                        if (path.getLength() == length) {
+                            wrapper = wrappers[pos];
+                            break;
+                        } else if (path.startsWithIgnoreCase("/", length)) {
+                            wrapper = wrappers[pos];
+                            break;
+                        }
                     }
+                    if (lastSlash == -1) {
+                        lastSlash = nthSlash(path, nesting + 1);
+                    } else {
+                        lastSlash = lastSlash(path);
+                    }
+                    path.setEnd(lastSlash);
+                    pos = find(wrappers, path);
                 }
-                if (lastSlash == -1) {
-                    lastSlash = nthSlash(path, nesting + 1);
-                } else {
-                    lastSlash = lastSlash(path);
-                }
-                path.setEnd(lastSlash);
-                pos = find(wrappers, path);
-            }
-            path.setEnd(pathEnd);
-            if (found) {
-                mappingData.wrapperPath.setString(wrappers[pos].name);
-                if (path.getLength() > length) {
-                    mappingData.pathInfo.setChars(path.getBuffer(), path.getStart() + length,
-                            path.getLength() - length);
-                }
-                mappingData.requestPath.setChars(path.getBuffer(), path.getStart(), path.getLength());
-                mappingData.wrapper = wrappers[pos].object;
-                mappingData.jspWildCard = wrappers[pos].jspWildCard;
-                mappingData.matchType = MappingMatch.PATH;
+                path.setEnd(pathEnd);
             }
+        } else {
+            wrapper = trie.findLongestPrefix(path);
+        }
+
+        if (wrapper != null) {
+            int length = wrapper.name.length();
+            mappingData.wrapperPath.setString(wrapper.name);
+            if (path.getLength() > length) {
+                mappingData.pathInfo.setChars(path.getBuffer(), path.getStart() + length, path.getLength() - length);
+            }
+            mappingData.requestPath.setChars(path.getBuffer(), path.getStart(), path.getLength());
+            mappingData.wrapper = wrapper.object;
+            mappingData.jspWildCard = wrapper.jspWildCard;
+            mappingData.matchType = MappingMatch.PATH;
         }
     }
 
@@ -1103,12 +1175,13 @@ public final class Mapper {
      * Extension mappings.
      *
      * @param wrappers         Set of wrappers to check for matches
+     * @param trie             Trie compiled from the wrappers or <code>null</code> to search the wrappers directly
      * @param path             Path to map
      * @param mappingData      Mapping data for result
      * @param resourceExpected Is this mapping expecting to find a resource
      */
-    private void internalMapExtensionWrapper(MappedWrapper[] wrappers, CharChunk path, MappingData mappingData,
-            boolean resourceExpected) {
+    private void internalMapExtensionWrapper(MappedWrapper[] wrappers, MappingTrie<MappedWrapper> trie,
+            CharChunk path, MappingData mappingData, boolean resourceExpected) {
         char[] buf = path.getBuffer();
         int pathEnd = path.getEnd();
         int servletPath = path.getStart();
@@ -1130,7 +1203,12 @@ public final class Mapper {
             if (period >= 0) {
                 path.setStart(period + 1);
                 path.setEnd(pathEnd);
-                MappedWrapper wrapper = exactFind(wrappers, path);
+                MappedWrapper wrapper;
+                if (trie == null) {
+                    wrapper = exactFind(wrappers, path);
+                } else {
+                    wrapper = trie.find(path);
+                }
                 if (wrapper != null && (resourceExpected || !wrapper.resourceOnly)) {
                     mappingData.wrapperPath.setChars(buf, servletPath, pathEnd - servletPath);
                     mappingData.requestPath.setChars(buf, servletPath, pathEnd - servletPath);
@@ -1681,6 +1759,10 @@ public final class Mapper {
          * The nesting level.
          */
         public final int nesting;
+        /**
+         * Trie compiled from the contexts. It is compiled on first use as it is only required for compiled mapping.
+         */
+        private volatile MappingTrie<MappedContext> trie;
 
         /**
          * Default constructor.
@@ -1732,6 +1814,21 @@ public final class Mapper {
             }
             return null;
         }
+
+        /**
+         * Get the trie compiled from the contexts, compiling it if necessary. The contexts never change so, if two
+         * threads compile the trie concurrently, both results are equivalent.
+         *
+         * @return the trie for the contexts
+         */
+        MappingTrie<MappedContext> getTrie() {
+            MappingTrie<MappedContext> result = trie;
+            if (result == null) {
+                result = new MappingTrie<>(contexts);
+                trie = result;
+            }
+            return result;
+        }
     }
 
 
@@ -1799,6 +1896,11 @@ public final class Mapper {
          * The nesting level.
          */
         public int nesting = 0;
+        /**
+         * Tries compiled from the wrappers. Cleared, while holding the lock on this object, whenever the wrappers
+         * change.
+         */
+        volatile DispatchTable dispatchTable = null;
         /**
          * Whether the context is paused.
          */
@@ -1838,6 +1940,52 @@ public final class Mapper {
         public void markPaused() {
             paused = true;
         }
+
+        /**
+         * Get the tries compiled from the current wrappers, compiling them if the wrappers have changed since they
+         * were last compiled.
+         *
+         * @return the tries for the current wrappers
+         */
+        DispatchTable getDispatchTable() {
+            DispatchTable result = dispatchTable;
+            if (result == null) {
+                synchronized (this) {
+                    result = dispatchTable;
+                    if (result == null) {
+                        result = new DispatchTable(exactWrappers, wildcardWrappers, extensionWrappers);
+                        dispatchTable = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+
+    /**
+     * Tries compiled from the wrappers of a context version.
+     */
+    protected static final class DispatchTable {
+        /**
+         * The exact match wrappers.
+         */
+        final MappingTrie<MappedWrapper> exactWrappers;
+        /**
+         * The wildcard match wrappers.
+         */
+        final MappingTrie<MappedWrapper> wildcardWrappers;
+        /**
+         * The extension match wrappers.
+         */
+        final MappingTrie<MappedWrapper> extensionWrappers;
+
+        DispatchTable(MappedWrapper[] exactWrappers, MappedWrapper[] wildcardWrappers,
+                MappedWrapper[] extensionWrappers) {
+            this.exactWrappers = new MappingTrie<>(exactWrappers);
+            this.wildcardWrappers = new MappingTrie<>(wildcardWrappers);
+            this.extensionWrappers = new MappingTrie<>(extensionWrappers);
+        }
     }
 
     // ---------------------------------------------------- Wrapper Inner Class
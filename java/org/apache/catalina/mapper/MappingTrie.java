@@ -0,0 +1,204 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.catalina.mapper;
+
+import org.apache.catalina.mapper.Mapper.MapElement;
+import org.apache.tomcat.util.buf.CharChunk;
+
+/**
+ * Immutable radix tree compiled from a sorted array of map elements. It replaces the binary search and the repeated
+ * truncation of the path at each slash that the {@link Mapper} otherwise performs for context, prefix (wildcard),
+ * exact and extension matches with a single, left to right walk over the characters of the path.
+ * <p>
+ * Instances are never modified. When the elements change, a new trie is compiled from the new array.
+ *
+ * @param <E> The type of map element stored in the trie
+ */
+final class MappingTrie<E extends MapElement<?>> {
+
+    private static final char[] EMPTY_CHARS = new char[0];
+
+    private final Node<E> root;
+
+
+    /**
+     * Compile a trie from the given elements.
+     *
+     * @param elements The elements, sorted by name with no duplicate names, as maintained by the Mapper
+     */
+    MappingTrie(E[] elements) {
+        root = build(elements, EMPTY_CHARS, 0, elements.length, 0);
+    }
+
+
+    /**
+     * Find the element with a name equal to the current content of the given chunk.
+     *
+     * @param name The name to look up
+     *
+     * @return the matching element or <code>null</code> if there is no such element
+     */
+    E find(CharChunk name) {
+        char[] buf = name.getBuffer();
+        int pos = name.getStart();
+        int end = name.getEnd();
+        Node<E> node = root;
+        while (pos < end) {
+            node = node.child(buf[pos]);
+            if (node == null || !node.matches(buf, pos, end)) {
+                return null;
+            }
+            pos += node.segment.length;
+        }
+        return node.element;
+    }
+
+
+    /**
+     * Find the element with the longest name that is a path prefix of the current content of the given chunk, i.e.
+     * the name is equal to the chunk or the character that follows the name in the chunk is <code>'/'</code>.
+     *
+     * @param path The path to look up
+     *
+     * @return the matching element or <code>null</code> if there is no such element
+     */
+    E findLongestPrefix(CharChunk path) {
+        char[] buf = path.getBuffer();
+        int pos = path.getStart();
+        int end = path.getEnd();
+        Node<E> node = root;
+        E result = null;
+        while (true) {
+            if (node.element != null && (pos == end || buf[pos] == '/')) {
+                result = node.element;
+            }
+            if (pos == end) {
+                return result;
+            }
+            node = node.child(buf[pos]);
+            if (node == null || !node.matches(buf, pos, end)) {
+                return result;
+            }
+            pos += node.segment.length;
+        }
+    }
+
+
+    /*
+     * The elements in [from, to) all share the same first depth characters. An element whose name is exactly depth
+     * characters long, if any, sorts first. The remaining elements are grouped by the character at depth and, since
+     * the input is sorted, the common prefix of a group is the common prefix of its first and last elements.
+     */
+    private static <E extends MapElement<?>> Node<E> build(E[] elements, char[] segment, int from, int to,
+            int depth) {
+        E element = null;
+        if (from < to && elements[from].name.length() == depth) {
+            element = elements[from++];
+        }
+
+        int groups = 0;
+        for (int i = from; i < to; i++) {
+            if (i == from || elements[i].name.charAt(depth) != elements[i - 1].name.charAt(depth)) {
+                groups++;
+            }
+        }
+
+        char[] keys = new char[groups];
+        Node<E>[] children = newNodeArray(groups);
+        int group = 0;
+        int start = from;
+        while (start < to) {
+            char key = elements[start].name.charAt(depth);
+            int end = start + 1;
+            while (end < to && elements[end].name.charAt(depth) == key) {
+                end++;
+            }
+            String first = elements[start].name;
+            String last = elements[end - 1].name;
+            int childDepth = depth + 1;
+            int limit = Math.min(first.length(), last.length());
+            while (childDepth < limit && first.charAt(childDepth) == last.charAt(childDepth)) {
+                childDepth++;
+            }
+            keys[group] = key;
+            children[group] = build(elements, first.substring(depth, childDepth).toCharArray(), start, end,
+                    childDepth);
+            group++;
+            start = end;
+        }
+
+        return new Node<>(segment, element, keys, children);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <E extends MapElement<?>> Node<E>[] newNodeArray(int size) {
+        return (Node<E>[]) new Node<?>[size];
+    }
+
+
+    private static final class Node<E> {
+
+        /*
+         * The characters on the edge that leads to this node. The first character is the key under which the node is
+         * stored in its parent.
+         */
+        private final char[] segment;
+        private final E element;
+        private final char[] keys;
+        private final Node<E>[] children;
+
+        Node(char[] segment, E element, char[] keys, Node<E>[] children) {
+            this.segment = segment;
+            this.element = element;
+            this.keys = keys;
+            this.children = children;
+        }
+
+        Node<E> child(char c) {
+            // Keys are sorted. Most nodes only have a handful of children.
+            int a = 0;
+            int b = keys.length - 1;
+            while (a <= b) {
+                int i = (a + b) >>> 1;
+                char key = keys[i];
+                if (key < c) {
+                    a = i + 1;
+                } else if (key > c) {
+                    b = i - 1;
+                } else {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        boolean matches(char[] buf, int pos, int end) {
+            int len = segment.length;
+            if (end - pos < len) {
+                return false;
+            }
+            // The first character has already been matched as the key
+            for (int i = 1; i < len; i++) {
+                if (buf[pos + i] != segment[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -34,6 +34,7 @@ import java.io.Serializable;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -44,6 +45,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.TreeSet;
 import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
@@ -78,6 +81,7 @@ import org.apache.tomcat.util.buf.B2CConverter;
 import org.apache.tomcat.util.http.FastHttpDateFormat;
 import org.apache.tomcat.util.http.Method;
 import org.apache.tomcat.util.http.ResponseUtil;
+import org.apache.tomcat.util.http.parser.AcceptEncoding;
 import org.apache.tomcat.util.http.parser.ContentRange;
 import org.apache.tomcat.util.http.parser.EntityTag;
 import org.apache.tomcat.util.http.parser.Ranges;
@@ -195,6 +199,22 @@ public class DefaultServlet extends HttpServlet {
      */
     protected CompressionFormat[] compressionFormats;
 
+    /**
+     * Should gzip compressed variants of compressible resources be created on first use and cached with the resource?
+     */
+    private boolean cacheCompressedVariants = false;
+
+    /**
+     * Minimum size, in bytes, of a resource for which a compressed variant will be created.
+     */
+    private int compressionMinSize = 2048;
+
+    /**
+     * MIME types for which compressed variants will be created.
+     */
+    private String[] compressibleMimeTypes = { "text/html", "text/xml", "text/plain", "text/css", "text/javascript",
+            "application/javascript", "application/json", "application/xml" };
+
     /**
      * The output buffer size to use when serving resources.
      */
@@ -322,6 +342,26 @@ public class DefaultServlet extends HttpServlet {
         compressionFormats = parseCompressionFormats(getServletConfig().getInitParameter("precompressed"),
                 getServletConfig().getInitParameter("gzip"));
 
+        if (getServletConfig().getInitParameter("cacheCompressedVariants") != null) {
+            cacheCompressedVariants =
+                    Boolean.parseBoolean(getServletConfig().getInitParameter("cacheCompressedVariants"));
+        }
+
+        if (getServletConfig().getInitParameter("compressionMinSize") != null) {
+            compressionMinSize = Integer.parseInt(getServletConfig().getInitParameter("compressionMinSize"));
+        }
+
+        if (getServletConfig().getInitParameter("compressibleMimeTypes") != null) {
+            List<String> mimeTypes = new ArrayList<>();
+            for (String mimeType : getServletConfig().getInitParameter("compressibleMimeTypes").split(",")) {
+                mimeType = mimeType.trim();
+                if (!mimeType.isEmpty()) {
+                    mimeTypes.add(mimeType);
+                }
+            }
+            compressibleMimeTypes = mimeTypes.toArray(new String[0]);
+        }
+
         if (getServletConfig().getInitParameter("sendfileSize") != null) {
             sendfileSize = Integer.parseInt(getServletConfig().getInitParameter("sendfileSize")) * 1024;
         }
@@ -991,6 +1031,17 @@ public class DefaultServlet extends HttpServlet {
             }
         }
 
+        // Otherwise, serve a cached compressed variant of the resource if configured
+        if (cacheCompressedVariants && !usingPrecompressedVersion && !included && !isError && resource.isFile() &&
+                resource instanceof CachedResource cachedResource && isCompressible(contentType) &&
+                resource.getContentLength() >= compressionMinSize) {
+            ResponseUtil.addVaryFieldName(response, "accept-encoding");
+            if (acceptsGzip(request) && serveCompressedVariant(response, serveContent, cachedResource, contentType,
+                    eTag, lastModifiedHttp)) {
+                return;
+            }
+        }
+
         Ranges ranges = FULL;
         long contentLength = -1L;
 
@@ -1180,10 +1231,23 @@ public class DefaultServlet extends HttpServlet {
                                 // implementations as that could trigger loading
                                 // the contents of a very large file into memory
                                 byte[] resourceBody = null;
+                                ByteBuffer resourceBuffer = null;
+                                CachedResource cachedResource = null;
                                 if (resource instanceof CachedResource) {
-                                    resourceBody = resource.getContent();
+                                    cachedResource = (CachedResource) resource;
+                                    // Off-heap content is written without copying it to the heap
+                                    resourceBuffer = cachedResource.acquireContentBuffer();
+                                    if (resourceBuffer == null) {
+                                        resourceBody = resource.getContent();
+                                    }
                                 }
-                                if (resourceBody == null) {
+                                if (resourceBuffer != null) {
+                                    try {
+                                        ostream.write(resourceBuffer);
+                                    } finally {
+                                        cachedResource.releaseContentBuffer();
+                                    }
+                                } else if (resourceBody == null) {
                                     // Resource content not directly available,
                                     // use InputStream
                                     renderResult = resource.getInputStream();
@@ -1348,6 +1412,125 @@ public class DefaultServlet extends HttpServlet {
     }
 
 
+    /*
+     * Serves the gzip compressed variant of the resource. The variant is held until the content has been written so
+     * that it is only created once per request, even if it cannot be retained in the cache. Returns false, without
+     * modifying the response, if there is no compressed variant for the resource.
+     */
+    private boolean serveCompressedVariant(HttpServletResponse response, boolean serveContent,
+            CachedResource resource, String contentType, String eTag, String lastModifiedHttp) throws IOException {
+        ByteBuffer compressedVariant = resource.acquireContentVariant("gzip", DefaultServlet::gzip);
+        if (compressedVariant == null) {
+            return false;
+        }
+        try {
+            response.addHeader("Content-Encoding", "gzip");
+            // Range requests are not supported for compressed variants
+            response.setHeader("ETag", getCompressedVariantETag(eTag));
+            response.setHeader("Last-Modified", lastModifiedHttp);
+
+            ServletOutputStream ostream = null;
+            if (serveContent) {
+                // A Writer cannot be used to write compressed content
+                ostream = response.getOutputStream();
+            }
+
+            // Don't set a content length if a Filter, Valve or wrapper has written some content
+            ServletResponse r = response;
+            while (r instanceof ServletResponseWrapper) {
+                r = ((ServletResponseWrapper) r).getResponse();
+            }
+            if (!(r instanceof ResponseFacade) || ((ResponseFacade) r).getContentWritten() == 0) {
+                response.setContentLengthLong(compressedVariant.remaining());
+            }
+            // Don't override a previously set content type
+            if (contentType != null && response.getContentType() == null) {
+                response.setContentType(contentType);
+            }
+
+            if (ostream != null) {
+                try {
+                    response.setBufferSize(output);
+                } catch (IllegalStateException ignore) {
+                    // Content has already been written. Ignore the error and continue.
+                }
+                ostream.write(compressedVariant);
+            }
+        } finally {
+            resource.releaseContentVariant("gzip", compressedVariant);
+        }
+        return true;
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        for (String compressibleMimeType : compressibleMimeTypes) {
+            if (contentType.startsWith(compressibleMimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        double gzipQuality = -1;
+        double anyQuality = -1;
+        Enumeration<String> headers = request.getHeaders("Accept-Encoding");
+        while (headers.hasMoreElements()) {
+            List<AcceptEncoding> acceptEncodings;
+            try {
+                acceptEncodings = AcceptEncoding.parse(new StringReader(headers.nextElement()));
+            } catch (IOException ioe) {
+                // Not expected for a StringReader. Treat as not supported.
+                return false;
+            }
+            for (AcceptEncoding acceptEncoding : acceptEncodings) {
+                if ("gzip".equalsIgnoreCase(acceptEncoding.getEncoding())) {
+                    gzipQuality = Math.max(gzipQuality, acceptEncoding.getQuality());
+                } else if ("*".equals(acceptEncoding.getEncoding())) {
+                    anyQuality = Math.max(anyQuality, acceptEncoding.getQuality());
+                }
+            }
+        }
+        return gzipQuality > 0 || gzipQuality < 0 && anyQuality > 0;
+    }
+
+    private static String getCompressedVariantETag(String eTag) {
+        if (eTag == null || !eTag.endsWith("\"")) {
+            return eTag;
+        }
+        return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+    }
+
+    private static byte[] gzip(ByteBuffer content) {
+        int length = content.remaining();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(length);
+        // Compression is only performed once per resource so use the best compression available
+        try (GZIPOutputStream gzip = new GZIPOutputStream(baos) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            // The content may be off-heap so copy it in chunks rather than all at once
+            byte[] chunk = new byte[Math.min(length, 8192)];
+            while (content.hasRemaining()) {
+                int n = Math.min(chunk.length, content.remaining());
+                content.get(chunk, 0, n);
+                gzip.write(chunk, 0, n);
+            }
+        } catch (IOException ioe) {
+            // Not expected for an in-memory stream
+            return null;
+        }
+        if (baos.size() >= length) {
+            // Not worth using the compressed variant
+            return null;
+        }
+        return baos.toByteArray();
+    }
+
     private static boolean isText(String contentType) {
         return contentType == null || contentType.startsWith("text") || contentType.endsWith("xml") ||
                 contentType.contains("/javascript");
@@ -2352,6 +2535,11 @@ public class DefaultServlet extends HttpServlet {
             throws IOException {
 
         String resourceETag = generateETag(resource);
+        // The client may hold the ETag of a compressed variant
+        String variantETag = null;
+        if (cacheCompressedVariants && resourceETag != null && acceptsGzip(request)) {
+            variantETag = getCompressedVariantETag(resourceETag);
+        }
 
         Enumeration<String> headerValues = request.getHeaders("If-None-Match");
         boolean hasAsteriskValue = false;// check existence of special header value '*'
@@ -2384,6 +2572,12 @@ public class DefaultServlet extends HttpServlet {
                     response.sendError(HttpServletResponse.SC_BAD_REQUEST);
                     return false;
                 }
+                if (!matched.booleanValue() && variantETag != null) {
+                    matched = EntityTag.compareEntityTag(new StringReader(headerValue), true, variantETag);
+                    if (matched.booleanValue()) {
+                        resourceETag = variantETag;
+                    }
+                }
                 if (matched.booleanValue()) {
                     // RFC9110: If the field value is a list of entity tags, the condition is false if one of the
                     // listed tags
@@ -0,0 +1,464 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.catalina.session.SessionSerializer.ObjectInputStreamFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Reads the format written by {@link CompactObjectOutputStream}. See {@link CompactSessionSerializer}.
+ */
+final class CompactObjectInputStream extends ObjectInputStream {
+
+    private static final StringManager sm = StringManager.getManager(CompactObjectInputStream.class);
+
+    private final InputStream in;
+    private final ObjectInputStreamFactory javaStreamFactory;
+    private final byte[] buf = new byte[8192];
+    private int pos;
+    private int limit;
+
+    private final List<String> strings = new ArrayList<>();
+    private final List<Object> handles = new ArrayList<>();
+
+    private ChunkInputStream javaChunk;
+    private ObjectInputStream javaStream;
+
+
+    CompactObjectInputStream(InputStream in, ObjectInputStreamFactory javaStreamFactory) throws IOException {
+        super();
+        this.in = in;
+        this.javaStreamFactory = javaStreamFactory;
+        byte[] magic = new byte[CompactObjectOutputStream.MAGIC.length];
+        readFully(magic);
+        if (!Arrays.equals(magic, CompactObjectOutputStream.MAGIC)) {
+            throw new StreamCorruptedException(sm.getString("compactObjectInputStream.invalidHeader"));
+        }
+    }
+
+
+    @Override
+    protected Object readObjectOverride() throws IOException, ClassNotFoundException {
+        int tag = readUnsignedByte();
+        while (tag == CompactObjectOutputStream.TAG_RESET) {
+            strings.clear();
+            handles.clear();
+            javaStream = null;
+            javaChunk = null;
+            tag = readUnsignedByte();
+        }
+        return readValue(tag, 0);
+    }
+
+
+    @Override
+    public Object readUnshared() throws IOException, ClassNotFoundException {
+        return readObject();
+    }
+
+
+    private Object readValue(int tag, int depth) throws IOException, ClassNotFoundException {
+        if (depth > CompactObjectOutputStream.MAX_DEPTH) {
+            throw new StreamCorruptedException(sm.getString("compactObjectInputStream.tooDeep"));
+        }
+        switch (tag) {
+            case CompactObjectOutputStream.TAG_NULL:
+                return null;
+            case CompactObjectOutputStream.TAG_TRUE:
+                return Boolean.TRUE;
+            case CompactObjectOutputStream.TAG_FALSE:
+                return Boolean.FALSE;
+            case CompactObjectOutputStream.TAG_BYTE:
+                return Byte.valueOf(readByte());
+            case CompactObjectOutputStream.TAG_SHORT:
+                return Short.valueOf(readShort());
+            case CompactObjectOutputStream.TAG_CHAR:
+                return Character.valueOf(readChar());
+            case CompactObjectOutputStream.TAG_INT:
+                return Integer.valueOf((int) readVarLong());
+            case CompactObjectOutputStream.TAG_LONG:
+                return Long.valueOf(readVarLong());
+            case CompactObjectOutputStream.TAG_FLOAT:
+                return Float.valueOf(readFloat());
+            case CompactObjectOutputStream.TAG_DOUBLE:
+                return Double.valueOf(readDouble());
+            case CompactObjectOutputStream.TAG_STRING_LATIN1: {
+                String s = new String(readBytes(readLength()), StandardCharsets.ISO_8859_1);
+                addString(s);
+                return s;
+            }
+            case CompactObjectOutputStream.TAG_STRING_UTF16: {
+                int len = readLength();
+                if (len > Integer.MAX_VALUE / 2) {
+                    throw new StreamCorruptedException(
+                            sm.getString("compactObjectInputStream.invalidLength", Integer.toString(len)));
+                }
+                // Decoded directly rather than via UTF-16BE so unpaired surrogates are preserved
+                byte[] bytes = readBytes(len * 2);
+                char[] chars = new char[len];
+                for (int i = 0; i < len; i++) {
+                    chars[i] = (char) ((bytes[2 * i] & 0xFF) << 8 | (bytes[2 * i + 1] & 0xFF));
+                }
+                String s = new String(chars);
+                addString(s);
+                return s;
+            }
+            case CompactObjectOutputStream.TAG_STRING_REF: {
+                int index = readLength();
+                if (index >= strings.size()) {
+                    throw new StreamCorruptedException(
+                            sm.getString("compactObjectInputStream.invalidReference", Integer.toString(index)));
+                }
+                return strings.get(index);
+            }
+            case CompactObjectOutputStream.TAG_BYTES:
+                return addHandle(readBytes(readLength()));
+            case CompactObjectOutputStream.TAG_DATE:
+                return addHandle(new Date(readVarLong()));
+            case CompactObjectOutputStream.TAG_ARRAY_LIST:
+                return readCollection(new ArrayList<>(), depth);
+            case CompactObjectOutputStream.TAG_LINKED_LIST:
+                return readCollection(new LinkedList<>(), depth);
+            case CompactObjectOutputStream.TAG_HASH_SET:
+                return readCollection(new HashSet<>(), depth);
+            case CompactObjectOutputStream.TAG_LINKED_HASH_SET:
+                return readCollection(new LinkedHashSet<>(), depth);
+            case CompactObjectOutputStream.TAG_TREE_SET:
+                return readCollection(new TreeSet<>(), depth);
+            case CompactObjectOutputStream.TAG_HASH_MAP:
+                return readMap(new HashMap<>(), depth);
+            case CompactObjectOutputStream.TAG_CONCURRENT_HASH_MAP:
+                return readMap(new ConcurrentHashMap<>(), depth);
+            case CompactObjectOutputStream.TAG_TREE_MAP:
+                return readMap(new TreeMap<>(), depth);
+            case CompactObjectOutputStream.TAG_OBJECT_REF: {
+                int index = readLength();
+                if (index >= handles.size()) {
+                    throw new StreamCorruptedException(
+                            sm.getString("compactObjectInputStream.invalidReference", Integer.toString(index)));
+                }
+                return handles.get(index);
+            }
+            case CompactObjectOutputStream.TAG_JAVA:
+                return readJava();
+            default:
+                throw new StreamCorruptedException(
+                        sm.getString("compactObjectInputStream.invalidTag", Integer.toString(tag)));
+        }
+    }
+
+
+    private Collection<Object> readCollection(Collection<Object> collection, int depth)
+            throws IOException, ClassNotFoundException {
+        addHandle(collection);
+        int tag;
+        while ((tag = readUnsignedByte()) != CompactObjectOutputStream.TAG_END) {
+            collection.add(readValue(tag, depth + 1));
+        }
+        return collection;
+    }
+
+
+    private Map<Object,Object> readMap(Map<Object,Object> map, int depth) throws IOException, ClassNotFoundException {
+        addHandle(map);
+        int tag;
+        while ((tag = readUnsignedByte()) != CompactObjectOutputStream.TAG_END) {
+            Object key = readValue(tag, depth + 1);
+            map.put(key, readValue(readUnsignedByte(), depth + 1));
+        }
+        return map;
+    }
+
+
+    /*
+     * Mutable objects are assigned a handle in the order in which they are read, which is the order in which the
+     * writer first wrote them.
+     */
+    private <T> T addHandle(T obj) {
+        handles.add(obj);
+        return obj;
+    }
+
+
+    private void addString(String s) {
+        if (s.length() <= CompactObjectOutputStream.MAX_DICTIONARY_STRING_LENGTH &&
+                strings.size() < CompactObjectOutputStream.MAX_DICTIONARY_SIZE) {
+            strings.add(s);
+        }
+    }
+
+
+    private Object readJava() throws IOException, ClassNotFoundException {
+        byte[] bytes = readBytes(readLength());
+        if (javaStream == null) {
+            javaChunk = new ChunkInputStream();
+            javaChunk.setChunk(bytes);
+            javaStream = javaStreamFactory.create(javaChunk);
+        } else {
+            javaChunk.setChunk(bytes);
+        }
+        return javaStream.readObject();
+    }
+
+
+    private long readVarLong() throws IOException {
+        long v = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 63) {
+                throw new StreamCorruptedException(sm.getString("compactObjectInputStream.invalidVarLong"));
+            }
+            b = readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+
+    private int readLength() throws IOException {
+        long len = readVarLong();
+        if (len < 0 || len > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException(
+                    sm.getString("compactObjectInputStream.invalidLength", Long.toString(len)));
+        }
+        return (int) len;
+    }
+
+
+    /*
+     * Reads in chunks so that a corrupt length does not trigger a large allocation unless the data is present.
+     */
+    private byte[] readBytes(int len) throws IOException {
+        byte[] bytes = readNBytes(len);
+        if (bytes.length < len) {
+            throw new EOFException();
+        }
+        return bytes;
+    }
+
+
+    private boolean fill() throws IOException {
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+
+    // -------------------------------------------------- DataInput methods
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit) {
+            if (len >= buf.length) {
+                return in.read(b, off, len);
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+
+    @Override
+    public int available() throws IOException {
+        return (limit - pos) + in.available();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int read = read(b, off + n, len - n);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            n += read;
+        }
+    }
+
+
+    @Override
+    public int skipBytes(int len) throws IOException {
+        int n = 0;
+        while (n < len && read() >= 0) {
+            n++;
+        }
+        return n;
+    }
+
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readUnsignedByte() != 0;
+    }
+
+
+    @Override
+    public byte readByte() throws IOException {
+        return (byte) readUnsignedByte();
+    }
+
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        int b = read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+
+    @Override
+    public char readChar() throws IOException {
+        return (char) readUnsignedShort();
+    }
+
+
+    @Override
+    public short readShort() throws IOException {
+        return (short) readUnsignedShort();
+    }
+
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return (readUnsignedByte() << 8) | readUnsignedByte();
+    }
+
+
+    @Override
+    public int readInt() throws IOException {
+        return (readUnsignedShort() << 16) | readUnsignedShort();
+    }
+
+
+    @Override
+    public long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+
+    @Override
+    @Deprecated
+    public String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+            if (c != '\r') {
+                sb.append((char) c);
+            }
+        }
+        if (c < 0 && sb.isEmpty()) {
+            return null;
+        }
+        return sb.toString();
+    }
+
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+
+    /*
+     * Provides the Java serialization stream with the bytes for one object at a time.
+     */
+    private static class ChunkInputStream extends ByteArrayInputStream {
+
+        ChunkInputStream() {
+            super(new byte[0]);
+        }
+
+        void setChunk(byte[] chunk) {
+            buf = chunk;
+            pos = 0;
+            count = chunk.length;
+            mark = 0;
+        }
+    }
+}
@@ -0,0 +1,597 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes the format read by {@link CompactObjectInputStream}. See {@link CompactSessionSerializer}.
+ * <p>
+ * The stream starts with {@link #MAGIC}. Each object is written as a one byte tag followed by the encoded value.
+ * Collections and maps are written as their elements (keys and values for maps) followed by {@link #TAG_END}.
+ * Mutable objects (byte arrays, dates, collections and maps) are assigned a handle, in the order they are first written,
+ * and later references to the same object in the stream are written as {@link #TAG_OBJECT_REF} and the handle so that
+ * shared references are preserved as they are by Java serialization. Objects that are written using Java serialization
+ * are written as {@link #TAG_JAVA}, the length and the bytes written by a single Java serialization stream that is
+ * shared by all such objects in the stream.
+ */
+final class CompactObjectOutputStream extends ObjectOutputStream {
+
+    static final byte[] MAGIC = new byte[] { 'T', 'C', 'S', 1 };
+
+    static final int TAG_NULL = 0;
+    static final int TAG_TRUE = 1;
+    static final int TAG_FALSE = 2;
+    static final int TAG_BYTE = 3;
+    static final int TAG_SHORT = 4;
+    static final int TAG_CHAR = 5;
+    static final int TAG_INT = 6;
+    static final int TAG_LONG = 7;
+    static final int TAG_FLOAT = 8;
+    static final int TAG_DOUBLE = 9;
+    static final int TAG_STRING_LATIN1 = 10;
+    static final int TAG_STRING_UTF16 = 11;
+    static final int TAG_STRING_REF = 12;
+    static final int TAG_BYTES = 13;
+    static final int TAG_DATE = 14;
+    static final int TAG_ARRAY_LIST = 15;
+    static final int TAG_LINKED_LIST = 16;
+    static final int TAG_HASH_SET = 17;
+    static final int TAG_LINKED_HASH_SET = 18;
+    static final int TAG_TREE_SET = 19;
+    static final int TAG_HASH_MAP = 20;
+    static final int TAG_CONCURRENT_HASH_MAP = 21;
+    static final int TAG_TREE_MAP = 22;
+    static final int TAG_JAVA = 23;
+    static final int TAG_END = 24;
+    static final int TAG_RESET = 25;
+    static final int TAG_OBJECT_REF = 26;
+
+    /*
+     * Strings up to this length are added to the dictionary the first time they are written so that subsequent
+     * occurrences can be written as a reference. The dictionary is bounded so that long streams of unique values such
+     * as session IDs do not use unbounded memory.
+     */
+    static final int MAX_DICTIONARY_STRING_LENGTH = 64;
+    static final int MAX_DICTIONARY_SIZE = 4096;
+
+    /*
+     * Deeper object graphs, and any that are cyclic, are written using Java serialization.
+     */
+    static final int MAX_DEPTH = 16;
+
+    /*
+     * Only these exact classes are written using the compact encoding. Subclasses may have additional state.
+     * LinkedHashMap is excluded as access ordering is not visible.
+     */
+    private static final Map<Class<?>,Integer> TAGS = new IdentityHashMap<>();
+
+    static {
+        TAGS.put(Boolean.class, Integer.valueOf(TAG_TRUE));
+        TAGS.put(Byte.class, Integer.valueOf(TAG_BYTE));
+        TAGS.put(Short.class, Integer.valueOf(TAG_SHORT));
+        TAGS.put(Character.class, Integer.valueOf(TAG_CHAR));
+        TAGS.put(Integer.class, Integer.valueOf(TAG_INT));
+        TAGS.put(Long.class, Integer.valueOf(TAG_LONG));
+        TAGS.put(Float.class, Integer.valueOf(TAG_FLOAT));
+        TAGS.put(Double.class, Integer.valueOf(TAG_DOUBLE));
+        TAGS.put(String.class, Integer.valueOf(TAG_STRING_LATIN1));
+        TAGS.put(byte[].class, Integer.valueOf(TAG_BYTES));
+        TAGS.put(Date.class, Integer.valueOf(TAG_DATE));
+        TAGS.put(ArrayList.class, Integer.valueOf(TAG_ARRAY_LIST));
+        TAGS.put(LinkedList.class, Integer.valueOf(TAG_LINKED_LIST));
+        TAGS.put(HashSet.class, Integer.valueOf(TAG_HASH_SET));
+        TAGS.put(LinkedHashSet.class, Integer.valueOf(TAG_LINKED_HASH_SET));
+        TAGS.put(TreeSet.class, Integer.valueOf(TAG_TREE_SET));
+        TAGS.put(HashMap.class, Integer.valueOf(TAG_HASH_MAP));
+        TAGS.put(ConcurrentHashMap.class, Integer.valueOf(TAG_CONCURRENT_HASH_MAP));
+        TAGS.put(TreeMap.class, Integer.valueOf(TAG_TREE_MAP));
+    }
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[8192];
+    private int count;
+
+    private final Map<String,Integer> strings = new HashMap<>();
+    // Mutable objects written using the compact encoding and their handles
+    private final Map<Object,Integer> handles = new IdentityHashMap<>();
+    // Mutable objects of the types supported by the compact encoding that have been written using Java serialization
+    private final Set<Object> javaObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Used while checking an object. The objects found to be compact and the objects currently being checked.
+    private final Set<Object> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Object> inProgress = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private JavaBuffer javaBuffer;
+    private ObjectOutputStream javaStream;
+
+
+    CompactObjectOutputStream(OutputStream out) throws IOException {
+        super();
+        this.out = out;
+        write(MAGIC);
+    }
+
+
+    @Override
+    protected void writeObjectOverride(Object obj) throws IOException {
+        boolean compact;
+        try {
+            compact = isCompact(obj, 0);
+        } finally {
+            checked.clear();
+            inProgress.clear();
+        }
+        if (compact) {
+            writeCompact(obj, 0);
+        } else {
+            writeJava(obj);
+        }
+    }
+
+
+    @Override
+    public void writeUnshared(Object obj) throws IOException {
+        writeObject(obj);
+    }
+
+
+    @Override
+    public void reset() throws IOException {
+        write(TAG_RESET);
+        strings.clear();
+        handles.clear();
+        javaObjects.clear();
+        javaStream = null;
+        javaBuffer = null;
+    }
+
+
+    /*
+     * Can the object be written using the compact encoding without losing any information? Shared references to
+     * objects written using the compact encoding are written as references but any object graph that is cyclic or
+     * that contains an object that has already been written using Java serialization is written using Java
+     * serialization so that the reference to the earlier object is preserved.
+     */
+    private boolean isCompact(Object obj, int depth) {
+        if (obj == null) {
+            return true;
+        }
+        Integer tag = TAGS.get(obj.getClass());
+        if (tag == null) {
+            return false;
+        }
+        if (!isMutable(tag.intValue())) {
+            return true;
+        }
+        if (handles.containsKey(obj) || checked.contains(obj)) {
+            // Will be written as a reference
+            return true;
+        }
+        if (javaObjects.contains(obj)) {
+            return false;
+        }
+        boolean result;
+        if (obj instanceof Collection<?> collection) {
+            if (depth == MAX_DEPTH || !inProgress.add(obj)) {
+                return false;
+            }
+            result = !(obj instanceof TreeSet<?> set && set.comparator() != null);
+            for (Object element : collection) {
+                if (!result) {
+                    break;
+                }
+                result = isCompact(element, depth + 1);
+            }
+            inProgress.remove(obj);
+        } else if (obj instanceof Map<?,?> map) {
+            if (depth == MAX_DEPTH || !inProgress.add(obj)) {
+                return false;
+            }
+            result = !(obj instanceof TreeMap<?,?> treeMap && treeMap.comparator() != null);
+            for (Map.Entry<?,?> entry : map.entrySet()) {
+                if (!result) {
+                    break;
+                }
+                result = isCompact(entry.getKey(), depth + 1) && isCompact(entry.getValue(), depth + 1);
+            }
+            inProgress.remove(obj);
+        } else {
+            result = true;
+        }
+        if (result) {
+            checked.add(obj);
+        }
+        return result;
+    }
+
+
+    static boolean isMutable(int tag) {
+        return switch (tag) {
+            case TAG_BYTES, TAG_DATE, TAG_ARRAY_LIST, TAG_LINKED_LIST, TAG_HASH_SET, TAG_LINKED_HASH_SET, TAG_TREE_SET,
+                    TAG_HASH_MAP, TAG_CONCURRENT_HASH_MAP, TAG_TREE_MAP -> true;
+            default -> false;
+        };
+    }
+
+
+    private void writeCompact(Object obj, int depth) throws IOException {
+        if (obj == null) {
+            write(TAG_NULL);
+            return;
+        }
+        Integer tag = TAGS.get(obj.getClass());
+        if (tag == null || depth > MAX_DEPTH) {
+            // Only possible if a collection was modified after it was checked
+            writeJava(obj);
+            return;
+        }
+        if (isMutable(tag.intValue())) {
+            // The handle is assigned before any contents are written, as it is by the reader
+            Integer handle = handles.get(obj);
+            if (handle != null) {
+                write(TAG_OBJECT_REF);
+                writeVarLong(handle.intValue());
+                return;
+            }
+            handles.put(obj, Integer.valueOf(handles.size()));
+        }
+        switch (tag.intValue()) {
+            case TAG_TRUE:
+                write(((Boolean) obj).booleanValue() ? TAG_TRUE : TAG_FALSE);
+                break;
+            case TAG_BYTE:
+                write(TAG_BYTE);
+                write(((Byte) obj).byteValue());
+                break;
+            case TAG_SHORT:
+                write(TAG_SHORT);
+                writeShort(((Short) obj).shortValue());
+                break;
+            case TAG_CHAR:
+                write(TAG_CHAR);
+                writeChar(((Character) obj).charValue());
+                break;
+            case TAG_INT:
+                write(TAG_INT);
+                writeVarLong(((Integer) obj).intValue());
+                break;
+            case TAG_LONG:
+                write(TAG_LONG);
+                writeVarLong(((Long) obj).longValue());
+                break;
+            case TAG_FLOAT:
+                write(TAG_FLOAT);
+                writeFloat(((Float) obj).floatValue());
+                break;
+            case TAG_DOUBLE:
+                write(TAG_DOUBLE);
+                writeDouble(((Double) obj).doubleValue());
+                break;
+            case TAG_STRING_LATIN1:
+                writeString((String) obj);
+                break;
+            case TAG_BYTES: {
+                byte[] bytes = (byte[]) obj;
+                write(TAG_BYTES);
+                writeVarLong(bytes.length);
+                write(bytes);
+                break;
+            }
+            case TAG_DATE:
+                write(TAG_DATE);
+                writeVarLong(((Date) obj).getTime());
+                break;
+            case TAG_ARRAY_LIST:
+            case TAG_LINKED_LIST:
+            case TAG_HASH_SET:
+            case TAG_LINKED_HASH_SET:
+            case TAG_TREE_SET:
+                write(tag.intValue());
+                for (Object element : (Collection<?>) obj) {
+                    writeCompact(element, depth + 1);
+                }
+                write(TAG_END);
+                break;
+            default:
+                write(tag.intValue());
+                for (Map.Entry<?,?> entry : ((Map<?,?>) obj).entrySet()) {
+                    writeCompact(entry.getKey(), depth + 1);
+                    writeCompact(entry.getValue(), depth + 1);
+                }
+                write(TAG_END);
+                break;
+        }
+    }
+
+
+    private void writeString(String s) throws IOException {
+        int len = s.length();
+        if (len <= MAX_DICTIONARY_STRING_LENGTH) {
+            Integer index = strings.get(s);
+            if (index != null) {
+                write(TAG_STRING_REF);
+                writeVarLong(index.intValue());
+                return;
+            }
+            if (strings.size() < MAX_DICTIONARY_SIZE) {
+                strings.put(s, Integer.valueOf(strings.size()));
+            }
+        }
+        boolean latin1 = true;
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) > 0xFF) {
+                latin1 = false;
+                break;
+            }
+        }
+        if (latin1) {
+            write(TAG_STRING_LATIN1);
+            writeVarLong(len);
+            write(s.getBytes(StandardCharsets.ISO_8859_1));
+        } else {
+            write(TAG_STRING_UTF16);
+            writeVarLong(len);
+            writeChars(s);
+        }
+    }
+
+
+    /*
+     * Objects written using Java serialization share a single Java serialization stream so class descriptors and
+     * shared references are only written once. The bytes written for each object are copied to this stream as soon as
+     * the object has been written. If the object could not be written, Java serialization will have written the
+     * exception in place of the object and the reader will see the same exception.
+     */
+    private void writeJava(Object obj) throws IOException {
+        if (javaStream == null) {
+            javaBuffer = new JavaBuffer();
+            javaStream = new JavaStream(javaBuffer);
+        }
+        try {
+            javaStream.writeObject(obj);
+        } finally {
+            javaStream.flush();
+            write(TAG_JAVA);
+            writeVarLong(javaBuffer.size());
+            javaBuffer.copyTo(this);
+            javaBuffer.reset();
+        }
+    }
+
+
+    /*
+     * Zig-zag encoding followed by a base 128 variable length encoding so small negative values are also short.
+     */
+    private void writeVarLong(long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        write((int) v);
+    }
+
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+
+    // ------------------------------------------------- DataOutput methods
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) {
+            flushBuffer();
+        }
+        buf[count++] = (byte) b;
+    }
+
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len >= buf.length) {
+            flushBuffer();
+            out.write(b, off, len);
+            return;
+        }
+        if (len > buf.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        write(v ? 1 : 0);
+    }
+
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        write(v);
+    }
+
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        write(v >>> 8);
+        write(v);
+    }
+
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        write(v >>> 8);
+        write(v);
+    }
+
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        write(v >>> 24);
+        write(v >>> 16);
+        write(v >>> 8);
+        write(v);
+    }
+
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            write(s.charAt(i));
+        }
+    }
+
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+
+    /*
+     * Modified UTF-8 as defined by DataOutput.
+     */
+    @Override
+    public void writeUTF(String s) throws IOException {
+        int len = s.length();
+        long utflen = len;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                utflen += 2;
+            } else if (c >= 0x80 || c == 0) {
+                utflen += 1;
+            }
+        }
+        if (utflen > 0xFFFF) {
+            throw new UTFDataFormatException();
+        }
+        writeShort((int) utflen);
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80 && c != 0) {
+                write(c);
+            } else if (c < 0x800) {
+                write(0xC0 | (c >> 6));
+                write(0x80 | (c & 0x3F));
+            } else {
+                write(0xE0 | (c >> 12));
+                write(0x80 | ((c >> 6) & 0x3F));
+                write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+
+    /*
+     * Records the objects of the types supported by the compact encoding that are written using Java serialization so
+     * that any later references to them are also written using Java serialization.
+     */
+    private final class JavaStream extends ObjectOutputStream {
+
+        JavaStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            Integer tag = TAGS.get(obj.getClass());
+            if (tag != null && isMutable(tag.intValue())) {
+                javaObjects.add(obj);
+            }
+            return obj;
+        }
+    }
+
+
+    private static class JavaBuffer extends ByteArrayOutputStream {
+
+        void copyTo(OutputStream os) throws IOException {
+            os.write(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+
+/**
+ * Serializes sessions using a compact binary encoding.
+ * <p>
+ * Primitive wrappers, <code>String</code>, <code>byte[]</code>, <code>Date</code> and the common
+ * <code>java.util</code> collections and maps (when they and their contents are of exactly those types) are written
+ * with a one byte type tag followed by the value. Integers use a variable length encoding. Short strings that are
+ * repeated in a stream, such as attribute names, are written once and then referenced by index. Anything else is
+ * written using Java serialization, with the class loaders and class name filtering configured for the Manager, and
+ * embedded in the stream.
+ * <p>
+ * As with Java serialization, references to the same object are preserved across all the objects written to a stream,
+ * for example when a collection is the value of more than one session attribute. The one difference is that a
+ * collection, map, array or date that has been written with the compact encoding and is later referenced from within
+ * an object that is written using Java serialization will be read as a separate copy. Objects that must share such
+ * values should only reference them from objects that are written using Java serialization.
+ * <p>
+ * Streams written using Java serialization may also be read by this serializer so existing persisted sessions can
+ * still be loaded after switching to it. The reverse is not true. All nodes in a cluster must use the same
+ * serializer.
+ */
+public class CompactSessionSerializer implements SessionSerializer {
+
+    @Override
+    public ObjectOutputStream createObjectOutputStream(OutputStream os) throws IOException {
+        return new CompactObjectOutputStream(os);
+    }
+
+
+    @Override
+    public ObjectInputStream createObjectInputStream(InputStream is, ObjectInputStreamFactory javaStreamFactory)
+            throws IOException {
+        InputStream in = is.markSupported() ? is : new BufferedInputStream(is);
+        in.mark(2);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+        if (((b0 << 8) | b1) == (ObjectStreamConstants.STREAM_MAGIC & 0xFFFF)) {
+            // Written using Java serialization
+            return javaStreamFactory.create(in);
+        }
+        return new CompactObjectInputStream(in, javaStreamFactory);
+    }
+}
@@ -17,7 +17,6 @@
 package org.apache.catalina.session;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -491,7 +490,7 @@ public class DataSourceStore extends StoreBase {
 
             // First serialize session
             ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(bos))) {
+            try (ObjectOutputStream oos = getObjectOutputStream(bos)) {
                 ((StandardSession) session).writeObjectData(oos);
             }
             byte[] obs = bos.toByteArray();
@@ -522,6 +521,75 @@ public class DataSourceStore extends StoreBase {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sessions are removed and inserted using JDBC batch updates so the number of round trips to the database does
+     * not depend on the number of sessions.
+     */
+    @Override
+    public void save(Session[] sessions) throws IOException {
+        if (sessions.length == 0) {
+            return;
+        }
+        if (sessions.length == 1) {
+            save(sessions[0]);
+            return;
+        }
+
+        String removeSql =
+                "DELETE FROM " + sessionTable + " WHERE " + sessionIdCol + " = ?  AND " + sessionAppCol + " = ?";
+        String saveSql = "INSERT INTO " + sessionTable + " (" + sessionIdCol + ", " + sessionAppCol + ", " +
+                sessionDataCol + ", " + sessionValidCol + ", " + sessionMaxInactiveCol + ", " + sessionLastAccessedCol +
+                ") VALUES (?, ?, ?, ?, ?, ?)";
+
+        // First serialize the sessions, capturing a consistent view of each one
+        SerializedSession[] serialized = new SerializedSession[sessions.length];
+        for (int i = 0; i < sessions.length; i++) {
+            Session session = sessions[i];
+            synchronized (session) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = getObjectOutputStream(bos)) {
+                    ((StandardSession) session).writeObjectData(oos);
+                }
+                serialized[i] = new SerializedSession(session.getIdInternal(), bos.toByteArray(), session.isValid(),
+                        session.getMaxInactiveInterval(), session.getLastAccessedTime());
+            }
+        }
+
+        withRetry(conn -> {
+            // Remove the sessions if they exist and insert them again.
+            try (PreparedStatement preparedRemoveSql = conn.prepareStatement(removeSql)) {
+                for (SerializedSession session : serialized) {
+                    preparedRemoveSql.setString(1, session.id);
+                    preparedRemoveSql.setString(2, getName());
+                    preparedRemoveSql.addBatch();
+                }
+                preparedRemoveSql.executeBatch();
+            }
+            try (PreparedStatement preparedSaveSql = conn.prepareStatement(saveSql)) {
+                for (SerializedSession session : serialized) {
+                    preparedSaveSql.setString(1, session.id);
+                    preparedSaveSql.setString(2, getName());
+                    preparedSaveSql.setBinaryStream(3, new ByteArrayInputStream(session.data), session.data.length);
+                    preparedSaveSql.setString(4, session.valid ? "1" : "0");
+                    preparedSaveSql.setInt(5, session.maxInactiveInterval);
+                    preparedSaveSql.setLong(6, session.lastAccessedTime);
+                    preparedSaveSql.addBatch();
+                }
+                preparedSaveSql.executeBatch();
+            }
+            return null;
+        });
+
+        if (manager.getContext().getLogger().isTraceEnabled()) {
+            for (SerializedSession session : serialized) {
+                manager.getContext().getLogger()
+                        .trace(sm.getString("dataSourceStore.saving", session.id, sessionTable));
+            }
+        }
+    }
+
 
     // --------------------------------------------------------- Protected Methods
 
@@ -676,6 +744,24 @@ public class DataSourceStore extends StoreBase {
     }
 
 
+    private static final class SerializedSession {
+
+        private final String id;
+        private final byte[] data;
+        private final boolean valid;
+        private final int maxInactiveInterval;
+        private final long lastAccessedTime;
+
+        SerializedSession(String id, byte[] data, boolean valid, int maxInactiveInterval, long lastAccessedTime) {
+            this.id = id;
+            this.data = data;
+            this.valid = valid;
+            this.maxInactiveInterval = maxInactiveInterval;
+            this.lastAccessedTime = lastAccessedTime;
+        }
+    }
+
+
     /**
      * Functional interface for store operation. Used with {@link DataSourceStore#withRetry(ConnectionOperation)} to
      * reduce code duplication.
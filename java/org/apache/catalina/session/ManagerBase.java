@@ -20,6 +20,10 @@ package org.apache.catalina.session;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Deque;
@@ -29,6 +33,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -43,6 +48,7 @@ import org.apache.catalina.LifecycleState;
 import org.apache.catalina.Manager;
 import org.apache.catalina.Session;
 import org.apache.catalina.SessionIdGenerator;
+import org.apache.catalina.util.CustomObjectInputStream;
 import org.apache.catalina.util.LifecycleMBeanBase;
 import org.apache.catalina.util.SessionIdGeneratorBase;
 import org.apache.catalina.util.StandardSessionIdGenerator;
@@ -113,6 +119,11 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
      */
     protected Class<? extends SessionIdGenerator> sessionIdGeneratorClass = null;
 
+    /**
+     * The serializer used when sessions are persisted, swapped out or replicated.
+     */
+    private SessionSerializer sessionSerializer = new JavaSessionSerializer();
+
     /**
      * The longest time (in seconds) that an expired session had been alive.
      */
@@ -180,6 +191,17 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
      */
     protected int processExpiresFrequency = 6;
 
+    /**
+     * The maximum time, in milliseconds, that {@link #processExpires()} will spend expiring sessions. Any remaining
+     * sessions that are due to expire will be processed on the next call.
+     */
+    private int processExpiresMaxTime = 1000;
+
+    /**
+     * The sessions managed by this manager ordered by the time they are next expected to expire.
+     */
+    final SessionExpirationQueue expirationQueue = new SessionExpirationQueue();
+
     /**
      * The string manager for this package.
      */
@@ -566,6 +588,28 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     }
 
 
+    /**
+     * @return the maximum time, in milliseconds, that a single call to {@link #processExpires()} will spend expiring
+     *             sessions. A value of zero or less means there is no limit.
+     */
+    public int getProcessExpiresMaxTime() {
+        return processExpiresMaxTime;
+    }
+
+
+    /**
+     * Set the maximum time, in milliseconds, that a single call to {@link #processExpires()} will spend expiring
+     * sessions. A value of zero or less means there is no limit. Sessions that are due to expire but were not
+     * processed because the limit was reached will be processed on the next call. Sessions that have timed out are
+     * always expired when an attempt is made to access them, regardless of this setting.
+     *
+     * @param processExpiresMaxTime the new maximum time in milliseconds
+     */
+    public void setProcessExpiresMaxTime(int processExpiresMaxTime) {
+        this.processExpiresMaxTime = processExpiresMaxTime;
+    }
+
+
     /**
      * Return whether sessions managed by this manager shall persist authentication information or not.
      *
@@ -587,6 +631,64 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     }
 
 
+    /**
+     * Return the serializer used when sessions are persisted, swapped out or replicated.
+     *
+     * @return the session serializer
+     */
+    public SessionSerializer getSessionSerializer() {
+        return sessionSerializer;
+    }
+
+
+    /**
+     * Set the serializer used when sessions are persisted, swapped out or replicated. The default uses Java
+     * serialization.
+     *
+     * @param sessionSerializer the new session serializer
+     */
+    public void setSessionSerializer(SessionSerializer sessionSerializer) {
+        this.sessionSerializer = sessionSerializer;
+    }
+
+
+    /**
+     * Create a stream, using the configured {@link SessionSerializer}, to which sessions managed by this manager can be
+     * written.
+     *
+     * @param os The stream to which the serialized sessions should be written
+     *
+     * @return The stream to pass to {@link StandardSession#writeObjectData(ObjectOutputStream)}
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    public ObjectOutputStream getSessionObjectOutputStream(OutputStream os) throws IOException {
+        return sessionSerializer.createObjectOutputStream(os);
+    }
+
+
+    /**
+     * Create a stream, using the configured {@link SessionSerializer}, from which sessions managed by this manager can
+     * be read. Any classes are loaded with the given class loader and filtered using
+     * {@link #getSessionAttributeValueClassNameFilter()}.
+     *
+     * @param is          The stream from which the serialized sessions should be read
+     * @param classLoader The class loader to use to load classes
+     *
+     * @return The stream to pass to {@link StandardSession#readObjectData(ObjectInputStream)}
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    public ObjectInputStream getSessionObjectInputStream(InputStream is, ClassLoader classLoader)
+            throws IOException {
+        Log logger = getContext().getLogger();
+        Pattern pattern = getSessionAttributeValueClassNamePattern();
+        boolean warnOnFailure = getWarnOnSessionAttributeFilterFailure();
+        return sessionSerializer.createObjectInputStream(is,
+                javaStream -> new CustomObjectInputStream(javaStream, classLoader, logger, pattern, warnOnFailure));
+    }
+
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -603,22 +705,17 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     }
 
     /**
-     * Check all sessions validity to trigger their expiration if needed.
+     * Check the validity of the sessions that may have timed out to trigger their expiration if needed.
      */
     public void processExpires() {
 
         long timeNow = System.currentTimeMillis();
-        Session[] sessions = findSessions();
-        int expireHere = 0;
 
         if (log.isTraceEnabled()) {
-            log.trace("Start expire sessions " + getName() + " at " + timeNow + " sessioncount " + sessions.length);
-        }
-        for (Session session : sessions) {
-            if (session != null && !session.isValid()) {
-                expireHere++;
-            }
+            log.trace("Start expire sessions " + getName() + " at " + timeNow + " sessioncount " +
+                    getActiveSessions());
         }
+        int expireHere = expireSessions(timeNow);
         long timeEnd = System.currentTimeMillis();
         if (log.isTraceEnabled()) {
             log.trace("End expire sessions " + getName() + " processingTime " + (timeEnd - timeNow) +
@@ -629,6 +726,79 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     }
 
 
+    /**
+     * Expire the sessions that have timed out. If {@link #isSessionExpirationIndexed()} returns {@code true}, only the
+     * sessions that are expected to have timed out at the given time are checked and the time spent is limited by
+     * {@link #getProcessExpiresMaxTime()}. Otherwise, every session is checked.
+     *
+     * @param timeNow The time at which the current check started
+     *
+     * @return the number of sessions that were expired
+     */
+    protected int expireSessions(long timeNow) {
+        int expired = 0;
+
+        if (!isSessionExpirationIndexed()) {
+            for (Session session : findSessions()) {
+                if (session != null && !session.isValid()) {
+                    expired++;
+                }
+            }
+            return expired;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(processExpiresMaxTime);
+        int checked = 0;
+        Session session;
+        while ((session = expirationQueue.poll(timeNow)) != null) {
+            String id = session.getIdInternal();
+            if (id == null || sessions.get(id) != session) {
+                // No longer managed by this manager
+                expirationQueue.remove(session);
+            } else if (!session.isValid()) {
+                expired++;
+            } else {
+                // Accessed since it was queued or currently in use
+                expirationQueue.reschedule(session, timeNow);
+            }
+            // Checking the time is relatively expensive so only do it periodically
+            if (processExpiresMaxTime > 0 && (++checked % 64) == 0 && System.nanoTime() - deadline > 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("managerBase.processExpires.maxTime", getName(),
+                            Integer.toString(processExpiresMaxTime), Integer.toString(checked)));
+                }
+                break;
+            }
+        }
+        return expired;
+    }
+
+
+    /**
+     * Are the sessions managed by this manager tracked in order of their expected expiration time so
+     * {@link #processExpires()} only needs to check the sessions that may have timed out? Managers that may hold
+     * sessions that were not passed to {@link #add(Session)} must return {@code false} so every session is checked.
+     *
+     * @return {@code true} if session expiration is tracked, otherwise {@code false}
+     */
+    protected boolean isSessionExpirationIndexed() {
+        return true;
+    }
+
+
+    /**
+     * Notify this manager that a change has been made to a session, other than an access, that may change the time at
+     * which the session expires.
+     *
+     * @param session The session
+     */
+    public void sessionExpirationChanged(Session session) {
+        if (isSessionExpirationIndexed()) {
+            expirationQueue.update(session);
+        }
+    }
+
+
     @Override
     protected void initInternal() throws LifecycleException {
         super.initInternal();
@@ -695,6 +865,9 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
     @Override
     public void add(Session session) {
         sessions.put(session.getIdInternal(), session);
+        if (isSessionExpirationIndexed()) {
+            expirationQueue.add(session);
+        }
         int size = getActiveSessions();
         if (size > maxActive) {
             synchronized (maxActiveUpdateLock) {
@@ -789,6 +962,7 @@ public abstract class ManagerBase extends LifecycleMBeanBase implements Manager
         if (session.getIdInternal() != null) {
             sessions.remove(session.getIdInternal());
         }
+        expirationQueue.remove(session);
     }
 
 
@@ -0,0 +1,886 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import jakarta.servlet.ServletContext;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Session;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.buf.ByteBufferUtils;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Concrete implementation of the <b>Store</b> interface that appends saved Sessions to a series of memory mapped
+ * segment files in a configured directory. An in-memory index maps each session identifier to the location of the
+ * most recent copy of the session so loading a session, listing the stored sessions and finding the sessions that have
+ * expired do not need to access the file system.
+ * <p>
+ * Saving or removing a session appends a record to the current segment. Once a segment is full a new one is started.
+ * Segments in which most of the records have been superseded are compacted by the background processor by copying
+ * the remaining current records to the end of the latest segment and deleting the old segment. On start, the index is
+ * rebuilt by reading the existing segments in order. Each record is protected by a checksum and any incomplete record
+ * left by a crash is ignored.
+ */
+public final class MappedFileStore extends StoreBase {
+
+    private static final Log log = LogFactory.getLog(MappedFileStore.class);
+    private static final StringManager sm = StringManager.getManager(MappedFileStore.class);
+
+
+    // ----------------------------------------------------- Constants
+
+    /**
+     * The extension to use for segment filenames.
+     */
+    private static final String FILE_EXT = ".segment";
+
+    private static final byte TYPE_SAVE = 1;
+    private static final byte TYPE_REMOVE = 2;
+
+    /*
+     * Record layout: int record length, byte type, long this accessed time, int max inactive interval, unsigned short
+     * session ID length, session ID (UTF-8), serialized session, int CRC32 of everything after the record length and
+     * before the CRC32. A record length of zero marks the end of the records in a segment.
+     */
+    private static final int HEADER_LENGTH = 19;
+    private static final int TRAILER_LENGTH = 4;
+
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The pathname of the directory in which the segments are stored. This may be an absolute pathname, or a relative
+     * path that is resolved against the temporary work directory for this application.
+     */
+    private volatile String directory = ".";
+
+    private volatile int segmentSize = 64 * 1024 * 1024;
+
+    private volatile int compactionThreshold = 50;
+
+    /**
+     * Location of the current copy of each stored session.
+     */
+    private final Map<String,Location> index = new ConcurrentHashMap<>();
+
+    /*
+     * Guards appending to the segments, the segments list and updates to the index.
+     */
+    private final Lock appendLock = new ReentrantLock();
+
+    /*
+     * Prevents a segment being unmapped while a session is being read from it.
+     */
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+
+    private final Lock compactionLock = new ReentrantLock();
+
+    // Guarded by appendLock. Ordered oldest first.
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active = null;
+    private long nextSequence = 0;
+
+    /**
+     * Name to register for this Store, used for logging.
+     */
+    private static final String storeName = "mappedFileStore";
+
+
+    /**
+     * Default constructor for MappedFileStore.
+     */
+    public MappedFileStore() {
+        // Default constructor
+    }
+
+
+    // ------------------------------------------------------------- Properties
+
+    /**
+     * Returns the directory path where the segment files are stored.
+     *
+     * @return The directory path for this Store
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+
+    /**
+     * Set the directory path for this Store. Changes take effect the next time the Store is started.
+     *
+     * @param path The new directory path
+     */
+    public void setDirectory(String path) {
+        String oldDirectory = this.directory;
+        this.directory = path;
+        support.firePropertyChange("directory", oldDirectory, this.directory);
+    }
+
+
+    /**
+     * @return the size in bytes of each segment file
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+
+    /**
+     * Set the size in bytes of each segment file. Sessions larger than this are written to a segment created to fit
+     * the session.
+     *
+     * @param segmentSize The new segment size
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+
+    /**
+     * @return the percentage of a segment that must consist of superseded records before the segment is compacted
+     */
+    public int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+
+    /**
+     * Set the percentage of a segment that must consist of superseded records before the segment is compacted.
+     *
+     * @param compactionThreshold The new compaction threshold
+     */
+    public void setCompactionThreshold(int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+
+    /**
+     * @return the number of segment files currently in use
+     */
+    public int getSegmentCount() {
+        appendLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+
+    @Override
+    public String getStoreName() {
+        return storeName;
+    }
+
+
+    @Override
+    public int getSize() throws IOException {
+        return index.size();
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+    @Override
+    public void clear() throws IOException {
+        compactionLock.lock();
+        appendLock.lock();
+        try {
+            checkStarted();
+            segmentsLock.writeLock().lock();
+            try {
+                index.clear();
+                for (Segment segment : segments) {
+                    close(segment, true);
+                }
+                segments.clear();
+                active = null;
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+            newSegment(0);
+        } finally {
+            appendLock.unlock();
+            compactionLock.unlock();
+        }
+    }
+
+
+    @Override
+    public String[] keys() throws IOException {
+        return index.keySet().toArray(new String[0]);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The index records the last access time and maximum inactive interval of each session so the sessions do not
+     * need to be loaded to determine which have expired.
+     */
+    @Override
+    public String[] expiredKeys() throws IOException {
+        long timeNow = System.currentTimeMillis();
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String,Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.maxInactiveInterval <= 0) {
+                // The session never expires
+                continue;
+            }
+            int timeIdle = (int) ((timeNow - location.thisAccessedTime) / 1000L);
+            if (timeIdle >= location.maxInactiveInterval) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys.toArray(new String[0]);
+    }
+
+
+    @Override
+    public Session load(String id) throws ClassNotFoundException, IOException {
+        byte[] data;
+        Location location;
+        segmentsLock.readLock().lock();
+        try {
+            location = index.get(id);
+            if (location == null) {
+                return null;
+            }
+            data = new byte[location.dataLength()];
+            location.segment.buffer.get(location.dataOffset(), data);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+
+        Context context = getManager().getContext();
+        Log contextLog = context.getLogger();
+
+        if (contextLog.isTraceEnabled()) {
+            contextLog.trace(sm.getString("mappedFileStore.loading", id, location.segment.file.getAbsolutePath()));
+        }
+
+        ClassLoader oldThreadContextCL = context.bind(null);
+        try (ObjectInputStream ois = getObjectInputStream(new ByteArrayInputStream(data))) {
+            StandardSession session = (StandardSession) manager.createEmptySession();
+            session.readObjectData(ois);
+            session.setManager(manager);
+            return session;
+        } finally {
+            context.unbind(oldThreadContextCL);
+        }
+    }
+
+
+    @Override
+    public void remove(String id) throws IOException {
+        if (manager.getContext().getLogger().isTraceEnabled()) {
+            manager.getContext().getLogger().trace(sm.getString("mappedFileStore.removing", id));
+        }
+
+        appendLock.lock();
+        try {
+            checkStarted();
+            Location old = index.remove(id);
+            if (old != null) {
+                old.segment.liveBytes -= old.length;
+                // Only required if an earlier record for the session exists
+                append(record(TYPE_REMOVE, id, 0, 0, new byte[0]));
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+
+    @Override
+    public void save(Session session) throws IOException {
+        save(new Session[] { session });
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sessions are serialized before any of them are appended so concurrent saves only wait for each other while
+     * the serialized sessions are copied to the segment.
+     */
+    @Override
+    public void save(Session[] sessions) throws IOException {
+        byte[][] records = new byte[sessions.length][];
+        for (int i = 0; i < sessions.length; i++) {
+            Session session = sessions[i];
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = getObjectOutputStream(bos)) {
+                ((StandardSession) session).writeObjectData(oos);
+            }
+            records[i] = record(TYPE_SAVE, session.getIdInternal(), session.getThisAccessedTimeInternal(),
+                    session.getMaxInactiveInterval(), bos.toByteArray());
+        }
+
+        appendLock.lock();
+        try {
+            checkStarted();
+            for (int i = 0; i < records.length; i++) {
+                Location location = append(records[i]);
+                location.segment.liveBytes += location.length;
+                Location old = index.put(sessions[i].getIdInternal(), location);
+                if (old != null) {
+                    old.segment.liveBytes -= old.length;
+                }
+                if (manager.getContext().getLogger().isTraceEnabled()) {
+                    manager.getContext().getLogger().trace(sm.getString("mappedFileStore.saving",
+                            sessions[i].getIdInternal(), location.segment.file.getAbsolutePath()));
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Once the expired sessions have been removed, any segments where the proportion of superseded records has reached
+     * the compaction threshold are compacted.
+     */
+    @Override
+    public void processExpires() {
+        super.processExpires();
+        compact();
+    }
+
+
+    // ------------------------------------------------------ Lifecycle Methods
+
+    @Override
+    protected void startInternal() throws LifecycleException {
+        appendLock.lock();
+        try {
+            recover(directory());
+            newSegment(0);
+        } catch (IOException ioe) {
+            throw new LifecycleException(ioe);
+        } finally {
+            appendLock.unlock();
+        }
+
+        super.startInternal();
+    }
+
+
+    @Override
+    protected void stopInternal() throws LifecycleException {
+        super.stopInternal();
+
+        // Wait for any compaction in progress to finish
+        compactionLock.lock();
+        appendLock.lock();
+        try {
+            segmentsLock.writeLock().lock();
+            try {
+                index.clear();
+                for (Segment segment : segments) {
+                    close(segment, false);
+                }
+                segments.clear();
+                active = null;
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+        } finally {
+            appendLock.unlock();
+            compactionLock.unlock();
+        }
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+    private void checkStarted() throws IOException {
+        if (active == null) {
+            throw new IOException(sm.getString("mappedFileStore.notStarted"));
+        }
+    }
+
+
+    private static byte[] record(byte type, String id, long thisAccessedTime, int maxInactiveInterval, byte[] data)
+            throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > 0xFFFF) {
+            throw new IOException(sm.getString("mappedFileStore.idTooLong", id));
+        }
+        int length = HEADER_LENGTH + idBytes.length + data.length + TRAILER_LENGTH;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length);
+        record.put(type);
+        record.putLong(thisAccessedTime);
+        record.putInt(maxInactiveInterval);
+        record.putShort((short) idBytes.length);
+        record.put(idBytes);
+        record.put(data);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length - 4 - TRAILER_LENGTH);
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+
+
+    /*
+     * Must be called while holding appendLock.
+     */
+    private Location append(byte[] record) throws IOException {
+        Segment segment = active;
+        if (segment.buffer.capacity() - segment.position < record.length) {
+            segment = newSegment(record.length);
+        }
+        int offset = segment.position;
+        segment.buffer.put(offset, record);
+        segment.position += record.length;
+        return new Location(segment, offset);
+    }
+
+
+    /*
+     * Must be called while holding appendLock.
+     */
+    private Segment newSegment(int minimumSize) throws IOException {
+        File file = new File(directory(), String.format("%019d", Long.valueOf(nextSequence++)) + FILE_EXT);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minimumSize));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        Segment segment = new Segment(file, channel, buffer, true);
+        segments.add(segment);
+        active = segment;
+        return segment;
+    }
+
+
+    /*
+     * Rebuild the index from the segments found in the given directory. Must be called while holding appendLock.
+     */
+    private void recover(File dir) throws IOException {
+        long start = System.currentTimeMillis();
+        index.clear();
+        segments.clear();
+        nextSequence = 0;
+
+        List<Long> sequences = new ArrayList<>();
+        String[] files = dir.list();
+        if (files != null) {
+            for (String file : files) {
+                if (file.endsWith(FILE_EXT)) {
+                    try {
+                        sequences.add(Long.valueOf(file.substring(0, file.length() - FILE_EXT.length())));
+                    } catch (NumberFormatException e) {
+                        // Not a segment
+                    }
+                }
+            }
+        }
+        sequences.sort(null);
+
+        for (Long sequence : sequences) {
+            File file = new File(dir, String.format("%019d", sequence) + FILE_EXT);
+            nextSequence = sequence.longValue() + 1;
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment;
+            try {
+                int size = (int) Math.min(channel.size(), Integer.MAX_VALUE);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                int length = validLength(file, buffer);
+                if (length < size) {
+                    // Discard unused space and any incomplete record left by a crash
+                    ByteBufferUtils.cleanDirectBuffer(buffer);
+                    channel.truncate(length);
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                }
+                segment = new Segment(file, channel, buffer, false);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            if (segment.buffer.capacity() == 0) {
+                close(segment, true);
+            } else {
+                replay(segment);
+                segments.add(segment);
+            }
+        }
+
+        if (manager.getContext().getLogger().isDebugEnabled()) {
+            manager.getContext().getLogger().debug(sm.getString("mappedFileStore.recovered",
+                    Integer.toString(index.size()), Integer.toString(segments.size()),
+                    Long.toString(System.currentTimeMillis() - start)));
+        }
+    }
+
+
+    /*
+     * Return the length of the records in the given segment, stopping at the end of the records or at the first record
+     * that is incomplete or fails the checksum.
+     */
+    private static int validLength(File file, ByteBuffer buffer) {
+        int pos = 0;
+        while (buffer.capacity() - pos >= 4) {
+            int length = buffer.getInt(pos);
+            if (length == 0) {
+                break;
+            }
+            if (!isValid(buffer, pos, length)) {
+                log.warn(sm.getString("mappedFileStore.invalidRecord", file.getAbsolutePath(), Integer.toString(pos)));
+                break;
+            }
+            pos += length;
+        }
+        return pos;
+    }
+
+
+    /*
+     * Apply the records in the given segment, which must all be valid, to the index.
+     */
+    private void replay(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int pos = 0;
+        while (pos < buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            Location location = new Location(segment, pos);
+            String id = readId(buffer, pos);
+            Location old;
+            if (buffer.get(pos + 4) == TYPE_SAVE) {
+                segment.liveBytes += length;
+                old = index.put(id, location);
+            } else {
+                old = index.remove(id);
+            }
+            if (old != null) {
+                old.segment.liveBytes -= old.length;
+            }
+            pos += length;
+        }
+        segment.position = pos;
+    }
+
+
+    private static boolean isValid(ByteBuffer buffer, int pos, int length) {
+        if (length < HEADER_LENGTH + TRAILER_LENGTH || length > buffer.capacity() - pos) {
+            return false;
+        }
+        byte type = buffer.get(pos + 4);
+        if (type != TYPE_SAVE && type != TYPE_REMOVE) {
+            return false;
+        }
+        int idLength = Short.toUnsignedInt(buffer.getShort(pos + 17));
+        if (HEADER_LENGTH + idLength + TRAILER_LENGTH > length) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(pos + 4, length - 4 - TRAILER_LENGTH));
+        return (int) crc.getValue() == buffer.getInt(pos + length - TRAILER_LENGTH);
+    }
+
+
+    private static String readId(ByteBuffer buffer, int pos) {
+        byte[] id = new byte[Short.toUnsignedInt(buffer.getShort(pos + 17))];
+        buffer.get(pos + HEADER_LENGTH, id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+
+    /*
+     * Compact each segment, other than the one currently being written, where the proportion of superseded records has
+     * reached the threshold.
+     */
+    private void compact() {
+        if (!compactionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!getState().isAvailable()) {
+                return;
+            }
+            List<Segment> candidates = new ArrayList<>();
+            appendLock.lock();
+            try {
+                for (Segment segment : segments) {
+                    if (segment != active &&
+                            (segment.position - segment.liveBytes) * 100 >= (long) segment.position * compactionThreshold) {
+                        candidates.add(segment);
+                    }
+                }
+            } finally {
+                appendLock.unlock();
+            }
+            for (Segment segment : candidates) {
+                try {
+                    compact(segment);
+                } catch (IOException ioe) {
+                    manager.getContext().getLogger().error(
+                            sm.getString("mappedFileStore.compactFail", segment.file.getAbsolutePath()), ioe);
+                    // The segment is still consistent. Try again next time.
+                    return;
+                }
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+
+    /*
+     * Copy the current records from the given segment to the end of the active segment and then delete the given
+     * segment. Must be called while holding compactionLock.
+     */
+    private void compact(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer;
+        Set<Segment> targets = new HashSet<>();
+        int moved = 0;
+        int pos = 0;
+        while (pos < segment.position) {
+            int length = buffer.getInt(pos);
+            String id = readId(buffer, pos);
+            appendLock.lock();
+            try {
+                Location current = index.get(id);
+                boolean copy;
+                if (buffer.get(pos + 4) == TYPE_SAVE) {
+                    copy = current != null && current.segment == segment && current.offset == pos;
+                } else {
+                    /*
+                     * A removal only needs to be retained if the session has not been saved again since and an older
+                     * segment, that may include an earlier copy of the session, still exists.
+                     */
+                    copy = current == null && segments.get(0) != segment;
+                }
+                if (copy) {
+                    byte[] record = new byte[length];
+                    buffer.get(pos, record);
+                    Location location = append(record);
+                    targets.add(location.segment);
+                    if (current != null) {
+                        segment.liveBytes -= length;
+                        location.segment.liveBytes += length;
+                        index.put(id, location);
+                        moved++;
+                    }
+                }
+            } finally {
+                appendLock.unlock();
+            }
+            pos += length;
+        }
+
+        /*
+         * The copies must reach the disk before the segment holding the only other copy of the records is deleted. If
+         * this fails the segment is retained and compaction will be attempted again later.
+         */
+        sync(targets);
+
+        appendLock.lock();
+        try {
+            segmentsLock.writeLock().lock();
+            try {
+                if (segments.remove(segment)) {
+                    close(segment, true);
+                }
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (manager.getContext().getLogger().isDebugEnabled()) {
+            manager.getContext().getLogger().debug(sm.getString("mappedFileStore.compacted",
+                    segment.file.getAbsolutePath(), Integer.toString(moved)));
+        }
+    }
+
+
+    /*
+     * Flush the given segments, and the directory that contains them, to the disk. The read lock of segmentsLock is
+     * held so none of the segments can be unmapped while they are flushed.
+     */
+    private void sync(Set<Segment> targets) throws IOException {
+        if (targets.isEmpty()) {
+            return;
+        }
+        segmentsLock.readLock().lock();
+        try {
+            for (Segment target : targets) {
+                if (segments.contains(target)) {
+                    target.buffer.force();
+                    target.channel.force(true);
+                }
+            }
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+        // Make sure the entries for any segments created while copying are persistent
+        File dir = directory();
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ioe) {
+            // Not all platforms (e.g. Windows) support opening a directory
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("mappedFileStore.syncDirectoryFail", dir.getAbsolutePath()), ioe);
+            }
+        }
+    }
+
+
+    /*
+     * Must be called while holding the write lock of segmentsLock, or before the segment has been made visible, as the
+     * mapping is no longer valid once this method returns.
+     */
+    private void close(Segment segment, boolean delete) {
+        try {
+            if (segment.writable && !delete) {
+                segment.buffer.force();
+            }
+            ByteBufferUtils.cleanDirectBuffer(segment.buffer);
+            if (segment.writable && !delete) {
+                // Release the unused space at the end of the segment
+                segment.channel.truncate(segment.position);
+            }
+            segment.channel.close();
+        } catch (IOException ioe) {
+            log.warn(sm.getString("mappedFileStore.closeFail", segment.file.getAbsolutePath()), ioe);
+        }
+        if (delete) {
+            delete(segment.file);
+        }
+    }
+
+
+    private void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException ioe) {
+            log.warn(sm.getString("mappedFileStore.deleteFail", file.getAbsolutePath()), ioe);
+        }
+    }
+
+
+    /**
+     * Return a File object representing the pathname to our segment directory. The directory will be created if it
+     * does not already exist.
+     */
+    private File directory() throws IOException {
+        File file = new File(this.directory);
+        if (!file.isAbsolute()) {
+            Context context = manager.getContext();
+            ServletContext servletContext = context.getServletContext();
+            File work = (File) servletContext.getAttribute(ServletContext.TEMPDIR);
+            file = new File(work, this.directory);
+        }
+        if (!file.exists() || !file.isDirectory()) {
+            if (!file.delete() && file.exists()) {
+                throw new IOException(sm.getString("fileStore.deleteFailed", file));
+            }
+            if (!file.mkdirs() && !file.isDirectory()) {
+                throw new IOException(sm.getString("fileStore.createFailed", file));
+            }
+        }
+        return file;
+    }
+
+
+    private static final class Segment {
+
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final boolean writable;
+
+        // Guarded by appendLock
+        private int position;
+        private long liveBytes;
+
+        Segment(File file, FileChannel channel, MappedByteBuffer buffer, boolean writable) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.writable = writable;
+        }
+    }
+
+
+    private static final class Location {
+
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final int idLength;
+        private final long thisAccessedTime;
+        private final int maxInactiveInterval;
+
+        Location(Segment segment, int offset) {
+            ByteBuffer buffer = segment.buffer;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = buffer.getInt(offset);
+            this.thisAccessedTime = buffer.getLong(offset + 5);
+            this.maxInactiveInterval = buffer.getInt(offset + 13);
+            this.idLength = Short.toUnsignedInt(buffer.getShort(offset + 17));
+        }
+
+        int dataOffset() {
+            return offset + HEADER_LENGTH + idLength;
+        }
+
+        int dataLength() {
+            return length - HEADER_LENGTH - idLength - TRAILER_LENGTH;
+        }
+    }
+}
@@ -111,6 +111,28 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
     private final ThreadLocal<Session> sessionToSwapIn = new ThreadLocal<>();
 
 
+    /**
+     * Should sessions that are backed up or swapped out be written to the Store by a separate thread?
+     */
+    private boolean writeBehind = false;
+
+
+    /**
+     * The maximum number of sessions that may be waiting to be written to the Store when {@link #writeBehind} is
+     * enabled.
+     */
+    private int writeBehindMaxQueueSize = 10000;
+
+
+    /**
+     * The maximum number of sessions passed to the Store in a single call when {@link #writeBehind} is enabled.
+     */
+    private int writeBehindBatchSize = 100;
+
+
+    private volatile WriteBehindQueue writeBehindQueue = null;
+
+
     // ------------------------------------------------------------- Properties
 
 
@@ -217,6 +239,124 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
     }
 
 
+    /**
+     * Are sessions that are backed up or swapped out written to the Store by a separate thread?
+     *
+     * @return {@code true} if sessions are written to the Store by a separate thread, {@code false} if they are
+     *             written by the thread that backs up or swaps out the session
+     */
+    public boolean getWriteBehind() {
+        return writeBehind;
+    }
+
+
+    /**
+     * Configure whether sessions that are backed up or swapped out are written to the Store by a separate thread.
+     * Writes of the same session that are waiting to be written are combined and waiting writes are passed to the Store
+     * in batches. This setting takes effect the next time the Manager is started.
+     *
+     * @param writeBehind {@code true} if sessions should be written to the Store by a separate thread
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+
+    /**
+     * @return the maximum number of sessions that may be waiting to be written to the Store by the write behind thread
+     */
+    public int getWriteBehindMaxQueueSize() {
+        return writeBehindMaxQueueSize;
+    }
+
+
+    /**
+     * Set the maximum number of sessions that may be waiting to be written to the Store by the write behind thread.
+     * When the limit is reached, sessions are written by the thread that backs up or swaps out the session until space
+     * becomes available. This setting takes effect the next time the Manager is started.
+     *
+     * @param writeBehindMaxQueueSize the maximum number of waiting sessions
+     */
+    public void setWriteBehindMaxQueueSize(int writeBehindMaxQueueSize) {
+        this.writeBehindMaxQueueSize = writeBehindMaxQueueSize;
+    }
+
+
+    /**
+     * @return the maximum number of sessions passed to the Store in a single call by the write behind thread
+     */
+    public int getWriteBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+
+
+    /**
+     * Set the maximum number of sessions passed to the Store in a single call by the write behind thread. This setting
+     * takes effect the next time the Manager is started.
+     *
+     * @param writeBehindBatchSize the maximum number of sessions per call
+     */
+    public void setWriteBehindBatchSize(int writeBehindBatchSize) {
+        this.writeBehindBatchSize = writeBehindBatchSize;
+    }
+
+
+    /**
+     * @return the number of sessions waiting to be written, or being written, to the Store by the write behind thread
+     */
+    public int getWriteBehindQueueSize() {
+        WriteBehindQueue queue = writeBehindQueue;
+        return queue == null ? 0 : queue.getQueueSize();
+    }
+
+
+    /**
+     * @return the number of sessions written to the Store by the write behind thread
+     */
+    public long getWriteBehindWrites() {
+        WriteBehindQueue queue = writeBehindQueue;
+        return queue == null ? 0 : queue.getWrites();
+    }
+
+
+    /**
+     * @return the number of writes that were combined with a write of the same session that was already waiting
+     */
+    public long getWriteBehindCoalesced() {
+        WriteBehindQueue queue = writeBehindQueue;
+        return queue == null ? 0 : queue.getCoalesced();
+    }
+
+
+    /**
+     * @return the number of sessions that were written to the Store by the thread that backed up or swapped out the
+     *             session because the write behind queue was full
+     */
+    public long getWriteBehindRejected() {
+        WriteBehindQueue queue = writeBehindQueue;
+        return queue == null ? 0 : queue.getRejected();
+    }
+
+
+    /**
+     * @return the number of sessions the write behind thread failed to write to the Store
+     */
+    public long getWriteBehindFailures() {
+        WriteBehindQueue queue = writeBehindQueue;
+        return queue == null ? 0 : queue.getFailures();
+    }
+
+
+    /**
+     * @return the number of swapped out sessions that were needed again before they had been written to the Store and
+     *             were restored without reading the Store
+     */
+    public long getWriteBehindHits() {
+        WriteBehindQueue queue = writeBehindQueue;
+        return queue == null ? 0 : queue.getHits();
+    }
+
+
     /**
      * Check, whether a session is loaded in memory
      *
@@ -305,6 +445,11 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
             return;
         }
 
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.clear();
+        }
+
         try {
             store.clear();
         } catch (IOException ioe) {
@@ -323,16 +468,11 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
     public void processExpires() {
 
         long timeNow = System.currentTimeMillis();
-        Session[] sessions = findSessions();
-        int expireHere = 0;
         if (log.isTraceEnabled()) {
-            log.trace("Start expire sessions " + getName() + " at " + timeNow + " sessioncount " + sessions.length);
-        }
-        for (Session session : sessions) {
-            if (!session.isValid()) {
-                expireHere++;
-            }
+            log.trace("Start expire sessions " + getName() + " at " + timeNow + " sessioncount " +
+                    getActiveSessions());
         }
+        int expireHere = expireSessions(timeNow);
         processPersistenceChecks();
         if (getStore() instanceof StoreBase) {
             ((StoreBase) getStore()).processExpires();
@@ -402,6 +542,26 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
         super.remove(session, false);
     }
 
+
+    @Override
+    public Session loadFromStore(String id) throws ClassNotFoundException, IOException {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue == null) {
+            return store.load(id);
+        }
+        return queue.load(id);
+    }
+
+
+    @Override
+    public void saveToStore(Session session) throws IOException {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.cancel(session.getIdInternal());
+        }
+        store.save(session);
+    }
+
     /**
      * Load all sessions found in the persistence mechanism, assuming they are marked as valid and have not passed their
      * expiration limit. If persistence is not supported, this method returns without doing anything.
@@ -414,6 +574,7 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
 
         // Initialize our internal data structures
         sessions.clear();
+        expirationQueue.clear();
 
         if (store == null) {
             return;
@@ -469,6 +630,11 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
      * @param id Session's id to be removed
      */
     protected void removeSession(String id) {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null && queue.remove(id)) {
+            // The write behind thread will remove the session
+            return;
+        }
         try {
             store.remove(id);
         } catch (IOException ioe) {
@@ -629,7 +795,7 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
 
     private Session loadSessionFromStore(String id) throws IOException {
         try {
-            return store.load(id);
+            return loadFromStore(id);
         } catch (ClassNotFoundException e) {
             String msg = sm.getString("persistentManager.deserializeError", id);
             log.error(msg, e);
@@ -653,6 +819,21 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
         }
 
         ((StandardSession) session).passivate();
+
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            /*
+             * The write behind thread recycles the session once it has been written. Hold the session lock so that
+             * can't happen before the session has been removed from memory.
+             */
+            synchronized (session) {
+                if (queue.save(session, true)) {
+                    super.remove(session, false);
+                    return;
+                }
+            }
+        }
+
         writeSession(session);
         super.remove(session, false);
         session.recycle();
@@ -660,6 +841,40 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
     }
 
 
+    /**
+     * Return a swapped out session to memory after the write behind thread failed to write it to the Store.
+     *
+     * @param session The session
+     */
+    void restoreSession(Session session) {
+        if (sessions.putIfAbsent(session.getIdInternal(), session) == null) {
+            if (isSessionExpirationIndexed()) {
+                expirationQueue.add(session);
+            }
+            ((StandardSession) session).activate();
+        }
+    }
+
+
+    /**
+     * Write the provided session to the Store, using the write behind thread if enabled, without modifying the copy in
+     * memory or triggering passivation events.
+     *
+     * @param session The session that should be written
+     */
+    private void backupSession(Session session) {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null && session.isValid() && queue.save(session, false)) {
+            return;
+        }
+        try {
+            writeSession(session);
+        } catch (IOException ignore) {
+            // This is logged in writeSession()
+        }
+    }
+
+
     /**
      * Write the provided session to the Store without modifying the copy in memory or triggering passivation events.
      * Does nothing if the session is invalid or past its expiration.
@@ -702,6 +917,12 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
             ((Lifecycle) store).start();
         }
 
+        if (store != null && writeBehind) {
+            WriteBehindQueue queue = new WriteBehindQueue(this, writeBehindMaxQueueSize, writeBehindBatchSize);
+            queue.start("PersistentManagerWriteBehind[" + getContext().getName() + "]");
+            writeBehindQueue = queue;
+        }
+
         setState(LifecycleState.STARTING);
     }
 
@@ -736,6 +957,12 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
             }
         }
 
+        // Complete any outstanding writes before stopping the Store
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.stop();
+        }
+
         if (getStore() instanceof Lifecycle) {
             ((Lifecycle) getStore()).stop();
         }
@@ -866,11 +1093,7 @@ public abstract class PersistentManagerBase extends ManagerBase implements Store
                                 Integer.valueOf(timeIdle)));
                     }
 
-                    try {
-                        writeSession(session);
-                    } catch (IOException ignore) {
-                        // This is logged in writeSession()
-                    }
+                    backupSession(session);
                     session.setNote(PERSISTED_LAST_ACCESSED_TIME, Long.valueOf(lastAccessedTime));
                 }
             }
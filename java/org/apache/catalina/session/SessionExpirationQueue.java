@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.catalina.Session;
+
+/**
+ * Orders the sessions of a {@link ManagerBase} by the time at which they are next expected to expire so the background
+ * processor only has to examine sessions that may have timed out.
+ * <p>
+ * Requests only ever move the expiration time of a session later so access to a session does not update the queue.
+ * Instead, a session that is found to still be valid when it reaches the head of the queue is placed back in the queue
+ * based on its current last accessed time. Changes that may move the expiration time earlier, such as reducing the
+ * maximum inactive interval, must call {@link #update(Session)}.
+ */
+final class SessionExpirationQueue {
+
+    private final ConcurrentSkipListSet<Entry> queue = new ConcurrentSkipListSet<>();
+    private final Map<Session,Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+
+    /**
+     * Start tracking the given session, replacing any existing entry for it.
+     *
+     * @param session The session
+     */
+    void add(Session session) {
+        entries.compute(session, (s, old) -> schedule(s, old, 0));
+    }
+
+
+    /**
+     * Recalculate the expiration time of the given session if it is being tracked.
+     *
+     * @param session The session
+     */
+    void update(Session session) {
+        entries.computeIfPresent(session, (s, old) -> schedule(s, old, 0));
+    }
+
+
+    /**
+     * Stop tracking the given session.
+     *
+     * @param session The session
+     */
+    void remove(Session session) {
+        Entry entry = entries.remove(session);
+        if (entry != null) {
+            queue.remove(entry);
+        }
+    }
+
+
+    void clear() {
+        entries.clear();
+        queue.clear();
+    }
+
+
+    /**
+     * @return the number of sessions with a finite expiration time that are being tracked
+     */
+    int size() {
+        return queue.size();
+    }
+
+
+    /**
+     * Remove and return the session at the head of the queue if it is expected to have expired at the given time. The
+     * session remains tracked and must either be passed to {@link #reschedule(Session, long)} or {@link #remove(Session)}.
+     *
+     * @param timeNow The current time
+     *
+     * @return The session or {@code null} if no tracked session is expected to have expired
+     */
+    Session poll(long timeNow) {
+        Iterator<Entry> iter = queue.iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (entry.expirationTime > timeNow) {
+                return null;
+            }
+            if (queue.remove(entry) && entries.get(entry.session) == entry) {
+                return entry.session;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Recalculate the expiration time of a session returned by {@link #poll(long)} that is still valid. The new
+     * expiration time will be after the given time so the session will not be returned again by the current pass over
+     * the queue.
+     *
+     * @param session The session
+     * @param timeNow The time used for the current pass over the queue
+     */
+    void reschedule(Session session, long timeNow) {
+        entries.computeIfPresent(session, (s, old) -> schedule(s, old, timeNow + 1));
+    }
+
+
+    private Entry schedule(Session session, Entry old, long earliest) {
+        if (old != null) {
+            queue.remove(old);
+        }
+        long expirationTime;
+        int maxInactiveInterval = session.getMaxInactiveInterval();
+        if (maxInactiveInterval > 0) {
+            expirationTime = Math.max(System.currentTimeMillis() - session.getIdleTimeInternal() +
+                    maxInactiveInterval * 1000L, earliest);
+        } else {
+            expirationTime = Long.MAX_VALUE;
+        }
+        Entry entry = new Entry(session, expirationTime, sequence.getAndIncrement());
+        if (expirationTime != Long.MAX_VALUE) {
+            // Sessions that never time out are tracked so a later update can schedule them but are not queued
+            queue.add(entry);
+        }
+        return entry;
+    }
+
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final Session session;
+        private final long expirationTime;
+        private final long sequence;
+
+        Entry(Session session, long expirationTime, long sequence) {
+            this.session = session;
+            this.expirationTime = expirationTime;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = Long.compare(expirationTime, o.expirationTime);
+            if (result == 0) {
+                result = Long.compare(sequence, o.sequence);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Creates the streams used to write sessions to, and read sessions from, a byte representation. It is used by the
+ * {@link ManagerBase} when sessions are persisted on shutdown, swapped out to a {@link org.apache.catalina.Store} or
+ * replicated to other cluster nodes.
+ * <p>
+ * Implementations must be thread-safe. All state associated with a particular serialized form must be held by the
+ * streams.
+ */
+public interface SessionSerializer {
+
+    /**
+     * Create the stream that will be used to write one or more sessions.
+     *
+     * @param os The stream to which the serialized form should be written
+     *
+     * @return The stream to pass to {@link StandardSession#writeObjectData(ObjectOutputStream)}
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    ObjectOutputStream createObjectOutputStream(OutputStream os) throws IOException;
+
+
+    /**
+     * Create the stream that will be used to read one or more sessions.
+     *
+     * @param is                The stream from which the serialized form should be read
+     * @param javaStreamFactory Creates the Java serialization stream, with the class loaders and class name filtering
+     *                              configured for the Manager, that must be used to read any objects that were written
+     *                              with Java serialization
+     *
+     * @return The stream to pass to {@link StandardSession#readObjectData(ObjectInputStream)}
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    ObjectInputStream createObjectInputStream(InputStream is, ObjectInputStreamFactory javaStreamFactory)
+            throws IOException;
+
+
+    /**
+     * Creates a Java serialization stream for a given input stream.
+     */
+    @FunctionalInterface
+    interface ObjectInputStreamFactory {
+
+        /**
+         * Create a Java serialization stream.
+         *
+         * @param is The stream from which the serialized form should be read
+         *
+         * @return The Java serialization stream
+         *
+         * @throws IOException If the stream cannot be created
+         */
+        ObjectInputStream create(InputStream is) throws IOException;
+    }
+}
@@ -35,7 +35,6 @@ import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
 import org.apache.catalina.Loader;
 import org.apache.catalina.Session;
-import org.apache.catalina.util.CustomObjectInputStream;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
@@ -117,6 +116,7 @@ public class StandardManager extends ManagerBase {
 
         // Initialize our internal data structures
         sessions.clear();
+        expirationQueue.clear();
 
         // Open an input stream to the specified pathname, if any
         File file = file();
@@ -128,12 +128,10 @@ public class StandardManager extends ManagerBase {
         }
         Loader loader;
         ClassLoader classLoader = null;
-        Log logger;
         try (FileInputStream fis = new FileInputStream(file.getAbsolutePath());
                 BufferedInputStream bis = new BufferedInputStream(fis)) {
             Context c = getContext();
             loader = c.getLoader();
-            logger = c.getLogger();
             if (loader != null) {
                 classLoader = loader.getClassLoader();
             }
@@ -143,8 +141,7 @@ public class StandardManager extends ManagerBase {
 
             // Load the previously unloaded active sessions
             synchronized (sessions) {
-                try (ObjectInputStream ois = new CustomObjectInputStream(bis, classLoader, logger,
-                        getSessionAttributeValueClassNamePattern(), getWarnOnSessionAttributeFilterFailure())) {
+                try (ObjectInputStream ois = getSessionObjectInputStream(bis, classLoader)) {
                     Integer count = (Integer) ois.readObject();
                     int n = count.intValue();
                     if (log.isTraceEnabled()) {
@@ -154,7 +151,7 @@ public class StandardManager extends ManagerBase {
                         StandardSession session = getNewSession();
                         session.readObjectData(ois);
                         session.setManager(this);
-                        sessions.put(session.getIdInternal(), session);
+                        add(session);
                         session.activate();
                         if (!session.isValidInternal()) {
                             // If session is already invalid,
@@ -211,7 +208,7 @@ public class StandardManager extends ManagerBase {
 
         try (FileOutputStream fos = new FileOutputStream(file.getAbsolutePath());
                 BufferedOutputStream bos = new BufferedOutputStream(fos);
-                ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+                ObjectOutputStream oos = getSessionObjectOutputStream(bos)) {
 
             synchronized (sessions) {
                 if (log.isTraceEnabled()) {
@@ -439,6 +439,9 @@ public class StandardSession implements HttpSession, Session, Serializable {
     @Override
     public void setMaxInactiveInterval(int interval) {
         this.maxInactiveInterval = interval;
+        if (manager instanceof ManagerBase managerBase) {
+            managerBase.sessionExpirationChanged(this);
+        }
     }
 
 
@@ -19,9 +19,12 @@ package org.apache.catalina.session;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
@@ -201,13 +204,11 @@ public abstract class StoreBase extends LifecycleBase implements Store {
     protected ObjectInputStream getObjectInputStream(InputStream is) throws IOException {
         BufferedInputStream bis = new BufferedInputStream(is);
 
-        CustomObjectInputStream ois;
+        ObjectInputStream ois;
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 
         if (manager instanceof ManagerBase managerBase) {
-            ois = new CustomObjectInputStream(bis, classLoader, manager.getContext().getLogger(),
-                    managerBase.getSessionAttributeValueClassNamePattern(),
-                    managerBase.getWarnOnSessionAttributeFilterFailure());
+            ois = managerBase.getSessionObjectInputStream(bis, classLoader);
         } else {
             ois = new CustomObjectInputStream(bis, classLoader);
         }
@@ -216,6 +217,26 @@ public abstract class StoreBase extends LifecycleBase implements Store {
     }
 
 
+    /**
+     * Create the object output stream to use to write a session to the store.
+     *
+     * @param os The output stream provided by the subclass to which the data for a session will be written
+     *
+     * @return An appropriately configured ObjectOutputStream to which the session can be written.
+     *
+     * @throws IOException if a problem occurs creating the ObjectOutputStream
+     */
+    protected ObjectOutputStream getObjectOutputStream(OutputStream os) throws IOException {
+        BufferedOutputStream bos = new BufferedOutputStream(os);
+
+        if (manager instanceof ManagerBase managerBase) {
+            return managerBase.getSessionObjectOutputStream(bos);
+        } else {
+            return new ObjectOutputStream(bos);
+        }
+    }
+
+
     @Override
     protected void initInternal() {
         // NOOP
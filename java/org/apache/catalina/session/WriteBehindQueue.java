@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Session;
+import org.apache.catalina.Store;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Writes sessions to the {@link Store} of a {@link PersistentManagerBase} on a dedicated thread so the thread that
+ * backs up or swaps out a session does not wait for the Store.
+ * <p>
+ * There is at most one queued write per session. Writing a session that is already queued replaces the queued write.
+ * Queued writes are passed to the Store in batches via {@link Store#save(Session[])}. When the queue is full,
+ * {@link #save(Session, boolean)} returns {@code false} and the caller is expected to write the session itself.
+ * <p>
+ * The queue also ensures that operations for a session are applied to the Store in order. A session that is swapped
+ * out and then needed again before it has been written is handed back from the queue rather than being loaded from the
+ * Store.
+ */
+final class WriteBehindQueue implements Runnable {
+
+    private static final Log log = LogFactory.getLog(WriteBehindQueue.class);
+    private static final StringManager sm = StringManager.getManager(WriteBehindQueue.class);
+
+    private final PersistentManagerBase manager;
+    private final int maxQueueSize;
+    private final int batchSize;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition writeComplete = lock.newCondition();
+
+    // Guarded by lock
+    private final LinkedHashMap<String,PendingWrite> queued = new LinkedHashMap<>();
+    private final Map<String,PendingWrite> inFlight = new HashMap<>();
+    private boolean stopped = false;
+
+    private Thread writer;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+
+    WriteBehindQueue(PersistentManagerBase manager, int maxQueueSize, int batchSize) {
+        this.manager = manager;
+        this.maxQueueSize = maxQueueSize;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+
+    void start(String name) {
+        writer = new Thread(this, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    /**
+     * Write all queued sessions to the Store and then stop the writer thread.
+     */
+    void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+
+
+    /**
+     * Queue a session to be written to the Store.
+     *
+     * @param session    The session to write
+     * @param swappedOut {@code true} if the session has been removed from memory, in which case it will be recycled
+     *                       once it has been written
+     *
+     * @return {@code true} if the write was queued, {@code false} if the caller must write the session to the Store
+     */
+    boolean save(Session session, boolean swappedOut) {
+        String id = session.getIdInternal();
+        lock.lock();
+        try {
+            PendingWrite pending = queued.get(id);
+            if (pending != null) {
+                pending.session = session;
+                pending.swappedOut |= swappedOut;
+                coalesced.incrementAndGet();
+                return true;
+            }
+            // A write for a session that is currently being written is always queued to preserve ordering
+            if ((stopped || queued.size() >= maxQueueSize) && !inFlight.containsKey(id)) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            queued.put(id, new PendingWrite(id, session, swappedOut));
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Cancel any queued write for the given session.
+     *
+     * @param id The session identifier
+     *
+     * @return {@code true} if the session is currently being written, in which case it will be removed from the Store
+     *             by the writer thread once that completes, or {@code false} if the caller must remove the session
+     *             from the Store
+     */
+    boolean remove(String id) {
+        lock.lock();
+        try {
+            if (inFlight.containsKey(id)) {
+                queued.put(id, new PendingWrite(id, null, false));
+                notEmpty.signal();
+                return true;
+            }
+            queued.remove(id);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Load a session taking account of any queued writes. A session that was swapped out and has not yet been written
+     * is removed from the queue and returned. If the session is being written, this method waits for the write to
+     * complete before loading the session from the Store.
+     *
+     * @param id The session identifier
+     *
+     * @return The session or {@code null} if it is not present
+     *
+     * @throws ClassNotFoundException if a deserialization error occurs
+     * @throws IOException            if an input/output error occurs
+     */
+    Session load(String id) throws ClassNotFoundException, IOException {
+        lock.lock();
+        try {
+            waitForWrite(id);
+            PendingWrite pending = queued.get(id);
+            if (pending != null) {
+                if (pending.session == null) {
+                    // Queued for removal
+                    return null;
+                }
+                if (pending.swappedOut) {
+                    queued.remove(id);
+                    hits.incrementAndGet();
+                    return pending.session;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return manager.getStore().load(id);
+    }
+
+
+    /**
+     * Cancel any queued write for the given session and wait for any write that is in progress to complete. Used
+     * before writing the session to the Store directly.
+     *
+     * @param id The session identifier
+     */
+    void cancel(String id) {
+        lock.lock();
+        try {
+            queued.remove(id);
+            waitForWrite(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    void clear() {
+        lock.lock();
+        try {
+            queued.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private void waitForWrite(String id) {
+        while (inFlight.containsKey(id)) {
+            writeComplete.awaitUninterruptibly();
+        }
+    }
+
+
+    int getQueueSize() {
+        lock.lock();
+        try {
+            return queued.size() + inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    long getWrites() {
+        return writes.get();
+    }
+
+
+    long getCoalesced() {
+        return coalesced.get();
+    }
+
+
+    long getRejected() {
+        return rejected.get();
+    }
+
+
+    long getFailures() {
+        return failures.get();
+    }
+
+
+    long getHits() {
+        return hits.get();
+    }
+
+
+    @Override
+    public void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (true) {
+            lock.lock();
+            try {
+                while (queued.isEmpty() && !stopped) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (queued.isEmpty()) {
+                    return;
+                }
+                Iterator<PendingWrite> iter = queued.values().iterator();
+                while (iter.hasNext() && batch.size() < batchSize) {
+                    PendingWrite pending = iter.next();
+                    iter.remove();
+                    inFlight.put(pending.id, pending);
+                    batch.add(pending);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                write(batch);
+            } finally {
+                lock.lock();
+                try {
+                    inFlight.clear();
+                    writeComplete.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+
+    private void write(List<PendingWrite> batch) {
+        Store store = manager.getStore();
+        Context context = manager.getContext();
+        ClassLoader originalClassLoader = context.bind(null);
+        try {
+            List<Session> sessions = new ArrayList<>(batch.size());
+            for (PendingWrite pending : batch) {
+                if (pending.session == null) {
+                    try {
+                        store.remove(pending.id);
+                    } catch (IOException ioe) {
+                        log.error(sm.getString("persistentManager.removeError", pending.id), ioe);
+                    }
+                } else if (pending.session.getIdInternal() != null) {
+                    // A session that has been recycled since it was queued is skipped
+                    sessions.add(pending.session);
+                }
+            }
+            boolean saved = true;
+            if (!sessions.isEmpty()) {
+                try {
+                    store.save(sessions.toArray(new Session[0]));
+                    writes.addAndGet(sessions.size());
+                } catch (IOException | RuntimeException e) {
+                    saved = false;
+                    failures.addAndGet(sessions.size());
+                    log.error(sm.getString("writeBehindQueue.saveError", Integer.toString(sessions.size())), e);
+                }
+            }
+            for (PendingWrite pending : batch) {
+                if (pending.swappedOut) {
+                    if (saved) {
+                        synchronized (pending.session) {
+                            pending.session.recycle();
+                        }
+                    } else {
+                        // Don't lose the session if it could not be written
+                        manager.restoreSession(pending.session);
+                    }
+                }
+            }
+        } finally {
+            context.unbind(originalClassLoader);
+        }
+    }
+
+
+    private static final class PendingWrite {
+
+        private final String id;
+        private Session session;
+        private boolean swappedOut;
+
+        PendingWrite(String id, Session session, boolean swappedOut) {
+            this.id = id;
+            this.session = session;
+            this.swappedOut = swappedOut;
+        }
+    }
+}
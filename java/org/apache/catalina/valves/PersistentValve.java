@@ -185,7 +185,7 @@ public class PersistentValve extends ValveBase {
                     if (store != null) {
                         Session session = null;
                         try {
-                            session = store.load(sessionId);
+                            session = ((StoreManager) manager).loadFromStore(sessionId);
                         } catch (Exception e) {
                             containerLog.error(sm.getString("persistentValve.sessionLoadFail", sessionId));
                         }
@@ -267,7 +267,7 @@ public class PersistentValve extends ValveBase {
                             if (session != null) {
                                 if (store != null && session.isValid() &&
                                         !isSessionStale(session, System.currentTimeMillis())) {
-                                    store.save(session);
+                                    ((StoreManager) manager).saveToStore(session);
                                     ((StoreManager) manager).removeSuper(session);
                                     session.recycle();
                                     stored = true;
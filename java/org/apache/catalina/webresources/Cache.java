@@ -16,9 +16,6 @@
  */
 package org.apache.catalina.webresources;
 
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -31,7 +28,9 @@ import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.res.StringManager;
 
 /**
- * Cache for web resources managed by a StandardRoot.
+ * Cache for web resources managed by a StandardRoot. When the cache is full, the decision which entries to keep is
+ * made by a frequency based admission policy (see {@link CachePolicy}) so that resources which are requested often are
+ * not displaced by resources that are only requested once.
  */
 public class Cache {
 
@@ -41,9 +40,6 @@ public class Cache {
      */
     protected static final StringManager sm = StringManager.getManager(Cache.class);
 
-    private static final long TARGET_FREE_PERCENT_GET = 5;
-    private static final long TARGET_FREE_PERCENT_BACKGROUND = 10;
-
     // objectMaxSize must be < maxSize/20
     private static final int OBJECT_MAX_SIZE_FACTOR = 20;
 
@@ -53,12 +49,14 @@ public class Cache {
     private long ttl = 5000;
     private long maxSize = 10 * 1024 * 1024;
     private int objectMaxSize = (int) maxSize / OBJECT_MAX_SIZE_FACTOR;
+    private volatile boolean offHeap = false;
     private CacheStrategy cacheStrategy;
 
     private final LongAdder lookupCount = new LongAdder();
     private final LongAdder hitCount = new LongAdder();
 
     private final ConcurrentMap<String,CachedResource> resourceCache = new ConcurrentHashMap<>();
+    private final CachePolicy policy = new CachePolicy(this);
 
     /**
      * Constructs a cache for the given root.
@@ -123,20 +121,9 @@ public class Cache {
                             Long.toString(result)));
                 }
 
-                if (size.get() > maxSize) {
-                    // Process resources unordered for speed. Trades cache
-                    // efficiency (younger entries may be evicted before older
-                    // ones) for speed since this is on the critical path for
-                    // request processing
-                    long targetSize = maxSize * (100 - TARGET_FREE_PERCENT_GET) / 100;
-                    long newSize = evict(targetSize, resourceCache.values().iterator());
-                    if (newSize > maxSize) {
-                        // Unable to create sufficient space for this resource
-                        // Remove it from the cache
-                        removeCacheEntry(path);
-                        log.warn(sm.getString("cache.addFail", path, root.getContext().getName()));
-                    }
-                }
+                // May evict this or other entries if the cache is now too big
+                policy.recordWrite(cacheEntry);
+                enforceMaxSize(path);
             } else {
                 // Another thread added the entry to the cache
                 if (cacheEntry.usesClassLoaderResources() != useClassLoaderResources) {
@@ -162,6 +149,7 @@ public class Cache {
             }
         } else {
             hitCount.increment();
+            policy.recordRead(cacheEntry);
         }
 
         return cacheEntry;
@@ -210,20 +198,9 @@ public class Cache {
                             Long.toString(result)));
                 }
 
-                if (size.get() > maxSize) {
-                    // Process resources unordered for speed. Trades cache
-                    // efficiency (younger entries may be evicted before older
-                    // ones) for speed since this is on the critical path for
-                    // request processing
-                    long targetSize = maxSize * (100 - TARGET_FREE_PERCENT_GET) / 100;
-                    long newSize = evict(targetSize, resourceCache.values().iterator());
-                    if (newSize > maxSize) {
-                        // Unable to create sufficient space for this resource
-                        // Remove it from the cache
-                        removeCacheEntry(path);
-                        log.warn(sm.getString("cache.addFail", path));
-                    }
-                }
+                // May evict this or other entries if the cache is now too big
+                policy.recordWrite(cacheEntry);
+                enforceMaxSize(path);
             } else {
                 // Another thread added the entry to the cache
                 // Make sure it is validated
@@ -231,31 +208,35 @@ public class Cache {
             }
         } else {
             hitCount.increment();
+            policy.recordRead(cacheEntry);
         }
 
         return cacheEntry.getWebResources();
     }
 
+    /*
+     * The policy only evicts entries if no other thread is already doing so. If the cache is still too big after an
+     * entry has been added, wait for any eviction in progress and evict entries in this thread. If that is not
+     * sufficient (e.g. because all the other entries have been checked within the TTL) remove the new entry.
+     */
+    private void enforceMaxSize(String path) {
+        if (size.get() > maxSize) {
+            policy.cleanUp();
+            if (size.get() > maxSize) {
+                // Unable to create sufficient space for this resource
+                // Remove it from the cache
+                removeCacheEntry(path);
+                log.warn(sm.getString("cache.addFail", path, root.getContext().getName()));
+            }
+        }
+    }
+
     /**
-     * Performs background cache maintenance, evicting expired entries.
+     * Performs background cache maintenance, applying any pending policy updates and evicting entries if the cache is
+     * larger than the maximum size.
      */
     protected void backgroundProcess() {
-        // Create an ordered set of all cached resources with the least recently
-        // used first. This is a background process so we can afford to take the
-        // time to order the elements first
-        TreeSet<CachedResource> orderedResources =
-                new TreeSet<>(Comparator.comparingLong(CachedResource::getNextCheck));
-        orderedResources.addAll(resourceCache.values());
-
-        Iterator<CachedResource> iter = orderedResources.iterator();
-
-        long targetSize = maxSize * (100 - TARGET_FREE_PERCENT_BACKGROUND) / 100;
-        long newSize = evict(targetSize, iter);
-
-        if (newSize > targetSize) {
-            log.info(sm.getString("cache.backgroundEvictFail", Long.valueOf(TARGET_FREE_PERCENT_BACKGROUND),
-                    root.getContext().getName(), Long.valueOf(newSize / 1024)));
-        }
+        policy.cleanUp();
     }
 
     private boolean noCache(String path) {
@@ -266,43 +247,93 @@ public class Cache {
                 (path.startsWith("/WEB-INF/lib/") && path.endsWith(".jar"));
     }
 
-    private long evict(long targetSize, Iterator<CachedResource> iter) {
-
-        long now = System.currentTimeMillis();
-
-        long newSize = size.get();
-
-        while (newSize > targetSize && iter.hasNext()) {
-            CachedResource resource = iter.next();
-
-            // Don't expire anything that has been checked within the TTL
-            if (resource.getNextCheck() > now) {
-                continue;
-            }
-
-            // Remove the entry from the cache
-            removeCacheEntry(resource.getWebappPath());
-
-            newSize = size.get();
-        }
-
-        return newSize;
-    }
-
     void removeCacheEntry(String path) {
         // With concurrent calls for the same path, the entry is only removed
         // once and the cache size is only updated (if required) once.
         CachedResource cachedResource = resourceCache.remove(path);
         if (cachedResource != null) {
+            // Release first so the size can't change (e.g. by adding a content variant) once it has been read
+            cachedResource.releaseContent();
             long delta = cachedResource.getSize();
             long result = size.addAndGet(-delta);
             if (log.isDebugEnabled()) {
                 log.debug(sm.getString("cache.sizeTracking.remove", Long.toString(delta), cachedResource, path,
                         Long.toString(result)));
             }
+            policy.recordWrite(cachedResource);
+        }
+    }
+
+    boolean isCached(CachedResource cachedResource) {
+        return resourceCache.get(cachedResource.getWebappPath()) == cachedResource;
+    }
+
+    /*
+     * Called by the policy, while holding its eviction lock, to remove an entry selected for eviction. Returns false
+     * if the entry had already been removed.
+     */
+    boolean evict(CachedResource cachedResource) {
+        String path = cachedResource.getWebappPath();
+        if (!resourceCache.remove(path, cachedResource)) {
+            return false;
+        }
+        // Release first so the size can't change (e.g. by adding a content variant) once it has been read
+        cachedResource.releaseContent();
+        long delta = cachedResource.getSize();
+        long result = size.addAndGet(-delta);
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("cache.sizeTracking.remove", Long.toString(delta), cachedResource, path,
+                    Long.toString(result)));
+        }
+        return true;
+    }
+
+    /*
+     * Called by a cached resource before it retains additional content, such as an encoded variant of its content.
+     * Returns false if there is insufficient space in the cache, in which case the content should not be retained.
+     */
+    boolean reserveSpace(CachedResource cachedResource, long delta) {
+        long result = size.addAndGet(delta);
+        if (result > maxSize) {
+            policy.cleanUp();
+            if (size.get() > maxSize) {
+                size.addAndGet(-delta);
+                return false;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("cache.sizeTracking.add", Long.toString(delta), cachedResource,
+                    cachedResource.getWebappPath(), Long.toString(result)));
+        }
+        return true;
+    }
+
+    /*
+     * Called by a cached resource if space reserved via reserveSpace() was not used.
+     */
+    void releaseSpace(CachedResource cachedResource, long delta) {
+        long result = size.addAndGet(-delta);
+        if (log.isDebugEnabled()) {
+            log.debug(sm.getString("cache.sizeTracking.remove", Long.toString(delta), cachedResource,
+                    cachedResource.getWebappPath(), Long.toString(result)));
         }
     }
 
+    /*
+     * Called by a cached resource once it has retained additional content so the policy can update its weight.
+     */
+    void sizeChanged(CachedResource cachedResource) {
+        policy.recordWrite(cachedResource);
+    }
+
+    long getSizeBytes() {
+        return size.get();
+    }
+
+    long getMaxSizeBytes() {
+        return maxSize;
+    }
+
     /**
      * Returns the cache strategy.
      *
@@ -377,6 +408,38 @@ public class Cache {
         return hitCount.sum();
     }
 
+    /**
+     * Returns the proportion of cache lookups that were served from the cache.
+     *
+     * @return the hit ratio in the range 0 to 1
+     */
+    public double getHitRatio() {
+        long lookups = lookupCount.sum();
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) hitCount.sum() / lookups;
+    }
+
+    /**
+     * Returns the number of entries that have been evicted from the cache to keep it within its maximum size.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return policy.getEvictionCount();
+    }
+
+    /**
+     * Returns the number of newly cached entries that were evicted immediately because they were requested less often
+     * than the entries they would have displaced.
+     *
+     * @return the admission reject count
+     */
+    public long getAdmissionRejectCount() {
+        return policy.getAdmissionRejectCount();
+    }
+
     /**
      * Sets the maximum size of a single cached object in kilobytes.
      *
@@ -411,6 +474,25 @@ public class Cache {
         return objectMaxSize;
     }
 
+    /**
+     * Returns whether the content of cached resources is stored outside of the Java heap.
+     *
+     * @return {@code true} if content is stored off-heap
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Sets whether the content of cached resources should be stored outside of the Java heap in direct buffers. This
+     * only applies to resources cached after the change.
+     *
+     * @param offHeap {@code true} to store content off-heap
+     */
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
     void enforceObjectMaxSizeLimit() {
         long limit = maxSize / OBJECT_MAX_SIZE_FACTOR;
         if (limit > Integer.MAX_VALUE) {
@@ -427,8 +509,12 @@ public class Cache {
      * Clears all entries from the cache.
      */
     public void clear() {
+        for (CachedResource cachedResource : resourceCache.values()) {
+            cachedResource.releaseContent();
+        }
         resourceCache.clear();
         size.set(0);
+        policy.clear();
     }
 
     /**
@@ -0,0 +1,441 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission and eviction policy for the {@link Cache}, based on W-TinyLFU. New entries are placed in a small LRU
+ * admission window. Entries that leave the window become candidates for the main, segmented LRU area (probation and
+ * protected segments) and are only retained there if they have been requested more often than the entry that would be
+ * evicted to make room for them. This protects frequently used resources from being flushed by a scan of resources
+ * that are only requested once.
+ * <p>
+ * Lookups never block. Cache hits are recorded in a small, lossy buffer and additions and removals are recorded in a
+ * queue. Both are replayed against the policy in batches by whichever thread obtains the eviction lock, so the cost of
+ * maintaining the policy is amortised across requests and threads that fail to obtain the lock simply carry on. The
+ * {@link Cache} enforces the maximum size when an entry is added by calling {@link #cleanUp()} if the cache is still
+ * too large. Entries that have been checked within the TTL are never evicted.
+ */
+final class CachePolicy {
+
+    private static final int QUEUE_NONE = 0;
+    private static final int QUEUE_WINDOW = 1;
+    private static final int QUEUE_PROBATION = 2;
+    private static final int QUEUE_PROTECTED = 3;
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int READ_BUFFER_PROBES = 4;
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    // Used to size the frequency sketch from the maximum cache size in bytes
+    private static final long ESTIMATED_ENTRY_SIZE = 2048;
+
+    private final Cache cache;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private volatile boolean drainRequired = false;
+    private final AtomicReferenceArray<CachedResource> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final Queue<CachedResource> writeBuffer = new ConcurrentLinkedQueue<>();
+
+    // The following fields are guarded by evictionLock
+    private final AccessOrderDeque window = new AccessOrderDeque();
+    private final AccessOrderDeque probation = new AccessOrderDeque();
+    private final AccessOrderDeque protectedSegment = new AccessOrderDeque();
+    private long windowWeight = 0;
+    private long protectedWeight = 0;
+    private FrequencySketch sketch;
+
+    private volatile long evictionCount = 0;
+    private volatile long admissionRejectCount = 0;
+
+
+    CachePolicy(Cache cache) {
+        this.cache = cache;
+    }
+
+
+    /**
+     * Record a cache hit. This never blocks. If the read buffer is full the hit may be dropped and the buffer will be
+     * drained if no other thread is already doing so.
+     *
+     * @param resource The entry that was read
+     */
+    void recordRead(CachedResource resource) {
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < READ_BUFFER_PROBES; i++) {
+            int index = (start + i) & READ_BUFFER_MASK;
+            if (readBuffer.get(index) == null && readBuffer.compareAndSet(index, null, resource)) {
+                return;
+            }
+        }
+        scheduleMaintenance();
+    }
+
+
+    /**
+     * Record that an entry has been added to, or removed from, the cache or that its size has changed and perform any
+     * required evictions unless another thread is already doing so.
+     *
+     * @param resource The entry that was added or removed
+     */
+    void recordWrite(CachedResource resource) {
+        writeBuffer.offer(resource);
+        scheduleMaintenance();
+    }
+
+
+    /**
+     * Replay all pending events and evict entries until the cache is within its size limit, waiting for any other
+     * thread that is currently doing so.
+     */
+    void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+
+    /**
+     * Discard the policy state for all entries that are no longer in the cache. Called after the cache has been
+     * cleared.
+     */
+    void clear() {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            drainWriteBuffer();
+            removeStale(window);
+            removeStale(probation);
+            removeStale(protectedSegment);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+
+    long getEvictionCount() {
+        return evictionCount;
+    }
+
+
+    long getAdmissionRejectCount() {
+        return admissionRejectCount;
+    }
+
+
+    private void scheduleMaintenance() {
+        drainRequired = true;
+        do {
+            if (!evictionLock.tryLock()) {
+                // The thread holding the lock will see drainRequired and repeat the maintenance
+                return;
+            }
+            try {
+                drainRequired = false;
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (drainRequired);
+    }
+
+
+    private void maintenance() {
+        long maxSize = cache.getMaxSizeBytes();
+        int expectedEntries = (int) Math.min(Integer.MAX_VALUE, maxSize / ESTIMATED_ENTRY_SIZE);
+        if (sketch == null || sketch.getTableSize() != FrequencySketch.tableSizeFor(expectedEntries)) {
+            // Initial creation or the maximum size has been changed
+            sketch = new FrequencySketch(expectedEntries);
+        }
+        drainReadBuffer();
+        drainWriteBuffer();
+        evict(maxSize);
+    }
+
+
+    private void drainReadBuffer() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            CachedResource resource = readBuffer.get(i);
+            if (resource != null) {
+                // Writers only ever replace null so this can't lose an entry
+                readBuffer.set(i, null);
+                onAccess(resource);
+            }
+        }
+    }
+
+
+    private void drainWriteBuffer() {
+        CachedResource resource;
+        while ((resource = writeBuffer.poll()) != null) {
+            if (cache.isCached(resource)) {
+                if (resource.policyQueue == QUEUE_NONE) {
+                    if (sketch != null) {
+                        sketch.increment(hash(resource));
+                    }
+                    window.add(resource);
+                    resource.policyQueue = QUEUE_WINDOW;
+                    resource.policyWeight = resource.getSize();
+                    windowWeight += resource.policyWeight;
+                } else {
+                    // The size of the entry may have changed, e.g. because a content variant has been added
+                    updateWeight(resource);
+                }
+            } else {
+                unlink(resource);
+            }
+        }
+    }
+
+
+    private void updateWeight(CachedResource resource) {
+        long weight = resource.getSize();
+        long delta = weight - resource.policyWeight;
+        if (delta == 0) {
+            return;
+        }
+        resource.policyWeight = weight;
+        if (resource.policyQueue == QUEUE_WINDOW) {
+            windowWeight += delta;
+        } else if (resource.policyQueue == QUEUE_PROTECTED) {
+            protectedWeight += delta;
+        }
+    }
+
+
+    private void onAccess(CachedResource resource) {
+        if (sketch != null) {
+            sketch.increment(hash(resource));
+        }
+        switch (resource.policyQueue) {
+            case QUEUE_WINDOW:
+                window.moveToBack(resource);
+                break;
+            case QUEUE_PROBATION:
+                // Promote to the protected segment
+                probation.remove(resource);
+                protectedSegment.add(resource);
+                resource.policyQueue = QUEUE_PROTECTED;
+                protectedWeight += resource.policyWeight;
+                break;
+            case QUEUE_PROTECTED:
+                protectedSegment.moveToBack(resource);
+                break;
+            default:
+                // Not yet added or already removed
+                break;
+        }
+    }
+
+
+    private void evict(long maxSize) {
+        long windowMax = maxSize * WINDOW_PERCENT / 100;
+        long protectedMax = (maxSize - windowMax) * PROTECTED_PERCENT / 100;
+
+        // Demote the least recently used protected entries if the protected segment has grown too large
+        while (protectedWeight > protectedMax && !protectedSegment.isEmpty()) {
+            CachedResource resource = protectedSegment.poll();
+            protectedWeight -= resource.policyWeight;
+            probation.add(resource);
+            resource.policyQueue = QUEUE_PROBATION;
+        }
+
+        // Entries that overflow the window become candidates for the main area
+        CachedResource candidate = null;
+        while (windowWeight > windowMax && !window.isEmpty()) {
+            CachedResource resource = window.poll();
+            windowWeight -= resource.policyWeight;
+            probation.add(resource);
+            resource.policyQueue = QUEUE_PROBATION;
+            if (candidate == null) {
+                candidate = resource;
+            }
+        }
+
+        // Don't evict anything that has been checked within the TTL
+        long now = System.currentTimeMillis();
+        candidate = firstExpired(candidate, now);
+        while (cache.getSizeBytes() > maxSize) {
+            CachedResource victim = firstExpired(probation.peek(), now);
+            if (victim == null) {
+                victim = firstExpired(protectedSegment.peek(), now);
+            }
+            if (victim == null) {
+                victim = firstExpired(window.peek(), now);
+            }
+            if (victim == null) {
+                break;
+            }
+            if (candidate == null || candidate == victim) {
+                // Nothing to choose between
+                if (candidate == victim) {
+                    candidate = firstExpired(candidate.policyNext, now);
+                }
+                evictEntry(victim);
+            } else if (admit(candidate, victim)) {
+                evictEntry(victim);
+            } else {
+                CachedResource next = firstExpired(candidate.policyNext, now);
+                evictEntry(candidate);
+                admissionRejectCount++;
+                candidate = next;
+            }
+        }
+    }
+
+
+    /*
+     * Returns the given entry or the first entry after it in the same queue that has not been checked within the TTL.
+     */
+    private static CachedResource firstExpired(CachedResource resource, long now) {
+        while (resource != null && resource.getNextCheck() > now) {
+            resource = resource.policyNext;
+        }
+        return resource;
+    }
+
+
+    private boolean admit(CachedResource candidate, CachedResource victim) {
+        int candidateFrequency = sketch.frequency(hash(candidate));
+        int victimFrequency = sketch.frequency(hash(victim));
+        if (candidateFrequency > victimFrequency) {
+            return true;
+        }
+        if (candidateFrequency <= 5) {
+            return false;
+        }
+        // Occasionally admit a warm candidate so that an attacker can't use hash collisions to keep a victim cached
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+
+    private void evictEntry(CachedResource resource) {
+        unlink(resource);
+        if (cache.evict(resource)) {
+            evictionCount++;
+        }
+    }
+
+
+    private void unlink(CachedResource resource) {
+        switch (resource.policyQueue) {
+            case QUEUE_WINDOW:
+                window.remove(resource);
+                windowWeight -= resource.policyWeight;
+                break;
+            case QUEUE_PROBATION:
+                probation.remove(resource);
+                break;
+            case QUEUE_PROTECTED:
+                protectedSegment.remove(resource);
+                protectedWeight -= resource.policyWeight;
+                break;
+            default:
+                return;
+        }
+        resource.policyQueue = QUEUE_NONE;
+    }
+
+
+    private void removeStale(AccessOrderDeque deque) {
+        CachedResource resource = deque.peek();
+        while (resource != null) {
+            CachedResource next = resource.policyNext;
+            if (!cache.isCached(resource)) {
+                unlink(resource);
+            }
+            resource = next;
+        }
+    }
+
+
+    private static int hash(CachedResource resource) {
+        return resource.getWebappPath().hashCode();
+    }
+
+
+    /*
+     * Doubly linked list that uses the links held by the cache entries to avoid allocating a node per entry.
+     */
+    private static final class AccessOrderDeque {
+
+        private CachedResource head;
+        private CachedResource tail;
+
+        boolean isEmpty() {
+            return head == null;
+        }
+
+        CachedResource peek() {
+            return head;
+        }
+
+        CachedResource poll() {
+            CachedResource result = head;
+            if (result != null) {
+                remove(result);
+            }
+            return result;
+        }
+
+        void add(CachedResource resource) {
+            resource.policyPrev = tail;
+            resource.policyNext = null;
+            if (tail == null) {
+                head = resource;
+            } else {
+                tail.policyNext = resource;
+            }
+            tail = resource;
+        }
+
+        void remove(CachedResource resource) {
+            CachedResource prev = resource.policyPrev;
+            CachedResource next = resource.policyNext;
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.policyNext = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.policyPrev = prev;
+            }
+            resource.policyPrev = null;
+            resource.policyNext = null;
+        }
+
+        void moveToBack(CachedResource resource) {
+            if (resource != tail) {
+                remove(resource);
+                add(resource);
+            }
+        }
+    }
+}
@@ -26,13 +26,18 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.security.Permission;
 import java.security.cert.Certificate;
 import java.text.Collator;
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
@@ -40,6 +45,7 @@ import org.apache.catalina.WebResource;
 import org.apache.catalina.WebResourceRoot;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.buf.ByteBufferUtils;
 import org.apache.tomcat.util.buf.HexUtils;
 import org.apache.tomcat.util.res.StringManager;
 import org.apache.tomcat.util.security.ConcurrentMessageDigest;
@@ -57,12 +63,16 @@ public class CachedResource implements WebResource {
     // based on profiler data.
     private static final long CACHE_ENTRY_SIZE = 500;
 
+    // Marks a content variant that the encoder declined to create
+    private static final Object NO_VARIANT = new Object();
+
     private final Cache cache;
     private final StandardRoot root;
     private final String webAppPath;
     private final long ttl;
     private final int objectMaxSizeBytes;
     private final boolean usesClassLoaderResources;
+    private final boolean offHeap;
 
     private volatile WebResource webResource;
     private volatile WebResource[] webResources;
@@ -71,6 +81,11 @@ public class CachedResource implements WebResource {
     private volatile Long cachedLastModified = null;
     private volatile String cachedLastModifiedHttp = null;
     private volatile byte[] cachedContent = null;
+    private volatile OffHeapContent cachedOffHeapContent = null;
+    private boolean contentReleased = false;
+    // Values are byte[] or, if the content is cached off-heap, OffHeapContent. Additions are guarded by this.
+    private final Map<String,Object> contentVariants = new ConcurrentHashMap<>(2);
+    private volatile long contentVariantsSize = 0;
     private volatile Boolean cachedIsFile = null;
     private volatile Boolean cachedIsDirectory = null;
     private volatile Boolean cachedExists = null;
@@ -78,6 +93,12 @@ public class CachedResource implements WebResource {
     private volatile Long cachedContentLength = null;
     private volatile String cachedStrongETag = null;
 
+    // Eviction policy state. Only accessed by the Cache while holding its eviction lock.
+    CachedResource policyPrev;
+    CachedResource policyNext;
+    int policyQueue;
+    long policyWeight;
+
 
     /**
      * Construct a cached resource.
@@ -98,6 +119,7 @@ public class CachedResource implements WebResource {
         nextCheck = ttl + System.currentTimeMillis();
         this.objectMaxSizeBytes = objectMaxSizeBytes;
         this.usesClassLoaderResources = usesClassLoaderResources;
+        this.offHeap = cache.isOffHeap();
     }
 
     /**
@@ -346,6 +368,13 @@ public class CachedResource implements WebResource {
 
     @Override
     public InputStream getInputStream() {
+        if (offHeap) {
+            ByteBuffer buffer = acquireContentBuffer();
+            if (buffer == null) {
+                return webResource.getInputStream();
+            }
+            return new OffHeapContentInputStream(this, buffer);
+        }
         byte[] content = getContent();
         if (content == null) {
             // Can't cache InputStreams
@@ -354,8 +383,31 @@ public class CachedResource implements WebResource {
         return new ByteArrayInputStream(content);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the content is cached off-heap, a new copy of the content is returned for each call. Callers that can consume
+     * a {@link ByteBuffer} should use {@link #acquireContentBuffer()} instead.
+     */
     @Override
     public byte[] getContent() {
+        if (offHeap) {
+            ByteBuffer buffer = acquireContentBuffer();
+            if (buffer == null) {
+                if (getContentLength() > objectMaxSizeBytes) {
+                    return null;
+                }
+                // Evicted from the cache while in use
+                return webResource.getContent();
+            }
+            try {
+                byte[] result = new byte[buffer.remaining()];
+                buffer.get(result);
+                return result;
+            } finally {
+                releaseContentBuffer();
+            }
+        }
         if (cachedContent == null) {
             if (getContentLength() > objectMaxSizeBytes) {
                 return null;
@@ -365,6 +417,194 @@ public class CachedResource implements WebResource {
         return cachedContent;
     }
 
+    /**
+     * Obtain an encoded (e.g. compressed) variant of the content of this resource. The variant is created from the
+     * cached content the first time it is requested and is then retained, on or off-heap in the same way as the
+     * content, for as long as this resource is cached so the cost of encoding is only incurred once. Retained variants
+     * count towards the size of the cache and a variant is not retained if there is insufficient space for it. The
+     * caller must call {@link #releaseContentVariant(String, ByteBuffer)} once it has finished with the returned buffer.
+     *
+     * @param encoding The name of the encoding, used to identify the variant
+     * @param encoder  Creates the variant from the content. It may return {@code null} if no variant should be used,
+     *                     for example because encoding does not make the content smaller. It must always create the
+     *                     same variant for the same content.
+     *
+     * @return a read-only buffer containing the variant or {@code null} if the content is too large to cache or the
+     *             encoder did not create a variant
+     */
+    public ByteBuffer acquireContentVariant(String encoding, Function<ByteBuffer,byte[]> encoder) {
+        if (getContentLength() > objectMaxSizeBytes) {
+            return null;
+        }
+        Object variant = contentVariants.get(encoding);
+        if (variant == null) {
+            variant = addContentVariant(encoding, encodeContent(encoder));
+        }
+        if (variant == NO_VARIANT) {
+            return null;
+        }
+        if (variant instanceof OffHeapContent content) {
+            if (content.retain()) {
+                return content.buffer.asReadOnlyBuffer();
+            }
+            // Evicted from the cache while in use
+            byte[] bytes = encodeContent(encoder);
+            return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap((byte[]) variant).asReadOnlyBuffer();
+    }
+
+
+    /**
+     * Release a buffer previously obtained from a successful call to
+     * {@link #acquireContentVariant(String, Function)}.
+     *
+     * @param encoding The name of the encoding used to obtain the variant
+     * @param variant  The buffer returned for the variant
+     */
+    public void releaseContentVariant(String encoding, ByteBuffer variant) {
+        // Only variants retained off-heap use direct buffers
+        if (variant.isDirect()) {
+            ((OffHeapContent) contentVariants.get(encoding)).release();
+        }
+    }
+
+
+    private byte[] encodeContent(Function<ByteBuffer,byte[]> encoder) {
+        // Encode off-heap content directly to avoid copying it to the heap first
+        ByteBuffer buffer = acquireContentBuffer();
+        if (buffer != null) {
+            try {
+                return encoder.apply(buffer);
+            } finally {
+                releaseContentBuffer();
+            }
+        }
+        byte[] content = getContent();
+        if (content == null) {
+            return null;
+        }
+        return encoder.apply(ByteBuffer.wrap(content).asReadOnlyBuffer());
+    }
+
+
+    /*
+     * Returns the variant to use. That is the retained variant or, if there is insufficient space in the cache or this
+     * resource is no longer cached, the given variant.
+     */
+    private Object addContentVariant(String encoding, byte[] bytes) {
+        if (bytes == null) {
+            Object variant = contentVariants.putIfAbsent(encoding, NO_VARIANT);
+            return variant == null ? NO_VARIANT : variant;
+        }
+        if (!cache.reserveSpace(this, bytes.length)) {
+            return bytes;
+        }
+        Object variant;
+        boolean added = false;
+        synchronized (this) {
+            variant = contentVariants.get(encoding);
+            if (variant == null && !contentReleased && cache.isCached(this)) {
+                if (offHeap) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                    buffer.put(bytes).flip();
+                    variant = new OffHeapContent(buffer);
+                } else {
+                    variant = bytes;
+                }
+                contentVariants.put(encoding, variant);
+                contentVariantsSize += bytes.length;
+                added = true;
+            }
+        }
+        if (added) {
+            cache.sizeChanged(this);
+        } else {
+            cache.releaseSpace(this, bytes.length);
+        }
+        return variant == null ? bytes : variant;
+    }
+
+
+    /**
+     * Obtain the content of this resource if it is cached off-heap. The content is loaded into a direct buffer on first
+     * use. The caller must call {@link #releaseContentBuffer()} once it has finished with the returned buffer since the
+     * memory may be freed as soon as the resource has been evicted from the cache and all buffers have been released.
+     *
+     * @return a read-only buffer containing the content or {@code null} if the content is not cached off-heap, for
+     *             example because off-heap caching is disabled, the resource is too large or the resource has been
+     *             evicted from the cache
+     */
+    public ByteBuffer acquireContentBuffer() {
+        if (!offHeap) {
+            return null;
+        }
+        OffHeapContent content = cachedOffHeapContent;
+        if (content == null) {
+            if (getContentLength() > objectMaxSizeBytes) {
+                return null;
+            }
+            synchronized (this) {
+                content = cachedOffHeapContent;
+                if (content == null) {
+                    if (contentReleased) {
+                        return null;
+                    }
+                    byte[] bytes = webResource.getContent();
+                    if (bytes == null) {
+                        return null;
+                    }
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                    buffer.put(bytes).flip();
+                    content = new OffHeapContent(buffer);
+                    cachedOffHeapContent = content;
+                }
+            }
+        }
+        if (content.retain()) {
+            return content.buffer.asReadOnlyBuffer();
+        }
+        return null;
+    }
+
+
+    /**
+     * Release a buffer previously obtained from a successful call to {@link #acquireContentBuffer()}.
+     */
+    public void releaseContentBuffer() {
+        cachedOffHeapContent.release();
+    }
+
+
+    /*
+     * Exposed for testing. The number of references currently held to the off-heap content, including the reference
+     * held by the cache.
+     */
+    int getContentBufferReferenceCount() {
+        OffHeapContent content = cachedOffHeapContent;
+        return content == null ? 0 : content.refCount.get();
+    }
+
+
+    /*
+     * Called by the cache when this entry is removed. Any off-heap memory is freed once the last buffer obtained by
+     * acquireContentBuffer() or acquireContentVariant() has been released.
+     */
+    synchronized void releaseContent() {
+        if (!contentReleased) {
+            contentReleased = true;
+            if (cachedOffHeapContent != null) {
+                cachedOffHeapContent.release();
+            }
+            // The variants are not removed so that getSize() still includes them when the cache size is updated
+            for (Object variant : contentVariants.values()) {
+                if (variant instanceof OffHeapContent content) {
+                    content.release();
+                }
+            }
+        }
+    }
+
     @Override
     public long getCreation() {
         return webResource.getCreation();
@@ -446,7 +686,8 @@ public class CachedResource implements WebResource {
 
     // Assume that the cache entry will always include the content unless the
     // resource content is larger than objectMaxSizeBytes. This isn't always the
-    // case but it makes tracking the current cache size easier.
+    // case but it makes tracking the current cache size easier. Any retained
+    // content variants are included.
     long getSize() {
         long result = CACHE_ENTRY_SIZE;
         // Longer paths use a noticeable amount of memory so account for this in
@@ -456,6 +697,7 @@ public class CachedResource implements WebResource {
         if (getContentLength() <= objectMaxSizeBytes) {
             result += getContentLength();
         }
+        result += contentVariantsSize;
         return result;
     }
 
@@ -700,4 +942,132 @@ public class CachedResource implements WebResource {
             return Objects.requireNonNullElse(getResource().getMimeType(), "content/unknown");
         }
     }
+
+
+    /*
+     * Reference counted direct buffer. The cache holds one reference which is released when the entry is removed from
+     * the cache. The memory is freed explicitly when the count reaches zero rather than waiting for garbage collection.
+     */
+    private static final class OffHeapContent {
+
+        private final ByteBuffer buffer;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        private OffHeapContent(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private boolean retain() {
+            int count;
+            do {
+                count = refCount.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!refCount.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private void release() {
+            if (refCount.decrementAndGet() == 0) {
+                ByteBufferUtils.cleanDirectBuffer(buffer);
+            }
+        }
+    }
+
+
+    /*
+     * Streams the off-heap content. The reference to the content is released when the end of the content is reached as
+     * well as when the stream is closed so the off-heap memory is not retained by callers that read all the content
+     * but do not close the stream.
+     */
+    private static final class OffHeapContentInputStream extends InputStream {
+
+        private final CachedResource resource;
+        private final ByteBuffer buffer;
+        private boolean closed = false;
+        private boolean released = false;
+
+        private OffHeapContentInputStream(CachedResource resource, ByteBuffer buffer) {
+            this.resource = resource;
+            this.buffer = buffer;
+            releaseIfFinished();
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            if (released) {
+                return -1;
+            }
+            int result = buffer.get() & 0xFF;
+            releaseIfFinished();
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            checkClosed();
+            if (len == 0) {
+                return 0;
+            }
+            if (released) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            releaseIfFinished();
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            checkClosed();
+            if (n <= 0 || released) {
+                return 0;
+            }
+            int skipped = (int) Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            releaseIfFinished();
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            checkClosed();
+            if (released) {
+                return 0;
+            }
+            return buffer.remaining();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release();
+            }
+        }
+
+        private void releaseIfFinished() {
+            if (!buffer.hasRemaining()) {
+                release();
+            }
+        }
+
+        private void release() {
+            // The buffer must not be accessed once released as the memory may have been freed
+            if (!released) {
+                released = true;
+                resource.releaseContentBuffer();
+            }
+        }
+
+        private void checkClosed() throws IOException {
+            if (closed) {
+                throw new IOException(sm.getString("cachedResource.streamClosed"));
+            }
+        }
+    }
 }
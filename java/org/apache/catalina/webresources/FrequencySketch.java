@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+/**
+ * A probabilistic estimate of how often each resource path has been requested, used by the {@link Cache} to decide
+ * whether a newly cached resource is worth keeping at the expense of an existing entry (TinyLFU admission). This is a
+ * count-min sketch using four 4-bit counters per item. Counters saturate at 15 and, once the number of increments
+ * reaches ten times the expected number of entries, all counters are halved so that the history of resources that are
+ * no longer popular fades over time.
+ * <p>
+ * This class is not thread-safe. The cache only uses it while holding its eviction lock.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEED = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAXIMUM_CAPACITY = 1 << 24;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+
+    /**
+     * Create a sketch sized for the given number of entries.
+     *
+     * @param expectedEntries The expected maximum number of entries in the cache
+     */
+    FrequencySketch(int expectedEntries) {
+        int capacity = tableSizeFor(expectedEntries);
+        table = new long[capacity];
+        tableMask = capacity - 1;
+        sampleSize = 10 * Math.max(expectedEntries, 1);
+    }
+
+
+    static int tableSizeFor(int expectedEntries) {
+        int n = Math.min(Math.max(expectedEntries, 16), MAXIMUM_CAPACITY);
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+
+    int getTableSize() {
+        return table.length;
+    }
+
+
+    /**
+     * Obtain the estimated number of times the item has been seen, capped at 15.
+     *
+     * @param hashCode The hash code of the item
+     *
+     * @return the estimated frequency
+     */
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+
+    /**
+     * Record an occurrence of the item, periodically aging all counters.
+     *
+     * @param hashCode The hash code of the item
+     */
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions - (count >>> 2)) >>> 1;
+    }
+
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -566,6 +566,24 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
         return cache.getObjectMaxSize();
     }
 
+    /**
+     * Configure whether the content of cached resources is stored outside of the Java heap. Storing content off-heap
+     * reduces the size of the heap (and hence garbage collection pauses) for applications with a large cache. Off-heap
+     * memory is limited by <code>-XX:MaxDirectMemorySize</code> and is freed when resources are evicted from the cache.
+     *
+     * @param cacheOffHeap {@code true} to store cached content in direct buffers
+     */
+    public void setCacheOffHeap(boolean cacheOffHeap) {
+        cache.setOffHeap(cacheOffHeap);
+    }
+
+    /**
+     * @return {@code true} if the content of cached resources is stored outside of the Java heap
+     */
+    public boolean isCacheOffHeap() {
+        return cache.isOffHeap();
+    }
+
     @Override
     public void setTrackLockedFiles(boolean trackLockedFiles) {
         this.trackLockedFiles = trackLockedFiles;
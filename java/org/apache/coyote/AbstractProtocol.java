@@ -489,6 +489,77 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler, MBeanRegis
     }
 
 
+    /**
+     * The keep-alive timeout that will be used for the next request. This is the same as {@link #getKeepAliveTimeout()}
+     * unless adaptive keep-alive is enabled and connection usage is high.
+     *
+     * @return The timeout in milliseconds
+     */
+    public int getEffectiveKeepAliveTimeout() {
+        return endpoint.getEffectiveKeepAliveTimeout();
+    }
+
+
+    /**
+     * Is adaptive keep-alive enabled?
+     *
+     * @return {@code true} if the keep-alive settings are adjusted to the current connection usage
+     */
+    public boolean getAdaptiveKeepAlive() {
+        return endpoint.getAdaptiveKeepAlive();
+    }
+
+
+    /**
+     * Enable or disable adaptive keep-alive.
+     *
+     * @param adaptiveKeepAlive {@code true} to adjust the keep-alive settings to the current connection usage
+     */
+    public void setAdaptiveKeepAlive(boolean adaptiveKeepAlive) {
+        endpoint.setAdaptiveKeepAlive(adaptiveKeepAlive);
+    }
+
+
+    /**
+     * Gets the percentage of {@link #getMaxConnections()} above which adaptive keep-alive starts to reduce keep-alive.
+     *
+     * @return the threshold as a percentage
+     */
+    public int getAdaptiveKeepAliveThreshold() {
+        return endpoint.getAdaptiveKeepAliveThreshold();
+    }
+
+
+    /**
+     * Sets the percentage of {@link #getMaxConnections()} above which adaptive keep-alive starts to reduce keep-alive.
+     *
+     * @param adaptiveKeepAliveThreshold the threshold as a percentage
+     */
+    public void setAdaptiveKeepAliveThreshold(int adaptiveKeepAliveThreshold) {
+        endpoint.setAdaptiveKeepAliveThreshold(adaptiveKeepAliveThreshold);
+    }
+
+
+    /**
+     * Gets the keep-alive timeout adaptive keep-alive uses once all connections are in use.
+     *
+     * @return the timeout in milliseconds
+     */
+    public int getMinKeepAliveTimeout() {
+        return endpoint.getMinKeepAliveTimeout();
+    }
+
+
+    /**
+     * Sets the keep-alive timeout adaptive keep-alive uses once all connections are in use.
+     *
+     * @param minKeepAliveTimeout the timeout in milliseconds
+     */
+    public void setMinKeepAliveTimeout(int minKeepAliveTimeout) {
+        endpoint.setMinKeepAliveTimeout(minKeepAliveTimeout);
+    }
+
+
     /**
      * Gets the address.
      *
@@ -0,0 +1,159 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, log-linear histogram of latencies recorded with microsecond resolution. Values are grouped into buckets
+ * by their highest set bit and each of those ranges is split into {@value #SUB_BUCKET_COUNT} linear sub-buckets which
+ * bounds the relative error of any reported percentile to 12.5%. Recording is lock-free and allocation free so the
+ * histogram may be updated concurrently from request processing threads. Values larger than the highest trackable
+ * value (a little over 19 hours) are recorded in the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int MAX_EXPONENT = 35;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    /**
+     * The largest value, in microseconds, that can be recorded without being truncated.
+     */
+    public static final long HIGHEST_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos The latency to record in nanoseconds. Negative values are ignored.
+     */
+    public void recordNanos(long nanos) {
+        if (nanos >= 0) {
+            record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+
+    /**
+     * Record a latency.
+     *
+     * @param micros The latency to record in microseconds. Negative values are ignored.
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            return;
+        }
+        counts.incrementAndGet(indexOf(Math.min(micros, HIGHEST_TRACKABLE_VALUE)));
+    }
+
+
+    /**
+     * Add all the values recorded by another histogram to this histogram.
+     *
+     * @param other The histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+
+    /**
+     * Remove all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+
+    /**
+     * Obtain the total number of recorded values.
+     *
+     * @return the number of values recorded since creation or the last reset
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+
+    /**
+     * Obtain the value at the given percentile. The value returned is the highest value that is equivalent (i.e. would
+     * be placed in the same bucket) to the recorded value at that percentile.
+     *
+     * @param percentile The percentile in the range 0 to 100
+     *
+     * @return the value at the given percentile in microseconds or zero if no values have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        // Take a snapshot since the counts may change while the percentile is being calculated
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        double p = Math.min(Math.max(percentile, 0), 100);
+        long target = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return highestEquivalentValue(BUCKET_COUNT - 1);
+    }
+
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = ((long) (SUB_BUCKET_COUNT | (index & SUB_BUCKET_MASK))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -35,12 +35,20 @@ public class RequestGroupInfo extends BaseModelMBean {
     private int deadErrorCount = 0;
     private long deadBytesReceived = 0;
     private long deadBytesSent = 0;
+    /*
+     * Unlike the other statistics, the phase histograms are shared by all the request processors since a per processor
+     * histogram would be too large to be created for every HTTP/2 stream.
+     */
+    private final LatencyHistogram[] phaseHistograms = new LatencyHistogram[RequestPhase.values().length];
 
     /**
      * Default constructor.
      */
     public RequestGroupInfo() {
         super();
+        for (int i = 0; i < phaseHistograms.length; i++) {
+            phaseHistograms[i] = new LatencyHistogram();
+        }
     }
 
     /**
@@ -67,6 +75,7 @@ public class RequestGroupInfo extends BaseModelMBean {
             deadErrorCount += rp.getErrorCount();
             deadBytesReceived += rp.getBytesReceived();
             deadBytesSent += rp.getBytesSent();
+            rp.flushPhases(this);
 
             processors.remove(rp);
         }
@@ -224,6 +233,167 @@ public class RequestGroupInfo extends BaseModelMBean {
         }
     }
 
+    /**
+     * Record the time spent in a phase of processing a request.
+     *
+     * @param phase The phase
+     * @param nanos The time spent in the phase in nanoseconds
+     */
+    public void recordPhase(RequestPhase phase, long nanos) {
+        recordPhase(phase.ordinal(), nanos);
+    }
+
+    void recordPhase(int phase, long nanos) {
+        phaseHistograms[phase].recordNanos(nanos);
+    }
+
+    /**
+     * Return the time spent in a phase of processing by the given percentage of requests.
+     *
+     * @param phase      The phase
+     * @param percentile The percentile in the range 0 to 100
+     *
+     * @return the time in microseconds
+     */
+    public long getPhaseTime(RequestPhase phase, double percentile) {
+        return phaseHistograms[phase.ordinal()].getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Return the median time spent in reading and parsing the request line and headers.
+     *
+     * @return the time in microseconds
+     */
+    public long getParseTimeP50() {
+        return getPhaseTime(RequestPhase.PARSE, 50);
+    }
+
+    /**
+     * Return the 99th percentile time spent in reading and parsing the request line and headers.
+     *
+     * @return the time in microseconds
+     */
+    public long getParseTimeP99() {
+        return getPhaseTime(RequestPhase.PARSE, 99);
+    }
+
+    /**
+     * Return the 99.9th percentile time spent in reading and parsing the request line and headers.
+     *
+     * @return the time in microseconds
+     */
+    public long getParseTimeP999() {
+        return getPhaseTime(RequestPhase.PARSE, 99.9);
+    }
+
+    /**
+     * Return the median time spent in mapping the request.
+     *
+     * @return the time in microseconds
+     */
+    public long getMappingTimeP50() {
+        return getPhaseTime(RequestPhase.MAPPING, 50);
+    }
+
+    /**
+     * Return the 99th percentile time spent in mapping the request.
+     *
+     * @return the time in microseconds
+     */
+    public long getMappingTimeP99() {
+        return getPhaseTime(RequestPhase.MAPPING, 99);
+    }
+
+    /**
+     * Return the 99.9th percentile time spent in mapping the request.
+     *
+     * @return the time in microseconds
+     */
+    public long getMappingTimeP999() {
+        return getPhaseTime(RequestPhase.MAPPING, 99.9);
+    }
+
+    /**
+     * Return the median time spent in the container valve pipeline.
+     *
+     * @return the time in microseconds
+     */
+    public long getPipelineTimeP50() {
+        return getPhaseTime(RequestPhase.PIPELINE, 50);
+    }
+
+    /**
+     * Return the 99th percentile time spent in the container valve pipeline.
+     *
+     * @return the time in microseconds
+     */
+    public long getPipelineTimeP99() {
+        return getPhaseTime(RequestPhase.PIPELINE, 99);
+    }
+
+    /**
+     * Return the 99.9th percentile time spent in the container valve pipeline.
+     *
+     * @return the time in microseconds
+     */
+    public long getPipelineTimeP999() {
+        return getPhaseTime(RequestPhase.PIPELINE, 99.9);
+    }
+
+    /**
+     * Return the median time spent in the filter chain and servlet.
+     *
+     * @return the time in microseconds
+     */
+    public long getServiceTimeP50() {
+        return getPhaseTime(RequestPhase.SERVICE, 50);
+    }
+
+    /**
+     * Return the 99th percentile time spent in the filter chain and servlet.
+     *
+     * @return the time in microseconds
+     */
+    public long getServiceTimeP99() {
+        return getPhaseTime(RequestPhase.SERVICE, 99);
+    }
+
+    /**
+     * Return the 99.9th percentile time spent in the filter chain and servlet.
+     *
+     * @return the time in microseconds
+     */
+    public long getServiceTimeP999() {
+        return getPhaseTime(RequestPhase.SERVICE, 99.9);
+    }
+
+    /**
+     * Return the median time spent in committing and flushing the response.
+     *
+     * @return the time in microseconds
+     */
+    public long getCommitTimeP50() {
+        return getPhaseTime(RequestPhase.COMMIT, 50);
+    }
+
+    /**
+     * Return the 99th percentile time spent in committing and flushing the response.
+     *
+     * @return the time in microseconds
+     */
+    public long getCommitTimeP99() {
+        return getPhaseTime(RequestPhase.COMMIT, 99);
+    }
+
+    /**
+     * Return the 99.9th percentile time spent in committing and flushing the response.
+     *
+     * @return the time in microseconds
+     */
+    public long getCommitTimeP999() {
+        return getPhaseTime(RequestPhase.COMMIT, 99.9);
+    }
+
     /**
      * Reset all counters.
      */
@@ -234,5 +404,8 @@ public class RequestGroupInfo extends BaseModelMBean {
         this.setProcessingTime(0);
         this.setMaxTime(0);
         this.setErrorCount(0);
+        for (LatencyHistogram histogram : phaseHistograms) {
+            histogram.reset();
+        }
     }
 }
@@ -16,6 +16,7 @@
  */
 package org.apache.coyote;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import javax.management.ObjectName;
@@ -229,6 +230,52 @@ public class RequestInfo {
     // the time of the last request
     private long lastRequestProcessingTime = 0;
 
+    // Time, in nanoseconds, spent in each phase of the current request.
+    // Negative if the phase has not been recorded.
+    private final long[] phaseTimes = newPhaseTimes();
+
+
+    private static long[] newPhaseTimes() {
+        long[] result = new long[RequestPhase.values().length];
+        Arrays.fill(result, -1);
+        return result;
+    }
+
+
+    /**
+     * Record the time spent in a phase of processing the current request. If a phase is recorded more than once (e.g.
+     * because of async dispatches) the times are added. The times are passed to the global request processor once the
+     * request completes.
+     *
+     * @param phase The phase
+     * @param nanos The time spent in the phase in nanoseconds
+     */
+    public void recordPhase(RequestPhase phase, long nanos) {
+        int i = phase.ordinal();
+        if (phaseTimes[i] < 0) {
+            phaseTimes[i] = nanos;
+        } else {
+            phaseTimes[i] += nanos;
+        }
+    }
+
+
+    /**
+     * Pass the recorded phase times for the current request to the given request group and clear them.
+     *
+     * @param group The request group that will aggregate the phase times
+     */
+    void flushPhases(RequestGroupInfo group) {
+        for (int i = 0; i < phaseTimes.length; i++) {
+            if (phaseTimes[i] >= 0) {
+                if (group != null) {
+                    group.recordPhase(i, phaseTimes[i]);
+                }
+                phaseTimes[i] = -1;
+            }
+        }
+    }
+
 
     /**
      * Called by the processor before recycling the request. It'll collect statistic information.
@@ -248,6 +295,9 @@ public class RequestInfo {
             maxTime = time;
             maxRequestUri = req.requestURI().toString();
         }
+        if (global != null) {
+            flushPhases(global);
+        }
     }
 
     /**
@@ -463,5 +513,7 @@ public class RequestInfo {
         this.errorCount = 0;
 
         this.lastRequestProcessingTime = 0;
+
+        Arrays.fill(phaseTimes, -1);
     }
 }
@@ -0,0 +1,49 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+/**
+ * The phases of request processing for which latency histograms are maintained by {@link RequestGroupInfo}.
+ */
+public enum RequestPhase {
+
+    /**
+     * Reading and parsing the request line and the request headers, measured from the arrival of the first byte of the
+     * request.
+     */
+    PARSE,
+
+    /**
+     * Parsing and normalizing the request URI and mapping the request to a host, context and wrapper.
+     */
+    MAPPING,
+
+    /**
+     * Invoking the valve pipeline of the container. This includes the time spent in the filter chain and servlet.
+     */
+    PIPELINE,
+
+    /**
+     * Invoking the filter chain and the servlet.
+     */
+    SERVICE,
+
+    /**
+     * Committing, completing and flushing the response once the application has finished with it.
+     */
+    COMMIT
+}
@@ -602,6 +602,52 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    private boolean vectorizedHeaderParsing = false;
+
+    /**
+     * Are request header values scanned several bytes at a time rather than one byte at a time?
+     *
+     * @return {@code true} if request header values are scanned several bytes at a time, otherwise {@code false}
+     */
+    public boolean getVectorizedHeaderParsing() {
+        return vectorizedHeaderParsing;
+    }
+
+    /**
+     * Set whether request header values are scanned several bytes at a time rather than one byte at a time. The parsed
+     * headers are the same either way.
+     *
+     * @param vectorizedHeaderParsing {@code true} if request header values should be scanned several bytes at a time
+     */
+    public void setVectorizedHeaderParsing(boolean vectorizedHeaderParsing) {
+        this.vectorizedHeaderParsing = vectorizedHeaderParsing;
+    }
+
+
+    private boolean batchPipelinedResponses = false;
+
+    /**
+     * Are the responses to pipelined requests written with a single flush?
+     *
+     * @return {@code true} if the flush at the end of a response is skipped while further pipelined requests are
+     *             waiting to be processed
+     */
+    public boolean getBatchPipelinedResponses() {
+        return batchPipelinedResponses;
+    }
+
+    /**
+     * Set whether the responses to pipelined requests are written with a single flush. If enabled, the flush at the
+     * end of a response is skipped when the next request has already been received and the response is flushed with
+     * the responses to the following requests. Responses are always written in request order.
+     *
+     * @param batchPipelinedResponses {@code true} if responses to pipelined requests should be batched
+     */
+    public void setBatchPipelinedResponses(boolean batchPipelinedResponses) {
+        this.batchPipelinedResponses = batchPipelinedResponses;
+    }
+
+
     /**
      * Maximum size of trailing headers in bytes
      */
@@ -985,6 +1031,17 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    /**
+     * Get the maximum number of requests which can be performed over a keep-alive connection, taking into account the
+     * current connection usage if adaptive keep-alive is enabled.
+     *
+     * @return The maximum number of requests which can be performed over a keep-alive connection
+     */
+    public int getEffectiveMaxKeepAliveRequests() {
+        return getEndpoint().getEffectiveMaxKeepAliveRequests();
+    }
+
+
     // ----------------------------------------------- HTTPS specific properties
     // ------------------------------------------ passed through to the EndPoint
 
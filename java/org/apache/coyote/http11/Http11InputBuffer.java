@@ -226,6 +226,14 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler,
     }
 
 
+    /**
+     * Set whether header values are scanned several bytes at a time.
+     */
+    void setVectorizedHeaderParsing(boolean vectorizedHeaderParsing) {
+        httpHeaderParser.setVectorized(vectorizedHeaderParsing);
+    }
+
+
     // ---------------------------------------------------- InputBuffer Methods
 
     @Override
@@ -677,6 +685,19 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler,
         }
     }
 
+    /**
+     * Has data for a further, pipelined request already been read? Until the body of the current request has been
+     * fully read, any data in the input buffer may be unread body data, which will be swallowed by
+     * {@link #endRequest()}, so the data is only treated as pipelined once the current request has been finished.
+     *
+     * @return {@code true} if the current request has been fully read and there is unprocessed data in the input
+     *             buffer
+     */
+    boolean hasPipelinedData() {
+        return isFinished() && byteBuffer.hasRemaining();
+    }
+
+
     ByteBuffer getLeftover() {
         int available = byteBuffer.remaining();
         if (available > 0) {
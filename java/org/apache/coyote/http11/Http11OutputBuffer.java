@@ -102,6 +102,19 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
     protected long byteCount = 0;
 
 
+    /**
+     * Should the flush at the end of the current response be skipped so the response is written with the responses to
+     * the following pipelined requests?
+     */
+    private boolean deferFlush = false;
+
+
+    /**
+     * Has the flush at the end of one or more responses been skipped?
+     */
+    private boolean flushDeferred = false;
+
+
     /**
      * Constructs a new Http11OutputBuffer.
      *
@@ -256,6 +269,7 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
      */
     public void recycle() {
         nextRequest();
+        flushDeferred = false;
         socketWrapper = null;
     }
 
@@ -277,6 +291,31 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
         ackSent = false;
         responseFinished = false;
         byteCount = 0;
+        deferFlush = false;
+    }
+
+
+    /**
+     * Skip the flush at the end of the current response. The response will be flushed by a later response or by
+     * {@link #flushDeferred()}.
+     *
+     * @param deferFlush {@code true} to skip the flush at the end of the current response
+     */
+    void setDeferFlush(boolean deferFlush) {
+        this.deferFlush = deferFlush;
+    }
+
+
+    /**
+     * Flush any responses for which the flush was skipped.
+     *
+     * @throws IOException if an I/O error occurs while flushing
+     */
+    void flushDeferred() throws IOException {
+        if (flushDeferred) {
+            flushDeferred = false;
+            flushBuffer(true);
+        }
     }
 
 
@@ -595,7 +634,13 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
 
         @Override
         public void end() throws IOException {
-            socketWrapper.flush(response.getWriteListener() == null);
+            boolean blocking = response.getWriteListener() == null;
+            if (deferFlush && blocking) {
+                flushDeferred = true;
+            } else {
+                flushDeferred = false;
+                socketWrapper.flush(blocking);
+            }
         }
 
         @Override
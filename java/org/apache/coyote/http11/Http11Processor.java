@@ -36,6 +36,7 @@ import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
 import org.apache.coyote.RequestInfo;
+import org.apache.coyote.RequestPhase;
 import org.apache.coyote.UpgradeProtocol;
 import org.apache.coyote.UpgradeToken;
 import org.apache.coyote.http11.filters.BufferedInputFilter;
@@ -62,6 +63,7 @@ import org.apache.tomcat.util.http.parser.TokenList;
 import org.apache.tomcat.util.log.UserDataHelper;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler.SocketState;
 import org.apache.tomcat.util.net.ApplicationBufferHandler;
+import org.apache.tomcat.util.net.KeepAliveCloseReason;
 import org.apache.tomcat.util.net.SSLSupport;
 import org.apache.tomcat.util.net.SendfileDataBase;
 import org.apache.tomcat.util.net.SendfileKeepAliveState;
@@ -121,6 +123,13 @@ public class Http11Processor extends AbstractProcessor {
      */
     private volatile boolean readComplete = true;
 
+    /**
+     * Flag that indicates the response may be left in the write buffer if the next pipelined request has already been
+     * received. Only set while the request is processed by {@link #service(SocketWrapperBase)} which ensures that the
+     * response is flushed before the socket is released.
+     */
+    private boolean batchResponse = false;
+
     /**
      * HTTP/1.1 flag.
      */
@@ -169,6 +178,7 @@ public class Http11Processor extends AbstractProcessor {
         this.httpParser = httpParser;
 
         inputBuffer = new Http11InputBuffer(request, protocol.getMaxHttpRequestHeaderSize(), httpParser);
+        inputBuffer.setVectorizedHeaderParsing(protocol.getVectorizedHeaderParsing());
         request.setInputBuffer(inputBuffer);
 
         outputBuffer = new Http11OutputBuffer(response, protocol.getMaxHttpResponseHeaderSize());
@@ -273,6 +283,7 @@ public class Http11Processor extends AbstractProcessor {
                 if (!inputBuffer.parseRequestLine(keptAlive, protocol.getConnectionTimeout(),
                         protocol.getKeepAliveTimeout())) {
                     if (inputBuffer.getParsingRequestLinePhase() == -1) {
+                        flushDeferredResponses();
                         return SocketState.UPGRADING;
                     } else if (handleIncompleteRequestLineRead()) {
                         break;
@@ -299,6 +310,8 @@ public class Http11Processor extends AbstractProcessor {
                         readComplete = false;
                         break;
                     }
+                    request.getRequestProcessor().recordPhase(RequestPhase.PARSE,
+                            System.nanoTime() - request.getStartTimeNanos());
                     if (!protocol.getDisableUploadTimeout()) {
                         socketWrapper.setReadTimeout(protocol.getConnectionUploadTimeout());
                     }
@@ -387,13 +400,20 @@ public class Http11Processor extends AbstractProcessor {
                 }
             }
 
-            int maxKeepAliveRequests = protocol.getMaxKeepAliveRequests();
+            int maxKeepAliveRequests = protocol.getEffectiveMaxKeepAliveRequests();
             if (maxKeepAliveRequests == 1) {
                 keepAlive = false;
+                if (protocol.getMaxKeepAliveRequests() != 1) {
+                    // Adaptive keep-alive closes the connection as the connection limit has been reached
+                    protocol.getEndpoint().keepAliveClosed(KeepAliveCloseReason.ADAPTIVE);
+                }
             } else if (maxKeepAliveRequests > 0 && socketWrapper.decrementKeepAlive() <= 0) {
                 keepAlive = false;
+                protocol.getEndpoint().keepAliveClosed(KeepAliveCloseReason.REQUEST_LIMIT);
             }
 
+            batchResponse = protocol.getBatchPipelinedResponses();
+
             // Process the request in the adapter
             if (getErrorState().isIoAllowed()) {
                 try {
@@ -440,6 +460,7 @@ public class Http11Processor extends AbstractProcessor {
                 // endRequest() in that case.
                 endRequest();
             }
+            batchResponse = false;
             rp.setStage(org.apache.coyote.Constants.STAGE_ENDOUTPUT);
 
             // If there was an error, make sure the request is counted as
@@ -466,6 +487,9 @@ public class Http11Processor extends AbstractProcessor {
             sendfileState = processSendfile(socketWrapper);
         }
 
+        // Write any responses to pipelined requests that are still in the write buffer
+        flushDeferredResponses();
+
         rp.setStage(org.apache.coyote.Constants.STAGE_ENDED);
 
         if (getErrorState().isError() || (protocol.isPaused() && !isAsync())) {
@@ -997,7 +1021,7 @@ public class Http11Processor extends AbstractProcessor {
                         isConnectionToken(request.getMimeHeaders(), Constants.KEEP_ALIVE_HEADER_VALUE_TOKEN);
 
                 if (connectionKeepAlivePresent) {
-                    int keepAliveTimeout = protocol.getKeepAliveTimeout();
+                    int keepAliveTimeout = protocol.getEffectiveKeepAliveTimeout();
 
                     if (keepAliveTimeout > 0) {
                         String value = "timeout=" + keepAliveTimeout / 1000L;
@@ -1202,7 +1226,7 @@ public class Http11Processor extends AbstractProcessor {
         if (getErrorState().isIoAllowed()) {
             try {
                 action(ActionCode.COMMIT, null);
-                outputBuffer.end();
+                finishResponse();
             } catch (IOException ioe) {
                 setErrorState(ErrorState.CLOSE_CONNECTION_NOW, ioe);
             } catch (Throwable t) {
@@ -1214,8 +1238,24 @@ public class Http11Processor extends AbstractProcessor {
     }
 
 
+    /*
+     * Complete responses ahead of an error must still be written so this is attempted even if the connection is
+     * about to be closed.
+     */
+    private void flushDeferredResponses() {
+        try {
+            outputBuffer.flushDeferred();
+        } catch (IOException ioe) {
+            setErrorState(ErrorState.CLOSE_CONNECTION_NOW, ioe);
+        }
+    }
+
+
     @Override
     protected final void finishResponse() throws IOException {
+        // Skip the flush if the response can be written with the response to the next pipelined request
+        outputBuffer.setDeferFlush(batchResponse && keepAlive && !isAsync() && !getErrorState().isError() &&
+                sendfileData == null && !protocol.isPaused() && inputBuffer.hasPipelinedData());
         outputBuffer.end();
     }
 
@@ -17,6 +17,7 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Base class for all streams other than stream 0, the connection. Primarily provides functionality shared between full
@@ -70,6 +71,15 @@ abstract class AbstractNonZeroStream extends AbstractStream {
     abstract ByteBuffer getInputByteBuffer(boolean create);
 
 
+    /**
+     * Obtain the lock that must be held while writing DATA frame payload data to the ByteBuffer returned by
+     * {@link #getInputByteBuffer(boolean)}.
+     *
+     * @return the lock that guards the input ByteBuffer for this stream
+     */
+    abstract Lock getInputByteBufferLock();
+
+
     /**
      * Notify that some data has been received.
      *
@@ -42,6 +42,13 @@ public class HPackHuffman {
 
     private static final HuffmanCode[] HUFFMAN_CODES;
 
+    /*
+     * Flat copies of the codes and code lengths for the 256 octets, so that the encoder does not have to dereference a
+     * HuffmanCode for every character.
+     */
+    private static final int[] ENCODING_VALUES = new int[256];
+    private static final byte[] ENCODING_LENGTHS = new byte[256];
+
     /**
      * array based tree representation of a huffman code.
      * <p/>
@@ -317,6 +324,10 @@ public class HPackHuffman {
         codes[255] = new HuffmanCode(0x3ffffee, 26);
         codes[256] = new HuffmanCode(0x3fffffff, 30);
         HUFFMAN_CODES = codes;
+        for (int i = 0; i < ENCODING_VALUES.length; i++) {
+            ENCODING_VALUES[i] = codes[i].value;
+            ENCODING_LENGTHS[i] = (byte) codes[i].length;
+        }
 
         // lengths determined by experimentation, just set it to something large then see how large it actually ends up
         int[] codingTree = new int[256];
@@ -501,90 +512,77 @@ public class HPackHuffman {
      * @return true if encoding succeeded
      */
     public static boolean encode(ByteBuffer buffer, String toEncode) {
-        if (buffer.remaining() <= toEncode.length()) {
+        int stringLength = toEncode.length();
+        if (buffer.remaining() <= stringLength) {
             return false;
         }
-        int start = buffer.position();
-        // this sucks, but we need to put the length first
-        // and we don't really have any option but to calculate it in advance to make sure we have left enough room
-        // so we end up iterating twice
-        int length = 0;
-        for (int i = 0; i < toEncode.length(); ++i) {
+        // The length has to be written first so the encoded length is calculated in advance
+        long length = 0;
+        for (int i = 0; i < stringLength; ++i) {
             char c = toEncode.charAt(i);
             if (c > 255) {
                 throw new IllegalArgumentException(
                         sm.getString("hpack.invalidCharacter", Character.toString(c), Integer.valueOf(c)));
             }
-            HuffmanCode code = HUFFMAN_CODES[c];
-            length += code.length;
+            length += ENCODING_LENGTHS[c];
+        }
+        if (length > Integer.MAX_VALUE) {
+            return false;
+        }
+        int byteLength = (int) ((length + 7) >>> 3);
+        int prefixLength = integerLength(byteLength, 7);
+        if (buffer.remaining() < prefixLength + byteLength) {
+            return false;
+        }
+        // Don't use the encoded version if it is longer than the original. The padding byte is not counted.
+        if (stringLength > 0 && prefixLength + (length >>> 3) > stringLength) {
+            return false;
         }
-        int byteLength = length / 8 + (length % 8 == 0 ? 0 : 1);
 
         buffer.put((byte) (1 << 7));
         Hpack.encodeInteger(buffer, byteLength, 7);
 
-
-        int bytePos = 0;
-        byte currentBufferByte = 0;
-        for (int i = 0; i < toEncode.length(); ++i) {
+        /*
+         * Codes are at most 30 bits long and fewer than 8 bits are pending after each character so the pending bits
+         * always fit in a long. Bits that have been written are shifted out of the top of the long.
+         */
+        long bits = 0;
+        int pending = 0;
+        for (int i = 0; i < stringLength; ++i) {
             char c = toEncode.charAt(i);
-            HuffmanCode code = HUFFMAN_CODES[c];
-            if (code.length + bytePos <= 8) {
-                // it fits in the current byte
-                currentBufferByte |= (byte) ((code.value & 0xFF) << 8 - (code.length + bytePos));
-                bytePos += code.length;
-            } else {
-                // it does not fit, it may need up to 4 bytes
-                int val = code.value;
-                int rem = code.length;
-                while (rem > 0) {
-                    if (!buffer.hasRemaining()) {
-                        buffer.position(start);
-                        return false;
-                    }
-                    int remainingInByte = 8 - bytePos;
-                    if (rem > remainingInByte) {
-                        currentBufferByte |= (byte) (val >> (rem - remainingInByte));
-                    } else {
-                        currentBufferByte |= (byte) (val << (remainingInByte - rem));
-                    }
-                    if (rem > remainingInByte) {
-                        buffer.put(currentBufferByte);
-                        currentBufferByte = 0;
-                        bytePos = 0;
-                    } else {
-                        bytePos = rem;
-                    }
-                    rem -= remainingInByte;
-                }
-            }
-            if (bytePos == 8) {
-                if (!buffer.hasRemaining()) {
-                    buffer.position(start);
-                    return false;
-                }
-                buffer.put(currentBufferByte);
-                currentBufferByte = 0;
-                bytePos = 0;
-            }
-            if (buffer.position() - start > toEncode.length()) {
-                // the encoded version is longer than the original
-                // just return false
-                buffer.position(start);
-                return false;
+            int codeLength = ENCODING_LENGTHS[c];
+            bits = (bits << codeLength) | ENCODING_VALUES[c];
+            pending += codeLength;
+            while (pending >= 8) {
+                pending -= 8;
+                buffer.put((byte) (bits >>> pending));
             }
         }
-        if (bytePos > 0) {
-            // add the EOS bytes if we have not finished on a single byte
-            if (!buffer.hasRemaining()) {
-                buffer.position(start);
-                return false;
-            }
-            buffer.put((byte) (currentBufferByte | ((0xFF) >> bytePos)));
+        if (pending > 0) {
+            // pad with the most significant bits of the EOS code
+            buffer.put((byte) ((bits << (8 - pending)) | (0xFF >>> pending)));
         }
         return true;
     }
 
+
+    /*
+     * The number of bytes required to encode the given value as an HPACK integer with an n bit prefix.
+     */
+    private static int integerLength(int value, int n) {
+        int twoNminus1 = (1 << n) - 1;
+        if (value < twoNminus1) {
+            return 1;
+        }
+        int length = 2;
+        value -= twoNminus1;
+        while (value >= 128) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
     /**
      * Represents a Huffman code with a value and bit length.
      */
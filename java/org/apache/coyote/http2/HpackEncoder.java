@@ -16,12 +16,14 @@
  */
 package org.apache.coyote.http2;
 
+import java.io.Serial;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -63,6 +65,15 @@ class HpackEncoder {
 
     };
 
+    /*
+     * The maximum number of encoded strings retained per connection and the maximum length of a string that will be
+     * retained.
+     */
+    private static final int HUFFMAN_CACHE_SIZE = 64;
+    private static final int HUFFMAN_CACHE_MAX_STRING_LENGTH = 256;
+
+    private static final byte[] NOT_HUFFMAN_ENCODED = new byte[0];
+
     private int headersIterator = -1;
     private boolean firstPass = true;
 
@@ -108,6 +119,22 @@ class HpackEncoder {
 
     private final HpackHeaderFunction hpackHeaderFunction;
 
+    /*
+     * Huffman encoded names and values, including the length prefix, for the strings most recently written by this
+     * encoder. The responses on a connection usually repeat the same content types, cache directives, security headers
+     * and dates so most of the strings that are not already in the dynamic table can be copied rather than encoded
+     * again. NOT_HUFFMAN_ENCODED records that the Huffman encoding of a string is no shorter than the original.
+     */
+    private final Map<String,byte[]> huffmanCache = new LinkedHashMap<>(HUFFMAN_CACHE_SIZE, 0.75f, true) {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,byte[]> eldest) {
+            return size() > HUFFMAN_CACHE_SIZE;
+        }
+    };
+
     HpackEncoder() {
         this(DEFAULT_HEADER_FUNCTION);
     }
@@ -238,7 +265,7 @@ class HpackEncoder {
      */
     private void writeHuffmanEncodableName(ByteBuffer target, String headerName) {
         if (hpackHeaderFunction.shouldUseHuffman(headerName)) {
-            if (HPackHuffman.encode(target, headerName)) {
+            if (writeHuffman(target, headerName)) {
                 return;
             }
         }
@@ -252,7 +279,7 @@ class HpackEncoder {
 
     private void writeHuffmanEncodableValue(ByteBuffer target, String headerName, String val) {
         if (hpackHeaderFunction.shouldUseHuffman(headerName, val)) {
-            if (!HPackHuffman.encode(target, val)) {
+            if (!writeHuffman(target, val)) {
                 writeValueString(target, val);
             }
         } else {
@@ -260,6 +287,31 @@ class HpackEncoder {
         }
     }
 
+    private boolean writeHuffman(ByteBuffer target, String str) {
+        if (str.length() > HUFFMAN_CACHE_MAX_STRING_LENGTH) {
+            return HPackHuffman.encode(target, str);
+        }
+        byte[] encoded = huffmanCache.get(str);
+        if (encoded == null) {
+            int start = target.position();
+            if (HPackHuffman.encode(target, str)) {
+                encoded = new byte[target.position() - start];
+                target.get(start, encoded);
+                huffmanCache.put(str, encoded);
+                return true;
+            } else if (target.remaining() > str.length()) {
+                // Not a lack of space so the encoded version must be longer than the original
+                huffmanCache.put(str, NOT_HUFFMAN_ENCODED);
+            }
+            return false;
+        }
+        if (encoded == NOT_HUFFMAN_ENCODED || target.remaining() < encoded.length) {
+            return false;
+        }
+        target.put(encoded);
+        return true;
+    }
+
     private void writeValueString(ByteBuffer target, String val) {
         target.put((byte) 0); // to use encodeInteger we need to place the first byte in the buffer.
         Hpack.encodeInteger(target, val.length(), 7);
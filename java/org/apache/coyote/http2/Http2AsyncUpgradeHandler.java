@@ -52,6 +52,7 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
     private final Lock headerWriteLock = new ReentrantLock();
     // Ensures thread triggers the stream reset is the first to send a RST frame
     private final Lock sendResetLock = new ReentrantLock();
+    private final Lock coalescedWriteLock = new ReentrantLock();
     private final AtomicReference<Throwable> error = new AtomicReference<>();
     private final AtomicReference<IOException> applicationIOE = new AtomicReference<>();
 
@@ -256,6 +257,10 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
         }
         if (writable) {
             ByteUtil.set31Bits(header, 5, stream.getIdAsInt());
+            if (isWriteCoalesced(len)) {
+                writeCoalesced(stream, header, data, len);
+                return;
+            }
             int orgLimit = data.limit();
             data.limit(data.position() + len);
             socketWrapper.write(BlockingMode.BLOCK, protocol.getWriteTimeout(), TimeUnit.MILLISECONDS, null,
@@ -266,6 +271,29 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
     }
 
 
+    @Override
+    protected Lock getCoalescedWriteLock() {
+        return coalescedWriteLock;
+    }
+
+
+    @Override
+    protected void writeFrames(ByteBuffer[] buffers) throws IOException {
+        /*
+         * Use a completion handler for this write rather than the shared error state since a concurrent write for
+         * another stream could otherwise consume, and report, the failure of this write. The write blocks until the
+         * handler has been called.
+         */
+        CoalescedWriteCompletion completion = new CoalescedWriteCompletion();
+        socketWrapper.write(BlockingMode.BLOCK, protocol.getWriteTimeout(), TimeUnit.MILLISECONDS, null,
+                SocketWrapperBase.COMPLETE_WRITE, completion, buffers);
+        IOException ioe = completion.failure;
+        if (ioe != null) {
+            handleAppInitiatedIOException(ioe);
+        }
+    }
+
+
     @Override
     void writeWindowUpdate(AbstractNonZeroStream stream, int increment, boolean applicationInitiated)
             throws IOException {
@@ -587,4 +615,24 @@ public class Http2AsyncUpgradeHandler extends Http2UpgradeHandler {
             payload = ByteBuffer.allocate(payloadSize);
         }
     }
+
+
+    private static final class CoalescedWriteCompletion implements CompletionHandler<Long,Void> {
+
+        private volatile IOException failure;
+
+        @Override
+        public void completed(Long result, Void attachment) {
+            // NO-OP
+        }
+
+        @Override
+        public void failed(Throwable t, Void attachment) {
+            if (t instanceof IOException) {
+                failure = (IOException) t;
+            } else {
+                failure = new IOException(t);
+            }
+        }
+    }
 }
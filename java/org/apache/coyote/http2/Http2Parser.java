@@ -23,6 +23,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.Lock;
 
 import jakarta.servlet.http.WebConnection;
 
@@ -201,7 +202,9 @@ class Http2Parser {
                 output.receivedEndOfStream(streamId);
             }
         } else {
-            synchronized (dest) {
+            Lock destLock = output.getRequestBodyLock(streamId);
+            destLock.lock();
+            try {
                 if (dest.remaining() < dataLength) {
                     // Client has sent more data than permitted by Window size
                     swallowPayload(streamId, FrameType.DATA.getId(), dataLength, false, buffer);
@@ -228,6 +231,8 @@ class Http2Parser {
                     output.receivedEndOfStream(streamId);
                 }
                 output.endRequestBodyFrame(streamId, dataLength);
+            } finally {
+                destLock.unlock();
             }
         }
     }
@@ -834,6 +839,18 @@ class Http2Parser {
 
         void endRequestBodyFrame(int streamId, int dataLength) throws Http2Exception, IOException;
 
+        /**
+         * Obtain the lock that the parser holds while writing DATA frame payload to the ByteBuffer returned by
+         * {@link #startRequestBodyFrame(int, int, boolean)}.
+         *
+         * @param streamId The stream on which the payload was received
+         *
+         * @return The lock that guards the ByteBuffer for the stream
+         *
+         * @throws Http2Exception If the stream is not known
+         */
+        Lock getRequestBodyLock(int streamId) throws Http2Exception;
+
         void receivedEndOfStream(int streamId) throws Http2Exception;
 
         /**
@@ -18,6 +18,7 @@ package org.apache.coyote.http2;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.management.ObjectName;
 
@@ -105,6 +106,10 @@ public class Http2Protocol implements UpgradeProtocol {
     private int overheadDataThreshold = DEFAULT_OVERHEAD_DATA_THRESHOLD;
     private int overheadWindowUpdateThreshold = DEFAULT_OVERHEAD_WINDOW_UPDATE_THRESHOLD;
 
+    private int writeCoalescingThreshold = 0;
+    private final LongAdder coalescedFrameCount = new LongAdder();
+    private final LongAdder coalescedWriteCount = new LongAdder();
+
     private boolean initiatePingDisabled = false;
     private boolean useSendfile = true;
     private boolean allowSchemeMismatch = false;
@@ -521,6 +526,55 @@ public class Http2Protocol implements UpgradeProtocol {
     }
 
 
+    /**
+     * Returns the largest DATA frame payload that will be written together with the DATA frames of other streams on the
+     * same connection.
+     *
+     * @return the threshold in bytes, zero if write coalescing is disabled
+     */
+    public int getWriteCoalescingThreshold() {
+        return writeCoalescingThreshold;
+    }
+
+
+    /**
+     * Sets the largest DATA frame payload that will be written together with the DATA frames of other streams on the
+     * same connection. Zero or less disables write coalescing.
+     *
+     * @param writeCoalescingThreshold the threshold in bytes
+     */
+    public void setWriteCoalescingThreshold(int writeCoalescingThreshold) {
+        this.writeCoalescingThreshold = writeCoalescingThreshold;
+    }
+
+
+    /**
+     * Returns the number of DATA frames that have been written by coalesced writes. Divide by
+     * {@link #getCoalescedWriteCount()} to obtain the average number of frames per write.
+     *
+     * @return the number of frames
+     */
+    public long getCoalescedFrameCount() {
+        return coalescedFrameCount.sum();
+    }
+
+
+    /**
+     * Returns the number of coalesced writes, each of which wrote one or more DATA frames.
+     *
+     * @return the number of writes
+     */
+    public long getCoalescedWriteCount() {
+        return coalescedWriteCount.sum();
+    }
+
+
+    void coalescedWrite(int frameCount) {
+        coalescedWriteCount.increment();
+        coalescedFrameCount.add(frameCount);
+    }
+
+
     /**
      * Returns the payload size threshold for DATA frame overhead tracking.
      *
@@ -20,10 +20,12 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -172,6 +174,8 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     private final PingManager pingManager = getPingManager();
     private volatile int newStreamsSinceLastPrune = 0;
     private final Set<Stream> backLogStreams = new HashSet<>();
+    // DATA frames waiting to be written by writeCoalesced()
+    private final Queue<CoalescedFrame> coalescedFrames = new ConcurrentLinkedQueue<>();
     private long backLogSize = 0;
     // The time at which the connection will timeout unless data arrives before
     // then. -1 means no timeout.
@@ -933,6 +937,10 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
         }
         if (writable) {
             ByteUtil.set31Bits(header, 5, stream.getIdAsInt());
+            if (isWriteCoalesced(len)) {
+                writeCoalesced(stream, header, data, len);
+                return;
+            }
             socketWrapper.getLock().lock();
             try {
                 socketWrapper.write(true, header, 0, header.length);
@@ -950,6 +958,112 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
+    /**
+     * Determines if a DATA frame with the given payload length should be written together with the DATA frames of
+     * other streams.
+     *
+     * @param len the payload length
+     *
+     * @return {@code true} if the frame should be written with {@link #writeCoalesced(Stream, byte[], ByteBuffer, int)}
+     */
+    protected boolean isWriteCoalesced(int len) {
+        int threshold = protocol.getWriteCoalescingThreshold();
+        return threshold > 0 && len <= threshold;
+    }
+
+
+    /**
+     * Queues a DATA frame and then writes all the queued frames, from this and any other stream, with a single write.
+     * While one thread writes, the threads for other streams queue their frames and wait for the lock. The next thread
+     * to obtain the lock writes all of them, so many small frames result in far fewer socket writes (and TLS records).
+     * When this method returns the frame has been written, either by this thread or by the thread that held the lock
+     * when it was queued, so the caller may re-use the payload buffer. If a write fails, the failure is reported to the
+     * threads for all the streams with a frame in that write.
+     *
+     * @param stream the stream the frame belongs to
+     * @param header the frame header
+     * @param data   the buffer containing the frame payload starting at its current position
+     * @param len    the payload length
+     *
+     * @throws IOException if the frame could not be written
+     */
+    protected void writeCoalesced(Stream stream, byte[] header, ByteBuffer data, int len) throws IOException {
+        int orgLimit = data.limit();
+        data.limit(data.position() + len);
+        CoalescedFrame ownFrame = new CoalescedFrame(ByteBuffer.wrap(header), data);
+        coalescedFrames.add(ownFrame);
+        Lock lock = getCoalescedWriteLock();
+        lock.lock();
+        try {
+            CoalescedFrame frame = coalescedFrames.poll();
+            if (frame != null) {
+                List<CoalescedFrame> frames = new ArrayList<>();
+                do {
+                    frames.add(frame);
+                    frame = coalescedFrames.poll();
+                } while (frame != null);
+                ByteBuffer[] buffers = new ByteBuffer[frames.size() * 2];
+                for (int i = 0; i < frames.size(); i++) {
+                    buffers[i * 2] = frames.get(i).header;
+                    buffers[i * 2 + 1] = frames.get(i).data;
+                }
+                if (log.isTraceEnabled()) {
+                    log.trace(sm.getString("upgradeHandler.coalescedWrite", connectionId, stream.getIdAsString(),
+                            Integer.toString(frames.size())));
+                }
+                try {
+                    writeFrames(buffers);
+                } catch (IOException ioe) {
+                    // The threads for the other streams are waiting for the lock and need to see the failure
+                    for (CoalescedFrame writtenFrame : frames) {
+                        writtenFrame.failure = ioe;
+                    }
+                    throw ioe;
+                }
+                protocol.coalescedWrite(frames.size());
+            }
+            if (ownFrame.failure != null) {
+                // Written by another thread and the write failed
+                throw new IOException(sm.getString("upgradeHandler.coalescedWriteFailed", connectionId,
+                        stream.getIdAsString()), ownFrame.failure);
+            }
+        } finally {
+            lock.unlock();
+            data.limit(orgLimit);
+        }
+    }
+
+
+    /**
+     * Obtain the lock that must be held to write coalesced frames.
+     *
+     * @return the socket lock since all writes to the socket are made while holding it
+     */
+    protected Lock getCoalescedWriteLock() {
+        return socketWrapper.getLock();
+    }
+
+
+    /**
+     * Write complete frames to the socket and flush them. Called with the lock returned by
+     * {@link #getCoalescedWriteLock()} held.
+     *
+     * @param buffers the frames to write
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected void writeFrames(ByteBuffer[] buffers) throws IOException {
+        try {
+            for (ByteBuffer buffer : buffers) {
+                socketWrapper.write(true, buffer);
+            }
+            socketWrapper.flush(true);
+        } catch (IOException ioe) {
+            handleAppInitiatedIOException(ioe);
+        }
+    }
+
+
     /**
      * Handle the end of stream for a given stream, updating active stream counts.
      *
@@ -1301,6 +1415,20 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                             break;
                         }
 
+                        if (!s.getIncremental()) {
+                            /*
+                             * Non-incremental streams are ordered before the incremental streams at the same urgency
+                             * and iteration 1 established that they can be fully allocated. Allocate them first so
+                             * that only what is left is shared between the incremental streams. Sharing the full
+                             * increment would allocate more than the connection window.
+                             */
+                            remaining = allocate(s, remaining);
+                            result.add(s);
+                            orderedStreamsIterator.remove();
+                            backLogStreams.remove(s);
+                            continue;
+                        }
+
                         // Cast to long during the intermediate calculation to avoid integer overflow in multiplication
                         int share = (int) ((long) s.getConnectionAllocationRequested() * remaining /
                                 requestedAllocationForIncrementalStreams);
@@ -1667,6 +1795,12 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
+    @Override
+    public Lock getRequestBodyLock(int streamId) throws Http2Exception {
+        return getAbstractNonZeroStream(streamId, true).getInputByteBufferLock();
+    }
+
+
     @Override
     public void endRequestBodyFrame(int streamId, int dataLength) throws Http2Exception, IOException {
         AbstractNonZeroStream abstractNonZeroStream = getAbstractNonZeroStream(streamId, true);
@@ -2222,4 +2356,21 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
             payload = ByteBuffer.allocate(payload.capacity() * 2);
         }
     }
+
+
+    /*
+     * A DATA frame waiting to be written by writeCoalesced(). The failure is set, and read, while holding the coalesced
+     * write lock.
+     */
+    private static final class CoalescedFrame {
+
+        private final ByteBuffer header;
+        private final ByteBuffer data;
+        private IOException failure;
+
+        private CoalescedFrame(ByteBuffer header, ByteBuffer data) {
+            this.header = header;
+            this.data = data;
+        }
+    }
 }
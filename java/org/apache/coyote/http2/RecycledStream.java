@@ -17,6 +17,8 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a closed stream and is used to correctly respond to (or ignore) frames for the stream that are processed
@@ -66,4 +68,16 @@ class RecycledStream extends AbstractNonZeroStream {
             return null;
         }
     }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The ByteBuffer returned by {@link #getInputByteBuffer(boolean)} is never shared so a new lock is returned to
+     * avoid increasing the memory used by every recycled stream.
+     */
+    @Override
+    Lock getInputByteBufferLock() {
+        return new ReentrantLock();
+    }
 }
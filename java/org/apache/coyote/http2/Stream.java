@@ -24,7 +24,9 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
@@ -712,6 +714,12 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
     }
 
 
+    @Override
+    final Lock getInputByteBufferLock() {
+        return inputBuffer.getInBufferLock();
+    }
+
+
     final void receivedStartOfHeaders(boolean headersEndStream) {
         if (headerState == HEADER_STATE_START) {
             headerState = HEADER_STATE_PSEUDO;
@@ -1203,6 +1211,8 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
 
         abstract ByteBuffer getInBuffer(boolean create);
 
+        abstract Lock getInBufferLock();
+
         abstract void onDataAvailable() throws IOException;
 
         abstract boolean isReadyForRead();
@@ -1218,6 +1228,12 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
     class StandardStreamInputBuffer extends StreamInputBuffer {
 
         private final Lock readStateLock = new ReentrantLock();
+        /*
+         * Guards inBuffer. A Lock rather than a monitor is used so that a stream running on a virtual thread that is
+         * waiting for data does not pin its carrier thread.
+         */
+        private final Lock inBufferLock = new ReentrantLock();
+        private final Condition inBufferChanged = inBufferLock.newCondition();
         /*
          * Two buffers are required to avoid various multi-threading issues. These issues arise from the fact that the
          * Stream (or the Request/Response) used by the application is processed in one thread but the connection is
@@ -1252,14 +1268,11 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
 
             // It is still possible that the stream has been closed and inBuffer
             // set to null between the call to ensureBuffersExist() above and
-            // the sync below. The checks just before and just inside the sync
-            // ensure we don't get any NPEs reported.
-            ByteBuffer tmpInBuffer = inBuffer;
-            if (tmpInBuffer == null) {
-                return -1;
-            }
+            // the lock below. The check just inside the lock ensures we don't
+            // get any NPEs reported.
             // Ensure that only one thread accesses inBuffer at a time
-            synchronized (tmpInBuffer) {
+            inBufferLock.lock();
+            try {
                 if (inBuffer == null) {
                     return -1;
                 }
@@ -1273,9 +1286,9 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
 
                         long readTimeout = handler.getProtocol().getStreamReadTimeout();
                         if (readTimeout < 0) {
-                            inBuffer.wait();
+                            inBufferChanged.await();
                         } else {
-                            inBuffer.wait(readTimeout);
+                            inBufferChanged.await(readTimeout, TimeUnit.MILLISECONDS);
                         }
 
                         if (resetReceived) {
@@ -1314,6 +1327,8 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
                     // Should never happen
                     throw new IllegalStateException();
                 }
+            } finally {
+                inBufferLock.unlock();
             }
 
             applicationBufferHandler.setByteBuffer(ByteBuffer.wrap(outBuffer, 0, written));
@@ -1410,9 +1425,7 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
                     if (log.isTraceEnabled()) {
                         log.trace(sm.getString("stream.inputBuffer.signal"));
                     }
-                    synchronized (inBuffer) {
-                        inBuffer.notifyAll();
-                    }
+                    signalInBufferChanged();
                 }
             } finally {
                 readStateLock.unlock();
@@ -1429,6 +1442,22 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         }
 
 
+        @Override
+        final Lock getInBufferLock() {
+            return inBufferLock;
+        }
+
+
+        private void signalInBufferChanged() {
+            inBufferLock.lock();
+            try {
+                inBufferChanged.signalAll();
+            } finally {
+                inBufferLock.unlock();
+            }
+        }
+
+
         @Override
         final void insertReplayedBody(ByteChunk body) {
             readStateLock.lock();
@@ -1462,9 +1491,12 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         @Override
         final void receiveReset() {
             if (inBuffer != null) {
-                synchronized (inBuffer) {
+                inBufferLock.lock();
+                try {
                     resetReceived = true;
-                    inBuffer.notifyAll();
+                    inBufferChanged.signalAll();
+                } finally {
+                    inBufferLock.unlock();
                 }
             }
 
@@ -1499,9 +1531,7 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         @Override
         final void notifyEof() {
             if (inBuffer != null) {
-                synchronized (inBuffer) {
-                    inBuffer.notifyAll();
-                }
+                signalInBufferChanged();
             }
         }
 
@@ -1515,7 +1545,8 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
             }
             if (inBuffer != null) {
                 int unreadByteCount;
-                synchronized (inBuffer) {
+                inBufferLock.lock();
+                try {
                     unreadByteCount = inBuffer.position();
                     if (log.isTraceEnabled()) {
                         log.trace(sm.getString("stream.inputBuffer.swallowUnread", Integer.valueOf(unreadByteCount)));
@@ -1524,7 +1555,9 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
                         inBuffer.position(0);
                         inBuffer.limit(inBuffer.limit() - unreadByteCount);
                     }
-                    inBuffer.notifyAll();
+                    inBufferChanged.signalAll();
+                } finally {
+                    inBufferLock.unlock();
                 }
                 // Do this outside of the sync because:
                 // - it doesn't need to be inside the sync
@@ -1583,6 +1616,12 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
             return null;
         }
 
+        @Override
+        Lock getInBufferLock() {
+            // The saved request body is never written by the parser
+            return new ReentrantLock();
+        }
+
         @Override
         void onDataAvailable() throws IOException {
             // NO-OP
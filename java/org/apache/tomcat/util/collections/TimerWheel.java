@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel for tracking large numbers of deadlines. Scheduling, rescheduling and cancelling a deadline
+ * are O(1) operations and the cost of processing expired deadlines is proportional to the number of deadlines that
+ * fall in the elapsed ticks rather than the total number of deadlines being tracked. Deadlines are placed in slots
+ * based on the tick in which they fall so a deadline may be reported as expired up to one tick late but it will never
+ * be reported early.
+ * <p>
+ * This class is not thread-safe. It is intended to be used by a single thread (e.g. a Poller) or to be protected by an
+ * external lock. Entries are allocated by the caller and may be re-used so that no garbage is created when deadlines
+ * are rescheduled.
+ *
+ * @param <T> The type of object associated with each deadline
+ */
+public class TimerWheel<T> {
+
+    private final Entry<T>[] slots;
+    private final int mask;
+    private final long tickMillis;
+
+    /*
+     * The next tick to be processed.
+     */
+    private long currentTick;
+
+    private int size = 0;
+
+
+    /**
+     * Create a new timing wheel.
+     *
+     * @param slotCount  The number of slots in the wheel. This will be rounded up to the next power of two.
+     * @param tickMillis The duration of each tick in milliseconds
+     * @param now        The current time in milliseconds
+     */
+    public TimerWheel(int slotCount, long tickMillis, long now) {
+        if (slotCount < 1 || tickMillis < 1) {
+            throw new IllegalArgumentException();
+        }
+        int actualSlotCount = Integer.highestOneBit(slotCount);
+        if (actualSlotCount < slotCount) {
+            actualSlotCount <<= 1;
+        }
+        slots = newEntryArray(actualSlotCount);
+        mask = actualSlotCount - 1;
+        this.tickMillis = tickMillis;
+        currentTick = now / tickMillis;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[] newEntryArray(int size) {
+        return (Entry<T>[]) new Entry<?>[size];
+    }
+
+
+    /**
+     * Schedule the given entry to expire at the given time. If the entry is already scheduled, it is rescheduled.
+     *
+     * @param entry    The entry to schedule
+     * @param deadline The time in milliseconds at which the entry expires
+     */
+    public void schedule(Entry<T> entry, long deadline) {
+        if (entry.scheduled) {
+            unlink(entry);
+        } else {
+            size++;
+        }
+        entry.deadline = deadline;
+        link(entry);
+    }
+
+
+    /**
+     * Cancel the given entry. If the entry is not scheduled, this is a NO-OP.
+     *
+     * @param entry The entry to cancel
+     */
+    public void cancel(Entry<T> entry) {
+        if (entry.scheduled) {
+            unlink(entry);
+            entry.scheduled = false;
+            size--;
+        }
+    }
+
+
+    /**
+     * Process all the ticks that have fully elapsed by the given time and pass the item of every entry that has
+     * expired to the given action. Expired entries are no longer scheduled when the action is called and the action
+     * may reschedule the entry it is passed. The action must not cancel or reschedule any other entry.
+     *
+     * @param now    The current time in milliseconds
+     * @param action The action to perform for each expired item
+     *
+     * @return The number of entries that expired
+     */
+    public int expire(long now, Consumer<? super T> action) {
+        int expired = 0;
+        long nowTick = now / tickMillis;
+        // Limit processing to one revolution since all slots will have been processed by then
+        long lastTick = Math.min(nowTick, currentTick + slots.length);
+        while (currentTick < lastTick) {
+            int index = (int) (currentTick & mask);
+            currentTick++;
+            // Detach the list for this slot so entries re-added to it while it is being processed are not processed
+            // again
+            Entry<T> entry = slots[index];
+            slots[index] = null;
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                entry.prev = null;
+                entry.next = null;
+                if (entry.deadline <= now) {
+                    entry.scheduled = false;
+                    size--;
+                    expired++;
+                    action.accept(entry.item);
+                } else {
+                    // Deadline is in a future revolution of the wheel
+                    link(entry);
+                }
+                entry = next;
+            }
+        }
+        if (currentTick < nowTick) {
+            // The wheel was not processed for more than a full revolution
+            currentTick = nowTick;
+        }
+        return expired;
+    }
+
+
+    /**
+     * Obtain the number of entries currently scheduled.
+     *
+     * @return the number of scheduled entries
+     */
+    public int size() {
+        return size;
+    }
+
+
+    private void link(Entry<T> entry) {
+        long tick = entry.deadline / tickMillis;
+        if (tick < currentTick) {
+            tick = currentTick;
+        }
+        int index = (int) (tick & mask);
+        Entry<T> head = slots[index];
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        slots[index] = entry;
+        entry.slot = index;
+        entry.scheduled = true;
+    }
+
+
+    private void unlink(Entry<T> entry) {
+        if (entry.prev == null) {
+            if (slots[entry.slot] == entry) {
+                slots[entry.slot] = entry.next;
+            }
+        } else {
+            entry.prev.next = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+
+    /**
+     * A deadline tracked by a {@link TimerWheel}. An entry may only be scheduled in one wheel at a time.
+     *
+     * @param <T> The type of object associated with the deadline
+     */
+    public static final class Entry<T> {
+
+        private final T item;
+        private long deadline;
+        private boolean scheduled = false;
+        private int slot;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        /**
+         * Create a new, unscheduled entry.
+         *
+         * @param item The item to pass to the expiry action when the entry expires
+         */
+        public Entry(T item) {
+            this.item = item;
+        }
+
+        /**
+         * Obtain the item associated with this entry.
+         *
+         * @return the item
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Obtain the time at which this entry expires.
+         *
+         * @return the deadline in milliseconds
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Is this entry currently scheduled?
+         *
+         * @return {@code true} if the entry is scheduled and has not yet expired or been cancelled
+         */
+        public boolean isScheduled() {
+            return scheduled;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.tomcat.util.http;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -26,6 +27,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.tomcat.util.buf.Ascii;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.CharChunk;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.buf.StringUtils;
 import org.apache.tomcat.util.res.StringManager;
@@ -57,7 +61,10 @@ import org.apache.tomcat.util.res.StringManager;
  * <p>
  * Headers are first parsed and stored in the order they are received. This is based on the fact that most servlets will
  * not directly access all headers, and most headers are single-valued. (the alternative - a hash or similar data
- * structure - will add an overhead that is not needed in most cases)
+ * structure - will add an overhead that is not needed in most cases) Once there are at least
+ * {@link #INDEX_THRESHOLD} headers, looking up a header by name creates a hash index of the header names. The index is
+ * kept up to date as headers are added, discarded when headers are removed or reordered and reused when the object is
+ * recycled.
  * <p>
  * Apache seems to be using a similar method for storing and manipulating headers.
  */
@@ -68,6 +75,11 @@ public class MimeHeaders {
      */
     public static final int DEFAULT_HEADER_SIZE = 8;
 
+    /**
+     * The number of header fields at which look-ups by name start to use an index rather than a linear search.
+     */
+    public static final int INDEX_THRESHOLD = 16;
+
     private static final StringManager sm = StringManager.getManager("org.apache.tomcat.util.http");
 
     /**
@@ -85,6 +97,11 @@ public class MimeHeaders {
      */
     private int limit = -1;
 
+    /**
+     * Index of the header names. Created the first time it is required.
+     */
+    private MimeHeaderIndex index;
+
     /**
      * Creates a new MimeHeaders object using a default buffer size.
      */
@@ -115,6 +132,7 @@ public class MimeHeaders {
             headers[i].recycle();
         }
         count = 0;
+        invalidateIndex();
     }
 
     @Override
@@ -177,6 +195,7 @@ public class MimeHeaders {
         for (int i = count; i < unfilteredCount; i++) {
             headers[i].recycle();
         }
+        invalidateIndex();
     }
 
 
@@ -235,13 +254,17 @@ public class MimeHeaders {
      * @return the header index
      */
     public int findHeader(String name, int starting) {
-        // We can use a hash - but it's not clear how much
-        // benefit you can get - there is an overhead
-        // and the number of headers is small (4-5 ?)
-        // Another problem is that we'll pay the overhead
-        // of constructing the hashtable
-
-        // A custom search tree may be better
+        // Most requests have too few headers for an index to be worth the
+        // overhead of constructing it
+        if (count >= INDEX_THRESHOLD) {
+            if (index == null) {
+                index = new MimeHeaderIndex();
+            }
+            int result = index.find(headers, count, name, starting);
+            if (result != MimeHeaderIndex.NOT_INDEXED) {
+                return result;
+            }
+        }
         for (int i = starting; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
                 return i;
@@ -310,6 +333,7 @@ public class MimeHeaders {
     public MessageBytes addValue(String name) {
         MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        addToIndex();
         return mh.getValue();
     }
 
@@ -326,6 +350,7 @@ public class MimeHeaders {
     public MessageBytes addValue(byte[] b, int startN, int len) {
         MimeHeaderField mhf = createHeader();
         mhf.getName().setBytes(b, startN, len);
+        addToIndex();
         return mhf.getValue();
     }
 
@@ -337,19 +362,16 @@ public class MimeHeaders {
      * @return the message bytes container for the value
      */
     public MessageBytes setValue(String name) {
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                for (int j = i + 1; j < count; j++) {
-                    if (headers[j].getName().equalsIgnoreCase(name)) {
-                        removeHeader(j--);
-                    }
-                }
-                return headers[i].getValue();
+        int i = findHeader(name, 0);
+        if (i >= 0) {
+            int j = findHeader(name, i + 1);
+            while (j >= 0) {
+                removeHeader(j);
+                j = findHeader(name, j);
             }
+            return headers[i].getValue();
         }
-        MimeHeaderField mh = createHeader();
-        mh.getName().setString(name);
-        return mh.getValue();
+        return addValue(name);
     }
 
     // -------------------- Getting headers --------------------
@@ -363,12 +385,8 @@ public class MimeHeaders {
      * @return the value
      */
     public MessageBytes getValue(String name) {
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                return headers[i].getValue();
-            }
-        }
-        return null;
+        int i = findHeader(name, 0);
+        return i >= 0 ? headers[i].getValue() : null;
     }
 
     /**
@@ -382,17 +400,14 @@ public class MimeHeaders {
      * @throws IllegalArgumentException if the header has multiple values
      */
     public MessageBytes getUniqueValue(String name) {
-        MessageBytes result = null;
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                if (result == null) {
-                    result = headers[i].getValue();
-                } else {
-                    throw new IllegalArgumentException();
-                }
-            }
+        int i = findHeader(name, 0);
+        if (i < 0) {
+            return null;
         }
-        return result;
+        if (findHeader(name, i + 1) >= 0) {
+            throw new IllegalArgumentException();
+        }
+        return headers[i].getValue();
     }
 
     /**
@@ -413,10 +428,10 @@ public class MimeHeaders {
      * @param name the name of the header field to be removed
      */
     public void removeHeader(String name) {
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                removeHeader(i--);
-            }
+        int i = findHeader(name, 0);
+        while (i >= 0) {
+            removeHeader(i);
+            i = findHeader(name, i);
         }
     }
 
@@ -444,8 +459,214 @@ public class MimeHeaders {
 
         // Reduce the count
         count--;
+
+        // The indexes of the remaining headers have changed
+        invalidateIndex();
+    }
+
+
+    /**
+     * Add the most recently created header field to the index, if there is one.
+     */
+    private void addToIndex() {
+        if (index != null) {
+            index.add(headers, count - 1);
+        }
     }
 
+
+    private void invalidateIndex() {
+        if (index != null) {
+            index.invalidate();
+        }
+    }
+}
+
+
+/**
+ * Open addressing hash index of header names. The hash is calculated from the ASCII lower case form of the name. A
+ * header name that contains non-ASCII characters may be equal, ignoring case, to an ASCII name (e.g. the Kelvin sign
+ * and 'k') so such a name disables the index until it is next invalidated. Look-ups for names that contain non-ASCII
+ * characters are not indexed for the same reason.
+ * <p>
+ * Linear probing is used and entries are never removed individually so, for any given name, the matching headers are
+ * always found in the order in which they were added.
+ */
+final class MimeHeaderIndex {
+
+    static final int NOT_INDEXED = -2;
+
+    private static final int MIN_SLOTS = 64;
+
+    private static final int STATE_INVALID = 0;
+    private static final int STATE_VALID = 1;
+    private static final int STATE_DISABLED = 2;
+
+    private int state = STATE_INVALID;
+
+    /*
+     * Header index + 1 or zero for an empty slot.
+     */
+    private int[] slots = new int[0];
+    private int[] hashes = new int[0];
+
+    void invalidate() {
+        state = STATE_INVALID;
+    }
+
+
+    /**
+     * Find the first header with the given name, ignoring case, at or after the given index.
+     *
+     * @param headers  The header fields
+     * @param count    The number of header fields
+     * @param name     The header name
+     * @param starting The index from which to start looking
+     *
+     * @return The index of the header, -1 if there is no such header or {@link #NOT_INDEXED} if the index cannot be
+     *             used for this look-up
+     */
+    int find(MimeHeaderField[] headers, int count, String name, int starting) {
+        if (state == STATE_INVALID) {
+            build(headers, count);
+        }
+        if (state != STATE_VALID) {
+            return NOT_INDEXED;
+        }
+        long h = hash(name);
+        if (h < 0) {
+            return NOT_INDEXED;
+        }
+        int hash = (int) h;
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int i = entry - 1;
+            if (i >= starting && hashes[i] == hash && headers[i].getName().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+    }
+
+
+    /**
+     * Add a new header field to the index. The field must have the highest index.
+     *
+     * @param headers The header fields
+     * @param idx     The index of the new header field
+     */
+    void add(MimeHeaderField[] headers, int idx) {
+        if (state != STATE_VALID) {
+            return;
+        }
+        if ((idx + 1) * 2 > slots.length) {
+            // Too full - rebuild on next look-up
+            state = STATE_INVALID;
+            return;
+        }
+        insert(headers, idx);
+    }
+
+
+    private void build(MimeHeaderField[] headers, int count) {
+        int size = Math.max(MIN_SLOTS, Integer.highestOneBit(count) << 2);
+        if (slots.length < size) {
+            slots = new int[size];
+        } else {
+            Arrays.fill(slots, 0);
+        }
+        if (hashes.length < headers.length) {
+            hashes = new int[headers.length];
+        }
+        state = STATE_VALID;
+        for (int i = 0; i < count && state == STATE_VALID; i++) {
+            insert(headers, i);
+        }
+    }
+
+
+    private void insert(MimeHeaderField[] headers, int idx) {
+        long h = hash(headers[idx].getName());
+        if (h < 0) {
+            state = STATE_DISABLED;
+            return;
+        }
+        int hash = (int) h;
+        if (idx >= hashes.length) {
+            hashes = Arrays.copyOf(hashes, headers.length);
+        }
+        hashes[idx] = hash;
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = idx + 1;
+    }
+
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+
+    /*
+     * Returns the hash or -1 if the name may be equal, ignoring case, to a name with a different hash.
+     */
+    private static long hash(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c > 0x7F) {
+                return -1;
+            }
+            hash = 31 * hash + Ascii.toLower(c);
+        }
+        return hash & 0xFFFFFFFFL;
+    }
+
+
+    private static long hash(MessageBytes name) {
+        int hash = 0;
+        switch (name.getType()) {
+            case MessageBytes.T_BYTES: {
+                // Non-ASCII bytes may be converted to non-ASCII chars if the name is converted to a String
+                ByteChunk bc = name.getByteChunk();
+                byte[] buf = bc.getBuffer();
+                int end = bc.getEnd();
+                for (int i = bc.getStart(); i < end; i++) {
+                    if (buf[i] < 0) {
+                        return -1;
+                    }
+                    hash = 31 * hash + Ascii.toLower(buf[i]);
+                }
+                break;
+            }
+            case MessageBytes.T_CHARS: {
+                CharChunk cc = name.getCharChunk();
+                char[] buf = cc.getBuffer();
+                int end = cc.getEnd();
+                for (int i = cc.getStart(); i < end; i++) {
+                    if (buf[i] > 0x7F) {
+                        return -1;
+                    }
+                    hash = 31 * hash + Ascii.toLower(buf[i]);
+                }
+                break;
+            }
+            case MessageBytes.T_STR:
+                return hash(name.getString());
+            default:
+                // Never equal to a name
+        }
+        return hash & 0xFFFFFFFFL;
+    }
 }
 
 /**
@@ -519,11 +740,13 @@ class ValuesEnumerator implements Enumeration<String> {
 
     private void findNext() {
         next = null;
-        for (; pos < size; pos++) {
-            MessageBytes n1 = headers.getName(pos);
-            if (n1.equalsIgnoreCase(name)) {
-                next = headers.getValue(pos);
-                break;
+        if (pos < size) {
+            int i = headers.findHeader(name, pos);
+            if (i >= 0 && i < size) {
+                next = headers.getValue(i);
+                pos = i;
+            } else {
+                pos = size;
             }
         }
         pos++;
@@ -0,0 +1,81 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http.parser;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Scans HTTP header bytes eight at a time by treating each group of eight bytes as a <code>long</code> and testing all
+ * eight lanes with a few arithmetic operations (SIMD within a register). The scan stops at the first byte that the
+ * scalar parser has to examine individually.
+ */
+final class HttpByteScanner {
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long SPACES = ONES * 0x20;
+    private static final long DELS = ONES * 0x7F;
+
+
+    private HttpByteScanner() {
+        // Utility class. Hide default constructor.
+    }
+
+
+    /**
+     * Find the first control character, i.e. a byte in the range 0x00 to 0x1F inclusive or 0x7F. That includes CR,
+     * LF and HT.
+     *
+     * @param buf   The bytes to scan
+     * @param start The index of the first byte to scan
+     * @param end   The index after the last byte to scan
+     *
+     * @return The index of the first control character or <code>end</code> if there is no control character in the
+     *             given range
+     */
+    static int findControl(byte[] buf, int start, int end) {
+        int pos = start;
+        int wordEnd = end - Long.BYTES;
+        while (pos <= wordEnd) {
+            long word = (long) LONG_LE.get(buf, pos);
+            /*
+             * A lane is flagged if the byte is less than 0x20 or, after the XOR, is zero. A borrow can only propagate
+             * out of a lane that is flagged so, with the bytes in little endian order, the lowest flagged lane is
+             * always the first matching byte.
+             */
+            long del = word ^ DELS;
+            long match = ((word - SPACES) & ~word | (del - ONES) & ~del) & HIGHS;
+            if (match != 0) {
+                return pos + (Long.numberOfTrailingZeros(match) >>> 3);
+            }
+            pos += Long.BYTES;
+        }
+        while (pos < end) {
+            byte b = buf[pos];
+            if ((b >= 0 && b < 0x20) || b == 0x7F) {
+                return pos;
+            }
+            pos++;
+        }
+        return end;
+    }
+}
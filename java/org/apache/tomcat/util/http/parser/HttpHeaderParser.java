@@ -46,6 +46,8 @@ public class HttpHeaderParser {
     private byte prevChr = 0;
     private byte chr = 0;
 
+    private boolean vectorized = false;
+
 
     /**
      * Creates a new header parser.
@@ -61,6 +63,27 @@ public class HttpHeaderParser {
     }
 
 
+    /**
+     * Are header values scanned several bytes at a time?
+     *
+     * @return {@code true} if header values are scanned several bytes at a time, {@code false} if they are scanned
+     *             one byte at a time
+     */
+    public boolean getVectorized() {
+        return vectorized;
+    }
+
+
+    /**
+     * Configure whether header values are scanned several bytes at a time. The parsed headers are the same either way.
+     *
+     * @param vectorized {@code true} to scan header values several bytes at a time
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
+
     /**
      * Resets the parser state for reuse.
      */
@@ -209,6 +232,10 @@ public class HttpHeaderParser {
                         }
                     }
 
+                    if (vectorized && chr != CR && skipValueBytes()) {
+                        continue;
+                    }
+
                     prevChr = chr;
                     chr = source.getHeaderByteBuffer().get();
                     if (chr == CR && prevChr != CR) {
@@ -271,6 +298,40 @@ public class HttpHeaderParser {
     }
 
 
+    /*
+     * Processes, in bulk, the bytes of the header value from the current position up to the next control character.
+     * The result is the same as processing them one at a time in the HEADER_VALUE loop of parseHeader(): none of them
+     * is CR, LF or HT, the previous byte was not CR and only SP is not significant.
+     *
+     * Returns true if at least one byte was processed.
+     */
+    private boolean skipValueBytes() {
+        ByteBuffer buffer = source.getHeaderByteBuffer();
+        byte[] buf = buffer.array();
+        int pos = buffer.position();
+        int end = HttpByteScanner.findControl(buf, pos, buffer.limit());
+        if (end == pos) {
+            return false;
+        }
+        int len = end - pos;
+        int trailingSpaces = 0;
+        while (trailingSpaces < len && buf[end - 1 - trailingSpaces] == SP) {
+            trailingSpaces++;
+        }
+        if (headerData.realPos != pos) {
+            // Bytes have been removed earlier in the value (multi-line header)
+            System.arraycopy(buf, pos, buf, headerData.realPos, len);
+        }
+        headerData.realPos += len;
+        if (trailingSpaces < len) {
+            headerData.lastSignificantChar = headerData.realPos - trailingSpaces;
+        }
+        chr = buf[end - 1];
+        buffer.position(end);
+        return true;
+    }
+
+
     private HeaderParseStatus skipLine() throws IOException {
         // Parse the rest of the invalid header so we can construct a useful
         // exception and/or debug message.
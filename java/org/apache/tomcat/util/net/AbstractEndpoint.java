@@ -41,6 +41,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
@@ -1622,6 +1623,191 @@ public abstract class AbstractEndpoint<S, U> {
     }
 
 
+    /**
+     * Should keep-alive be adjusted to the current connection usage?
+     */
+    private boolean adaptiveKeepAlive = false;
+
+    /**
+     * Is adaptive keep-alive enabled? If enabled, the keep-alive timeout is reduced as the number of connections
+     * approaches {@link #getMaxConnections()} and keep-alive is disabled once the limit is reached.
+     *
+     * @return {@code true} if adaptive keep-alive is enabled
+     */
+    public boolean getAdaptiveKeepAlive() {
+        return adaptiveKeepAlive;
+    }
+
+    /**
+     * Enable or disable adaptive keep-alive.
+     *
+     * @param adaptiveKeepAlive {@code true} to enable adaptive keep-alive
+     */
+    public void setAdaptiveKeepAlive(boolean adaptiveKeepAlive) {
+        this.adaptiveKeepAlive = adaptiveKeepAlive;
+    }
+
+
+    /**
+     * Percentage of maxConnections above which adaptive keep-alive starts to reduce keep-alive.
+     */
+    private int adaptiveKeepAliveThreshold = 75;
+
+    /**
+     * Get the percentage of {@link #getMaxConnections()} above which adaptive keep-alive starts to reduce the
+     * keep-alive timeout.
+     *
+     * @return The threshold as a percentage
+     */
+    public int getAdaptiveKeepAliveThreshold() {
+        return adaptiveKeepAliveThreshold;
+    }
+
+    /**
+     * Set the percentage of {@link #getMaxConnections()} above which adaptive keep-alive starts to reduce the
+     * keep-alive timeout.
+     *
+     * @param adaptiveKeepAliveThreshold The threshold as a percentage in the range 0 to 100
+     */
+    public void setAdaptiveKeepAliveThreshold(int adaptiveKeepAliveThreshold) {
+        if (adaptiveKeepAliveThreshold < 0 || adaptiveKeepAliveThreshold > 100) {
+            throw new IllegalArgumentException(sm.getString("endpoint.invalidAdaptiveKeepAliveThreshold",
+                    Integer.valueOf(adaptiveKeepAliveThreshold)));
+        }
+        this.adaptiveKeepAliveThreshold = adaptiveKeepAliveThreshold;
+    }
+
+
+    /**
+     * The keep-alive timeout used by adaptive keep-alive when all connections are in use.
+     */
+    private int minKeepAliveTimeout = 1000;
+
+    /**
+     * Get the keep-alive timeout that adaptive keep-alive uses when the connection limit has been reached. The
+     * effective timeout is reduced linearly from the configured keep-alive timeout to this value as connection usage
+     * grows from the threshold to the limit.
+     *
+     * @return The minimum keep-alive timeout in milliseconds
+     */
+    public int getMinKeepAliveTimeout() {
+        return minKeepAliveTimeout;
+    }
+
+    /**
+     * Set the keep-alive timeout that adaptive keep-alive uses when the connection limit has been reached.
+     *
+     * @param minKeepAliveTimeout The minimum keep-alive timeout in milliseconds
+     */
+    public void setMinKeepAliveTimeout(int minKeepAliveTimeout) {
+        this.minKeepAliveTimeout = minKeepAliveTimeout;
+    }
+
+
+    /*
+     * Returns how far connection usage is between the adaptive keep-alive threshold (0) and the connection limit (1).
+     * Always 0 if adaptive keep-alive is disabled or the connections are not counted.
+     */
+    private double getKeepAlivePressure() {
+        if (!adaptiveKeepAlive) {
+            return 0;
+        }
+        LimitLatch latch = connectionLimitLatch;
+        int max = maxConnections;
+        if (latch == null || max <= 0) {
+            return 0;
+        }
+        double usage = (double) latch.getCount() / max;
+        double threshold = adaptiveKeepAliveThreshold / 100.0;
+        if (usage >= 1) {
+            return 1;
+        } else if (usage <= threshold) {
+            return 0;
+        }
+        return (usage - threshold) / (1 - threshold);
+    }
+
+    /**
+     * Get the keep-alive timeout to use for the next request, taking into account the current connection usage if
+     * adaptive keep-alive is enabled.
+     *
+     * @return The keep-alive timeout in milliseconds
+     */
+    public int getEffectiveKeepAliveTimeout() {
+        int keepAliveTimeout = getKeepAliveTimeout();
+        double pressure = getKeepAlivePressure();
+        if (pressure == 0 || (keepAliveTimeout > 0 && keepAliveTimeout <= minKeepAliveTimeout)) {
+            return keepAliveTimeout;
+        }
+        if (keepAliveTimeout <= 0) {
+            // Infinite timeout
+            return minKeepAliveTimeout;
+        }
+        return (int) (keepAliveTimeout - (keepAliveTimeout - minKeepAliveTimeout) * pressure);
+    }
+
+    /**
+     * Get the maximum number of keep-alive requests to use, taking into account the current connection usage if
+     * adaptive keep-alive is enabled. Once the connection limit has been reached, connections are closed after the
+     * current request.
+     *
+     * @return The maximum number of keep-alive requests
+     */
+    public int getEffectiveMaxKeepAliveRequests() {
+        if (getKeepAlivePressure() >= 1) {
+            return 1;
+        }
+        return getMaxKeepAliveRequests();
+    }
+
+
+    private final LongAdder keepAliveRequestLimitCloseCount = new LongAdder();
+    private final LongAdder idleTimeoutCloseCount = new LongAdder();
+    private final LongAdder adaptiveKeepAliveCloseCount = new LongAdder();
+
+    /**
+     * Get the number of connections closed because the maximum number of keep-alive requests was reached.
+     *
+     * @return The number of connections closed
+     */
+    public long getKeepAliveRequestLimitCloseCount() {
+        return keepAliveRequestLimitCloseCount.sum();
+    }
+
+    /**
+     * Get the number of connections closed because no request was received before the keep-alive or connection
+     * timeout expired.
+     *
+     * @return The number of connections closed
+     */
+    public long getIdleTimeoutCloseCount() {
+        return idleTimeoutCloseCount.sum();
+    }
+
+    /**
+     * Get the number of connections that adaptive keep-alive closed earlier than the configured keep-alive settings
+     * would have done.
+     *
+     * @return The number of connections closed
+     */
+    public long getAdaptiveKeepAliveCloseCount() {
+        return adaptiveKeepAliveCloseCount.sum();
+    }
+
+    /**
+     * Record that a connection has been, or is about to be, closed by the keep-alive policy.
+     *
+     * @param reason The reason the connection was closed
+     */
+    public void keepAliveClosed(KeepAliveCloseReason reason) {
+        switch (reason) {
+            case REQUEST_LIMIT -> keepAliveRequestLimitCloseCount.increment();
+            case IDLE_TIMEOUT -> idleTimeoutCloseCount.increment();
+            case ADAPTIVE -> adaptiveKeepAliveCloseCount.increment();
+        }
+    }
+
+
     /**
      * Name of the thread pool, which will be used for naming child threads.
      */
@@ -0,0 +1,39 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+/**
+ * The reasons a connection may be closed by the keep-alive policy of an endpoint.
+ */
+public enum KeepAliveCloseReason {
+
+    /**
+     * The connection has processed the maximum number of keep-alive requests.
+     */
+    REQUEST_LIMIT,
+
+    /**
+     * No request was received on the connection before the keep-alive or connection timeout expired.
+     */
+    IDLE_TIMEOUT,
+
+    /**
+     * Adaptive keep-alive closed the connection earlier than the configured keep-alive settings would have done
+     * because connection usage was high.
+     */
+    ADAPTIVE
+}
@@ -27,11 +27,13 @@ import java.net.SocketTimeoutException;
 import java.net.StandardProtocolFamily;
 import java.net.UnixDomainSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.NetworkChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -53,7 +55,12 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import javax.net.ssl.SSLEngine;
 
@@ -62,6 +69,7 @@ import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.collections.SynchronizedQueue;
 import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.collections.TimerWheel;
 import org.apache.tomcat.util.compat.JrePlatform;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler.SocketState;
 import org.apache.tomcat.util.net.Acceptor.AcceptorState;
@@ -92,6 +100,11 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
      */
     public static final int OP_REGISTER = 0x100; // register interest op
 
+    /*
+     * Custom operation for removing a closed socket from the timeouts tracked by the Poller.
+     */
+    private static final int OP_CANCEL_TIMEOUT = 0x200;
+
     // ----------------------------------------------------------------- Fields
 
     /**
@@ -99,6 +112,17 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
      */
     private volatile ServerSocketChannel serverSock = null;
 
+    /*
+     * Timeouts are tracked with a granularity of 100ms. With 512 slots one revolution of the wheel is just over 50s.
+     */
+    private static final int TIMEOUT_WHEEL_SLOTS = 512;
+    private static final long TIMEOUT_WHEEL_TICK = 100;
+
+    /*
+     * The largest region of a file that will be mapped at any one time when using sendfile with TLS.
+     */
+    private static final long MAX_SENDFILE_MAPPED_SIZE = 64 * 1024 * 1024;
+
     /**
      * Stop latch used to wait for poller stop
      */
@@ -286,6 +310,35 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     }
 
 
+    /**
+     * Number of poller threads. Each poller has its own selector and new connections are distributed between the
+     * pollers by the acceptor.
+     */
+    private int pollerThreadCount = 1;
+
+    /**
+     * Sets the number of poller threads. Changes take effect the next time the endpoint is started.
+     *
+     * @param pollerThreadCount the number of poller threads
+     */
+    public void setPollerThreadCount(int pollerThreadCount) {
+        if (pollerThreadCount < 1) {
+            throw new IllegalArgumentException(
+                    sm.getString("endpoint.nio.invalidPollerThreadCount", Integer.valueOf(pollerThreadCount)));
+        }
+        this.pollerThreadCount = pollerThreadCount;
+    }
+
+    /**
+     * Returns the number of poller threads.
+     *
+     * @return the number of poller threads
+     */
+    public int getPollerThreadCount() {
+        return pollerThreadCount;
+    }
+
+
     /**
      * Priority of the poller thread.
      */
@@ -334,9 +387,14 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     }
 
     /**
-     * The socket poller.
+     * The socket pollers.
      */
-    private Poller poller = null;
+    private volatile Poller[] pollers = null;
+
+    /**
+     * Used to distribute new connections between the pollers.
+     */
+    private final AtomicInteger pollerRotater = new AtomicInteger(0);
 
 
     // --------------------------------------------------------- Public Methods
@@ -348,11 +406,108 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
      *             the socket
      */
     public int getKeepAliveCount() {
-        if (poller == null) {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
             return 0;
         } else {
-            return poller.getKeyCount();
+            int sum = 0;
+            for (Poller poller : pollers) {
+                sum += poller.getKeyCount();
+            }
+            return sum;
+        }
+    }
+
+
+    /**
+     * Returns, for each poller, the number of events waiting to be processed by the poller.
+     *
+     * @return the event queue depth for each poller
+     */
+    public int[] getPollerEventQueueDepths() {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return new int[0];
+        }
+        int[] result = new int[pollers.length];
+        for (int i = 0; i < pollers.length; i++) {
+            result[i] = pollers[i].getEventQueueDepth();
         }
+        return result;
+    }
+
+
+    /**
+     * Returns, for each poller, the number of sockets registered with the poller's selector.
+     *
+     * @return the key count for each poller
+     */
+    public int[] getPollerKeyCounts() {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return new int[0];
+        }
+        int[] result = new int[pollers.length];
+        for (int i = 0; i < pollers.length; i++) {
+            result[i] = pollers[i].getKeyCount();
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns, for each poller, the number of sockets with a read or write deadline tracked by the poller.
+     *
+     * @return the number of tracked timeouts for each poller
+     */
+    public int[] getPollerTimeoutCounts() {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return new int[0];
+        }
+        int[] result = new int[pollers.length];
+        for (int i = 0; i < pollers.length; i++) {
+            result[i] = pollers[i].getTimeoutCount();
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns, for each poller, the average time spent processing events, selected keys and timeouts in a single
+     * iteration of the poller loop. Time spent waiting in the selector is excluded.
+     *
+     * @return the average loop time for each poller in microseconds
+     */
+    public long[] getPollerAverageLoopTimes() {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return new long[0];
+        }
+        long[] result = new long[pollers.length];
+        for (int i = 0; i < pollers.length; i++) {
+            result[i] = pollers[i].getAverageLoopTime();
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns, for each poller, the maximum time spent processing events, selected keys and timeouts in a single
+     * iteration of the poller loop. Time spent waiting in the selector is excluded.
+     *
+     * @return the maximum loop time for each poller in microseconds
+     */
+    public long[] getPollerMaxLoopTimes() {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return new long[0];
+        }
+        long[] result = new long[pollers.length];
+        for (int i = 0; i < pollers.length; i++) {
+            result[i] = pollers[i].getMaxLoopTime();
+        }
+        return result;
     }
 
 
@@ -536,12 +691,23 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
 
             initializeConnectionLatch();
 
-            // Start poller thread
-            poller = new Poller();
-            Thread pollerThread = new Thread(poller, getName() + "-Poller");
-            pollerThread.setPriority(pollerThreadPriority);
-            pollerThread.setDaemon(true);
-            pollerThread.start();
+            // Start poller threads
+            Poller[] pollers = new Poller[pollerThreadCount];
+            for (int i = 0; i < pollers.length; i++) {
+                pollers[i] = new Poller();
+            }
+            setStopLatch(new CountDownLatch(pollers.length));
+            this.pollers = pollers;
+            for (int i = 0; i < pollers.length; i++) {
+                String threadName = getName() + "-Poller";
+                if (pollers.length > 1) {
+                    threadName = threadName + "-" + i;
+                }
+                Thread pollerThread = new Thread(pollers[i], threadName);
+                pollerThread.setPriority(pollerThreadPriority);
+                pollerThread.setDaemon(true);
+                pollerThread.start();
+            }
 
             startAcceptorThread();
         }
@@ -564,9 +730,12 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
              */
             int acceptorWaitMilliSeconds = 100 + 2 * getSocketProperties().getUnlockTimeout();
             acceptor.stopMillis(acceptorWaitMilliSeconds);
-            if (poller != null) {
-                poller.destroy();
-                poller = null;
+            Poller[] pollers = this.pollers;
+            if (pollers != null) {
+                for (Poller poller : pollers) {
+                    poller.destroy();
+                }
+                this.pollers = null;
             }
             try {
                 if (!getStopLatch().await(selectorTimeout + 100, TimeUnit.MILLISECONDS)) {
@@ -683,12 +852,19 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
 
 
     /**
-     * Returns the poller instance.
+     * Returns the poller to use for a new connection. Connections are distributed between the pollers in turn.
      *
      * @return the poller
      */
     protected Poller getPoller() {
-        return poller;
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return null;
+        }
+        if (pollers.length == 1) {
+            return pollers[0];
+        }
+        return pollers[Math.abs(pollerRotater.getAndIncrement() % pollers.length)];
     }
 
 
@@ -749,7 +925,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             socketWrapper.setReadTimeout(getConnectionTimeout());
             socketWrapper.setWriteTimeout(getConnectionTimeout());
             socketWrapper.setKeepAliveLeft(NioEndpoint.this.getMaxKeepAliveRequests());
-            poller.register(socketWrapper);
+            socketWrapper.getPoller().register(socketWrapper);
             return true;
         } catch (Throwable t) {
             ExceptionUtils.handleThrowable(t);
@@ -907,10 +1083,23 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
         // Optimize expiration handling
         private long nextExpiration = 0;
 
+        /*
+         * Read and write deadlines of the sockets registered with this Poller. Only accessed by the Poller thread.
+         */
+        private final TimerWheel<NioSocketWrapper> timeouts =
+                new TimerWheel<>(TIMEOUT_WHEEL_SLOTS, TIMEOUT_WHEEL_TICK, System.currentTimeMillis());
+        private long timeoutNow;
+        private final Consumer<NioSocketWrapper> timeoutAction = this::checkTimeout;
+
         private final AtomicLong wakeupCounter = new AtomicLong(0);
 
         private volatile int keyCount = 0;
 
+        // Loop statistics, updated only by the poller thread
+        private volatile long loopCount = 0;
+        private volatile long loopTime = 0;
+        private volatile long maxLoopTime = 0;
+
         /**
          * Creates a new poller.
          *
@@ -938,6 +1127,49 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             return selector;
         }
 
+        /**
+         * Returns the number of events waiting to be processed.
+         *
+         * @return the event queue depth
+         */
+        public int getEventQueueDepth() {
+            return events.size();
+        }
+
+        /**
+         * Returns the number of sockets with a read or write deadline tracked by this Poller. The value is only
+         * approximate as the timeouts are only updated by the Poller thread.
+         *
+         * @return the number of tracked timeouts
+         */
+        public int getTimeoutCount() {
+            return timeouts.size();
+        }
+
+        /**
+         * Returns the average time spent processing a single iteration of the poller loop excluding the time spent
+         * waiting in the selector.
+         *
+         * @return the average loop time in microseconds
+         */
+        public long getAverageLoopTime() {
+            long count = loopCount;
+            if (count == 0) {
+                return 0;
+            }
+            return TimeUnit.NANOSECONDS.toMicros(loopTime / count);
+        }
+
+        /**
+         * Returns the maximum time spent processing a single iteration of the poller loop excluding the time spent
+         * waiting in the selector.
+         *
+         * @return the maximum loop time in microseconds
+         */
+        public long getMaxLoopTime() {
+            return TimeUnit.NANOSECONDS.toMicros(maxLoopTime);
+        }
+
         /**
          * Destroy the poller.
          */
@@ -956,6 +1188,15 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             }
         }
 
+        /*
+         * Removes a closed socket from the timeouts so the socket wrapper does not remain reachable until its deadline.
+         * The timeouts are only accessed by the Poller thread so the removal is passed to the Poller as an event. There
+         * is no need to wake up the Poller as the event will be processed on the next iteration of the Poller loop.
+         */
+        private void cancelTimeout(NioSocketWrapper socketWrapper) {
+            events.offer(createPollerEvent(socketWrapper, OP_CANCEL_TIMEOUT));
+        }
+
         private PollerEvent createPollerEvent(NioSocketWrapper socketWrapper, int interestOps) {
             PollerEvent r = null;
             if (eventCache != null) {
@@ -997,9 +1238,11 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             for (int i = 0, size = events.size(); i < size && (pe = events.poll()) != null; i++) {
                 result = true;
                 NioSocketWrapper socketWrapper = pe.getSocketWrapper();
-                SocketChannel sc = socketWrapper.getSocket().getIOChannel();
                 int interestOps = pe.getInterestOps();
-                if (sc == null) {
+                SocketChannel sc = socketWrapper.getSocket().getIOChannel();
+                if (interestOps == OP_CANCEL_TIMEOUT) {
+                    timeouts.cancel(socketWrapper.timeoutEntry);
+                } else if (sc == null) {
                     if (log.isDebugEnabled()) {
                         log.debug(sm.getString("endpoint.nio.nullSocketChannel"));
                     }
@@ -1007,6 +1250,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 } else if (interestOps == OP_REGISTER) {
                     try {
                         sc.register(getSelector(), SelectionKey.OP_READ, socketWrapper);
+                        scheduleTimeout(socketWrapper, System.currentTimeMillis());
                     } catch (Exception e) {
                         log.error(sm.getString("endpoint.nio.registerFail"), e);
                     }
@@ -1027,6 +1271,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                                 int ops = key.interestOps() | interestOps;
                                 attachment.interestOps(ops);
                                 key.interestOps(ops);
+                                scheduleTimeout(attachment, System.currentTimeMillis());
                             } catch (CancelledKeyException ckx) {
                                 socketWrapper.close();
                             }
@@ -1065,6 +1310,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             while (true) {
 
                 boolean hasEvents = false;
+                long loopStart = System.nanoTime();
 
                 try {
                     if (!close) {
@@ -1074,7 +1320,10 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             // Do a non-blocking select
                             keyCount = selector.selectNow();
                         } else {
+                            long selectStart = System.nanoTime();
                             keyCount = selector.select(selectorTimeout);
+                            // Exclude the time spent waiting from the loop time
+                            loopStart += System.nanoTime() - selectStart;
                         }
                         wakeupCounter.set(0);
                     }
@@ -1115,6 +1364,13 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
 
                 // Process timeouts
                 timeout(keyCount, hasEvents);
+
+                long time = System.nanoTime() - loopStart;
+                loopTime += time;
+                loopCount++;
+                if (time > maxLoopTime) {
+                    maxLoopTime = time;
+                }
             }
 
             getStopLatch().countDown();
@@ -1144,9 +1400,12 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                                         closeSocket = true;
                                     }
                                 } else if (socketWrapper.readBlocking) {
-                                    synchronized (socketWrapper.readLock) {
+                                    socketWrapper.readLock.lock();
+                                    try {
                                         socketWrapper.readBlocking = false;
-                                        socketWrapper.readLock.notify();
+                                        socketWrapper.readAvailable.signal();
+                                    } finally {
+                                        socketWrapper.readLock.unlock();
                                     }
                                 } else if (!processSocket(socketWrapper, SocketEvent.OPEN_READ, true)) {
                                     closeSocket = true;
@@ -1158,9 +1417,12 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                                         closeSocket = true;
                                     }
                                 } else if (socketWrapper.writeBlocking) {
-                                    synchronized (socketWrapper.writeLock) {
+                                    socketWrapper.writeLock.lock();
+                                    try {
                                         socketWrapper.writeBlocking = false;
-                                        socketWrapper.writeLock.notify();
+                                        socketWrapper.writeAvailable.signal();
+                                    } finally {
+                                        socketWrapper.writeLock.unlock();
                                     }
                                 } else if (!processSocket(socketWrapper, SocketEvent.OPEN_WRITE, true)) {
                                     closeSocket = true;
@@ -1213,15 +1475,23 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
 
                 // Configure output channel
                 sc = socketWrapper.getSocket();
-                // TLS/SSL channel is slightly different
-                WritableByteChannel wc = ((sc instanceof SecureNioChannel) ? sc : sc.getIOChannel());
 
                 // We still have data in the buffer
                 if (sc.getOutboundRemaining() > 0) {
                     if (sc.flushOutbound()) {
                         socketWrapper.updateLastWrite();
                     }
+                } else if (sc instanceof SecureNioChannel) {
+                    /*
+                     * FileChannel.transferTo() can't use the kernel for TLS and falls back to copying the file via a
+                     * newly allocated heap buffer. Encrypting directly from a mapped region of the file avoids both the
+                     * copy and the garbage.
+                     */
+                    if (processSendfileMapped(sd, sc)) {
+                        socketWrapper.updateLastWrite();
+                    }
                 } else {
+                    WritableByteChannel wc = sc.getIOChannel();
                     long written = sd.fchannel.transferTo(sd.pos, sd.length, wc);
                     if (written > 0) {
                         sd.pos += written;
@@ -1240,6 +1510,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                         log.trace("Send file complete for: " + sd.fileName);
                     }
                     socketWrapper.setSendfileData(null);
+                    sd.mappedBuffer = null;
                     try {
                         sd.fchannel.close();
                     } catch (Exception ignore) {
@@ -1271,6 +1542,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                                     log.trace("Connection is keep alive, registering back for OP_READ");
                                 }
                                 reg(sk, socketWrapper, SelectionKey.OP_READ);
+                                scheduleTimeout(socketWrapper, System.currentTimeMillis());
                                 break;
                             }
                         }
@@ -1284,6 +1556,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                         add(socketWrapper, SelectionKey.OP_WRITE);
                     } else {
                         reg(sk, socketWrapper, SelectionKey.OP_WRITE);
+                        scheduleTimeout(socketWrapper, System.currentTimeMillis());
                     }
                     return SendfileState.PENDING;
                 }
@@ -1304,6 +1577,34 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             }
         }
 
+        /*
+         * Writes as much of the file as the network will accept by passing mapped regions of the file to the TLS
+         * channel. Returns true if any data was written.
+         */
+        private boolean processSendfileMapped(SendfileData sd, NioChannel sc) throws IOException {
+            boolean written = false;
+            while (sd.length > 0) {
+                if (sd.mappedBuffer == null || !sd.mappedBuffer.hasRemaining()) {
+                    long size = Math.min(sd.length, MAX_SENDFILE_MAPPED_SIZE);
+                    if (sd.fchannel.size() < sd.pos + size) {
+                        throw new IOException(sm.getString("endpoint.sendfile.tooMuchData"));
+                    }
+                    sd.mappedBuffer = sd.fchannel.map(MapMode.READ_ONLY, sd.pos, size);
+                }
+                int n = sc.write(sd.mappedBuffer);
+                if (n > 0) {
+                    sd.pos += n;
+                    sd.length -= n;
+                    written = true;
+                }
+                if (n == 0 || sc.getOutboundRemaining() > 0) {
+                    // Network buffer is full
+                    break;
+                }
+            }
+            return written;
+        }
+
         /**
          * Unregisters interest operations for a socket.
          *
@@ -1346,10 +1647,164 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             if (nextExpiration > 0 && (keyCount > 0 || hasEvents) && (now < nextExpiration) && !close) {
                 return;
             }
-            int keycount = 0;
+            int expired = 0;
+            if (close) {
+                closeAll();
+            } else {
+                timeoutNow = now;
+                expired = timeouts.expire(now, timeoutAction);
+            }
+            // For logging purposes only
+            long prevExp = nextExpiration;
+            nextExpiration = System.currentTimeMillis() + socketProperties.getTimeoutInterval();
+            if (log.isTraceEnabled()) {
+                log.trace("timeout completed: expired=" + expired + "; tracked=" + timeouts.size() + "; now=" + now +
+                        "; nextExpiration=" + prevExp + "; keyCount=" + keyCount + "; hasEvents=" + hasEvents +
+                        "; eval=" + ((now < prevExp) && (keyCount > 0 || hasEvents) && (!close)));
+            }
+
+        }
+
+        /**
+         * (Re)schedules the timeout check for a socket based on the current interest operations and read/write
+         * timeouts of the socket. Must only be called by the Poller thread.
+         *
+         * @param socketWrapper The socket wrapper
+         * @param now           The current time in milliseconds
+         */
+        private void scheduleTimeout(NioSocketWrapper socketWrapper, long now) {
+            long deadline = Long.MAX_VALUE;
+            if (socketWrapper.interestOpsHas(SelectionKey.OP_READ)) {
+                long timeout = getReadTimeout(socketWrapper);
+                if (timeout > 0) {
+                    deadline = socketWrapper.getLastRead() + timeout;
+                }
+                if (isAdaptiveIdle(socketWrapper)) {
+                    // Check again soon in case connection usage increases and the timeout needs to be reduced
+                    deadline = Math.min(deadline, now + getMinKeepAliveTimeout());
+                }
+            }
+            if (socketWrapper.interestOpsHas(SelectionKey.OP_WRITE)) {
+                long timeout = socketWrapper.getWriteTimeout();
+                if (timeout > 0) {
+                    deadline = Math.min(deadline, socketWrapper.getLastWrite() + timeout);
+                }
+            }
+            if (deadline == Long.MAX_VALUE) {
+                if (socketWrapper.interestOps() == 0) {
+                    // Socket is being processed. It will be rescheduled when it is next registered with the Poller.
+                    timeouts.cancel(socketWrapper.timeoutEntry);
+                    return;
+                }
+                // No timeouts currently apply. Check again later in case the timeouts are changed while the socket is
+                // registered with the Poller.
+                deadline = now + TIMEOUT_WHEEL_SLOTS * TIMEOUT_WHEEL_TICK;
+            }
+            timeouts.schedule(socketWrapper.timeoutEntry, deadline);
+        }
+
+        /*
+         * Sockets that are waiting for a new request have no current processor. If adaptive keep-alive is enabled, the
+         * read timeout for those sockets is limited to the current effective keep-alive timeout so that idle
+         * connections are closed sooner as the connection limit is approached.
+         */
+        private long getReadTimeout(NioSocketWrapper socketWrapper) {
+            long timeout = socketWrapper.getReadTimeout();
+            if (getAdaptiveKeepAlive() && socketWrapper.getCurrentProcessor() == null) {
+                int effectiveTimeout = getEffectiveKeepAliveTimeout();
+                if (effectiveTimeout > 0 && (timeout <= 0 || effectiveTimeout < timeout)) {
+                    return effectiveTimeout;
+                }
+            }
+            return timeout;
+        }
+
+        /*
+         * Is the socket waiting for a new request with a read timeout that adaptive keep-alive may need to reduce?
+         */
+        private boolean isAdaptiveIdle(NioSocketWrapper socketWrapper) {
+            if (!getAdaptiveKeepAlive() || getMinKeepAliveTimeout() <= 0 ||
+                    socketWrapper.getCurrentProcessor() != null) {
+                return false;
+            }
+            long timeout = socketWrapper.getReadTimeout();
+            return timeout <= 0 || timeout > getMinKeepAliveTimeout();
+        }
+
+        /*
+         * Called by the timer wheel when the deadline for a socket has been reached. The deadline may have moved since
+         * it was scheduled (e.g. because data has been read) so it is checked again before the socket is timed out.
+         */
+        private void checkTimeout(NioSocketWrapper socketWrapper) {
+            if (socketWrapper.isClosed()) {
+                return;
+            }
+            SocketChannel sc = socketWrapper.getSocket().getIOChannel();
+            SelectionKey key = (sc == null) ? null : sc.keyFor(selector);
+            if (key == null) {
+                return;
+            }
+            long now = timeoutNow;
+            try {
+                if (socketWrapper.interestOpsHas(SelectionKey.OP_READ) ||
+                        socketWrapper.interestOpsHas(SelectionKey.OP_WRITE)) {
+                    boolean readTimeout = false;
+                    boolean writeTimeout = false;
+                    // Check for read timeout
+                    if (socketWrapper.interestOpsHas(SelectionKey.OP_READ)) {
+                        long delta = now - socketWrapper.getLastRead();
+                        long timeout = getReadTimeout(socketWrapper);
+                        if (timeout > 0 && delta > timeout) {
+                            readTimeout = true;
+                            if (socketWrapper.getCurrentProcessor() == null) {
+                                long configuredTimeout = socketWrapper.getReadTimeout();
+                                if (configuredTimeout > 0 && delta > configuredTimeout) {
+                                    keepAliveClosed(KeepAliveCloseReason.IDLE_TIMEOUT);
+                                } else {
+                                    keepAliveClosed(KeepAliveCloseReason.ADAPTIVE);
+                                }
+                            }
+                        }
+                    }
+                    // Check for write timeout
+                    if (!readTimeout && socketWrapper.interestOpsHas(SelectionKey.OP_WRITE)) {
+                        long delta = now - socketWrapper.getLastWrite();
+                        long timeout = socketWrapper.getWriteTimeout();
+                        if (timeout > 0 && delta > timeout) {
+                            writeTimeout = true;
+                        }
+                    }
+                    if (readTimeout || writeTimeout) {
+                        key.interestOps(0);
+                        // Avoid duplicate timeout calls
+                        socketWrapper.interestOps(0);
+                        socketWrapper.setError(new SocketTimeoutException());
+                        if (readTimeout && socketWrapper.readOperation != null) {
+                            if (!socketWrapper.readOperation.process()) {
+                                socketWrapper.close();
+                            }
+                        } else if (writeTimeout && socketWrapper.writeOperation != null) {
+                            if (!socketWrapper.writeOperation.process()) {
+                                socketWrapper.close();
+                            }
+                        } else if (!processSocket(socketWrapper, SocketEvent.ERROR, true)) {
+                            socketWrapper.close();
+                        }
+                        return;
+                    }
+                }
+                scheduleTimeout(socketWrapper, now);
+            } catch (CancelledKeyException ckx) {
+                socketWrapper.close();
+            }
+        }
+
+        /*
+         * Close every socket registered with this Poller. Used when the Poller is stopping.
+         */
+        private void closeAll() {
             try {
                 for (SelectionKey key : selector.keys()) {
-                    keycount++;
                     NioSocketWrapper socketWrapper = (NioSocketWrapper) key.attachment();
                     try {
                         if (socketWrapper == null) {
@@ -1357,48 +1812,11 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             if (key.isValid()) {
                                 key.cancel();
                             }
-                        } else if (close) {
+                        } else {
                             key.interestOps(0);
                             // Avoid duplicate stop calls
                             socketWrapper.interestOps(0);
                             socketWrapper.close();
-                        } else if (socketWrapper.interestOpsHas(SelectionKey.OP_READ) ||
-                                socketWrapper.interestOpsHas(SelectionKey.OP_WRITE)) {
-                            boolean readTimeout = false;
-                            boolean writeTimeout = false;
-                            // Check for read timeout
-                            if (socketWrapper.interestOpsHas(SelectionKey.OP_READ)) {
-                                long delta = now - socketWrapper.getLastRead();
-                                long timeout = socketWrapper.getReadTimeout();
-                                if (timeout > 0 && delta > timeout) {
-                                    readTimeout = true;
-                                }
-                            }
-                            // Check for write timeout
-                            if (!readTimeout && socketWrapper.interestOpsHas(SelectionKey.OP_WRITE)) {
-                                long delta = now - socketWrapper.getLastWrite();
-                                long timeout = socketWrapper.getWriteTimeout();
-                                if (timeout > 0 && delta > timeout) {
-                                    writeTimeout = true;
-                                }
-                            }
-                            if (readTimeout || writeTimeout) {
-                                key.interestOps(0);
-                                // Avoid duplicate timeout calls
-                                socketWrapper.interestOps(0);
-                                socketWrapper.setError(new SocketTimeoutException());
-                                if (readTimeout && socketWrapper.readOperation != null) {
-                                    if (!socketWrapper.readOperation.process()) {
-                                        socketWrapper.close();
-                                    }
-                                } else if (writeTimeout && socketWrapper.writeOperation != null) {
-                                    if (!socketWrapper.writeOperation.process()) {
-                                        socketWrapper.close();
-                                    }
-                                } else if (!processSocket(socketWrapper, SocketEvent.ERROR, true)) {
-                                    socketWrapper.close();
-                                }
-                            }
                         }
                     } catch (CancelledKeyException ckx) {
                         if (socketWrapper != null) {
@@ -1410,15 +1828,6 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 // See https://bz.apache.org/bugzilla/show_bug.cgi?id=57943
                 log.warn(sm.getString("endpoint.nio.timeoutCme"), cme);
             }
-            // For logging purposes only
-            long prevExp = nextExpiration;
-            nextExpiration = System.currentTimeMillis() + socketProperties.getTimeoutInterval();
-            if (log.isTraceEnabled()) {
-                log.trace("timeout completed: keys processed=" + keycount + "; now=" + now + "; nextExpiration=" +
-                        prevExp + "; keyCount=" + keyCount + "; hasEvents=" + hasEvents + "; eval=" +
-                        ((now < prevExp) && (keyCount > 0 || hasEvents) && (!close)));
-            }
-
         }
     }
 
@@ -1431,15 +1840,23 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
 
         private final SynchronizedStack<NioChannel> nioChannels;
         private final Poller poller;
+        // Only accessed by the Poller thread
+        private final TimerWheel.Entry<NioSocketWrapper> timeoutEntry = new TimerWheel.Entry<>(this);
 
         private int interestOps = 0;
         private volatile SendfileData sendfileData = null;
         private volatile long lastRead = System.currentTimeMillis();
         private volatile long lastWrite = lastRead;
 
-        private final Object readLock;
+        /*
+         * Blocking reads and writes wait for the Poller using a Lock rather than a monitor so that a virtual thread
+         * waiting for the socket unmounts from its carrier thread rather than pinning it.
+         */
+        private final Lock readLock = new ReentrantLock();
+        private final Condition readAvailable = readLock.newCondition();
         private volatile boolean readBlocking = false;
-        private final Object writeLock;
+        private final Lock writeLock = new ReentrantLock();
+        private final Condition writeAvailable = writeLock.newCondition();
         private volatile boolean writeBlocking = false;
 
         /**
@@ -1462,8 +1879,6 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             nioChannels = endpoint.getNioChannels();
             poller = endpoint.getPoller();
             socketBufferHandler = channel.getBufHandler();
-            readLock = (readPending == null) ? new Object() : readPending;
-            writeLock = (writePending == null) ? new Object() : writePending;
         }
 
         /**
@@ -1662,11 +2077,17 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 socketBufferHandler = SocketBufferHandler.EMPTY;
                 nonBlockingWriteBuffer.clear();
                 reset(NioChannel.CLOSED_NIO_CHANNEL);
+                if (poller != null) {
+                    poller.cancelTimeout(this);
+                }
             }
             try {
                 SendfileData data = getSendfileData();
-                if (data != null && data.fchannel != null && data.fchannel.isOpen()) {
-                    data.fchannel.close();
+                if (data != null) {
+                    data.mappedBuffer = null;
+                    if (data.fchannel != null && data.fchannel.isOpen()) {
+                        data.fchannel.close();
+                    }
                 }
             } catch (Throwable t) {
                 ExceptionUtils.handleThrowable(t);
@@ -1701,7 +2122,8 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             throw new SocketTimeoutException();
                         }
                     }
-                    synchronized (readLock) {
+                    readLock.lock();
+                    try {
                         n = getSocket().read(buffer);
                         if (n == -1) {
                             throw new EOFException();
@@ -1714,9 +2136,9 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             try {
                                 if (timeout > 0) {
                                     startNanos = System.nanoTime();
-                                    readLock.wait(timeout);
+                                    readAvailable.await(timeout, TimeUnit.MILLISECONDS);
                                 } else {
-                                    readLock.wait();
+                                    readAvailable.await();
                                 }
                             } catch (InterruptedException ignore) {
                                 /*
@@ -1725,6 +2147,8 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                                  */
                             }
                         }
+                    } finally {
+                        readLock.unlock();
                     }
                 } while (n == 0); // TLS needs to loop as reading zero application bytes is possible
             } else {
@@ -1831,7 +2255,8 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             throw previousIOException;
                         }
                     }
-                    synchronized (writeLock) {
+                    writeLock.lock();
+                    try {
                         n = getSocket().write(buffer);
                         // n == 0 could be an incomplete write, but it could also
                         // indicate that a previous incomplete write of the
@@ -1846,9 +2271,9 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             try {
                                 if (timeout > 0) {
                                     startNanos = System.nanoTime();
-                                    writeLock.wait(timeout);
+                                    writeAvailable.await(timeout, TimeUnit.MILLISECONDS);
                                 } else {
-                                    writeLock.wait();
+                                    writeAvailable.await();
                                 }
                             } catch (InterruptedException ignore) {
                                 /*
@@ -1861,6 +2286,8 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             timeout = getWriteTimeout();
                             startNanos = 0;
                         }
+                    } finally {
+                        writeLock.unlock();
                     }
                 } while (buffer.hasRemaining() || getSocket().getOutboundRemaining() > 0);
             } else {
@@ -2156,8 +2583,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
              * connection. That can result in a stale cached value which in turn can result in unintentionally closing
              * currently active connections.
              */
-            Poller poller = NioEndpoint.this.poller;
-            if (poller == null) {
+            if (NioEndpoint.this.pollers == null) {
                 socketWrapper.close();
                 return;
             }
@@ -2253,5 +2679,10 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
          * The file channel for the sendfile operation.
          */
         protected volatile FileChannel fchannel;
+
+        /**
+         * The currently mapped region of the file when sending a file over a TLS connection.
+         */
+        protected volatile MappedByteBuffer mappedBuffer;
     }
 }
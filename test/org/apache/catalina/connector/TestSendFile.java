@@ -44,6 +44,7 @@ import org.apache.catalina.Globals;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
 import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.net.TesterSupport;
 
 public class TestSendFile extends TomcatBaseTest {
 
@@ -52,8 +53,20 @@ public class TestSendFile extends TomcatBaseTest {
 
     @Test
     public void testSendFile() throws Exception {
+        doTestSendFile(false);
+    }
+
+    @Test
+    public void testSendFileTls() throws Exception {
+        doTestSendFile(true);
+    }
+
+    private void doTestSendFile(boolean tls) throws Exception {
 
         Tomcat tomcat = getTomcatInstance();
+        if (tls) {
+            TesterSupport.initSsl(tomcat);
+        }
 
         Context root = tomcat.addContext("", TEMP_DIR);
 
@@ -70,17 +83,24 @@ public class TestSendFile extends TomcatBaseTest {
         }
 
         tomcat.start();
+        if (tls) {
+            TesterSupport.configureClientSsl();
+        }
 
         ByteChunk bc = new ByteChunk();
         Map<String,List<String>> respHeaders = new HashMap<>();
         for (int i = 0; i < ITERATIONS; i++) {
             long start = System.currentTimeMillis();
-            int rc = getUrl("http://localhost:" + getPort() + "/servlet" + i, bc, null, respHeaders);
+            int rc = getUrl((tls ? "https" : "http") + "://localhost:" + getPort() + "/servlet" + i, bc, null,
+                    respHeaders);
             Assert.assertEquals(HttpServletResponse.SC_OK, rc);
             System.out.println(
                     "Client received " + bc.getLength() + " bytes in " + (System.currentTimeMillis() - start) + " ms.");
             Assert.assertEquals("Expected [" + EXPECTED_CONTENT_LENGTH * (i + 1L) + "], was [" + bc.getLength() + "]",
                     EXPECTED_CONTENT_LENGTH * (i + 1L), bc.getLength());
+            for (int j = bc.getStart(); j < bc.getEnd(); j++) {
+                Assert.assertEquals('X', bc.getBuffer()[j]);
+            }
 
             bc.recycle();
         }
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.ha.session;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBinaryDiff {
+
+    @Test
+    public void testIdentical() {
+        byte[] base = random(1000, 1);
+        byte[] patch = BinaryDiff.diff(base, base.clone());
+        Assert.assertEquals(28, patch.length);
+        Assert.assertArrayEquals(base, BinaryDiff.apply(base, patch));
+    }
+
+
+    @Test
+    public void testSameLength() {
+        byte[] base = random(10000, 2);
+        byte[] target = base.clone();
+        target[0]++;
+        target[5000]++;
+        target[5003]++;
+        target[9999]++;
+        byte[] patch = BinaryDiff.diff(base, target);
+        Assert.assertTrue(patch.length < 100);
+        Assert.assertArrayEquals(target, BinaryDiff.apply(base, patch));
+    }
+
+
+    @Test
+    public void testInsertion() {
+        byte[] base = random(1000, 3);
+        byte[] target = new byte[1010];
+        System.arraycopy(base, 0, target, 0, 500);
+        System.arraycopy(base, 500, target, 510, 500);
+        byte[] patch = BinaryDiff.diff(base, target);
+        Assert.assertTrue(patch.length < 100);
+        Assert.assertArrayEquals(target, BinaryDiff.apply(base, patch));
+    }
+
+
+    @Test
+    public void testDeletion() {
+        byte[] base = random(1000, 4);
+        byte[] target = Arrays.copyOf(base, 900);
+        Assert.assertArrayEquals(target, BinaryDiff.apply(base, BinaryDiff.diff(base, target)));
+        Assert.assertArrayEquals(new byte[0], BinaryDiff.apply(base, BinaryDiff.diff(base, new byte[0])));
+    }
+
+
+    @Test
+    public void testEmptyBase() {
+        byte[] target = random(1000, 5);
+        Assert.assertArrayEquals(target, BinaryDiff.apply(new byte[0], BinaryDiff.diff(new byte[0], target)));
+    }
+
+
+    @Test
+    public void testWrongBase() {
+        byte[] base = random(1000, 6);
+        byte[] target = base.clone();
+        target[10]++;
+        byte[] patch = BinaryDiff.diff(base, target);
+
+        byte[] other = base.clone();
+        other[20]++;
+        Assert.assertNull(BinaryDiff.apply(other, patch));
+        Assert.assertNull(BinaryDiff.apply(new byte[0], patch));
+    }
+
+
+    @Test
+    public void testCorruptPatch() {
+        byte[] base = random(1000, 7);
+        byte[] target = base.clone();
+        target[10]++;
+        byte[] patch = BinaryDiff.diff(base, target);
+
+        byte[] corrupt = patch.clone();
+        corrupt[corrupt.length - 1]++;
+        Assert.assertNull(BinaryDiff.apply(base, corrupt));
+        Assert.assertNull(BinaryDiff.apply(base, Arrays.copyOf(patch, patch.length - 1)));
+        Assert.assertNull(BinaryDiff.apply(base, new byte[10]));
+    }
+
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -16,6 +16,9 @@
  */
 package org.apache.catalina.ha.session;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -30,7 +33,10 @@ import org.junit.Test;
 
 import org.apache.catalina.Manager;
 import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.ha.tcp.SimpleTcpCluster;
+import org.apache.catalina.session.CompactSessionSerializer;
 import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.tribes.group.interceptors.OrderInterceptor;
 
 public class TestDeltaSession {
 
@@ -105,4 +111,307 @@ public class TestDeltaSession {
         Assert.assertNull(setAttributeException.get());
         Assert.assertNull(expireException.get());
     }
+
+
+    @Test
+    public void testDiffWithCompactSerializer() throws Exception {
+        DeltaManager manager = new DeltaManager();
+        manager.setContext(new StandardContext());
+        manager.setSessionSerializer(new CompactSessionSerializer());
+
+        DeltaSession source = new DeltaSession(manager);
+        source.setValid(true);
+        source.setId("0123456789ABCDEF", false);
+        source.setAttribute("string", "value");
+        source.setAttribute("int", Integer.valueOf(42));
+        source.removeAttribute("int");
+        source.setMaxInactiveInterval(120);
+
+        byte[] diff = source.getDiff();
+
+        DeltaSession dest = new DeltaSession(manager);
+        dest.setValid(true);
+        dest.setId("0123456789ABCDEF", false);
+        dest.applyDiff(diff, 0, diff.length);
+
+        Assert.assertEquals("value", dest.getAttribute("string"));
+        Assert.assertNull(dest.getAttribute("int"));
+        Assert.assertEquals(120, dest.getMaxInactiveInterval());
+    }
+
+
+    @Test
+    public void testDeltaAttribute() throws Exception {
+        DeltaManager manager = createManager(true);
+
+        DeltaSession source = createSession(manager);
+        TesterDeltaAttribute sourceCounters = new TesterDeltaAttribute(100);
+        source.setAttribute("counters", sourceCounters);
+
+        DeltaSession dest = createSession(manager);
+        byte[] full = source.getDiff();
+        dest.applyDiff(full, 0, full.length);
+        TesterDeltaAttribute destCounters = (TesterDeltaAttribute) dest.getAttribute("counters");
+        Assert.assertNotSame(sourceCounters, destCounters);
+        Assert.assertTrue(Arrays.equals(sourceCounters.values, destCounters.values));
+
+        // Modified without being set on the session again
+        sourceCounters.increment(7);
+        Assert.assertTrue(source.isDirty());
+        byte[] delta = source.getDiff();
+        Assert.assertFalse(source.isDirty());
+        Assert.assertTrue(delta.length < full.length);
+        dest.applyDiff(delta, 0, delta.length);
+        Assert.assertSame(destCounters, dest.getAttribute("counters"));
+        Assert.assertEquals(1, destCounters.values[7]);
+        Assert.assertFalse(destCounters.isDirty());
+
+        // Set on the session again
+        sourceCounters.increment(8);
+        source.setAttribute("counters", sourceCounters);
+        delta = source.getDiff();
+        Assert.assertTrue(delta.length < full.length);
+        dest.applyDiff(delta, 0, delta.length);
+        Assert.assertTrue(Arrays.equals(sourceCounters.values, destCounters.values));
+
+        // Replaced with a different object
+        TesterDeltaAttribute replacement = new TesterDeltaAttribute(100);
+        replacement.increment(1);
+        source.setAttribute("counters", replacement);
+        full = source.getDiff();
+        dest.applyDiff(full, 0, full.length);
+        TesterDeltaAttribute destReplacement = (TesterDeltaAttribute) dest.getAttribute("counters");
+        Assert.assertNotSame(destCounters, destReplacement);
+        Assert.assertTrue(Arrays.equals(replacement.values, destReplacement.values));
+        Assert.assertEquals(0, manager.getAttributeDiffFailures());
+    }
+
+
+    @Test
+    public void testAttributeBinaryDiff() throws Exception {
+        DeltaManager manager = createManager(true);
+        manager.setAttributeDiffMinSize(256);
+
+        DeltaSession source = createSession(manager);
+        int[] values = new int[1000];
+        source.setAttribute("values", values);
+        source.setAttribute("small", "value");
+
+        DeltaSession dest = createSession(manager);
+        byte[] full = source.getDiff();
+        dest.applyDiff(full, 0, full.length);
+        Assert.assertTrue(Arrays.equals(values, (int[]) dest.getAttribute("values")));
+        Assert.assertEquals("value", dest.getAttribute("small"));
+
+        DeltaSession late = createSession(manager);
+
+        values[500] = 42;
+        source.setAttribute("values", values);
+        byte[] diff = source.getDiff();
+        Assert.assertTrue(diff.length < full.length / 4);
+        Assert.assertTrue(manager.getAttributeDiffBytesSaved() > 0);
+        dest.applyDiff(diff, 0, diff.length);
+        Assert.assertTrue(Arrays.equals(values, (int[]) dest.getAttribute("values")));
+        Assert.assertEquals(0, manager.getAttributeDiffFailures());
+
+        // A node that did not receive the first value is unable to apply the diff
+        late.applyDiff(diff, 0, diff.length);
+        Assert.assertNull(late.getAttribute("values"));
+        Assert.assertEquals(1, manager.getAttributeDiffFailures());
+
+        Assert.assertTrue(manager.getReplicationBytesSent() > 0);
+        Assert.assertEquals(manager.getReplicationBytesSent() + diff.length, manager.getReplicationBytesReceived());
+    }
+
+
+    @Test
+    public void testAttributeChangesRequireOrderedDelivery() throws Exception {
+        DeltaManager manager = createManager(false);
+        manager.setAttributeDiffMinSize(256);
+        Assert.assertFalse(manager.isOrderedDelivery());
+
+        DeltaSession source = createSession(manager);
+        TesterDeltaAttribute counters = new TesterDeltaAttribute(100);
+        source.setAttribute("counters", counters);
+        int[] values = new int[1000];
+        source.setAttribute("values", values);
+        byte[] full = source.getDiff();
+
+        counters.increment(7);
+        values[500] = 42;
+        source.setAttribute("values", values);
+        byte[] diff = source.getDiff();
+        Assert.assertTrue(diff.length >= full.length);
+
+        // Complete values can be applied by a node that missed the earlier messages
+        DeltaSession dest = createSession(manager);
+        dest.applyDiff(diff, 0, diff.length);
+        Assert.assertTrue(Arrays.equals(counters.values, ((TesterDeltaAttribute) dest.getAttribute("counters")).values));
+        Assert.assertTrue(Arrays.equals(values, (int[]) dest.getAttribute("values")));
+        Assert.assertEquals(0, manager.getAttributeDiffBytesSaved());
+    }
+
+
+    @Test
+    public void testAttributeReplicationRecovery() throws Exception {
+        DeltaManager manager = createManager(true);
+        manager.setAttributeFullReplicationInterval(2);
+
+        DeltaSession source = createSession(manager);
+        TesterDeltaAttribute sourceCounters = new TesterDeltaAttribute(100);
+        source.setAttribute("counters", sourceCounters);
+        byte[] full = source.getDiff();
+
+        // The destination missed the complete attribute and holds a stale value
+        DeltaSession dest = createSession(manager);
+        dest.setAttribute("counters", "stale");
+
+        sourceCounters.increment(1);
+        byte[] delta = source.getDiff();
+        Assert.assertTrue(delta.length < full.length);
+        dest.applyDiff(delta, 0, delta.length);
+        Assert.assertNull(dest.getAttribute("counters"));
+        Assert.assertEquals(1, manager.getAttributeDiffFailures());
+
+        sourceCounters.increment(2);
+        delta = source.getDiff();
+        Assert.assertTrue(delta.length < full.length);
+        dest.applyDiff(delta, 0, delta.length);
+        Assert.assertNull(dest.getAttribute("counters"));
+        Assert.assertEquals(2, manager.getAttributeDiffFailures());
+
+        // The third consecutive change is replicated in full
+        sourceCounters.increment(3);
+        full = source.getDiff();
+        dest.applyDiff(full, 0, full.length);
+        TesterDeltaAttribute destCounters = (TesterDeltaAttribute) dest.getAttribute("counters");
+        Assert.assertTrue(Arrays.equals(sourceCounters.values, destCounters.values));
+
+        sourceCounters.increment(4);
+        delta = source.getDiff();
+        Assert.assertTrue(delta.length < full.length);
+        dest.applyDiff(delta, 0, delta.length);
+        Assert.assertSame(destCounters, dest.getAttribute("counters"));
+        Assert.assertTrue(Arrays.equals(sourceCounters.values, destCounters.values));
+        Assert.assertEquals(2, manager.getAttributeDiffFailures());
+    }
+
+
+    @Test
+    public void testAttributeBinaryDiffRecovery() throws Exception {
+        DeltaManager manager = createManager(true);
+        manager.setAttributeDiffMinSize(256);
+        manager.setAttributeFullReplicationInterval(1);
+
+        DeltaSession source = createSession(manager);
+        int[] values = new int[1000];
+        source.setAttribute("values", values);
+        byte[] full = source.getDiff();
+
+        DeltaSession dest = createSession(manager);
+
+        values[1] = 1;
+        source.setAttribute("values", values);
+        byte[] diff = source.getDiff();
+        Assert.assertTrue(diff.length < full.length / 4);
+        dest.applyDiff(diff, 0, diff.length);
+        Assert.assertNull(dest.getAttribute("values"));
+        Assert.assertEquals(1, manager.getAttributeDiffFailures());
+
+        // The second consecutive change is replicated in full
+        values[2] = 2;
+        source.setAttribute("values", values);
+        diff = source.getDiff();
+        dest.applyDiff(diff, 0, diff.length);
+        Assert.assertTrue(Arrays.equals(values, (int[]) dest.getAttribute("values")));
+
+        values[3] = 3;
+        source.setAttribute("values", values);
+        diff = source.getDiff();
+        Assert.assertTrue(diff.length < full.length / 4);
+        dest.applyDiff(diff, 0, diff.length);
+        Assert.assertTrue(Arrays.equals(values, (int[]) dest.getAttribute("values")));
+        Assert.assertEquals(1, manager.getAttributeDiffFailures());
+    }
+
+
+    private DeltaManager createManager(boolean orderedDelivery) {
+        SimpleTcpCluster cluster = new SimpleTcpCluster();
+        if (orderedDelivery) {
+            cluster.getChannel().addInterceptor(new OrderInterceptor());
+        }
+        DeltaManager manager = new DeltaManager();
+        manager.setContext(new StandardContext());
+        manager.setCluster(cluster);
+        return manager;
+    }
+
+
+    private DeltaSession createSession(Manager manager) {
+        DeltaSession session = new DeltaSession(manager);
+        session.setValid(true);
+        session.setId("0123456789ABCDEF", false);
+        return session;
+    }
+
+
+    private static class TesterDeltaAttribute implements DeltaAttribute {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] values;
+        private transient boolean[] changed;
+
+        TesterDeltaAttribute(int size) {
+            values = new int[size];
+        }
+
+        void increment(int index) {
+            values[index]++;
+            changed()[index] = true;
+        }
+
+        private boolean[] changed() {
+            if (changed == null) {
+                changed = new boolean[values.length];
+            }
+            return changed;
+        }
+
+        @Override
+        public boolean isDirty() {
+            for (boolean c : changed()) {
+                if (c) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public byte[] getDiff() throws IOException {
+            ByteBuffer diff = ByteBuffer.allocate(values.length * 8);
+            for (int i = 0; i < values.length; i++) {
+                if (changed()[i]) {
+                    diff.putInt(i);
+                    diff.putInt(values[i]);
+                }
+            }
+            resetDiff();
+            return Arrays.copyOf(diff.array(), diff.position());
+        }
+
+        @Override
+        public void applyDiff(byte[] diff, int offset, int length) throws IOException, ClassNotFoundException {
+            ByteBuffer buffer = ByteBuffer.wrap(diff, offset, length);
+            while (buffer.hasRemaining()) {
+                values[buffer.getInt()] = buffer.getInt();
+            }
+        }
+
+        @Override
+        public void resetDiff() {
+            Arrays.fill(changed(), false);
+        }
+    }
 }
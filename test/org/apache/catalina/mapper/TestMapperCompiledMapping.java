@@ -0,0 +1,96 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.catalina.mapper;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.core.StandardWrapper;
+import org.apache.tomcat.util.buf.MessageBytes;
+
+/**
+ * Runs the Mapper tests with mappings resolved via compiled tries.
+ */
+public class TestMapperCompiledMapping extends TestMapper {
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mapper.setCompiledMapping(true);
+    }
+
+
+    @Test
+    public void testRecompileAfterWrapperChange() throws Exception {
+        Mapper mapper = new Mapper();
+        mapper.setCompiledMapping(true);
+
+        Host host = new StandardHost();
+        host.setName("localhost");
+        mapper.addHost("localhost", new String[0], host);
+        mapper.setDefaultHostName("localhost");
+
+        Context context = new StandardContext();
+        context.setName("/app");
+        mapper.addContextVersion("localhost", host, "/app", "0", context, new String[0], null,
+                Arrays.asList(new WrapperMappingInfo("/a/*", createWrapper("a"), false, false),
+                        new WrapperMappingInfo("*.do", createWrapper("do"), false, false)));
+
+        Assert.assertEquals("a", map(mapper, "/app/a/b/c.do"));
+
+        mapper.addWrapper("localhost", "/app", "0", "/a/b/*", createWrapper("ab"), false, false);
+        Assert.assertEquals("ab", map(mapper, "/app/a/b/c.do"));
+
+        mapper.addWrapper("localhost", "/app", "0", "/a/b/c.do", createWrapper("exact"), false, false);
+        Assert.assertEquals("exact", map(mapper, "/app/a/b/c.do"));
+
+        mapper.removeWrapper("localhost", "/app", "0", "/a/b/c.do");
+        mapper.removeWrapper("localhost", "/app", "0", "/a/b/*");
+        mapper.removeWrapper("localhost", "/app", "0", "/a/*");
+        Assert.assertEquals("do", map(mapper, "/app/a/b/c.do"));
+        Assert.assertNull(map(mapper, "/app/a/b/c.jsp"));
+    }
+
+
+    private static String map(Mapper mapper, String path) throws Exception {
+        MappingData mappingData = new MappingData();
+        MessageBytes host = MessageBytes.newInstance();
+        host.setString("localhost");
+        MessageBytes uri = MessageBytes.newInstance();
+        uri.setString(path);
+        uri.toChars();
+        uri.getCharChunk().setLimit(-1);
+        mapper.map(host, uri, null, mappingData);
+        return mappingData.wrapper == null ? null : mappingData.wrapper.getName();
+    }
+
+
+    private static Wrapper createWrapper(String name) {
+        Wrapper wrapper = new StandardWrapper();
+        wrapper.setName(name);
+        return wrapper;
+    }
+}
@@ -16,9 +16,18 @@
  */
 package org.apache.catalina.mapper;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.core.StandardWrapper;
 import org.apache.tomcat.util.buf.MessageBytes;
 
 /*
@@ -70,4 +79,78 @@ public class TestMapperPerformance extends TestMapper {
         return time;
     }
 
+
+    /*
+     * Compares binary search and compiled mapping for a Host with many contexts, each with many servlet mappings.
+     */
+    @Test
+    public void testPerformanceAtScale() throws Exception {
+        final long maxTime = 5000;
+        String[] uris = new String[] { "/app250/exact501", "/app250/prefix502/some/path/info",
+                "/app250/some/resource/page.ext503", "/app250/unmapped/resource.css" };
+
+        Mapper binarySearchMapper = createMapperAtScale(500, 1000);
+        Mapper compiledMapper = createMapperAtScale(500, 1000);
+        compiledMapper.setCompiledMapping(true);
+
+        for (String uri : uris) {
+            long binarySearchTime = testPerformanceAtScaleImpl(binarySearchMapper, uri);
+            long compiledTime = testPerformanceAtScaleImpl(compiledMapper, uri);
+            log.info("URI [" + uri + "], Binary search time [" + binarySearchTime + "]ms, Compiled time [" +
+                    compiledTime + "]ms");
+            Assert.assertTrue(String.valueOf(compiledTime), compiledTime < maxTime);
+        }
+    }
+
+    private long testPerformanceAtScaleImpl(Mapper mapper, String requestUri) throws Exception {
+        MappingData mappingData = new MappingData();
+        MessageBytes host = MessageBytes.newInstance();
+        host.setString("localhost");
+        MessageBytes uri = MessageBytes.newInstance();
+        uri.setString(requestUri);
+        uri.toChars();
+        uri.getCharChunk().setLimit(-1);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 1000000; i++) {
+            mappingData.recycle();
+            mapper.map(host, uri, null, mappingData);
+        }
+        long time = System.currentTimeMillis() - start;
+        Assert.assertNotNull(mappingData.wrapper);
+        return time;
+    }
+
+    private static Mapper createMapperAtScale(int contextCount, int mappingsPerContext) {
+        Mapper mapper = new Mapper();
+        Host host = new StandardHost();
+        host.setName("localhost");
+        mapper.addHost("localhost", new String[0], host);
+        mapper.setDefaultHostName("localhost");
+
+        // Wrappers are not shared by contexts in a real deployment but the Mapper does not care
+        Wrapper wrapper = new StandardWrapper();
+        wrapper.setName("wrapper");
+        for (int i = 0; i < contextCount; i++) {
+            Context context = new StandardContext();
+            context.setName("/app" + i);
+            List<WrapperMappingInfo> wrappers = new ArrayList<>();
+            wrappers.add(new WrapperMappingInfo("/", wrapper, false, false));
+            for (int j = 0; j < mappingsPerContext; j++) {
+                switch (j % 3) {
+                    case 0:
+                        wrappers.add(new WrapperMappingInfo("/exact" + j, wrapper, false, false));
+                        break;
+                    case 1:
+                        wrappers.add(new WrapperMappingInfo("/prefix" + j + "/*", wrapper, false, false));
+                        break;
+                    default:
+                        wrappers.add(new WrapperMappingInfo("*.ext" + j, wrapper, false, false));
+                }
+            }
+            mapper.addContextVersion("localhost", host, "/app" + i, "0", context, new String[0], null, wrappers);
+        }
+        return mapper;
+    }
+
 }
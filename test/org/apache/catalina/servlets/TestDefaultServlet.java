@@ -16,11 +16,14 @@
  */
 package org.apache.catalina.servlets;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
@@ -28,6 +31,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
 
 import jakarta.servlet.http.HttpServletResponse;
 
@@ -437,6 +441,63 @@ public class TestDefaultServlet extends TomcatBaseTest {
         Assert.assertTrue(responseHeaders.contains("vary: accept-encoding"));
     }
 
+    /*
+     * Verify that a gzip variant is created on the fly, cached and can be used for conditional requests.
+     */
+    @Test
+    public void testCachedCompressedVariant() throws Exception {
+
+        Tomcat tomcat = getTomcatInstance();
+
+        File appDir = new File("test/webapp");
+        byte[] expected = Files.readAllBytes(new File(appDir, "index.html").toPath());
+
+        Context ctxt = tomcat.addContext("", appDir.getAbsolutePath());
+        Wrapper defaultServlet = Tomcat.addServlet(ctxt, "default", DefaultServlet.class.getName());
+        defaultServlet.addInitParameter("cacheCompressedVariants", "true");
+        defaultServlet.addInitParameter("compressionMinSize", "0");
+
+        ctxt.addServletMapping("/", "default");
+        ctxt.addMimeMapping("html", "text/html");
+
+        tomcat.start();
+
+        String eTag = null;
+        for (int i = 0; i < 2; i++) {
+            ByteChunk res = new ByteChunk();
+            Map<String,List<String>> reqHeaders = new HashMap<>();
+            reqHeaders.put("Accept-Encoding", List.of("gzip"));
+            Map<String,List<String>> resHeaders = new HashMap<>();
+            int rc = getUrl("http://localhost:" + getPort() + "/index.html", res, reqHeaders, resHeaders);
+            Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+            Assert.assertEquals("gzip", resHeaders.get("Content-Encoding").get(0));
+            Assert.assertEquals("accept-encoding", resHeaders.get("vary").get(0));
+            Assert.assertTrue(res.getLength() < expected.length);
+            try (InputStream is = new GZIPInputStream(
+                    new ByteArrayInputStream(res.getBytes(), res.getStart(), res.getLength()))) {
+                Assert.assertArrayEquals(expected, is.readAllBytes());
+            }
+            eTag = resHeaders.get("ETag").get(0);
+            Assert.assertTrue(eTag.endsWith("-gzip\""));
+        }
+
+        // The variant ETag can be used for conditional requests
+        ByteChunk res = new ByteChunk();
+        Map<String,List<String>> reqHeaders = new HashMap<>();
+        reqHeaders.put("Accept-Encoding", List.of("gzip"));
+        reqHeaders.put("If-None-Match", List.of(eTag));
+        int rc = getUrl("http://localhost:" + getPort() + "/index.html", res, reqHeaders, null);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, rc);
+
+        // Clients that don't support gzip get the original content
+        res = new ByteChunk();
+        Map<String,List<String>> resHeaders = new HashMap<>();
+        rc = getUrl("http://localhost:" + getPort() + "/index.html", res, null, resHeaders);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertNull(resHeaders.get("Content-Encoding"));
+        Assert.assertEquals(expected.length, res.getLength());
+    }
+
     /*
      * Test https://bz.apache.org/bugzilla/show_bug.cgi?id=50026
      * Verify serving of resources from context root with subpath mapping.
@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.core.StandardContext;
+
+public class TestCompactSessionSerializer {
+
+    private static final StandardManager COMPACT_MANAGER;
+    private static final StandardManager JAVA_MANAGER;
+    private static final ClassLoader CLASS_LOADER = TestCompactSessionSerializer.class.getClassLoader();
+
+    static {
+        COMPACT_MANAGER = new StandardManager();
+        COMPACT_MANAGER.setContext(new StandardContext());
+        COMPACT_MANAGER.setSessionSerializer(new CompactSessionSerializer());
+        JAVA_MANAGER = new StandardManager();
+        JAVA_MANAGER.setContext(new StandardContext());
+    }
+
+
+    @Test
+    public void testSimpleValues() throws Exception {
+        Map<Long,String> tree = new TreeMap<>();
+        tree.put(Long.valueOf(2), "two");
+        tree.put(Long.valueOf(1), "one");
+        Map<String,Object> concurrent = new ConcurrentHashMap<>();
+        concurrent.put("a", Integer.valueOf(1));
+        concurrent.put("b", new ArrayList<>(Arrays.asList("x", null, Boolean.TRUE)));
+
+        Object[] values = new Object[] { null, Boolean.TRUE, Boolean.FALSE, Byte.valueOf((byte) -1),
+                Short.valueOf(Short.MIN_VALUE), Character.valueOf('€'), Integer.valueOf(0),
+                Integer.valueOf(Integer.MIN_VALUE), Integer.valueOf(Integer.MAX_VALUE), Long.valueOf(Long.MIN_VALUE),
+                Long.valueOf(Long.MAX_VALUE), Float.valueOf(1.5f), Double.valueOf(Double.NaN), "", "latin1 é",
+                "utf16 €😀", new Date(1234567890123L), new LinkedHashSet<>(Arrays.asList("z", "a")),
+                tree, concurrent };
+
+        Object[] result = roundTrip(COMPACT_MANAGER, values);
+
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], result[i]);
+            if (values[i] != null) {
+                Assert.assertEquals(values[i].getClass(), result[i].getClass());
+            }
+        }
+        Assert.assertEquals(new ArrayList<>(Arrays.asList("z", "a")), new ArrayList<>((LinkedHashSet<?>) result[17]));
+    }
+
+
+    @Test
+    public void testBytes() throws Exception {
+        byte[] bytes = new byte[20000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        Object[] result = roundTrip(COMPACT_MANAGER, bytes);
+        Assert.assertArrayEquals(bytes, (byte[]) result[0]);
+    }
+
+
+    @Test
+    public void testRepeatedStrings() throws Exception {
+        String longString = "x".repeat(CompactObjectOutputStream.MAX_DICTIONARY_STRING_LENGTH + 1);
+        Object[] values = new Object[] { "name", "name", longString, longString, "name" };
+
+        Object[] result = roundTrip(COMPACT_MANAGER, values);
+
+        Assert.assertArrayEquals(values, result);
+        // Repeated short strings are shared, long strings are not
+        Assert.assertSame(result[0], result[1]);
+        Assert.assertSame(result[0], result[4]);
+        Assert.assertNotSame(result[2], result[3]);
+    }
+
+
+    @Test
+    public void testJavaFallback() throws Exception {
+        Custom custom = new Custom("value");
+        // Not an exact match for the compact collection types
+        Map<String,Object> linked = new LinkedHashMap<>();
+        linked.put("key", "value");
+        // Contains a type that requires Java serialization
+        List<Object> list = new ArrayList<>();
+        list.add(custom);
+
+        Object[] result = roundTrip(COMPACT_MANAGER, custom, linked, list, custom);
+
+        Assert.assertEquals(custom, result[0]);
+        Assert.assertEquals(linked, result[1]);
+        Assert.assertEquals(LinkedHashMap.class, result[1].getClass());
+        Assert.assertEquals(list, result[2]);
+        // Shared references are preserved between objects written with Java serialization
+        Assert.assertSame(result[0], ((List<?>) result[2]).get(0));
+        Assert.assertSame(result[0], result[3]);
+    }
+
+
+    @Test
+    public void testCycle() throws Exception {
+        List<Object> list = new ArrayList<>();
+        list.add("a");
+        list.add(list);
+
+        Object[] result = roundTrip(COMPACT_MANAGER, (Object) list);
+
+        List<?> copy = (List<?>) result[0];
+        Assert.assertEquals("a", copy.get(0));
+        Assert.assertSame(copy, copy.get(1));
+    }
+
+
+    @Test
+    public void testSharedReferences() throws Exception {
+        List<Object> list = new ArrayList<>(Arrays.asList("a", "b"));
+        byte[] bytes = new byte[] { 1, 2, 3 };
+        Map<String,Object> map = new HashMap<>();
+        map.put("list", list);
+        map.put("bytes", bytes);
+        map.put("same", list);
+
+        Object[] result = roundTrip(COMPACT_MANAGER, list, map, bytes, list);
+
+        // Shared references are preserved within and between objects, as they are with Java serialization
+        Assert.assertEquals(list, result[0]);
+        Map<?,?> copy = (Map<?,?>) result[1];
+        Assert.assertSame(result[0], copy.get("list"));
+        Assert.assertSame(result[0], copy.get("same"));
+        Assert.assertSame(result[2], copy.get("bytes"));
+        Assert.assertSame(result[0], result[3]);
+        // The shared list is only written once
+        Assert.assertTrue(serialize(COMPACT_MANAGER, list, list).length < serialize(COMPACT_MANAGER,
+                list, new ArrayList<>(list)).length);
+    }
+
+
+    @Test
+    public void testSharedReferenceWrittenWithJava() throws Exception {
+        List<Object> list = new ArrayList<>(Arrays.asList("a", "b"));
+        Holder holder = new Holder(list);
+
+        Object[] result = roundTrip(COMPACT_MANAGER, holder, list, new ArrayList<>(Arrays.asList(list)));
+
+        // The list was written with Java serialization as part of the holder so later references use it too
+        Assert.assertSame(((Holder) result[0]).value, result[1]);
+        Assert.assertSame(result[1], ((List<?>) result[2]).get(0));
+    }
+
+
+    @Test
+    public void testSessionSharedAttribute() throws Exception {
+        List<Object> list = new ArrayList<>(Arrays.asList("a", "b"));
+        StandardSession s1 = new StandardSession(COMPACT_MANAGER);
+        s1.setValid(true);
+        s1.setId("0123456789ABCDEF", false);
+        s1.setAttribute("one", list);
+        s1.setAttribute("two", list);
+
+        StandardSession s2 = serializeThenDeserialize(COMPACT_MANAGER, COMPACT_MANAGER, s1);
+
+        Assert.assertEquals(list, s2.getAttribute("one"));
+        Assert.assertSame(s2.getAttribute("one"), s2.getAttribute("two"));
+    }
+
+
+    @Test
+    public void testReset() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = COMPACT_MANAGER.getSessionObjectOutputStream(baos)) {
+            oos.writeObject("name");
+            oos.writeObject(new Custom("one"));
+            oos.reset();
+            oos.writeObject("name");
+            oos.writeObject(new Custom("two"));
+        }
+        try (ObjectInputStream ois = COMPACT_MANAGER.getSessionObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray()), CLASS_LOADER)) {
+            Assert.assertEquals("name", ois.readObject());
+            Assert.assertEquals(new Custom("one"), ois.readObject());
+            Assert.assertEquals("name", ois.readObject());
+            Assert.assertEquals(new Custom("two"), ois.readObject());
+        }
+    }
+
+
+    @Test
+    public void testSession() throws Exception {
+        StandardSession s1 = new StandardSession(COMPACT_MANAGER);
+        s1.setValid(true);
+        s1.setId("0123456789ABCDEF", false);
+        s1.setAttribute("string", "value");
+        s1.setAttribute("int", Integer.valueOf(42));
+        s1.setAttribute("custom", new Custom("custom"));
+        s1.setAttribute("nonSerializable", new Object());
+
+        StandardSession s2 = serializeThenDeserialize(COMPACT_MANAGER, COMPACT_MANAGER, s1);
+
+        Assert.assertEquals(s1.getId(), s2.getId());
+        Assert.assertEquals(s1.getCreationTime(), s2.getCreationTime());
+        Assert.assertEquals(s1.getMaxInactiveInterval(), s2.getMaxInactiveInterval());
+        Assert.assertEquals("value", s2.getAttribute("string"));
+        Assert.assertEquals(Integer.valueOf(42), s2.getAttribute("int"));
+        Assert.assertEquals(new Custom("custom"), s2.getAttribute("custom"));
+        Assert.assertNull(s2.getAttribute("nonSerializable"));
+    }
+
+
+    @Test
+    public void testReadJavaSerializedSession() throws Exception {
+        StandardSession s1 = new StandardSession(JAVA_MANAGER);
+        s1.setValid(true);
+        s1.setId("0123456789ABCDEF", false);
+        s1.setAttribute("string", "value");
+
+        StandardSession s2 = serializeThenDeserialize(JAVA_MANAGER, COMPACT_MANAGER, s1);
+
+        Assert.assertEquals(s1.getId(), s2.getId());
+        Assert.assertEquals("value", s2.getAttribute("string"));
+    }
+
+
+    @Test
+    public void testSmallerThanJava() throws Exception {
+        StandardSession session = new StandardSession(JAVA_MANAGER);
+        session.setValid(true);
+        session.setId("0123456789ABCDEF", false);
+        session.setAttribute("user", "someone");
+        session.setAttribute("visits", Integer.valueOf(10));
+        session.setAttribute("roles", new ArrayList<>(Arrays.asList("a", "b")));
+
+        int javaSize = serialize(JAVA_MANAGER, session).length;
+        int compactSize = serialize(COMPACT_MANAGER, session).length;
+
+        Assert.assertTrue("Compact [" + compactSize + "] Java [" + javaSize + "]", compactSize < javaSize);
+    }
+
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testInvalidHeader() throws Exception {
+        COMPACT_MANAGER.getSessionObjectInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 }), CLASS_LOADER);
+    }
+
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testTooDeep() throws Exception {
+        byte[] data = new byte[CompactObjectOutputStream.MAGIC.length + CompactObjectOutputStream.MAX_DEPTH + 2];
+        System.arraycopy(CompactObjectOutputStream.MAGIC, 0, data, 0, CompactObjectOutputStream.MAGIC.length);
+        Arrays.fill(data, CompactObjectOutputStream.MAGIC.length, data.length,
+                (byte) CompactObjectOutputStream.TAG_ARRAY_LIST);
+        try (ObjectInputStream ois = COMPACT_MANAGER.getSessionObjectInputStream(new ByteArrayInputStream(data),
+                CLASS_LOADER)) {
+            ois.readObject();
+        }
+    }
+
+
+    @Test
+    public void testUnpairedSurrogate() throws Exception {
+        String value = "a\uD800b\uDC00";
+        Object[] result = roundTrip(COMPACT_MANAGER, value);
+        Assert.assertEquals(value, result[0]);
+    }
+
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedUtf16String() throws Exception {
+        // A length of 2^30 - 1 characters with no data present
+        byte[] length = new byte[] { (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+        byte[] data = new byte[CompactObjectOutputStream.MAGIC.length + 1 + length.length];
+        System.arraycopy(CompactObjectOutputStream.MAGIC, 0, data, 0, CompactObjectOutputStream.MAGIC.length);
+        data[CompactObjectOutputStream.MAGIC.length] = (byte) CompactObjectOutputStream.TAG_STRING_UTF16;
+        System.arraycopy(length, 0, data, CompactObjectOutputStream.MAGIC.length + 1, length.length);
+        try (ObjectInputStream ois = COMPACT_MANAGER.getSessionObjectInputStream(new ByteArrayInputStream(data),
+                CLASS_LOADER)) {
+            ois.readObject();
+        }
+    }
+
+
+    private static Object[] roundTrip(ManagerBase manager, Object... values)
+            throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = manager.getSessionObjectOutputStream(baos)) {
+            for (Object value : values) {
+                oos.writeObject(value);
+            }
+        }
+        Object[] result = new Object[values.length];
+        try (ObjectInputStream ois = manager.getSessionObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray()), CLASS_LOADER)) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ois.readObject();
+            }
+        }
+        return result;
+    }
+
+
+    private static byte[] serialize(ManagerBase manager, Object... values) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = manager.getSessionObjectOutputStream(baos)) {
+            for (Object value : values) {
+                oos.writeObject(value);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+
+    private static byte[] serialize(ManagerBase manager, StandardSession session) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = manager.getSessionObjectOutputStream(baos)) {
+            session.writeObjectData(oos);
+        }
+        return baos.toByteArray();
+    }
+
+
+    private static StandardSession serializeThenDeserialize(ManagerBase source, ManagerBase dest,
+            StandardSession session) throws IOException, ClassNotFoundException {
+        byte[] data = serialize(source, session);
+        StandardSession result = new StandardSession(dest);
+        try (ObjectInputStream ois = dest.getSessionObjectInputStream(new ByteArrayInputStream(data), CLASS_LOADER)) {
+            result.readObjectData(ois);
+        }
+        return result;
+    }
+
+
+    private static class Holder implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object value;
+
+        Holder(Object value) {
+            this.value = value;
+        }
+    }
+
+
+    private static class Custom implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String value;
+
+        Custom(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Custom && ((Custom) obj).value.equals(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.core.StandardContext;
+
+public class TestManagerBaseExpiration {
+
+    private StandardManager manager;
+
+
+    @Before
+    public void setup() {
+        manager = new StandardManager();
+        manager.setContext(new StandardContext());
+    }
+
+
+    @Test
+    public void testExpiredSessionIsExpired() throws Exception {
+        StandardSession expired = createSession("expired", 10, 5);
+        StandardSession active = createSession("active", 10, 3600);
+        StandardSession unlimited = createSession("unlimited", 10, -1);
+
+        Assert.assertEquals(2, manager.expirationQueue.size());
+
+        manager.processExpires();
+
+        Assert.assertFalse(expired.isValidInternal());
+        Assert.assertNull(manager.findSession("expired"));
+        Assert.assertSame(active, manager.findSession("active"));
+        Assert.assertSame(unlimited, manager.findSession("unlimited"));
+        Assert.assertEquals(1, manager.expirationQueue.size());
+        Assert.assertEquals(1, manager.getExpiredSessions());
+    }
+
+
+    @Test
+    public void testAccessedSessionIsRescheduled() throws Exception {
+        StandardSession session = createSession("accessed", 10, 5);
+        session.access();
+        session.endAccess();
+
+        manager.processExpires();
+
+        Assert.assertTrue(session.isValidInternal());
+        Assert.assertSame(session, manager.findSession("accessed"));
+        Assert.assertEquals(1, manager.expirationQueue.size());
+        Assert.assertNull(manager.expirationQueue.poll(System.currentTimeMillis()));
+        Assert.assertSame(session, manager.expirationQueue.poll(System.currentTimeMillis() + 5000));
+    }
+
+
+    @Test
+    public void testReducedMaxInactiveInterval() throws Exception {
+        StandardSession session = createSession("reduced", 10, 3600);
+
+        manager.processExpires();
+        Assert.assertTrue(session.isValidInternal());
+
+        session.setMaxInactiveInterval(5);
+        manager.processExpires();
+        Assert.assertFalse(session.isValidInternal());
+        Assert.assertEquals(0, manager.expirationQueue.size());
+    }
+
+
+    @Test
+    public void testEnabledMaxInactiveInterval() throws Exception {
+        StandardSession session = createSession("enabled", 10, -1);
+
+        manager.processExpires();
+        Assert.assertTrue(session.isValidInternal());
+
+        session.setMaxInactiveInterval(5);
+        manager.processExpires();
+        Assert.assertFalse(session.isValidInternal());
+    }
+
+
+    @Test
+    public void testChangeSessionId() throws Exception {
+        StandardSession session = createSession("original", 10, 5);
+
+        manager.changeSessionId(session, "changed");
+        Assert.assertEquals(1, manager.expirationQueue.size());
+
+        manager.processExpires();
+        Assert.assertFalse(session.isValidInternal());
+        Assert.assertNull(manager.findSession("changed"));
+        Assert.assertEquals(0, manager.expirationQueue.size());
+    }
+
+
+    @Test
+    public void testRemovedSessionIsNotExpired() throws Exception {
+        StandardSession session = createSession("removed", 10, 5);
+
+        manager.remove(session);
+        Assert.assertEquals(0, manager.expirationQueue.size());
+
+        manager.processExpires();
+        Assert.assertTrue(session.isValidInternal());
+    }
+
+
+    @Test
+    public void testMaxTime() throws Exception {
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            createSession("session" + i, 10, 5);
+        }
+        manager.setProcessExpiresMaxTime(1);
+
+        manager.processExpires();
+        int remaining = manager.getActiveSessions();
+        Assert.assertTrue(remaining > 0);
+        Assert.assertEquals(remaining, manager.expirationQueue.size());
+
+        manager.setProcessExpiresMaxTime(0);
+        manager.processExpires();
+        Assert.assertEquals(0, manager.getActiveSessions());
+        Assert.assertEquals(0, manager.expirationQueue.size());
+        Assert.assertEquals(count, manager.getExpiredSessions());
+    }
+
+
+    private StandardSession createSession(String id, int idleSeconds, int maxInactiveInterval) {
+        StandardSession session = new StandardSession(manager);
+        session.setValid(true);
+        session.setCreationTime(System.currentTimeMillis() - idleSeconds * 1000L);
+        session.setMaxInactiveInterval(maxInactiveInterval);
+        session.setId(id, false);
+        return session;
+    }
+}
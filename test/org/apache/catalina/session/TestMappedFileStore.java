@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.startup.ExpandWar;
+import org.apache.tomcat.unittest.TesterContext;
+import org.apache.tomcat.unittest.TesterServletContext;
+
+public class TestMappedFileStore {
+
+    private static final String SESS_TEMPPATH = "MAPPED_SESS_TEMP";
+    private static final File dir = new File(SESS_TEMPPATH);
+
+    private StandardManager manager;
+    private MappedFileStore store;
+
+
+    @Before
+    public void setup() throws Exception {
+        ExpandWar.delete(dir);
+        TesterContext testerContext = new TesterContext();
+        testerContext.setServletContext(new TesterServletContext());
+        manager = new StandardManager();
+        manager.setContext(testerContext);
+        store = createStore();
+    }
+
+
+    @After
+    public void cleanup() throws Exception {
+        store.stop();
+        ExpandWar.delete(dir);
+    }
+
+
+    @Test
+    public void testSaveLoadRemove() throws Exception {
+        store.save(createSession("one", "value1"));
+        store.save(createSession("two", "value2"));
+        Assert.assertEquals(2, store.getSize());
+
+        String[] keys = store.keys();
+        Arrays.sort(keys);
+        Assert.assertArrayEquals(new String[] { "one", "two" }, keys);
+
+        Session loaded = store.load("one");
+        Assert.assertEquals("one", loaded.getIdInternal());
+        Assert.assertEquals("value1", ((StandardSession) loaded).getAttribute("attr"));
+
+        store.save(createSession("one", "updated"));
+        Assert.assertEquals(2, store.getSize());
+        Assert.assertEquals("updated", ((StandardSession) store.load("one")).getAttribute("attr"));
+
+        store.remove("one");
+        Assert.assertEquals(1, store.getSize());
+        Assert.assertNull(store.load("one"));
+        Assert.assertNull(store.load("unknown"));
+
+        store.clear();
+        Assert.assertEquals(0, store.getSize());
+        Assert.assertNull(store.load("two"));
+    }
+
+
+    @Test
+    public void testRecovery() throws Exception {
+        store.save(createSession("one", "value1"));
+        store.save(createSession("two", "value2"));
+        store.save(createSession("one", "updated"));
+        store.save(createSession("three", "value3"));
+        store.remove("two");
+
+        store.stop();
+        store = createStore();
+
+        String[] keys = store.keys();
+        Arrays.sort(keys);
+        Assert.assertArrayEquals(new String[] { "one", "three" }, keys);
+        Assert.assertEquals("updated", ((StandardSession) store.load("one")).getAttribute("attr"));
+        Assert.assertEquals("value3", ((StandardSession) store.load("three")).getAttribute("attr"));
+    }
+
+
+    @Test
+    public void testRecoveryIgnoresIncompleteRecord() throws Exception {
+        store.save(createSession("one", "value1"));
+        store.save(createSession("two", "value2"));
+        store.stop();
+
+        // Simulate a crash part way through writing the second record
+        File[] segments = dir.listFiles((d, name) -> name.endsWith(".segment"));
+        Assert.assertEquals(1, segments.length);
+        try (RandomAccessFile raf = new RandomAccessFile(segments[0], "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        store = createStore();
+        Assert.assertArrayEquals(new String[] { "one" }, store.keys());
+        Assert.assertEquals("value1", ((StandardSession) store.load("one")).getAttribute("attr"));
+
+        // New records are not affected by the damaged segment
+        store.save(createSession("two", "value2"));
+        store.stop();
+        store = createStore();
+        Assert.assertEquals(2, store.getSize());
+        Assert.assertEquals("value2", ((StandardSession) store.load("two")).getAttribute("attr"));
+    }
+
+
+    @Test
+    public void testCompaction() throws Exception {
+        store.stop();
+        store.setSegmentSize(4096);
+        store.start();
+
+        for (int i = 0; i < 20; i++) {
+            store.save(createSession("keep" + i, "value" + i));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 20; i++) {
+                store.save(createSession("update" + i, "round" + round));
+            }
+        }
+        for (int i = 0; i < 20; i++) {
+            store.remove("update" + i);
+        }
+        int segmentsBefore = store.getSegmentCount();
+        Assert.assertTrue(segmentsBefore > 2);
+
+        store.processExpires();
+
+        Assert.assertTrue(store.getSegmentCount() < segmentsBefore);
+        Assert.assertEquals(20, store.getSize());
+        Assert.assertEquals(store.getSegmentCount(), dir.listFiles((d, name) -> name.endsWith(".segment")).length);
+
+        // The result of the compaction must survive a restart, including the removals
+        store.stop();
+        store = createStore();
+        Assert.assertEquals(20, store.getSize());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("value" + i,
+                    ((StandardSession) store.load("keep" + i)).getAttribute("attr"));
+            Assert.assertNull(store.load("update" + i));
+        }
+    }
+
+
+    @Test
+    public void testExpiredKeys() throws Exception {
+        StandardSession expired = createSession("expired", "value");
+        expired.setMaxInactiveInterval(1);
+        expired.thisAccessedTime = System.currentTimeMillis() - 5000;
+        store.save(expired);
+        store.save(createSession("active", "value"));
+
+        Assert.assertArrayEquals(new String[] { "expired" }, store.expiredKeys());
+    }
+
+
+    @Test
+    public void testExpiredKeysNeverExpires() throws Exception {
+        StandardSession session = createSession("never", "value");
+        session.setMaxInactiveInterval(-1);
+        session.thisAccessedTime = System.currentTimeMillis() - 5000;
+        store.save(session);
+        session = createSession("zero", "value");
+        session.setMaxInactiveInterval(0);
+        session.thisAccessedTime = System.currentTimeMillis() - 5000;
+        store.save(session);
+
+        Assert.assertEquals(0, store.expiredKeys().length);
+    }
+
+
+    @Test
+    public void testLargeSession() throws Exception {
+        store.stop();
+        store.setSegmentSize(1024);
+        store.start();
+
+        char[] large = new char[10000];
+        Arrays.fill(large, 'x');
+        store.save(createSession("large", new String(large)));
+        store.save(createSession("small", "value"));
+
+        Assert.assertEquals(new String(large), ((StandardSession) store.load("large")).getAttribute("attr"));
+        Assert.assertEquals("value", ((StandardSession) store.load("small")).getAttribute("attr"));
+    }
+
+
+    private MappedFileStore createStore() throws Exception {
+        MappedFileStore store = new MappedFileStore();
+        store.setDirectory(SESS_TEMPPATH);
+        store.setManager(manager);
+        store.start();
+        return store;
+    }
+
+
+    private StandardSession createSession(String id, String value) {
+        StandardSession session = new StandardSession(manager);
+        session.setValid(true);
+        session.setCreationTime(System.currentTimeMillis());
+        session.setMaxInactiveInterval(1800);
+        session.setId(id, false);
+        session.setAttribute("attr", value, false);
+        return session;
+    }
+}
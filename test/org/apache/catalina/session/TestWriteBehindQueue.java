@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.Session;
+import org.apache.tomcat.unittest.TesterContext;
+import org.apache.tomcat.unittest.TesterHost;
+
+public class TestWriteBehindQueue {
+
+    private PersistentManager manager;
+    private BatchingStore store;
+
+
+    @Before
+    public void setup() {
+        manager = new PersistentManager();
+        store = new BatchingStore();
+        manager.setStore(store);
+
+        Host host = new TesterHost();
+        Context context = new TesterContext();
+        context.setParent(host);
+        manager.setContext(context);
+    }
+
+
+    @Test
+    public void testCoalesce() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 10, 10);
+        Session first = createSession("first");
+        Session second = createSession("second");
+
+        Assert.assertTrue(queue.save(first, false));
+        Assert.assertTrue(queue.save(second, false));
+        Assert.assertTrue(queue.save(first, false));
+        Assert.assertTrue(queue.save(first, false));
+        Assert.assertEquals(2, queue.getQueueSize());
+        Assert.assertEquals(2, queue.getCoalesced());
+
+        queue.start("test");
+        queue.stop();
+
+        Assert.assertEquals(0, queue.getQueueSize());
+        Assert.assertEquals(2, queue.getWrites());
+        Assert.assertEquals(1, store.batchSizes.size());
+        Assert.assertEquals(Integer.valueOf(2), store.batchSizes.get(0));
+        Assert.assertEquals(2, store.getSavedIds().size());
+    }
+
+
+    @Test
+    public void testBatchSize() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 100, 4);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(queue.save(createSession("session" + i), false));
+        }
+
+        queue.start("test");
+        queue.stop();
+
+        Assert.assertEquals(10, queue.getWrites());
+        Assert.assertEquals(3, store.batchSizes.size());
+        Assert.assertEquals(Integer.valueOf(4), store.batchSizes.get(0));
+        Assert.assertEquals(Integer.valueOf(4), store.batchSizes.get(1));
+        Assert.assertEquals(Integer.valueOf(2), store.batchSizes.get(2));
+    }
+
+
+    @Test
+    public void testQueueFull() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 2, 10);
+
+        Assert.assertTrue(queue.save(createSession("first"), false));
+        Assert.assertTrue(queue.save(createSession("second"), false));
+        Assert.assertFalse(queue.save(createSession("third"), false));
+        // A session that is already queued may still be written
+        Assert.assertTrue(queue.save(manager.findSession("first"), false));
+
+        Assert.assertEquals(1, queue.getRejected());
+        Assert.assertEquals(1, queue.getCoalesced());
+        Assert.assertEquals(2, queue.getQueueSize());
+    }
+
+
+    @Test
+    public void testLoadSwappedOutSession() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 10, 10);
+        Session session = createSession("swapped");
+        manager.removeSuper(session);
+
+        Assert.assertTrue(queue.save(session, true));
+        Assert.assertSame(session, queue.load("swapped"));
+        Assert.assertEquals(1, queue.getHits());
+        Assert.assertEquals(0, queue.getQueueSize());
+
+        queue.start("test");
+        queue.stop();
+
+        // The session was handed back so it must not have been written or recycled
+        Assert.assertEquals(0, store.getSavedIds().size());
+        Assert.assertEquals("swapped", session.getIdInternal());
+    }
+
+
+    @Test
+    public void testSwappedOutSessionRecycled() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 10, 10);
+        Session session = createSession("swapped");
+        manager.removeSuper(session);
+
+        Assert.assertTrue(queue.save(session, true));
+        queue.start("test");
+        queue.stop();
+
+        Assert.assertEquals(1, store.getSavedIds().size());
+        Assert.assertNull(session.getIdInternal());
+    }
+
+
+    @Test
+    public void testFailedSwapOutRestored() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 10, 10);
+        Session session = createSession("swapped");
+        manager.removeSuper(session);
+        store.fail = true;
+
+        Assert.assertTrue(queue.save(session, true));
+        queue.start("test");
+        queue.stop();
+
+        Assert.assertEquals(1, queue.getFailures());
+        Assert.assertSame(session, manager.findSession("swapped"));
+        Assert.assertEquals("swapped", session.getIdInternal());
+    }
+
+
+    @Test
+    public void testRemoveWhileWriting() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 10, 10);
+        Session session = createSession("removed");
+        store.block();
+
+        queue.start("test");
+        Assert.assertTrue(queue.save(session, false));
+        Assert.assertTrue(store.entered.await(10, TimeUnit.SECONDS));
+
+        // The write is in progress so the removal has to be ordered after it
+        Assert.assertTrue(queue.remove("removed"));
+        store.release.countDown();
+        queue.stop();
+
+        Assert.assertEquals(1, store.getSavedIds().size());
+        Assert.assertNull(store.load("removed"));
+    }
+
+
+    @Test
+    public void testRemoveQueued() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 10, 10);
+        Session session = createSession("removed");
+
+        Assert.assertTrue(queue.save(session, false));
+        // Not being written so the caller removes it from the Store
+        Assert.assertFalse(queue.remove("removed"));
+        Assert.assertEquals(0, queue.getQueueSize());
+    }
+
+
+    @Test
+    public void testSaveAfterStop() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(manager, 10, 10);
+        queue.start("test");
+        queue.stop();
+
+        Assert.assertFalse(queue.save(createSession("late"), false));
+    }
+
+
+    private Session createSession(String id) {
+        StandardSession session = new StandardSession(manager);
+        session.setValid(true);
+        session.setId(id, false);
+        return session;
+    }
+
+
+    private static class BatchingStore extends TesterStore {
+
+        private final List<Integer> batchSizes = new ArrayList<>();
+        private volatile boolean fail = false;
+        private volatile CountDownLatch entered;
+        private volatile CountDownLatch release;
+
+        void block() {
+            entered = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+        }
+
+        @Override
+        public void save(Session[] sessions) throws IOException {
+            if (entered != null) {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (fail) {
+                throw new IOException();
+            }
+            batchSizes.add(Integer.valueOf(sessions.length));
+            super.save(sessions);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.webresources;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestCache extends TomcatBaseTest {
+
+    private static final int FILE_SIZE = 4 * 1024;
+    private static final int HOT_COUNT = 20;
+    private static final int COLD_COUNT = 500;
+
+    @Test
+    public void testScanDoesNotFlushFrequentlyUsedResources() throws Exception {
+        Cache cache = createCache();
+
+        // Build up a history for the frequently used resources
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < HOT_COUNT; j++) {
+                cache.getResource("/hot" + j + ".txt", false);
+            }
+        }
+
+        // A scan of resources that are only requested once
+        for (int i = 0; i < COLD_COUNT; i++) {
+            cache.getResource("/cold" + i + ".txt", false);
+        }
+        cache.backgroundProcess();
+
+        Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+        Assert.assertTrue(cache.getAdmissionRejectCount() > 0);
+
+        long hitsBefore = cache.getHitCount();
+        for (int j = 0; j < HOT_COUNT; j++) {
+            cache.getResource("/hot" + j + ".txt", false);
+        }
+        Assert.assertEquals(HOT_COUNT, cache.getHitCount() - hitsBefore);
+    }
+
+
+    @Test
+    public void testEntriesCheckedWithinTtlAreNotEvicted() throws Exception {
+        Cache cache = createCache();
+        cache.setTtl(60000);
+
+        for (int i = 0; i < COLD_COUNT; i++) {
+            cache.getResource("/cold" + i + ".txt", false);
+            // The maximum size is a hard limit
+            Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+        }
+        Assert.assertEquals(0, cache.getEvictionCount());
+        Assert.assertEquals(0, cache.getAdmissionRejectCount());
+
+        // The first entries are still cached. Later entries could not be added as there was no space.
+        long hitsBefore = cache.getHitCount();
+        cache.getResource("/cold0.txt", false);
+        Assert.assertEquals(1, cache.getHitCount() - hitsBefore);
+        hitsBefore = cache.getHitCount();
+        cache.getResource("/cold" + (COLD_COUNT - 1) + ".txt", false);
+        Assert.assertEquals(0, cache.getHitCount() - hitsBefore);
+    }
+
+
+    @Test
+    public void testStatistics() throws Exception {
+        Cache cache = createCache();
+
+        Assert.assertEquals(0, cache.getHitRatio(), 0);
+        cache.getResource("/hot0.txt", false);
+        cache.getResource("/hot0.txt", false);
+        cache.getResource("/hot0.txt", false);
+        cache.getResource("/hot1.txt", false);
+        Assert.assertEquals(4, cache.getLookupCount());
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(0.5, cache.getHitRatio(), 0.001);
+        Assert.assertEquals(0, cache.getEvictionCount());
+
+        cache.clear();
+        cache.backgroundProcess();
+        Assert.assertEquals(0, cache.getSize());
+        cache.getResource("/hot0.txt", false);
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+
+    @Test
+    public void testOffHeapContent() throws Exception {
+        File docBase = createDocBase();
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addContext("", docBase.getAbsolutePath());
+        StandardRoot root = new StandardRoot(ctx);
+        root.setCacheOffHeap(true);
+        ctx.setResources(root);
+        Tomcat.addServlet(ctx, "default", new DefaultServlet());
+        ctx.addServletMapping("/", "default");
+        tomcat.start();
+
+        byte[] expected = Files.readAllBytes(new File(docBase, "hot0.txt").toPath());
+        for (int i = 0; i < 2; i++) {
+            ByteChunk res = new ByteChunk();
+            int rc = getUrl("http://localhost:" + getPort() + "/hot0.txt", res, null);
+            Assert.assertEquals(200, rc);
+            Assert.assertArrayEquals(expected, Arrays.copyOfRange(res.getBytes(), res.getStart(), res.getEnd()));
+        }
+
+        // Use a different resource as the request processing thread may not yet have released its buffer
+        CachedResource resource = (CachedResource) root.getResource("/hot1.txt");
+        ByteBuffer buffer = resource.acquireContentBuffer();
+        Assert.assertNotNull(buffer);
+        Assert.assertTrue(buffer.isDirect());
+        Assert.assertEquals(FILE_SIZE, buffer.remaining());
+        resource.releaseContentBuffer();
+
+        try (InputStream is = resource.getInputStream()) {
+            Assert.assertArrayEquals(expected, is.readAllBytes());
+        }
+        Assert.assertArrayEquals(expected, resource.getContent());
+
+        // Once evicted, the content is no longer available off-heap but is still available
+        resource.releaseContent();
+        Assert.assertNull(resource.acquireContentBuffer());
+        Assert.assertArrayEquals(expected, resource.getContent());
+    }
+
+
+    @Test
+    public void testOffHeapContentReleasedAtEndOfStream() throws Exception {
+        File docBase = createDocBase();
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addContext("", docBase.getAbsolutePath());
+        StandardRoot root = new StandardRoot(ctx);
+        root.setCacheOffHeap(true);
+        ctx.setResources(root);
+        tomcat.start();
+
+        byte[] expected = Files.readAllBytes(new File(docBase, "hot0.txt").toPath());
+        CachedResource resource = (CachedResource) root.getResource("/hot0.txt");
+
+        // Read all the content but do not close the stream
+        InputStream is = resource.getInputStream();
+        Assert.assertEquals(2, resource.getContentBufferReferenceCount());
+        Assert.assertArrayEquals(expected, is.readAllBytes());
+        Assert.assertEquals(1, resource.getContentBufferReferenceCount());
+        Assert.assertEquals(-1, is.read());
+        Assert.assertEquals(0, is.available());
+
+        // Closing the stream must not release the reference a second time
+        is.close();
+        Assert.assertEquals(1, resource.getContentBufferReferenceCount());
+
+        // Skipping to the end also releases the reference
+        is = resource.getInputStream();
+        Assert.assertEquals(FILE_SIZE, is.skip(Long.MAX_VALUE));
+        Assert.assertEquals(1, resource.getContentBufferReferenceCount());
+
+        resource.releaseContent();
+        Assert.assertEquals(0, resource.getContentBufferReferenceCount());
+    }
+
+
+    @Test
+    public void testContentVariantIncludedInSize() throws Exception {
+        doTestContentVariantIncludedInSize(false);
+    }
+
+
+    @Test
+    public void testContentVariantIncludedInSizeOffHeap() throws Exception {
+        doTestContentVariantIncludedInSize(true);
+    }
+
+
+    private void doTestContentVariantIncludedInSize(boolean offHeap) throws Exception {
+        Cache cache = createCache();
+        cache.setOffHeap(offHeap);
+        AtomicInteger encodeCount = new AtomicInteger();
+        Function<ByteBuffer,byte[]> encoder = content -> {
+            if (encodeCount.incrementAndGet() == 1) {
+                // Off-heap content is encoded without copying it to the heap
+                Assert.assertEquals(Boolean.valueOf(offHeap), Boolean.valueOf(content.isDirect()));
+            }
+            return new byte[1000];
+        };
+
+        CachedResource resource = (CachedResource) cache.getResource("/hot0.txt", false);
+        long entrySize = cache.getSizeBytes();
+
+        ByteBuffer variant = resource.acquireContentVariant("test", encoder);
+        Assert.assertEquals(1000, variant.remaining());
+        Assert.assertEquals(Boolean.valueOf(offHeap), Boolean.valueOf(variant.isDirect()));
+        resource.releaseContentVariant("test", variant);
+        Assert.assertEquals(entrySize + 1000, cache.getSizeBytes());
+        Assert.assertEquals(entrySize + 1000, resource.getSize());
+
+        // The variant is retained
+        variant = resource.acquireContentVariant("test", encoder);
+        resource.releaseContentVariant("test", variant);
+        Assert.assertEquals(1, encodeCount.get());
+        Assert.assertEquals(entrySize + 1000, cache.getSizeBytes());
+
+        // The variant is removed with the entry
+        cache.removeCacheEntry("/hot0.txt");
+        Assert.assertEquals(0, cache.getSizeBytes());
+
+        // A variant is still available once the entry has been removed but it is not retained
+        variant = resource.acquireContentVariant("test", encoder);
+        Assert.assertEquals(1000, variant.remaining());
+        resource.releaseContentVariant("test", variant);
+        Assert.assertEquals(0, cache.getSizeBytes());
+    }
+
+
+    @Test
+    public void testContentVariantNotRetainedIfCacheFull() throws Exception {
+        Cache cache = createCache();
+        cache.setTtl(60000);
+
+        CachedResource resource = (CachedResource) cache.getResource("/hot0.txt", false);
+        long entrySize = cache.getSizeBytes();
+
+        // Larger than the cache and the only other entry can't be evicted as it was checked within the TTL
+        ByteBuffer variant = resource.acquireContentVariant("test", content -> new byte[256 * 1024]);
+        Assert.assertEquals(256 * 1024, variant.remaining());
+        resource.releaseContentVariant("test", variant);
+        Assert.assertEquals(entrySize, cache.getSizeBytes());
+        Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+    }
+
+
+    private Cache createCache() throws Exception {
+        File docBase = createDocBase();
+
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addContext("", docBase.getAbsolutePath());
+        tomcat.start();
+
+        Cache cache = new Cache((StandardRoot) ctx.getResources());
+        // Large enough for the frequently used resources plus a few more
+        cache.setMaxSize(256);
+        // Allow entries to be evicted as soon as they have been added
+        cache.setTtl(0);
+        return cache;
+    }
+
+
+    private File createDocBase() throws Exception {
+        File docBase = new File(getTemporaryDirectory(), "cache-test");
+        Assert.assertTrue(docBase.mkdirs());
+        addDeleteOnTearDown(docBase);
+        byte[] content = new byte[FILE_SIZE];
+        for (int i = 0; i < FILE_SIZE; i++) {
+            content[i] = (byte) i;
+        }
+        for (int i = 0; i < HOT_COUNT; i++) {
+            Files.write(new File(docBase, "hot" + i + ".txt").toPath(), content);
+        }
+        for (int i = 0; i < COLD_COUNT; i++) {
+            Files.write(new File(docBase, "cold" + i + ".txt").toPath(), content);
+        }
+        return docBase;
+    }
+}
@@ -36,6 +36,7 @@ import org.apache.catalina.Wrapper;
 import org.apache.catalina.startup.SimpleHttpClient;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.net.NioEndpoint;
 
 public class TestIoTimeouts extends TomcatBaseTest {
 
@@ -76,6 +77,57 @@ public class TestIoTimeouts extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testClosedSocketRemovedFromTimeouts() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        // Long enough that the timeout would not be reached during the test
+        Assert.assertTrue(tomcat.getConnector().setProperty("connectionTimeout", "60000"));
+
+        Context root = tomcat.addContext("", TEMP_DIR);
+        Tomcat.addServlet(root, "Hello", new HelloWorldServlet());
+        root.addServletMapping("/", "Hello");
+        tomcat.start();
+
+        AbstractProtocol<?> protocol = (AbstractProtocol<?>) tomcat.getConnector().getProtocolHandler();
+        NioEndpoint endpoint = (NioEndpoint) protocol.getEndpoint();
+
+        SimpleHttpClient client = new SimpleHttpClient() {
+            @Override
+            public boolean isResponseBodyOK() {
+                return true;
+            }
+        };
+        client.setPort(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] {
+                "GET / HTTP/1.1" + SimpleHttpClient.CRLF +
+                "Host: localhost" + SimpleHttpClient.CRLF +
+                "Connection: close" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF });
+        client.connect();
+        client.processRequest();
+        Assert.assertTrue(client.isResponse200());
+        client.disconnect();
+
+        // The server closes the connection after the response. The socket should then be removed from the timeouts
+        // on the next iteration of the Poller loop rather than when its read timeout is reached.
+        int count = 0;
+        while (count < 100 && sum(endpoint.getPollerTimeoutCounts()) > 0) {
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertEquals(0, sum(endpoint.getPollerTimeoutCounts()));
+    }
+
+
+    private static int sum(int[] values) {
+        int result = 0;
+        for (int value : values) {
+            result += value;
+        }
+        return result;
+    }
+
+
     private class ChunkedClient extends SimpleHttpClient {
 
         private final boolean sendEndChunk;
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99.9));
+    }
+
+
+    @Test
+    public void testBucketBoundaries() {
+        int last = -1;
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            // Buckets are contiguous
+            Assert.assertTrue(index == last || index == last + 1);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            Assert.assertTrue(highest >= value);
+            // Relative error is bounded
+            Assert.assertTrue(highest - value <= value / 8);
+            last = index;
+        }
+        Assert.assertEquals(LatencyHistogram.HIGHEST_TRACKABLE_VALUE, LatencyHistogram
+                .highestEquivalentValue(LatencyHistogram.indexOf(LatencyHistogram.HIGHEST_TRACKABLE_VALUE)));
+    }
+
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        assertWithinError(500, histogram.getValueAtPercentile(50));
+        assertWithinError(990, histogram.getValueAtPercentile(99));
+        assertWithinError(999, histogram.getValueAtPercentile(99.9));
+        assertWithinError(1000, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+
+    @Test
+    public void testNanos() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-1);
+        histogram.recordNanos(5_000);
+        Assert.assertEquals(1, histogram.getCount());
+        Assert.assertEquals(5, histogram.getValueAtPercentile(50));
+    }
+
+
+    @Test
+    public void testOverflow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(LatencyHistogram.HIGHEST_TRACKABLE_VALUE, histogram.getValueAtPercentile(50));
+    }
+
+
+    @Test
+    public void testAddAndReset() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(20_000);
+        b.record(20_000);
+        a.add(b);
+        Assert.assertEquals(3, a.getCount());
+        assertWithinError(20_000, a.getValueAtPercentile(50));
+        a.reset();
+        Assert.assertEquals(0, a.getCount());
+        Assert.assertEquals(2, b.getCount());
+    }
+
+
+    private static void assertWithinError(long expected, long actual) {
+        Assert.assertTrue("Expected [" + expected + "] but was [" + actual + "]",
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
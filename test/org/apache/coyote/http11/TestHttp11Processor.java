@@ -409,6 +409,127 @@ public class TestHttp11Processor extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testPipeliningBatched() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("batchPipelinedResponses", "true"));
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "servlet", new QueryStringServlet());
+        ctx.addServletMapping("/foo", "servlet");
+
+        tomcat.start();
+
+        StringBuilder request = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            request.append("GET /foo?id=").append(i).append(" HTTP/1.1").append(CRLF);
+            request.append("Host: any").append(CRLF);
+            if (i == 19) {
+                request.append("Connection: close").append(CRLF);
+            }
+            request.append(CRLF);
+        }
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] { request.toString() });
+        client.setUseContentLength(true);
+        client.connect();
+        client.sendRequest();
+
+        // Responses must be in request order
+        for (int i = 0; i < 20; i++) {
+            client.readResponse(true);
+            Assert.assertTrue(client.isResponse200());
+            Assert.assertEquals("id=" + i, client.getResponseBody());
+        }
+    }
+
+
+    @Test
+    public void testPipeliningBatchedIncompleteRequest() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("batchPipelinedResponses", "true"));
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "servlet", new QueryStringServlet());
+        ctx.addServletMapping("/foo", "servlet");
+
+        tomcat.start();
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setUseContentLength(true);
+        client.connect(10000, 5000);
+
+        // The third request is incomplete so the first two responses must be written without waiting for it
+        client.setRequest(new String[] { "GET /foo?id=1 HTTP/1.1" + CRLF + "Host: any" + CRLF + CRLF +
+                "GET /foo?id=2 HTTP/1.1" + CRLF + "Host: any" + CRLF + CRLF + "GET /foo?id=3 HTTP/1.1" + CRLF });
+        client.sendRequest();
+        for (int i = 1; i < 3; i++) {
+            client.readResponse(true);
+            Assert.assertTrue(client.isResponse200());
+            Assert.assertEquals("id=" + i, client.getResponseBody());
+        }
+
+        client.setRequest(new String[] { "Host: any" + CRLF + CRLF });
+        client.sendRequest();
+        client.readResponse(true);
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("id=3", client.getResponseBody());
+    }
+
+
+    @Test
+    public void testPipeliningBatchedUnreadBody() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("batchPipelinedResponses", "true"));
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        // The servlet does not read the request body
+        Tomcat.addServlet(ctx, "servlet", new QueryStringServlet());
+        ctx.addServletMapping("/foo", "servlet");
+
+        tomcat.start();
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setUseContentLength(true);
+        client.connect(10000, 5000);
+
+        // Only part of the body has been received so the data in the input buffer is not a pipelined request and
+        // the response must be written without waiting for the rest of the body
+        client.setRequest(new String[] { "GET /foo?id=1 HTTP/1.1" + CRLF + "Host: any" + CRLF +
+                "Content-Length: 10" + CRLF + CRLF + "01234" });
+        client.sendRequest();
+        client.readResponse(true);
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("id=1", client.getResponseBody());
+
+        client.setRequest(new String[] { "56789" + "GET /foo?id=2 HTTP/1.1" + CRLF + "Host: any" + CRLF + CRLF });
+        client.sendRequest();
+        client.readResponse(true);
+        Assert.assertTrue(client.isResponse200());
+        Assert.assertEquals("id=2", client.getResponseBody());
+    }
+
+
+    private static class QueryStringServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding(StandardCharsets.UTF_8);
+            resp.getWriter().print(req.getQueryString());
+        }
+    }
+
+
     @Test
     public void testChunking11NoContentLength() throws Exception {
         Tomcat tomcat = getTomcatInstance();
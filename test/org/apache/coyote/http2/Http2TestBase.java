@@ -35,6 +35,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.SocketFactory;
 
@@ -1119,6 +1121,7 @@ public abstract class Http2TestBase extends TomcatBaseTest {
         private ConnectionSettingsRemote remoteSettings = new ConnectionSettingsRemote("-1");
         private boolean traceBody = false;
         private ByteBuffer bodyBuffer = null;
+        private final Lock bodyBufferLock = new ReentrantLock();
         private long bytesRead;
         private volatile HpackDecoder hpackDecoder = null;
 
@@ -1158,6 +1161,12 @@ public abstract class Http2TestBase extends TomcatBaseTest {
         }
 
 
+        @Override
+        public Lock getRequestBodyLock(int streamId) {
+            return bodyBufferLock;
+        }
+
+
         @Override
         public void endRequestBodyFrame(int streamId, int dataLength) throws Http2Exception {
             if (bodyBuffer != null) {
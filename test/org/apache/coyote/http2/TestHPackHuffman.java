@@ -17,6 +17,7 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -42,4 +43,39 @@ public class TestHPackHuffman {
 
         Assert.assertEquals("Value changed after encode/decode roundtrip", data, target.toString());
     }
+
+
+    @Test
+    public void testRoundTripRandom() throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder data = new StringBuilder();
+            int length = random.nextInt(200);
+            // Visible characters, optionally including obs-text
+            int range = random.nextBoolean() ? 0xE0 : 0x5F;
+            for (int j = 0; j < length; j++) {
+                char c = (char) (0x20 + random.nextInt(range));
+                data.append(c == 0x7F ? ' ' : c);
+            }
+            // Field values may not start or end with white space
+            data.insert(0, 'x').append('x');
+            ByteBuffer buf = ByteBuffer.allocate(1024);
+            if (HPackHuffman.encode(buf, data.toString())) {
+                buf.flip();
+                // Skip the length prefix
+                int first = buf.get() & 0x7F;
+                if (first == 0x7F) {
+                    while ((buf.get() & 0x80) != 0) {
+                        // Continuation byte
+                    }
+                }
+
+                StringBuilder target = new StringBuilder();
+                HPackHuffman.decode(buf, buf.remaining(), target, false);
+                Assert.assertEquals(data.toString(), target.toString());
+            } else {
+                Assert.assertEquals(0, buf.position());
+            }
+        }
+    }
 }
@@ -85,6 +85,54 @@ public class TestHpack {
         Assert.assertEquals("value2", headers2.getHeader("header2"));
     }
 
+    @Test
+    public void testEncodeRepeatedLiterals() throws Exception {
+        MimeHeaders headers = new MimeHeaders();
+        headers.setValue(":status").setString("200");
+        headers.setValue("content-type").setString("application/json;charset=UTF-8");
+        headers.setValue("date").setString("Thu, 01 Jan 2026 00:00:00 GMT");
+        // Huffman encoding makes these longer
+        headers.setValue("x-binary").setString("\u00fe\u00ff\u00fd\u00fc\u00fb\u00fa");
+        headers.setValue("x-empty").setString("");
+        HpackEncoder encoder = new HpackEncoder(new HpackEncoder.HpackHeaderFunction() {
+
+            @Override
+            public boolean shouldUseIndexing(String header, String value) {
+                return false;
+            }
+
+            @Override
+            public boolean shouldUseHuffman(String header, String value) {
+                return true;
+            }
+
+            @Override
+            public boolean shouldUseHuffman(String header) {
+                return true;
+            }
+        });
+        ByteBuffer first = ByteBuffer.allocate(512);
+        encoder.encode(headers, first);
+        first.flip();
+        for (int i = 0; i < 3; i++) {
+            // Encoded strings are re-used so the output must not change
+            ByteBuffer output = ByteBuffer.allocate(512);
+            encoder.encode(headers, output);
+            output.flip();
+            Assert.assertEquals(first, output);
+
+            MimeHeaders headers2 = new MimeHeaders();
+            HpackDecoder decoder = new HpackDecoder();
+            decoder.setHeaderEmitter(new HeadersListener(headers2));
+            decoder.decode(output);
+            Assert.assertEquals(headers.size(), headers2.size());
+            for (int j = 0; j < headers.size(); j++) {
+                Assert.assertEquals(headers.getName(j).toString(), headers2.getName(j).toString());
+                Assert.assertEquals(headers.getValue(j).toString(), headers2.getValue(j).toString());
+            }
+        }
+    }
+
     private static class HeadersListener implements HpackDecoder.HeaderEmitter {
         private final MimeHeaders headers;
 
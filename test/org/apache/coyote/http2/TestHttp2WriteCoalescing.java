@@ -0,0 +1,72 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHttp2WriteCoalescing extends Http2TestBase {
+
+    private static final int STREAM_COUNT = 10;
+
+    @Test
+    public void testConcurrentStreams() throws Exception {
+        http2Connect();
+
+        http2Protocol.setWriteCoalescingThreshold(16 * 1024);
+        // Make sure none of the responses has to wait for a window update
+        sendWindowUpdate(0, 1024 * 1024);
+
+        long framesBefore = http2Protocol.getCoalescedFrameCount();
+        long writesBefore = http2Protocol.getCoalescedWriteCount();
+
+        for (int i = 0; i < STREAM_COUNT; i++) {
+            sendSimpleGetRequest(3 + i * 2);
+        }
+        // Each response is a HEADERS frame and a DATA frame. Skip any other frames (e.g. pings) the server sends.
+        String trace = output.getTrace();
+        while (trace.split("-EndOfStream\n", -1).length - 1 < STREAM_COUNT) {
+            parser.readFrame();
+            trace = output.getTrace();
+        }
+
+        for (int i = 0; i < STREAM_COUNT; i++) {
+            int streamId = 3 + i * 2;
+            Assert.assertTrue(trace, trace.contains(streamId + "-Body-8192\n"));
+            Assert.assertTrue(trace, trace.contains(streamId + "-EndOfStream\n"));
+        }
+
+        long frames = http2Protocol.getCoalescedFrameCount() - framesBefore;
+        long writes = http2Protocol.getCoalescedWriteCount() - writesBefore;
+        Assert.assertEquals(STREAM_COUNT, frames);
+        Assert.assertTrue(writes > 0 && writes <= frames);
+    }
+
+
+    @Test
+    public void testDisabled() throws Exception {
+        http2Connect();
+
+        http2Protocol.setWriteCoalescingThreshold(0);
+
+        sendSimpleGetRequest(3);
+        readSimpleGetResponse();
+
+        Assert.assertEquals(getSimpleResponseTrace(3), output.getTrace());
+        Assert.assertEquals(0, http2Protocol.getCoalescedFrameCount());
+    }
+}
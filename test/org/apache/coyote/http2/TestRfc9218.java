@@ -18,6 +18,8 @@ package org.apache.coyote.http2;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -205,6 +207,128 @@ public class TestRfc9218 extends Http2TestBase {
     }
 
 
+    @Test
+    public void testNonIncrementalAndIncrementalSameUrgency() throws Exception {
+        exhaustConnectionWindow();
+
+        sendSimpleGetRequest(19);
+        sendSimpleGetRequest(21);
+        // 19-headers, 21-headers
+        parser.readFrame();
+        parser.readFrame();
+        output.clearTrace();
+
+        // 17 - 7k body left, non-incremental
+        // 19 - 8k body left, incremental
+        // 21 - 8k body left, incremental
+        sendPriorityUpdate(17, 3, false);
+        sendPriorityUpdate(19, 3, true);
+        sendPriorityUpdate(21, 3, true);
+
+        /*
+         * Add 8k to the connection window. 17 should be fully allocated first and only the remaining 1k should be split
+         * between 19 and 21. The total allocated must not exceed the increment.
+         */
+        sendWindowUpdate(0, 1024 * 8);
+        parser.readFrame();
+        parser.readFrame();
+        parser.readFrame();
+
+        String trace = output.getTrace();
+        System.out.println(trace);
+        Assert.assertTrue(trace.contains("17-Body-7168\n"));
+        trace = trace.replace("17-Body-7168\n", "");
+        Assert.assertTrue(trace.contains("17-EndOfStream\n"));
+        trace = trace.replace("17-EndOfStream\n", "");
+        Assert.assertTrue(trace.contains("19-Body-512\n"));
+        trace = trace.replace("19-Body-512\n", "");
+        Assert.assertTrue(trace.contains("21-Body-512\n"));
+        trace = trace.replace("21-Body-512\n", "");
+        Assert.assertEquals(0, trace.length());
+    }
+
+
+    @Test
+    public void testUrgentStreamTimeToFirstByte() throws Exception {
+        exhaustConnectionWindow();
+
+        // Background streams with the default priority queue up behind 17
+        for (int i = 19; i < 27; i += 2) {
+            sendSimpleGetRequest(i);
+            parser.readFrame();
+        }
+        // An urgent stream arrives last
+        sendSimpleGetRequest(27);
+        parser.readFrame();
+        sendPriorityUpdate(27, 0, false);
+        output.clearTrace();
+
+        /*
+         * Release the connection window 1k at a time, as a client reading slowly would, and record the order in which
+         * the streams receive their body data. The data for one release may be split across more than one stream so
+         * read until all of it has been received. The background streams need 39k before 27 would get its turn in
+         * arrival order.
+         */
+        List<String> events = new ArrayList<>();
+        int releases = 0;
+        while (!events.contains("19-Body")) {
+            releases++;
+            Assert.assertTrue("Stream 19 did not start", releases <= 64);
+            sendWindowUpdate(0, 1024);
+            int received = 0;
+            while (received < 1024) {
+                // Other frames (e.g. pings) the server sends are ignored
+                parser.readFrame();
+                for (String line : output.getTrace().split("\n")) {
+                    int index = line.indexOf("-Body-");
+                    if (index > 0) {
+                        received += Integer.parseInt(line.substring(index + 6));
+                        events.add(line.substring(0, index) + "-Body");
+                    } else if (line.endsWith("-EndOfStream")) {
+                        events.add(line);
+                    }
+                }
+                output.clearTrace();
+            }
+            Assert.assertEquals(1024, received);
+        }
+
+        // 27 is served as soon as capacity is available and its 8k body is sent before 17 resumes
+        Assert.assertEquals("27-Body", events.get(0));
+        int end27 = events.indexOf("27-EndOfStream");
+        Assert.assertTrue(end27 >= 0 && end27 < events.indexOf("17-Body"));
+        // 19 has to wait for 27 and then the remaining 7k of 17
+        int end17 = events.indexOf("17-EndOfStream");
+        Assert.assertTrue(end17 >= 0 && end17 < events.indexOf("19-Body"));
+    }
+
+
+    /*
+     * Leaves the connection window empty with stream 17 blocked in the backlog with 7k of its 8k body left to write.
+     */
+    private void exhaustConnectionWindow() throws Exception {
+        http2Connect();
+
+        http2Protocol.setOverheadWindowUpdateThreshold(0);
+        http2Protocol.setOverheadDataThreshold(0);
+
+        // Default connection window size is 64k - 1. Initial request will have used 8k (56k -1). Increase it to 57k.
+        sendWindowUpdate(0, 1 + 1024);
+
+        // Consume 56k of the connection window
+        for (int i = 3; i < 17; i += 2) {
+            sendSimpleGetRequest(i);
+            readSimpleGetResponse();
+        }
+
+        // Stream 17 consumes the final 1k. 17-headers, 17-1k-body
+        sendSimpleGetRequest(17);
+        parser.readFrame();
+        parser.readFrame();
+        output.clearTrace();
+    }
+
+
     private void sendInvalidPriorityUpdate(int streamId) throws IOException {
         byte[] payload = "u=1:i".getBytes(StandardCharsets.US_ASCII);
 
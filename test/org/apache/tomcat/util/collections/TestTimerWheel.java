@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTimerWheel {
+
+    @Test
+    public void testExpireInOrder() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, 10, 0);
+        TimerWheel.Entry<String> a = new TimerWheel.Entry<>("a");
+        TimerWheel.Entry<String> b = new TimerWheel.Entry<>("b");
+        wheel.schedule(a, 25);
+        wheel.schedule(b, 55);
+        Assert.assertEquals(2, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        // Deadline not yet reached
+        Assert.assertEquals(0, wheel.expire(20, expired::add));
+        // Deadline reached but tick has not fully elapsed
+        Assert.assertEquals(0, wheel.expire(29, expired::add));
+        Assert.assertEquals(1, wheel.expire(30, expired::add));
+        Assert.assertEquals(List.of("a"), expired);
+        Assert.assertFalse(a.isScheduled());
+        Assert.assertTrue(b.isScheduled());
+
+        Assert.assertEquals(1, wheel.expire(60, expired::add));
+        Assert.assertEquals(List.of("a", "b"), expired);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+
+    @Test
+    public void testMultipleRevolutions() {
+        // One revolution is 80ms
+        TimerWheel<String> wheel = new TimerWheel<>(8, 10, 0);
+        TimerWheel.Entry<String> a = new TimerWheel.Entry<>("a");
+        wheel.schedule(a, 255);
+
+        List<String> expired = new ArrayList<>();
+        for (long now = 0; now < 260; now += 10) {
+            wheel.expire(now, expired::add);
+            Assert.assertTrue(expired.isEmpty());
+        }
+        wheel.expire(260, expired::add);
+        Assert.assertEquals(List.of("a"), expired);
+    }
+
+
+    @Test
+    public void testLongGap() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, 10, 0);
+        TimerWheel.Entry<String> a = new TimerWheel.Entry<>("a");
+        TimerWheel.Entry<String> b = new TimerWheel.Entry<>("b");
+        wheel.schedule(a, 15);
+        wheel.schedule(b, 1_015);
+
+        List<String> expired = new ArrayList<>();
+        // More than a full revolution without processing
+        wheel.expire(500, expired::add);
+        Assert.assertEquals(List.of("a"), expired);
+        wheel.expire(1_010, expired::add);
+        Assert.assertEquals(List.of("a"), expired);
+        wheel.expire(1_020, expired::add);
+        Assert.assertEquals(List.of("a", "b"), expired);
+    }
+
+
+    @Test
+    public void testPastDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, 10, 100);
+        TimerWheel.Entry<String> a = new TimerWheel.Entry<>("a");
+        wheel.schedule(a, 50);
+
+        List<String> expired = new ArrayList<>();
+        wheel.expire(110, expired::add);
+        Assert.assertEquals(List.of("a"), expired);
+    }
+
+
+    @Test
+    public void testCancelAndReschedule() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, 10, 0);
+        TimerWheel.Entry<String> a = new TimerWheel.Entry<>("a");
+        TimerWheel.Entry<String> b = new TimerWheel.Entry<>("b");
+        TimerWheel.Entry<String> c = new TimerWheel.Entry<>("c");
+        wheel.schedule(a, 15);
+        wheel.schedule(b, 15);
+        wheel.schedule(c, 15);
+        wheel.cancel(b);
+        wheel.cancel(b);
+        Assert.assertEquals(2, wheel.size());
+        wheel.schedule(c, 45);
+        Assert.assertEquals(2, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        wheel.expire(20, expired::add);
+        Assert.assertEquals(List.of("a"), expired);
+        wheel.expire(50, expired::add);
+        Assert.assertEquals(List.of("a", "c"), expired);
+    }
+
+
+    @Test
+    public void testRescheduleFromAction() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, 10, 0);
+        TimerWheel.Entry<String> a = new TimerWheel.Entry<>("a");
+        wheel.schedule(a, 5);
+
+        List<String> expired = new ArrayList<>();
+        wheel.expire(10, item -> {
+            expired.add(item);
+            wheel.schedule(a, 85);
+        });
+        Assert.assertEquals(List.of("a"), expired);
+        Assert.assertTrue(a.isScheduled());
+        Assert.assertEquals(1, wheel.size());
+
+        wheel.expire(80, expired::add);
+        Assert.assertEquals(1, expired.size());
+        wheel.expire(90, expired::add);
+        Assert.assertEquals(List.of("a", "a"), expired);
+    }
+}
@@ -17,8 +17,12 @@
 package org.apache.tomcat.util.http;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -118,4 +122,121 @@ public class TestMimeHeaders {
         mh.setValue(HEADER_NAME_UC_STRING).setBytes(bytes, 0, bytes.length);
         Assert.assertTrue(mh.getValue(HEADER_NAME_UC_STRING).equalsIgnoreCase(HEADER_NAME_MIXED_STRING));
         Assert.assertFalse(mh.getValue(HEADER_NAME_UC_STRING).equalsIgnoreCase("\u8a54\u8a45\u8a53\u8a54"));
-    }}
+    }
+
+
+    @Test
+    public void testIndexedLookups() {
+        MimeHeaders mh = new MimeHeaders();
+        int headerCount = MimeHeaders.INDEX_THRESHOLD * 4;
+        for (int i = 0; i < headerCount; i++) {
+            byte[] bytes = ("X-Header-" + i).getBytes(StandardCharsets.ISO_8859_1);
+            mh.addValue(bytes, 0, bytes.length).setString(Integer.toString(i));
+        }
+        // Repeated names must be found in the order they were added
+        mh.addValue("x-header-1").setString("repeat");
+
+        for (int i = 0; i < headerCount; i++) {
+            Assert.assertEquals(Integer.toString(i), mh.getHeader("X-HEADER-" + i));
+        }
+        Assert.assertNull(mh.getHeader("X-Header-" + headerCount));
+        Assert.assertEquals(headerCount, mh.findHeader("x-header-1", 2));
+        Assert.assertEquals(-1, mh.findHeader("x-header-1", headerCount + 1));
+
+        Enumeration<String> values = mh.values("X-Header-1");
+        Assert.assertEquals("1", values.nextElement());
+        Assert.assertEquals("repeat", values.nextElement());
+        Assert.assertFalse(values.hasMoreElements());
+
+        // Removing a header changes the indexes of the headers that follow it
+        mh.removeHeader("X-Header-0");
+        Assert.assertEquals(0, mh.findHeader("X-Header-1", 0));
+        mh.setValue("X-Header-1").setString("set");
+        Assert.assertEquals(headerCount - 1, mh.size());
+        Assert.assertEquals("set", mh.getUniqueValue("X-Header-1").toString());
+        Assert.assertEquals(headerCount - 2, mh.findHeader("X-Header-" + (headerCount - 1), 0));
+
+        mh.recycle();
+        Assert.assertNull(mh.getValue("X-Header-1"));
+    }
+
+
+    @Test
+    public void testIndexedLookupsNonAscii() {
+        MimeHeaders mh = new MimeHeaders();
+        for (int i = 0; i < MimeHeaders.INDEX_THRESHOLD; i++) {
+            mh.addValue("X-Header-" + i);
+        }
+        // KELVIN SIGN is equal to 'k', ignoring case
+        mh.addValue("K").setString("kelvin");
+        Assert.assertEquals("kelvin", mh.getHeader("k"));
+
+        mh.recycle();
+        for (int i = 0; i < MimeHeaders.INDEX_THRESHOLD; i++) {
+            mh.addValue("X-Header-" + i);
+        }
+        mh.addValue("k").setString("k");
+        Assert.assertEquals("k", mh.getHeader("K"));
+    }
+
+
+    @Test
+    public void testIndexedLookupsRandom() {
+        Random random = new Random(1);
+        String[] names = new String[] { "Accept", "accept", "X-Trace", "X-TRACE", "x-trace-id", "Cookie", "a", "b",
+                "Authorization", "X-Feature-1", "X-Feature-2", "X-Feature-3", "X-Feature-4", "x-feature-5" };
+        MimeHeaders mh = new MimeHeaders();
+        List<String[]> expected = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            String name = names[random.nextInt(names.length)];
+            String value = Integer.toString(i);
+            int op = random.nextInt(100);
+            if (op < 50) {
+                if (random.nextBoolean()) {
+                    mh.addValue(name).setString(value);
+                } else {
+                    byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+                    mh.addValue(bytes, 0, bytes.length).setString(value);
+                }
+                expected.add(new String[] { name, value });
+            } else if (op < 55) {
+                mh.setValue(name).setString(value);
+                int first = -1;
+                for (int j = 0; j < expected.size(); j++) {
+                    if (expected.get(j)[0].equalsIgnoreCase(name)) {
+                        if (first == -1) {
+                            first = j;
+                            expected.get(j)[1] = value;
+                        } else {
+                            expected.remove(j--);
+                        }
+                    }
+                }
+                if (first == -1) {
+                    expected.add(new String[] { name, value });
+                }
+            } else if (op < 60) {
+                mh.removeHeader(name);
+                expected.removeIf(header -> header[0].equalsIgnoreCase(name));
+            } else if (op < 61) {
+                mh.recycle();
+                expected.clear();
+            } else {
+                int starting = random.nextInt(expected.size() + 1);
+                int found = -1;
+                for (int j = starting; j < expected.size(); j++) {
+                    if (expected.get(j)[0].equalsIgnoreCase(name)) {
+                        found = j;
+                        break;
+                    }
+                }
+                Assert.assertEquals(found, mh.findHeader(name, starting));
+            }
+            Assert.assertEquals(expected.size(), mh.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i)[0], mh.getName(i).toString());
+            Assert.assertEquals(expected.get(i)[1], mh.getValue(i).toString());
+        }
+    }
+}
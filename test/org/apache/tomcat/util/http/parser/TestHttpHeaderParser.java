@@ -0,0 +1,159 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.HttpHeaderParser.HeaderDataSource;
+import org.apache.tomcat.util.http.parser.HttpHeaderParser.HeaderParseStatus;
+
+/**
+ * Checks that the vectorized header value scan parses exactly the same headers, and rejects exactly the same input, as
+ * the byte at a time scan.
+ */
+public class TestHttpHeaderParser {
+
+    private static final String[] FRAGMENTS = new String[] { "Host", "X-Trace-Id", "a", "-", ":", ": ", " ", "  ",
+            "\t", "\r\n", "\r\n ", "\r\n\t", "\n", "\r", "\r\r\n", "value", "0123456789abcdef", "\u007f", "\u0001",
+            "\u0000", "\u00e9", "\u00ff", "\"quoted\"", "a=b; c=d", "/path?x=y" };
+
+
+    @Test
+    public void testFindControl() {
+        Random random = new Random(1);
+        byte[] buf = new byte[64];
+        for (int i = 0; i < 100000; i++) {
+            random.nextBytes(buf);
+            // Make control characters rare so that long runs get tested
+            for (int j = 0; j < buf.length; j++) {
+                if (random.nextInt(8) != 0) {
+                    buf[j] = (byte) (0x20 + random.nextInt(0x5f));
+                }
+            }
+            int start = random.nextInt(buf.length);
+            int end = start + random.nextInt(buf.length - start + 1);
+            int expected = end;
+            for (int j = start; j < end; j++) {
+                if (HttpParser.isControl(buf[j])) {
+                    expected = j;
+                    break;
+                }
+            }
+            Assert.assertEquals(expected, HttpByteScanner.findControl(buf, start, end));
+        }
+    }
+
+
+    @Test
+    public void testValidHeaders() throws Exception {
+        String headers = "Host: localhost\r\n" + "Accept:    text/html, application/xhtml+xml   \r\n" +
+                "X-Multi-Line: first line  \r\n" + "   second line\r\n" + "\tthird line\r\n" + "X-Empty:\r\n" +
+                "X-Tab:\tvalue\twith\ttabs\t\r\n" + "X-Bare-LF: value\n" + "X-Long: " + "0123456789".repeat(20) +
+                "\r\n\r\n";
+        for (int chunkSize = 1; chunkSize < 40; chunkSize++) {
+            byte[] bytes = headers.getBytes(StandardCharsets.ISO_8859_1);
+            String scalar = parse(bytes, false, new Random(chunkSize), chunkSize);
+            String vectorized = parse(bytes, true, new Random(chunkSize), chunkSize);
+            Assert.assertEquals(scalar, vectorized);
+            Assert.assertTrue(scalar, scalar.contains("[X-Multi-Line]=[first line second line\tthird line]"));
+        }
+    }
+
+
+    @Test
+    public void testFuzzEquivalence() throws Exception {
+        Random random = new Random(2);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder headers = new StringBuilder();
+            int fragments = random.nextInt(40);
+            for (int j = 0; j < fragments; j++) {
+                headers.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            headers.append("\r\n\r\n");
+            byte[] bytes = headers.toString().getBytes(StandardCharsets.ISO_8859_1);
+            long seed = random.nextLong();
+            int chunkSize = random.nextBoolean() ? bytes.length : 0;
+            String scalar = parse(bytes, false, new Random(seed), chunkSize);
+            String vectorized = parse(bytes, true, new Random(seed), chunkSize);
+            Assert.assertEquals(headers.toString(), scalar, vectorized);
+        }
+    }
+
+
+    /*
+     * Returns a description of the parsed headers or of the error. If chunkSize is zero, the data is provided in
+     * randomly sized chunks.
+     */
+    private static String parse(byte[] bytes, boolean vectorized, Random random, int chunkSize) {
+        MimeHeaders headers = new MimeHeaders();
+        TesterHeaderDataSource source = new TesterHeaderDataSource(bytes, random, chunkSize);
+        HttpHeaderParser parser = new HttpHeaderParser(source, headers, true);
+        parser.setVectorized(vectorized);
+        StringBuilder result = new StringBuilder();
+        try {
+            HeaderParseStatus status;
+            do {
+                status = parser.parseHeader();
+            } while (status != HeaderParseStatus.DONE);
+        } catch (IllegalArgumentException | IOException e) {
+            result.append("Error: ").append(e.getMessage()).append('\n');
+        }
+        for (int i = 0; i < headers.size(); i++) {
+            result.append('[').append(headers.getName(i).toString()).append("]=[")
+                    .append(headers.getValue(i).toString()).append("]\n");
+        }
+        result.append("Position: ").append(source.getHeaderByteBuffer().position());
+        return result.toString();
+    }
+
+
+    private static class TesterHeaderDataSource implements HeaderDataSource {
+
+        private final ByteBuffer buffer;
+        private final Random random;
+        private final int chunkSize;
+
+        TesterHeaderDataSource(byte[] bytes, Random random, int chunkSize) {
+            this.buffer = ByteBuffer.wrap(bytes.clone());
+            this.buffer.limit(0);
+            this.random = random;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public boolean fillHeaderBuffer() throws IOException {
+            if (buffer.limit() == buffer.capacity()) {
+                throw new IOException("End of input");
+            }
+            int size = chunkSize > 0 ? chunkSize : 1 + random.nextInt(16);
+            buffer.limit(Math.min(buffer.capacity(), buffer.limit() + size));
+            return true;
+        }
+
+        @Override
+        public ByteBuffer getHeaderByteBuffer() {
+            return buffer;
+        }
+    }
+}
@@ -17,13 +17,21 @@
 package org.apache.tomcat.util.net;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.StandardProtocolFamily;
 import java.net.UnixDomainSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -31,6 +39,7 @@ import org.junit.Test;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.modeler.Registry;
 
 /**
  * Test case for the Endpoint implementations. The testing framework will ensure
@@ -115,4 +124,155 @@ public class TestXxxEndpoint extends TomcatBaseTest {
 
         Assert.assertTrue((new String(response.array(), 0, response.position()).startsWith("HTTP/1.1 200")));
     }
+
+    @Test
+    public void testMultiplePollers() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector c = tomcat.getConnector();
+
+        if (!c.getProtocolHandlerClassName().contains("NioProtocol")) {
+            return;
+        }
+
+        Assert.assertTrue(c.setProperty("pollerThreadCount", "3"));
+        tomcat.start();
+
+        int pollerThreads = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().contains("-Poller-")) {
+                pollerThreads++;
+            }
+        }
+        Assert.assertEquals(3, pollerThreads);
+
+        // Enough connections for every poller to be used, each of which is
+        // used for more than one request so keep-alive is handled by the
+        // poller the connection was assigned to
+        Socket[] sockets = new Socket[6];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = new Socket("localhost", getPort());
+            }
+            for (int request = 0; request < 2; request++) {
+                for (Socket socket : sockets) {
+                    OutputStream os = socket.getOutputStream();
+                    os.write("OPTIONS * HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                    os.flush();
+                    InputStream is = socket.getInputStream();
+                    byte[] buf = new byte[1024];
+                    int read = is.read(buf);
+                    Assert.assertTrue(new String(buf, 0, read, StandardCharsets.ISO_8859_1).startsWith("HTTP/1.1 200"));
+                }
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptiveKeepAliveIdle() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector c = tomcat.getConnector();
+
+        if (!c.getProtocolHandlerClassName().contains("NioProtocol")) {
+            return;
+        }
+
+        Assert.assertTrue(c.setProperty("maxConnections", "4"));
+        Assert.assertTrue(c.setProperty("keepAliveTimeout", "60000"));
+        Assert.assertTrue(c.setProperty("adaptiveKeepAlive", "true"));
+        Assert.assertTrue(c.setProperty("minKeepAliveTimeout", "500"));
+        tomcat.start();
+
+        Socket[] sockets = new Socket[3];
+        try {
+            // Usage is below the threshold. Keep-alive is not affected.
+            sockets[0] = new Socket("localhost", getPort());
+            sockets[0].setSoTimeout(10000);
+            String response = sendOptions(sockets[0]);
+            Assert.assertFalse(response, response.contains("Connection: close"));
+            Assert.assertEquals(Integer.valueOf(60000), c.getProperty("effectiveKeepAliveTimeout"));
+
+            // The connection limit is reached. Idle connections should be closed until it no longer is.
+            for (int i = 1; i < sockets.length; i++) {
+                sockets[i] = new Socket("localhost", getPort());
+            }
+            long closeCount = 0;
+            long connectionCount = 4;
+            int count = 0;
+            while ((closeCount == 0 || connectionCount == 4) && count < 100) {
+                Thread.sleep(100);
+                closeCount = ((Long) getEndpointAttribute("adaptiveKeepAliveCloseCount")).longValue();
+                connectionCount = ((Long) c.getProperty("connectionCount")).longValue();
+                count++;
+            }
+            Assert.assertTrue(closeCount > 0);
+            Assert.assertTrue(connectionCount < 4);
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdaptiveKeepAliveSaturated() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector c = tomcat.getConnector();
+
+        Assert.assertTrue(c.setProperty("maxConnections", "4"));
+        Assert.assertTrue(c.setProperty("adaptiveKeepAlive", "true"));
+        Assert.assertTrue(c.setProperty("minKeepAliveTimeout", "5000"));
+        tomcat.start();
+
+        Socket[] sockets = new Socket[3];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = new Socket("localhost", getPort());
+                sockets[i].setSoTimeout(10000);
+            }
+            // The acceptor counts the connection it is waiting for
+            int count = 0;
+            while (!"4".equals(String.valueOf(c.getProperty("connectionCount"))) && count < 100) {
+                Thread.sleep(50);
+                count++;
+            }
+            Assert.assertEquals(Integer.valueOf(1), getEndpointAttribute("effectiveMaxKeepAliveRequests"));
+
+            // The connection limit has been reached so keep-alive is disabled
+            String response = sendOptions(sockets[0]);
+            Assert.assertTrue(response, response.contains("Connection: close"));
+            Assert.assertEquals(-1, sockets[0].getInputStream().read());
+            Assert.assertEquals(Long.valueOf(1), getEndpointAttribute("adaptiveKeepAliveCloseCount"));
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    private static Object getEndpointAttribute(String name) throws Exception {
+        MBeanServer mbeanServer = Registry.getRegistry(null).getMBeanServer();
+        Set<ObjectName> onames = mbeanServer.queryNames(new ObjectName("Tomcat:type=ThreadPool,*"), null);
+        Assert.assertEquals(1, onames.size());
+        return mbeanServer.getAttribute(onames.iterator().next(), name);
+    }
+
+    private static String sendOptions(Socket socket) throws Exception {
+        OutputStream os = socket.getOutputStream();
+        os.write("OPTIONS * HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        os.flush();
+        InputStream is = socket.getInputStream();
+        byte[] buf = new byte[1024];
+        int read = is.read(buf);
+        return new String(buf, 0, read, StandardCharsets.ISO_8859_1);
+    }
 }